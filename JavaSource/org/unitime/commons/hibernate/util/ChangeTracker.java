@@ -0,0 +1,301 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.commons.hibernate.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Keeps a change counter for each tracked entity class. The counters are increased by Hibernate event listeners
+ * whenever an entity of the class (or of any of its subclasses) or any of its collections is inserted, updated, or deleted.
+ * Each change is counted twice: when it is flushed and when the transaction is completed,
+ * so that a value computed before the commit is not mistaken for an up-to-date one.<br>
+ * This can be used to invalidate cached data that depend on the given entities. Only changes made through Hibernate
+ * sessions of this server are noticed (bulk HQL updates, direct SQL, and changes made on other cluster nodes are not),
+ * so such caches should also expire after some time.<br>
+ * Besides the entity classes, changes can also be tracked by keys (e.g., a person's external id) that are computed from the changed
+ * entities by a {@link KeyProvider} (see {@link ChangeTracker#addKeyProvider(Class, KeyProvider)} and {@link ChangeTracker#getVersion(String)}).
+ * At most {@link ApplicationProperty#ChangeTrackerMaxKeys} keys are tracked, the least recently used ones are dropped first.
+ *
+ * @author Tomas Muller
+ */
+public class ChangeTracker {
+	private static Log sLog = LogFactory.getLog(ChangeTracker.class);
+	private static Map<Class<?>, AtomicLong> sVersions = new ConcurrentHashMap<Class<?>, AtomicLong>();
+	private static Map<String, AtomicLong> sKeyVersions = new LinkedHashMap<String, AtomicLong>(1024, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, AtomicLong> eldest) {
+			if (size() <= ApplicationProperty.ChangeTrackerMaxKeys.intValue() || isPending(eldest.getValue())) return false;
+			// a counter that is created again for the same key must start above any value this counter has reached
+			if (eldest.getValue().get() >= sKeyEpoch) sKeyEpoch = eldest.getValue().get() + 1;
+			return true;
+		}
+	};
+	private static long sKeyEpoch = 0;
+	private static List<KeyProviderEntry> sKeyProviders = new ArrayList<KeyProviderEntry>();
+	private static Map<SessionImplementor, Set<AtomicLong>> sPending = new WeakHashMap<SessionImplementor, Set<AtomicLong>>();
+	private static boolean sRegistered = false;
+	
+	/** Register the change listeners with the given session factory */
+	public static void register(SessionFactory sessionFactory) {
+		try {
+			EventListenerRegistry registry = ((SessionFactoryImplementor)sessionFactory).getServiceRegistry().getService(EventListenerRegistry.class);
+			Listener listener = new Listener();
+			registry.appendListeners(EventType.POST_INSERT, listener);
+			registry.appendListeners(EventType.POST_UPDATE, listener);
+			registry.appendListeners(EventType.POST_DELETE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+			sRegistered = true;
+		} catch (Exception e) {
+			sLog.warn("Failed to register change listeners: " + e.getMessage(), e);
+		}
+	}
+	
+	/** True if the change listeners have been registered */
+	public static boolean isRegistered() {
+		return sRegistered;
+	}
+	
+	/**
+	 * Current version of the given entity classes, the returned value increases with every change of an entity
+	 * of any of the given classes. The classes are tracked from the first call of this method.
+	 */
+	public static long getVersion(Class<?>... classes) {
+		long version = 0;
+		for (Class<?> clazz: classes) {
+			AtomicLong counter = sVersions.get(clazz);
+			if (counter == null) {
+				synchronized (sVersions) {
+					counter = sVersions.get(clazz);
+					if (counter == null) {
+						counter = new AtomicLong(0);
+						sVersions.put(clazz, counter);
+					}
+				}
+			}
+			version += counter.get();
+		}
+		return version;
+	}
+	
+	/**
+	 * Current version of the given key, the returned value increases with every change of an entity for which
+	 * a registered {@link KeyProvider} returns the key. The key is tracked from the first call of this method
+	 * (or, when it has been dropped as one of the least recently used keys, from the next call).
+	 */
+	public static long getVersion(String key) {
+		if (key == null) return 0;
+		AtomicLong counter;
+		synchronized (sKeyVersions) {
+			counter = sKeyVersions.get(key);
+			if (counter == null) {
+				counter = new AtomicLong(sKeyEpoch);
+				sKeyVersions.put(key, counter);
+			}
+		}
+		return counter.get();
+	}
+	
+	/**
+	 * Register a key provider for the given entity class (and its subclasses).
+	 * The provider is called when an entity of the class is changed (while the change is being flushed), and the versions of the returned keys are increased.
+	 */
+	public static void addKeyProvider(Class<?> clazz, KeyProvider provider) {
+		synchronized (sKeyProviders) {
+			sKeyProviders.add(new KeyProviderEntry(clazz, provider));
+		}
+	}
+	
+	/** Unregister a key provider */
+	public static void removeKeyProvider(KeyProvider provider) {
+		synchronized (sKeyProviders) {
+			for (Iterator<KeyProviderEntry> i = sKeyProviders.iterator(); i.hasNext(); )
+				if (i.next().getProvider().equals(provider)) i.remove();
+		}
+	}
+	
+	protected static void changed(Object entity, EventSource session) {
+		if (entity == null) return;
+		for (Map.Entry<Class<?>, AtomicLong> e: sVersions.entrySet()) {
+			if (!e.getKey().isInstance(entity)) continue;
+			increment(e.getValue(), session);
+		}
+		synchronized (sKeyVersions) {
+			if (sKeyVersions.isEmpty()) return;
+		}
+		List<KeyProviderEntry> providers;
+		synchronized (sKeyProviders) {
+			providers = new ArrayList<KeyProviderEntry>(sKeyProviders);
+		}
+		for (KeyProviderEntry provider: providers) {
+			if (!provider.getEntityClass().isInstance(entity)) continue;
+			try {
+				Collection<String> keys = provider.getProvider().getKeys(entity);
+				if (keys == null) continue;
+				for (String key: keys) {
+					if (key == null) continue;
+					synchronized (sKeyVersions) {
+						// incremented within the lock, so that the counter is not dropped before it is marked as pending
+						AtomicLong counter = sKeyVersions.get(key);
+						if (counter != null) increment(counter, session);
+					}
+				}
+			} catch (Exception ex) {
+				sLog.warn("Failed to compute change keys of " + entity.getClass().getSimpleName() + ": " + ex.getMessage(), ex);
+			}
+		}
+	}
+	
+	private static void increment(AtomicLong counter, EventSource session) {
+		counter.incrementAndGet();
+		synchronized (sPending) {
+			Set<AtomicLong> pending = sPending.get(session);
+			if (pending == null) {
+				// counters changed by this session are increased again once its transaction is completed
+				final Set<AtomicLong> counters = new HashSet<AtomicLong>();
+				sPending.put(session, counters);
+				session.getActionQueue().registerProcess(new AfterTransactionCompletionProcess() {
+					@Override
+					public void doAfterTransactionCompletion(boolean success, SessionImplementor session) {
+						synchronized (sPending) {
+							sPending.remove(session);
+							for (AtomicLong counter: counters)
+								counter.incrementAndGet();
+						}
+					}
+				});
+				pending = counters;
+			}
+			pending.add(counter);
+		}
+	}
+	
+	/** True if the given counter is to be increased again once a transaction is completed */
+	private static boolean isPending(AtomicLong counter) {
+		synchronized (sPending) {
+			for (Set<AtomicLong> counters: sPending.values())
+				if (counters.contains(counter)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Computes the keys affected by a change of an entity (see {@link ChangeTracker#addKeyProvider(Class, KeyProvider)}).
+	 */
+	public static interface KeyProvider {
+		/** Keys affected by the change of the given entity, called while the change is being flushed */
+		public Collection<String> getKeys(Object entity);
+	}
+	
+	private static class KeyProviderEntry {
+		private Class<?> iEntityClass;
+		private KeyProvider iProvider;
+		
+		KeyProviderEntry(Class<?> entityClass, KeyProvider provider) {
+			iEntityClass = entityClass; iProvider = provider;
+		}
+		
+		public Class<?> getEntityClass() { return iEntityClass; }
+		public KeyProvider getProvider() { return iProvider; }
+	}
+	
+	private static class Listener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+		PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			changed(event.getEntity(), event.getSession());
+		}
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			changed(event.getEntity(), event.getSession());
+		}
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) {
+			changed(event.getEntity(), event.getSession());
+		}
+
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+		
+		protected void onCollectionEvent(AbstractCollectionEvent event) {
+			changed(event.getAffectedOwnerOrNull(), event.getSession());
+		}
+
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) throws HibernateException {
+			onCollectionEvent(event);
+		}
+
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) throws HibernateException {
+			onCollectionEvent(event);
+		}
+
+		@Override
+		public void onPostRemoveCollection(PostCollectionRemoveEvent event) throws HibernateException {
+			onCollectionEvent(event);
+		}
+	}
+}
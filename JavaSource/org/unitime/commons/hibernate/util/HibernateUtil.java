@@ -271,6 +271,9 @@ public class HibernateUtil {
         addBitwiseOperationsToDialect();
         sLog.debug("  -- bitwise operation added to the dialect if needed");
         
+        ChangeTracker.register(sSessionFactory);
+        sLog.debug("  -- change tracker registered");
+        
         DatabaseUpdate.update();
     }
     
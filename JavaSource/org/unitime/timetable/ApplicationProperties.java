@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.unitime.commons.Debug;
 import org.unitime.timetable.defaults.ApplicationProperty;
@@ -50,7 +51,8 @@ import org.unitime.timetable.util.Constants;
  */
 public class ApplicationProperties {
 	private static DateFormat sTempFileDateFormat = new SimpleDateFormat("yy-MM-dd_HHmmssSSS", Locale.US);
-	private static Properties props = new Properties();
+	private static AtomicLong sVersion = new AtomicLong(0);
+	private static Properties props = new VersionedProperties();
     private static long appPropertiesLastModified = -1, custPropertiesLastModified = -1;  
     private static PropertyFileChangeListener pfc=null;
     private static Properties configProps = null;
@@ -182,12 +184,13 @@ public class ApplicationProperties {
 	
 	public static Properties getConfigProperties() {
 	    if (configProps==null && _RootDAO.isConfigured())
-	        configProps = ApplicationConfig.toProperties();
+	        configProps = new VersionedProperties(ApplicationConfig.toProperties());
 	    return (configProps==null?new Properties():configProps);
 	}
 	
 	public static void clearConfigProperties() {
 	    configProps = null;
+	    sVersion.incrementAndGet();
 	}
 	
 	public static Properties getSessionProperties(Long sessionId) {
@@ -196,7 +199,7 @@ public class ApplicationProperties {
 		
 		Properties properties = sSessionProperties.get(sessionId);
 		if (properties == null) {
-			properties = SessionConfig.toProperties(sessionId);
+			properties = new VersionedProperties(SessionConfig.toProperties(sessionId));
 			sSessionProperties.put(sessionId, properties);
 		}
 		return properties;
@@ -207,6 +210,15 @@ public class ApplicationProperties {
 			sSessionProperties.clear();
 		else
 			sSessionProperties.remove(sessionId);
+		sVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Version of the properties, it is incremented every time a property is changed (default, application configuration,
+	 * or session properties) or when the properties are reloaded. Used by the {@link ApplicationProperty} value cache.
+	 */
+	public static long getVersion() {
+		return sVersion.get();
 	}
 	
 	/**
@@ -256,7 +268,9 @@ public class ApplicationProperties {
 	 * @return Properties object
 	 */
 	public static Properties getProperties() {
-        Properties ret = (Properties)props.clone();
+        // a plain copy, a clone would be versioned and the following changes would increment the version
+        Properties ret = new Properties();
+        ret.putAll(props);
         ret.putAll(getConfigProperties());
         
 	    Long sessionId = ApplicationProperties.getSessionId();
@@ -367,6 +381,48 @@ public class ApplicationProperties {
 		return file;
 	}
 	
+	/**
+	 * Properties that increment the {@link ApplicationProperties#getVersion()} when changed
+	 */
+	static class VersionedProperties extends Properties {
+		private static final long serialVersionUID = 1L;
+		
+		VersionedProperties() {
+			super();
+		}
+		
+		VersionedProperties(Properties properties) {
+			super();
+			if (properties != null) putAll(properties);
+		}
+		
+		@Override
+		public synchronized Object put(Object key, Object value) {
+			Object old = super.put(key, value);
+			sVersion.incrementAndGet();
+			return old;
+		}
+		
+		@Override
+		public synchronized void putAll(Map<?, ?> t) {
+			super.putAll(t);
+			sVersion.incrementAndGet();
+		}
+		
+		@Override
+		public synchronized Object remove(Object key) {
+			Object old = super.remove(key);
+			if (old != null) sVersion.incrementAndGet();
+			return old;
+		}
+		
+		@Override
+		public synchronized void clear() {
+			super.clear();
+			sVersion.incrementAndGet();
+		}
+	}
+	
 	/**
 	 * Stop Property File Change Listener Thread 
 	 */
@@ -71,6 +71,7 @@ import org.unitime.timetable.model.dao.LocationDAO;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.LookupTables;
+import org.unitime.timetable.util.RoomAvailability;
 import org.unitime.timetable.webutil.BackTracker;
 import org.unitime.timetable.webutil.Navigation;
 import org.unitime.timetable.webutil.RequiredTimeTable;
@@ -393,6 +394,7 @@ public class RoomDetailAction extends Action {
     				Event event = entry.getKey();
     				List<Meeting> meetings = entry.getValue();
     				if (event.getMeetings().isEmpty()) {
+    					RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
     					hibSession.delete(event);
     				} else {
     					EventNote note = new EventNote();
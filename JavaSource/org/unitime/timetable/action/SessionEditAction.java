@@ -20,6 +20,7 @@
 package org.unitime.timetable.action;
 
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -59,6 +60,7 @@ import org.unitime.timetable.spring.struts.SpringAwareLookupDispatchAction;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
 import org.unitime.timetable.util.LookupTables;
+import org.unitime.timetable.util.RoomAvailability;
 
 
 /** 
@@ -304,7 +306,15 @@ public class SessionEditAction extends SpringAwareLookupDispatchAction {
                 hibSession.save(contact);
             }
 
+            List<Long> changedEvents = new ArrayList<Long>();
             if (sessn.getStatusType().isTestSession()) {
+            	// bulk deletes are not noted, let the room availability cache know about the deleted events
+            	changedEvents.addAll((List<Long>)hibSession.createQuery(
+            			"select e.uniqueId from ExamEvent e where e.exam.session.uniqueId = :sessionId")
+            			.setLong("sessionId", sessn.getUniqueId()).list());
+            	changedEvents.addAll((List<Long>)hibSession.createQuery(
+            			"select e.uniqueId from ClassEvent e where e.clazz.committedAssignment.solution.owner.session.uniqueId = :sessionId")
+            			.setLong("sessionId", sessn.getUniqueId()).list());
             	hibSession.createQuery(
             			"delete ExamEvent where exam in (from Exam x where x.session.uniqueId = :sessionId)")
             			.setLong("sessionId", sessn.getUniqueId()).executeUpdate();
@@ -320,9 +330,12 @@ public class SessionEditAction extends SpringAwareLookupDispatchAction {
             		if (event != null && !event.getMeetings().isEmpty()) {
                     	event.setMainContact(contact);
                         hibSession.saveOrUpdate(event);
+                        changedEvents.add(event.getUniqueId());
                     }
-        		    if (event != null && event.getMeetings().isEmpty() && event.getUniqueId() != null)
+        		    if (event != null && event.getMeetings().isEmpty() && event.getUniqueId() != null) {
+        		    	changedEvents.add(event.getUniqueId());
         		    	hibSession.delete(event);
+        		    }
             	}
             	for (Exam exam: (List<Exam>)hibSession.createQuery(
             			"from Exam x where x.session.uniqueId = :sessionId and x.assignedPeriod != null " +
@@ -335,9 +348,11 @@ public class SessionEditAction extends SpringAwareLookupDispatchAction {
                         event.setMaxCapacity(exam.getSize());
                         event.setMainContact(contact);
                         hibSession.saveOrUpdate(event);
+                        changedEvents.add(event.getUniqueId());
                     }
             	}
             }
+            RoomAvailability.eventsChanged(hibSession, changedEvents);
             
             tx.commit() ;
         } catch (Exception e) {
@@ -19,8 +19,11 @@
 */
 package org.unitime.timetable.api;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -66,6 +69,19 @@ public abstract class AbstractApiHelper implements ApiHelper {
 		}
 	}
 
+	@Override
+	public <E> void setStreamingResponse(Iterator<E> response) throws IOException {
+		List<E> list = new ArrayList<E>();
+		try {
+			while (response.hasNext())
+				list.add(response.next());
+		} finally {
+			if (response instanceof Closeable)
+				((Closeable)response).close();
+		}
+		setResponse(list);
+	}
+
 	@Override
 	public void sendError(int code, String message) throws IOException {
 		iResponse.sendError(code, message);
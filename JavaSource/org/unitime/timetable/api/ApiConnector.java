@@ -66,6 +66,14 @@ public abstract class ApiConnector {
 	
 	protected abstract String getName();
 	
+	/**
+	 * Entities the GET responses of this connector depend on. When not null, the responses are cached
+	 * (see {@link ApiResponseCache}) until an entity of one of the given classes is changed.
+	 */
+	protected Class<?>[] getResponseCacheDependencies() {
+		return null;
+	}
+	
 	protected CacheMode getCacheMode() {
 		String cacheMode = (getName() != null && !getName().isEmpty() ? ApplicationProperty.ApiCacheMode.value(getName()) : null);
 		return cacheMode != null ? CacheMode.valueOf(cacheMode) : this instanceof HasCacheMode ? ((HasCacheMode)this).getCacheMode() : null;
@@ -85,7 +93,14 @@ public abstract class ApiConnector {
 	
 	public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
 		authenticateWithTokenIfNeeded(request, response);
+		ApiResponseCache.Request cacheRequest = ApiResponseCache.createRequest(this, request, sessionContext);
+		if (cacheRequest != null && cacheRequest.sendCachedResponse(request, response)) {
+			revokeTokenAuthenticationIfNeeded(request, response);
+			return;
+		}
 		ApiHelper helper = createHelper(request, response);
+		if (cacheRequest != null && helper instanceof JsonApiHelper)
+			((JsonApiHelper)helper).setCacheRequest(cacheRequest);
 		try {
 			doGet(helper);
 		} finally {
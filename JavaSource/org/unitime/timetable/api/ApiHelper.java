@@ -22,6 +22,7 @@ package org.unitime.timetable.api;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Enumeration;
+import java.util.Iterator;
 
 import org.unitime.timetable.security.SessionContext;
 
@@ -37,6 +38,13 @@ public interface ApiHelper {
 	
 	public <R> void setResponse(R response) throws IOException;
 	
+	/**
+	 * Stream a list response: the elements are serialized as they are retrieved from the iterator,
+	 * so that the whole response does not need to be kept in memory.
+	 * The iterator is closed at the end when it implements {@link java.io.Closeable}.
+	 */
+	public <E> void setStreamingResponse(Iterator<E> response) throws IOException;
+	
 	public void sendError(int code) throws IOException;
 	
 	public void sendError(int code, String message) throws IOException;
@@ -0,0 +1,176 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.unitime.commons.hibernate.util.ChangeTracker;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.security.SessionContext;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.context.AnonymousUserContext;
+import org.unitime.timetable.util.BoundedCache;
+import org.unitime.timetable.util.CachedBody;
+
+/**
+ * Server-side cache of JSON responses of the API connectors that declare their dependencies
+ * (see {@link ApiConnector#getResponseCacheDependencies()}).<br>
+ * Responses are cached by the connector, the request parameters, and the user (including the user's current role
+ * and academic session), together with the version of the entities the connector depends on (see {@link ChangeTracker}).
+ * A cached response is used only while none of these entities has changed and for at most {@link ApplicationProperty#ApiResponseCacheTimeToLive} seconds.
+ * Each response has an ETag computed from its content, and a request with a matching If-None-Match header gets
+ * a 304 (Not Modified) response.
+ *
+ * @author Tomas Muller
+ */
+public class ApiResponseCache {
+	private static ApiResponseCache sInstance = null;
+	private BoundedCache<String, CachedBody> iCache;
+	
+	private ApiResponseCache() {
+		iCache = new BoundedCache<String, CachedBody>("ApiResponseCache",
+				1024l * 1024l * ApplicationProperty.ApiResponseCacheMaxSize.intValue(),
+				1000l * ApplicationProperty.ApiResponseCacheTimeToLive.intValue(),
+				new BoundedCache.Weigher<CachedBody>() {
+					@Override
+					public long weight(CachedBody value) {
+						return value.getBody().length + 100;
+					}
+				}, true);
+	}
+	
+	public static synchronized ApiResponseCache getInstance() {
+		if (sInstance == null) sInstance = new ApiResponseCache();
+		return sInstance;
+	}
+	
+	/**
+	 * Cache request for the given GET call, null if the response cannot be cached
+	 * (the connector has no dependencies declared, or the cache is disabled).
+	 */
+	public static Request createRequest(ApiConnector connector, HttpServletRequest request, SessionContext context) {
+		if (!"GET".equals(request.getMethod()) || !ApplicationProperty.ApiResponseCacheEnabled.isTrue() || !ChangeTracker.isRegistered()) return null;
+		Class<?>[] dependencies = connector.getResponseCacheDependencies();
+		if (dependencies == null || connector.getName() == null) return null;
+		long version = ChangeTracker.getVersion(dependencies);
+		
+		StringBuffer key = new StringBuffer(connector.getName());
+		UserContext user = (context == null || !context.isAuthenticated() ? null : context.getUser());
+		if (user == null || user instanceof AnonymousUserContext) {
+			key.append("|anonymous");
+		} else {
+			key.append("|" + user.getExternalUserId());
+			if (user.getCurrentAuthority() != null)
+				key.append("|" + user.getCurrentAuthority().getAuthority());
+		}
+		List<String> parameters = new ArrayList<String>();
+		for (Enumeration<String> e = request.getParameterNames(); e.hasMoreElements(); ) {
+			String name = e.nextElement();
+			if ("token".equals(name)) continue;
+			String[] values = request.getParameterValues(name);
+			if (values != null)
+				for (String value: values)
+					parameters.add(name + "=" + value);
+		}
+		Collections.sort(parameters);
+		for (String parameter: parameters)
+			key.append("|" + parameter);
+		
+		return getInstance().new Request(key.toString(), version);
+	}
+	
+	/** Cache statistics */
+	public String getStatistics() {
+		return iCache.getStatistics();
+	}
+	
+	/** Remove all cached responses */
+	public void clear() {
+		iCache.clear();
+	}
+	
+	/**
+	 * Cache request: the cache key and the version of the dependencies taken before the response is computed
+	 */
+	public class Request {
+		private String iKey;
+		private long iVersion;
+		
+		Request(String key, long version) {
+			iKey = key; iVersion = version;
+		}
+		
+		public String getKey() { return iKey; }
+		
+		/**
+		 * Send the cached response (or 304 if the client has the same version already)
+		 * @return false if there is no up-to-date response cached
+		 */
+		public boolean sendCachedResponse(HttpServletRequest request, HttpServletResponse response) throws IOException {
+			CachedBody cached = iCache.get(iKey);
+			if (cached == null) return false;
+			if (cached.getVersion() != iVersion) {
+				iCache.remove(iKey);
+				return false;
+			}
+			send(cached, request, response);
+			return true;
+		}
+		
+		/**
+		 * Cache the given JSON response and send it (or 304 if the client has the same version already)
+		 */
+		public void sendResponse(String json, HttpServletRequest request, HttpServletResponse response) throws IOException {
+			CachedBody cached = new CachedBody(json.getBytes("UTF-8"), iVersion);
+			iCache.put(iKey, cached);
+			send(cached, request, response);
+		}
+		
+		protected void send(CachedBody cached, HttpServletRequest request, HttpServletResponse response) throws IOException {
+			response.setHeader("ETag", cached.getETag());
+			response.setHeader("Cache-Control", "private, no-cache");
+			response.setDateHeader("Date", new Date().getTime());
+			if (cached.matches(request.getHeader("If-None-Match"))) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			response.setContentType("application/json");
+			response.setCharacterEncoding("UTF-8");
+			response.setHeader("Content-Disposition", "attachment; filename=\"response.json\"" );
+			response.setContentLength(cached.getBody().length);
+			OutputStream out = response.getOutputStream();
+			try {
+				out.write(cached.getBody());
+			} finally {
+				out.flush();
+				out.close();
+			}
+		}
+	}
+}
@@ -19,19 +19,25 @@
 */
 package org.unitime.timetable.api;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.hibernate.CacheMode;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.security.SessionContext;
 
 import com.google.gson.FieldNamingStrategy;
@@ -42,12 +48,14 @@ import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * @author Tomas Muller
  */
 public class JsonApiHelper extends AbstractApiHelper {
 	protected Gson iGson;
+	protected ApiResponseCache.Request iCacheRequest = null;
 	
 	public JsonApiHelper(HttpServletRequest request, HttpServletResponse response, SessionContext context, CacheMode cacheMode) {
 		super(request, response, context, cacheMode);
@@ -98,9 +106,7 @@ public class JsonApiHelper extends AbstractApiHelper {
 		}
 	}
 	
-	@Override
-	public <R> void setResponse(R response) throws IOException {
-		if (iGson == null) iGson = createGson();
+	protected void setResponseHeaders() {
 		iResponse.setContentType("application/json");
 		iResponse.setCharacterEncoding("UTF-8");
 		iResponse.setHeader("Pragma", "no-cache" );
@@ -110,17 +116,74 @@ public class JsonApiHelper extends AbstractApiHelper {
 		iResponse.setDateHeader("Date", new Date().getTime());
 		iResponse.setDateHeader("Expires", 0);
 		iResponse.setHeader("Content-Disposition", "attachment; filename=\"response.json\"" );
+	}
+	
+	/** Cache the response, see {@link ApiResponseCache} */
+	public void setCacheRequest(ApiResponseCache.Request cacheRequest) {
+		iCacheRequest = cacheRequest;
+	}
+	
+	@Override
+	public <R> void setResponse(R response) throws IOException {
+		if (iGson == null) iGson = createGson();
+		if (iCacheRequest != null) {
+			iCacheRequest.sendResponse(iGson.toJson(response), iRequest, iResponse);
+			return;
+		}
+		setResponseHeaders();
 		Writer writer = iResponse.getWriter();
 		try {
-			writer.write(iGson.toJson(response));
+			iGson.toJson(response, writer);
 		} finally {
 			writer.flush();
 			writer.close();
 		}
 	}
 	
+	protected boolean acceptsGzip() {
+		if (!ApplicationProperty.ApiStreamingGzip.isTrue()) return false;
+		String acceptEncoding = iRequest.getHeader("Accept-Encoding");
+		return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+	}
+	
+	@Override
+	public <E> void setStreamingResponse(Iterator<E> response) throws IOException {
+		try {
+			if (iGson == null) iGson = createGson();
+			setResponseHeaders();
+			// no content length is set, so the response is sent using the chunked transfer encoding
+			Writer writer = null;
+			if (acceptsGzip()) {
+				iResponse.setHeader("Content-Encoding", "gzip");
+				writer = new OutputStreamWriter(new GZIPOutputStream(iResponse.getOutputStream()), "UTF-8");
+			} else {
+				writer = iResponse.getWriter();
+			}
+			JsonWriter out = new JsonWriter(new BufferedWriter(writer));
+			out.setIndent("  ");
+			try {
+				out.beginArray();
+				while (response.hasNext()) {
+					E element = response.next();
+					if (element == null)
+						out.nullValue();
+					else
+						iGson.toJson(element, element.getClass(), out);
+				}
+				out.endArray();
+			} finally {
+				out.flush();
+				out.close();
+			}
+		} finally {
+			if (response instanceof Closeable)
+				((Closeable)response).close();
+		}
+	}
+	
 	@Override
 	public void sendError(int code, String message) throws IOException {
+		iCacheRequest = null;
 		try {
 			iResponse.setStatus(code);
 			setResponse(new ErrorMessage(code, message, this));
@@ -131,6 +194,7 @@ public class JsonApiHelper extends AbstractApiHelper {
 	
 	@Override
 	public void sendError(int code) throws IOException {
+		iCacheRequest = null;
 		try {
 			iResponse.setStatus(code);
 			setResponse(new ErrorMessage(code, this));
@@ -141,6 +205,7 @@ public class JsonApiHelper extends AbstractApiHelper {
 	
 	@Override
 	public void sendError(int code, Throwable error) throws IOException {
+		iCacheRequest = null;
 		try {
 			iResponse.setStatus(code);
 			setResponse(new ErrorMessage(code, error, this));
@@ -0,0 +1,92 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.api;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Streaming API response (see {@link ApiHelper#setStreamingResponse(Iterator)}) over the results of a Hibernate query.
+ * The query is scrolled forward only and each row is converted into a response object as it is being written.
+ * The Hibernate session is cleared every {@link ApplicationProperty#ApiStreamingBatchSize} rows, so that the
+ * memory consumption does not depend on the number of returned records.
+ *
+ * @author Tomas Muller
+ */
+public abstract class ScrollableResponse<E> implements Iterator<E>, Closeable {
+	private org.hibernate.Session iHibSession;
+	private ScrollableResults iResults;
+	private int iBatchSize;
+	private int iCount = 0;
+	private Boolean iHasNext = null;
+	
+	public ScrollableResponse(org.hibernate.Session hibSession, Query query) {
+		iHibSession = hibSession;
+		iBatchSize = ApplicationProperty.ApiStreamingBatchSize.intValue();
+		iResults = query.setFetchSize(Math.max(1, Math.min(iBatchSize, 1000))).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY);
+	}
+	
+	/** Convert a query result row into a response object */
+	protected abstract E convert(Object[] row);
+	
+	@Override
+	public boolean hasNext() {
+		if (iHasNext == null) {
+			iHasNext = (iResults != null && iResults.next());
+			if (!iHasNext) close();
+		}
+		return iHasNext;
+	}
+	
+	@Override
+	public E next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		iHasNext = null;
+		E ret = convert(iResults.get());
+		iCount ++;
+		if (iBatchSize > 0 && iCount % iBatchSize == 0)
+			iHibSession.clear();
+		return ret;
+	}
+	
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/** Number of rows returned so far */
+	public int getCount() {
+		return iCount;
+	}
+	
+	@Override
+	public void close() {
+		if (iResults != null) {
+			iResults.close();
+			iResults = null;
+		}
+	}
+}
@@ -193,6 +193,11 @@ public class BuildingsConntector extends ApiConnector {
 		helper.setResponse(b);
 	}
 	
+	@Override
+	protected Class<?>[] getResponseCacheDependencies() {
+		return new Class<?>[] { Building.class };
+	}
+
 	@Override
 	protected String getName() {
 		return "buildings";
@@ -25,9 +25,11 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import org.hibernate.Query;
 import org.springframework.stereotype.Service;
 import org.unitime.timetable.api.ApiConnector;
 import org.unitime.timetable.api.ApiHelper;
+import org.unitime.timetable.api.ScrollableResponse;
 import org.unitime.timetable.model.Class_;
 import org.unitime.timetable.model.CourseOffering;
 import org.unitime.timetable.model.Event;
@@ -93,9 +95,9 @@ public class EnrollmentsConnector extends ApiConnector {
 			
 			helper.getSessionContext().checkPermissionAnyAuthority(course.getInstructionalOffering().getSession(), Right.ApiRetrieveEnrollments);
 
-			helper.setResponse(convert(CourseOfferingDAO.getInstance().getSession().createQuery(
+			helper.setStreamingResponse(convert(helper.getHibSession(), helper.getHibSession().createQuery(
 					"from StudentClassEnrollment e where e.courseOffering.uniqueId = :courseId"
-					).setLong("courseId", course.getUniqueId()).list()));
+					).setLong("courseId", course.getUniqueId())));
 		}
 		String offeringId = helper.getParameter("offeringId");
 		if (offeringId != null) {
@@ -105,9 +107,9 @@ public class EnrollmentsConnector extends ApiConnector {
 			
 			helper.getSessionContext().checkPermissionAnyAuthority(offering.getSession(), Right.ApiRetrieveEnrollments);
 
-			helper.setResponse(convert(CourseOfferingDAO.getInstance().getSession().createQuery(
+			helper.setStreamingResponse(convert(helper.getHibSession(), helper.getHibSession().createQuery(
 					"from StudentClassEnrollment e where e.courseOffering.instructionalOffering.uniqueId = :offeringId"
-					).setLong("offeringId", offering.getUniqueId()).list()));
+					).setLong("offeringId", offering.getUniqueId())));
 		}
 		String configurationId = helper.getParameter("configurationId");
 		if (configurationId != null) {
@@ -117,9 +119,9 @@ public class EnrollmentsConnector extends ApiConnector {
 			
 			helper.getSessionContext().checkPermissionAnyAuthority(config.getInstructionalOffering().getSession(), Right.ApiRetrieveEnrollments);
 
-			helper.setResponse(convert(CourseOfferingDAO.getInstance().getSession().createQuery(
+			helper.setStreamingResponse(convert(helper.getHibSession(), helper.getHibSession().createQuery(
 					"from StudentClassEnrollment e where e.clazz.schedulingSubpart.instrOfferingConfig.uniqueId = :configId"
-					).setLong("configId", config.getUniqueId()).list()));
+					).setLong("configId", config.getUniqueId())));
 		}
 	}
 	
@@ -131,6 +133,15 @@ public class EnrollmentsConnector extends ApiConnector {
 		return converted;
 	}
 	
+	protected ScrollableResponse<ClassEnrollmentInfo> convert(org.hibernate.Session hibSession, Query query) {
+		return new ScrollableResponse<ClassEnrollmentInfo>(hibSession, query) {
+			@Override
+			protected ClassEnrollmentInfo convert(Object[] row) {
+				return new ClassEnrollmentInfo((StudentClassEnrollment)row[0]);
+			}
+		};
+	}
+	
 	static class CurriculumInfo {
 		String iArea;
 		String iClassification;
@@ -50,14 +50,21 @@ import org.unitime.timetable.gwt.shared.EventInterface.RoomFilterRpcRequest;
 import org.unitime.timetable.gwt.shared.EventInterface.SaveEventRpcRequest;
 import org.unitime.timetable.gwt.shared.EventInterface.SaveOrApproveEventRpcRequest;
 import org.unitime.timetable.gwt.shared.EventInterface.SaveOrApproveEventRpcResponse;
+import org.unitime.timetable.model.Assignment;
+import org.unitime.timetable.model.ClassInstructor;
+import org.unitime.timetable.model.Class_;
 import org.unitime.timetable.model.DepartmentalInstructor;
 import org.unitime.timetable.model.Event;
 import org.unitime.timetable.model.EventContact;
+import org.unitime.timetable.model.EventNote;
+import org.unitime.timetable.model.Exam;
 import org.unitime.timetable.model.Location;
 import org.unitime.timetable.model.Meeting;
 import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.Solution;
 import org.unitime.timetable.model.Staff;
 import org.unitime.timetable.model.Student;
+import org.unitime.timetable.model.StudentClassEnrollment;
 import org.unitime.timetable.model.TimetableManager;
 import org.unitime.timetable.model.dao.EventContactDAO;
 import org.unitime.timetable.model.dao.EventDAO;
@@ -419,6 +426,11 @@ public class EventsConnector extends ApiConnector {
 		helper.setResponse(response);
 	}
 
+	@Override
+	protected Class<?>[] getResponseCacheDependencies() {
+		return new Class<?>[] { Event.class, Meeting.class, EventNote.class, EventContact.class, Location.class, Class_.class, Assignment.class, Solution.class, Exam.class, DepartmentalInstructor.class, ClassInstructor.class, StudentClassEnrollment.class, Session.class };
+	}
+
 	@Override
 	protected String getName() {
 		return "events";
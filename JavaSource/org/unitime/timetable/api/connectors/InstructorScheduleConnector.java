@@ -41,15 +41,18 @@ import org.unitime.timetable.model.CourseOffering;
 import org.unitime.timetable.model.DatePattern;
 import org.unitime.timetable.model.Department;
 import org.unitime.timetable.model.DepartmentalInstructor;
+import org.unitime.timetable.model.Event;
 import org.unitime.timetable.model.Exam;
 import org.unitime.timetable.model.ExamOwner;
 import org.unitime.timetable.model.ExamPeriod;
 import org.unitime.timetable.model.InstrOfferingConfig;
 import org.unitime.timetable.model.Location;
+import org.unitime.timetable.model.Meeting;
 import org.unitime.timetable.model.OfferingCoordinator;
 import org.unitime.timetable.model.PositionType;
 import org.unitime.timetable.model.Room;
 import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.Solution;
 import org.unitime.timetable.model.TeachingResponsibility;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.Constants;
@@ -493,6 +496,11 @@ public class InstructorScheduleConnector extends ApiConnector{
     	return null;
     }
 	
+	@Override
+	protected Class<?>[] getResponseCacheDependencies() {
+		return new Class<?>[] { DepartmentalInstructor.class, ClassInstructor.class, OfferingCoordinator.class, Class_.class, CourseOffering.class, Assignment.class, Solution.class, Exam.class, Location.class, Event.class, Meeting.class, Session.class };
+	}
+
 	@Override
 	protected String getName() {
 		return "instructor-schedule";
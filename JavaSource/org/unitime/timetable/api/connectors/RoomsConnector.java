@@ -43,12 +43,20 @@ import org.unitime.timetable.gwt.shared.RoomInterface.RoomFilterRpcRequest;
 import org.unitime.timetable.gwt.shared.RoomInterface.RoomPictureInterface;
 import org.unitime.timetable.gwt.shared.RoomInterface.RoomUpdateRpcRequest;
 import org.unitime.timetable.model.AttachmentType;
+import org.unitime.timetable.model.Building;
+import org.unitime.timetable.model.Department;
+import org.unitime.timetable.model.ExamType;
 import org.unitime.timetable.model.Location;
 import org.unitime.timetable.model.LocationPicture;
 import org.unitime.timetable.model.NonUniversityLocation;
 import org.unitime.timetable.model.NonUniversityLocationPicture;
 import org.unitime.timetable.model.Room;
+import org.unitime.timetable.model.RoomDept;
+import org.unitime.timetable.model.RoomFeature;
+import org.unitime.timetable.model.RoomGroup;
 import org.unitime.timetable.model.RoomPicture;
+import org.unitime.timetable.model.RoomType;
+import org.unitime.timetable.model.RoomTypeOption;
 import org.unitime.timetable.model.Session;
 import org.unitime.timetable.model.dao.LocationDAO;
 import org.unitime.timetable.model.dao.LocationPictureDAO;
@@ -301,6 +309,11 @@ public class RoomsConnector extends ApiConnector {
 		return new BinaryFileApiHelper(request, response, sessionContext, getCacheMode());
 	}
 	
+	@Override
+	protected Class<?>[] getResponseCacheDependencies() {
+		return new Class<?>[] { Location.class, Building.class, RoomFeature.class, RoomGroup.class, RoomDept.class, Department.class, RoomType.class, RoomTypeOption.class, LocationPicture.class, ExamType.class };
+	}
+
 	@Override
 	protected String getName() {
 		return "rooms";
@@ -24,6 +24,7 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.reflect.Field;
 import java.sql.Driver;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -662,6 +663,12 @@ public enum ApplicationProperty {
 	@Description("Solver: wait for the room availabity to synchronize")
 	RoomAvailabilitySolverWaitForSync("tmtbl.room.availability.solver.waitForSync"),
 
+	@Type(Integer.class)
+	@DefaultValue("900")
+	@Description("Room Availability: how long (in seconds) can the default room availability service keep updating its cache incrementally (only reloading events that have changed since the last update) before the cache is fully reloaded (0 means always reload)")
+	@Since(4.2)
+	RoomAvailabilityIncrementalUpdateMaxAge("unitime.room.availability.incrementalUpdate.maxAge"),
+
 	/**
 	 * If you are using UniTime in conjunction with an external system that identifies classes differently than UniTime
 	 * you can create a java class that implements the ExternalClassNameHelperInterface interface to create custom
@@ -1146,6 +1153,37 @@ public enum ApplicationProperty {
 	@Description("Customization: section limit provider (interface SectionLimitProvider, deprecated)")
 	CustomizationSectionLimit("unitime.custom.SectionLimitProvider"),
 	
+	@Type(Class.class)
+	@Implements(SectionLimitProvider.class)
+	@DefaultValue("org.unitime.timetable.onlinesectioning.custom.purdue.PurdueSectionLimitProvider")
+	@Description("Customization: section limit provider used by the caching section limit provider (when unitime.custom.SectionLimitProvider is set to org.unitime.timetable.onlinesectioning.custom.CachedSectionLimitProvider)")
+	@Since(4.2)
+	CustomizationSectionLimitDelegate("unitime.custom.SectionLimitProvider.delegate"),
+	
+	@Type(Integer.class)
+	@DefaultValue("10")
+	@Description("Customization: caching section limit provider, maximal number of section limits that are being retrieved at the same time (shared by all the callers)")
+	@Since(4.2)
+	CustomizationSectionLimitThreads("unitime.custom.SectionLimitProvider.threads"),
+	
+	@Type(Integer.class)
+	@DefaultValue("300")
+	@Description("Customization: caching section limit provider, time in seconds for which a retrieved section limit is used without being retrieved again")
+	@Since(4.2)
+	CustomizationSectionLimitTimeToLive("unitime.custom.SectionLimitProvider.ttl"),
+	
+	@Type(Integer.class)
+	@DefaultValue("3600")
+	@Description("Customization: caching section limit provider, time in seconds for which an expired section limit is still used while a new one is being retrieved in the background")
+	@Since(4.2)
+	CustomizationSectionLimitMaxStale("unitime.custom.SectionLimitProvider.maxStale"),
+	
+	@Type(Integer.class)
+	@DefaultValue("5000")
+	@Description("Customization: caching section limit provider, maximal time in milliseconds to wait for the section limits to be retrieved")
+	@Since(4.2)
+	CustomizationSectionLimitTimeout("unitime.custom.SectionLimitProvider.timeout"),
+	
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Curriculum: convert academic area, classification and major codes and names to initial case")
@@ -1420,6 +1458,24 @@ public enum ApplicationProperty {
 	@Description("Clustering: solver request timeout in milliseconds (0 means wait until all responses have been received)")
 	SolverClusterTimeout("unitime.solver.timeout"),
 
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Clustering: how long (in seconds) can a request to create a new solver wait for resources when there is no solver server that can take it (0 means fail immediately)")
+	@Since(4.2)
+	SolverPlacementQueueTimeout("unitime.solver.placement.queueTimeout"),
+
+	@Type(Double.class)
+	@DefaultValue("2.0")
+	@Description("Clustering: maximal processor load (system load average divided by the number of processors) of a solver server on which a new solver can be created (0 means no limit)")
+	@Since(4.2)
+	SolverPlacementMaxLoad("unitime.solver.placement.maxLoad"),
+
+	@Type(Integer.class)
+	@DefaultValue("300")
+	@Description("Clustering: for how long (in seconds) is the estimated memory of a newly created solver reserved on the solver server (the solver is being loaded)")
+	@Since(4.2)
+	SolverPlacementReservation("unitime.solver.placement.reservation"),
+
 	@Type(Integer.class)
 	@DefaultValue("100")
 	@Description("Test HQL: maximum number of returned lines")
@@ -1435,6 +1491,30 @@ public enum ApplicationProperty {
 	@Description("Query Log: record request object/parameters as JSON message")
 	QueryLogJSON("unitime.query.log.json"),
 
+	@Type(Integer.class)
+	@DefaultValue("10")
+	@Description("Asynchronous RPC: maximal number of asynchronous requests (e.g., long running reports) that are executed at the same time")
+	@Since(4.2)
+	GwtRpcAsyncPoolSize("unitime.rpc.async.poolSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Asynchronous RPC: maximal number of asynchronous requests waiting to be executed (further requests are rejected)")
+	@Since(4.2)
+	GwtRpcAsyncQueueSize("unitime.rpc.async.queueSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("5")
+	@Description("Asynchronous RPC: maximal number of unfinished asynchronous requests of a single user (0 for no limit)")
+	@Since(4.2)
+	GwtRpcAsyncMaxPerUser("unitime.rpc.async.maxPerUser"),
+
+	@Type(Integer.class)
+	@DefaultValue("900")
+	@Description("Asynchronous RPC: number of seconds after which the results of a finished asynchronous request that have not been picked up are discarded")
+	@Since(4.2)
+	GwtRpcAsyncTimeToLive("unitime.rpc.async.timeToLive"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Classes: if there are two or more scheduling subparts in a parent-child relation with the same instructional type (e.g., Lec - Lec a - Lec b stacked underneath), inherit preferences and the date pattern from the parent subpart whenever possible")
@@ -1608,6 +1688,30 @@ public enum ApplicationProperty {
 	@Description("Solver: passivate solution after given number of minutes of inactivity (disable passivation by setting to zero)")
 	SolverPasivationTime("unitime.solver.passivation.time"),
 
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Solver: compress passivated solutions (gzip), passivated solutions are written as compact XML files otherwise")
+	@Since(4.2)
+	SolverPasivationCompression("unitime.solver.passivation.compress"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Solver: maximal size (in MB, measured as the serialized size of the cached objects) of the cache of saved solution infos (0 for no limit)")
+	@Since(4.2)
+	SolverInfoCacheMaxSize("unitime.solver.infoCache.maxSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("600")
+	@Description("Solver: number of seconds after which an unused saved solution info is removed from the cache")
+	@Since(4.2)
+	SolverInfoCacheTimeToLive("unitime.solver.infoCache.timeToLive"),
+
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Solver: maximal number of class assignments (and assignment infos) cached by the cached class assignment proxy (0 for no limit)")
+	@Since(4.2)
+	SolverAssignmentCacheMaxSize("unitime.solver.assignmentCache.maxSize"),
+
 	@Type(Integer.class)
 	@DefaultValue("300")
 	@Description("Online Student Scheduling: sectioning queue load interval in seconds")
@@ -1637,6 +1741,66 @@ public enum ApplicationProperty {
 	@Description("Online Student Scheduling: server support replications (it can be loaded on multiple machines of the cluster)")
 	OnlineSchedulingServerReplicated("unitime.enrollment.server.replicated"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Student Scheduling: use concurrent (per-id) student and offering locks instead of a single monitor")
+	@Since(4.2)
+	OnlineSchedulingServerConcurrentLocks("unitime.enrollment.server.concurrentLocks"),
+
+	@Type(Integer.class)
+	@DefaultValue("4")
+	@Description("Online Student Scheduling: number of worker threads processing asynchronous actions (e.g., student emails, offering checks) of an academic session (actions of the same student are always processed in order)")
+	@Since(4.2)
+	OnlineSchedulingServerAsyncWorkers("unitime.enrollment.server.async.workers"),
+
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Online Student Scheduling: maximal number of queued asynchronous actions of an academic session; when reached, new actions are delayed (up to unitime.enrollment.server.async.queueWait milliseconds)")
+	@Since(4.2)
+	OnlineSchedulingServerAsyncQueueLimit("unitime.enrollment.server.async.queueLimit"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Online Student Scheduling: maximal time in milliseconds an asynchronous action is delayed when the queue limit is reached")
+	@Since(4.2)
+	OnlineSchedulingServerAsyncQueueWait("unitime.enrollment.server.async.queueWait"),
+
+	@Type(Integer.class)
+	@DefaultValue("30")
+	@Description("Online Student Scheduling: when a server is unloaded, maximal time in seconds to wait for the queued asynchronous actions to be processed")
+	@Since(4.2)
+	OnlineSchedulingServerAsyncDrainTimeout("unitime.enrollment.server.async.drainTimeout"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Student Scheduling: write snapshots of the in-memory server (with a journal of changes) into the data folder and use them to warm-start the server instead of reloading all the data from the database")
+	@Since(4.2)
+	OnlineSchedulingServerSnapshot("unitime.enrollment.server.snapshot"),
+
+	@Type(Integer.class)
+	@DefaultValue("30")
+	@Description("Online Student Scheduling: interval in minutes in which a new snapshot of the in-memory server is written (the journal is restarted with each snapshot)")
+	@Since(4.2)
+	OnlineSchedulingServerSnapshotInterval("unitime.enrollment.server.snapshot.interval"),
+
+	@Type(Integer.class)
+	@DefaultValue("24")
+	@Description("Online Student Scheduling: snapshots older than the given number of hours are not used to warm-start the server (0 for no limit)")
+	@Since(4.2)
+	OnlineSchedulingServerSnapshotMaxAge("unitime.enrollment.server.snapshot.maxAge"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Online Student Scheduling: replicated server keeps a local index of all the courses (updated by a clustered cache listener) for the course lookup instead of querying all the nodes of the cluster")
+	@Since(4.2)
+	OnlineSchedulingServerReplicatedCourseIndex("unitime.enrollment.server.replicated.courseIndex"),
+
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Online Student Scheduling: maximal number of offerings kept in the offering fragment cache (placements, instructors, and ignore conflicts of the sections used by the scheduling assistant)")
+	@Since(4.2)
+	OnlineSchedulingServerFragmentCacheSize("unitime.enrollment.server.fragmentCache.maxSize"),
+
 	@Type(Integer.class)
 	@DefaultValue("366")
 	@Description("Change Log: automatically remove records after the given number of days")
@@ -1682,6 +1846,18 @@ public enum ApplicationProperty {
 	@Description("Message Log: message log cleanup interval in minutes")
 	MessageLogCleanupInterval("unitime.message.log.cleanup.interval"),
 
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Logging: maximal number of log records (online sectioning log, query log, message log) persisted in one batch")
+	@Since(4.2)
+	LogBatchSize("unitime.log.batch.size"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Logging: interval in seconds in which the log records (online sectioning log, query log, message log) are persisted (unless the batch size is reached sooner)")
+	@Since(4.2)
+	LogFlushInterval("unitime.log.flush.interval"),
+
 	/**
 	 * For various PDF exports, if you need other fonts than the ones bundled in the iText library (e.g., because of their poor unicode support),
 	 * set the following unitime.pdf.font properties. The fonts will be embedded in the exported PDF.
@@ -2176,6 +2352,60 @@ public enum ApplicationProperty {
 	@Description("API: trim leading zeros from external user id")
 	ApiTrimLeadingZerosFromUserExternalIds("unitime.api.user.id-trim"),
 	
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("API: compress streamed responses (e.g., large enrollment lists) using gzip when the client accepts gzip encoding")
+	@Since(4.2)
+	ApiStreamingGzip("unitime.api.streaming.gzip"),
+	
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("API: number of records after which the hibernate session is cleared when streaming a large response")
+	@Since(4.2)
+	ApiStreamingBatchSize("unitime.api.streaming.batchSize"),
+	
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("API: cache responses of the API connectors that support it (rooms, buildings, events, instructor schedule) until the underlying data change, responses include an ETag and a conditional GET (If-None-Match) returns 304 when unchanged")
+	@Since(4.2)
+	ApiResponseCacheEnabled("unitime.api.cache.enabled"),
+	
+	@Type(Integer.class)
+	@DefaultValue("50")
+	@Description("API: maximal size of the API response cache in MB")
+	@Since(4.2)
+	ApiResponseCacheMaxSize("unitime.api.cache.maxSize"),
+	
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("API: number of seconds a cached API response can be used (changes that are not made through this server, e.g., on a different cluster node, are only noticed after this time)")
+	@Since(4.2)
+	ApiResponseCacheTimeToLive("unitime.api.cache.timeToLive"),
+	
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Events: cache personal schedules (person event lookups and iCalendar feeds) until the underlying data or the person's enrollments / instructor assignments change, the iCalendar feeds include an ETag and a conditional GET (If-None-Match) returns 304 when unchanged")
+	@Since(4.2)
+	PersonalScheduleCacheEnabled("unitime.events.personalScheduleCache.enabled"),
+	
+	@Type(Integer.class)
+	@DefaultValue("50")
+	@Description("Events: maximal size of the personal schedule cache in MB (estimated, for each of the event lookups and the iCalendar feeds)")
+	@Since(4.2)
+	PersonalScheduleCacheMaxSize("unitime.events.personalScheduleCache.maxSize"),
+	
+	@Type(Integer.class)
+	@DefaultValue("300")
+	@Description("Events: number of seconds a cached personal schedule can be used (changes that are not made through this server, e.g., on a different cluster node or by a bulk update, are only noticed after this time)")
+	@Since(4.2)
+	PersonalScheduleCacheTimeToLive("unitime.events.personalScheduleCache.timeToLive"),
+	
+	@Type(Integer.class)
+	@DefaultValue("20000")
+	@Description("Change tracking: maximal number of keys (e.g., persons of the cached personal schedules) whose changes are tracked, the least recently used keys are dropped first (their cached data are then recomputed)")
+	@Since(4.2)
+	ChangeTrackerMaxKeys("unitime.changeTracker.maxKeys"),
+	
 	@Description("Student Group Timetable: minimal enrollment for a class event to appear in the table (given as % of the group size or as an absolute number)")
 	StudentGroupsTimetableMinimalEnrollment("unitime.events.group.minimalEnrollment"),
 
@@ -2276,86 +2506,47 @@ public enum ApplicationProperty {
 	;
 
 	String iKey;
+	private volatile Metadata iMetadata = null;
 	
 	ApplicationProperty(String key) { iKey = key; }
 	
 	public String key() { return iKey; }
 	public String key(String reference) { return (reference == null ? iKey : iKey.replace("%", reference)); }
 	
+	/** Annotations of the property, looked up only once */
+	private Metadata metadata() {
+		if (iMetadata == null) iMetadata = new Metadata(this);
+		return iMetadata;
+	}
+	
 	public String defaultValue() {
-		try {
-			DefaultValue defaultValue = ApplicationProperty.class.getField(name()).getAnnotation(DefaultValue.class);
-			return (defaultValue == null ? null : defaultValue.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
+		return metadata().iDefaultValue;
 	}
 	public String description() {
-		try {
-			Description description = ApplicationProperty.class.getField(name()).getAnnotation(Description.class);
-			return (description == null ? null : description.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
+		return metadata().iDescription;
 	}
 	
 	public Class type() {
-		try {
-			Type type = ApplicationProperty.class.getField(name()).getAnnotation(Type.class);
-			return (type == null ? String.class : type.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
+		return metadata().iType;
 	}
 	
 	public Class implementation() {
-		try {
-			Implements impl = ApplicationProperty.class.getField(name()).getAnnotation(Implements.class);
-			return (impl == null ? null : impl.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
+		return metadata().iImplementation;
 	}
 	
 	public String[] availableValues() {
-		try {
-			Values type = ApplicationProperty.class.getField(name()).getAnnotation(Values.class);
-			return (type == null ? null : type.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
+		return metadata().iAvailableValues;
 	}
 	
 	public Double since() {
-		try {
-			Since since = ApplicationProperty.class.getField(name()).getAnnotation(Since.class);
-			return (since == null ? null : since.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
-	}
-	
-	public String value() {
-		return value(null, null);
+		return metadata().iSince;
 	}
 	
-	public String value(String reference) {
-		return value(reference, null);
-	}
-	
-	public String value(String reference, String defaultValueOverride) {
+	/**
+	 * Property value: the value of the property key, or of one of the old keys, or null if none is set (the default value is not used).
+	 * Used by the {@link ApplicationPropertyCache}, it is not cached.
+	 */
+	String resolve(String reference) {
 		String value = ApplicationProperties.getProperty(key(reference));
 		if (value != null) return value;
 		
@@ -2366,15 +2557,30 @@ public enum ApplicationProperty {
 				if (value != null) return value;
 			}
 		
+		return null;
+	}
+	
+	public String value() {
+		return ApplicationPropertyCache.get(this, null).getValueOrDefault();
+	}
+	
+	public String value(String reference) {
+		return ApplicationPropertyCache.get(this, reference).getValueOrDefault();
+	}
+	
+	public String value(String reference, String defaultValueOverride) {
+		String value = ApplicationPropertyCache.get(this, reference).getValue();
+		if (value != null) return value;
+		
 		return defaultValueOverride != null ? defaultValueOverride : defaultValue();
 	}
 	
 	public boolean isTrue() {
-		return "true".equalsIgnoreCase(value());
+		return ApplicationPropertyCache.get(this, null).isTrue();
 	}
 	
 	public boolean isTrue(String reference) {
-		return "true".equalsIgnoreCase(value(reference));
+		return ApplicationPropertyCache.get(this, reference).isTrue();
 	}
 	
 	public boolean isTrue(String reference, boolean defaultValueOverride) {
@@ -2386,80 +2592,50 @@ public enum ApplicationProperty {
 	}
 	
 	public Integer intValue() {
-		try {
-			return Integer.valueOf(value());
-		} catch (Exception e) {
-			return null;
-		}
+		return ApplicationPropertyCache.get(this, null).getInteger();
 	}
 	
 	public Integer intValue(String reference) {
-		try {
-			return Integer.valueOf(value(reference));
-		} catch (Exception e) {
-			return null;
-		}
+		return ApplicationPropertyCache.get(this, reference).getInteger();
 	}
 	
 	public Float floatValue() {
-		try {
-			return Float.valueOf(value());
-		} catch (Exception e) {
-			return null;
-		}
+		return ApplicationPropertyCache.get(this, null).getFloat();
 	}
 	
 	public Double doubleValue() {
-		try {
-			return Double.valueOf(value());
-		} catch (Exception e) {
-			return null;
-		}
+		return ApplicationPropertyCache.get(this, null).getDouble();
 	}
 	
 	private String[] replaces() {
-		try {
-			Replaces replaces = ApplicationProperty.class.getField(name()).getAnnotation(Replaces.class);
-			return (replaces == null ? null : replaces.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
+		return metadata().iReplaces;
 	}
 	
 	public boolean matches(String key) {
-		if (key.matches(key().replace(".", "\\.").replace("%", "(.+)"))) return true;
+		if (metadata().iKeyPattern.matcher(key).matches()) return true;
 		
-		String[] oldKeys = replaces();
+		Pattern[] oldKeys = metadata().iReplacesPatterns;
 		if (oldKeys != null)
-			for (String old: oldKeys) {
-				if (key.matches(old.replace(".", "\\.").replace("%", "(.+)"))) return true;
+			for (Pattern old: oldKeys) {
+				if (old.matcher(key).matches()) return true;
 			}
 			
 		return false;
 	}
 	
 	public String reference() {
-		try {
-			Parameter reference = ApplicationProperty.class.getField(name()).getAnnotation(Parameter.class);
-			return (reference == null ? null : reference.value());
-		} catch (NoSuchFieldException e) {
-			return null;
-		} catch (SecurityException e) {
-			return null;
-		}
+		return metadata().iReference;
 	}
 	
 	public String reference(String key) {
-		Matcher m = Pattern.compile(key().replace(".", "\\.").replace("%", "(.+)")).matcher(key);
+		Matcher m = metadata().iKeyPattern.matcher(key);
 		if (m.matches() && m.groupCount() > 0)
 			return m.group(1);
 
-		String[] oldKeys = replaces();
+		Pattern[] oldKeys = metadata().iReplacesPatterns;
 		if (oldKeys != null)
-			for (String old: oldKeys) {
-				m = Pattern.compile(old.replace(".", "\\.").replace("%", "(.+)")).matcher(key);
+			for (Pattern old: oldKeys) {
+				m = old.matcher(key);
 				if (m.matches() && m.groupCount() > 0)
 					return m.group(1);
 			}
@@ -2490,32 +2666,60 @@ public enum ApplicationProperty {
 	}
 	
 	public boolean isDeprecated() {
-		try {
-			return (ApplicationProperty.class.getField(name()).getAnnotation(Deprecated.class) != null);
-		} catch (NoSuchFieldException e) {
-			return false;
-		} catch (SecurityException e) {
-			return false;
-		}
+		return metadata().iDeprecated;
 	}
 	
 	public boolean isSecret() {
-		try {
-			return (ApplicationProperty.class.getField(name()).getAnnotation(Secret.class) != null);
-		} catch (NoSuchFieldException e) {
-			return false;
-		} catch (SecurityException e) {
-			return false;
-		}
+		return metadata().iSecret;
 	}
 	
 	public boolean isReadOnly() {
-		try {
-			return (ApplicationProperty.class.getField(name()).getAnnotation(ReadOnly.class) != null);
-		} catch (NoSuchFieldException e) {
-			return false;
-		} catch (SecurityException e) {
-			return false;
+		return metadata().iReadOnly;
+	}
+	
+	/**
+	 * Annotations of an application property, together with the compiled key patterns
+	 */
+	private static class Metadata {
+		private String iDefaultValue, iDescription, iReference;
+		private Class iType, iImplementation;
+		private String[] iAvailableValues, iReplaces;
+		private Double iSince;
+		private boolean iDeprecated = false, iSecret = false, iReadOnly = false;
+		private Pattern iKeyPattern;
+		private Pattern[] iReplacesPatterns;
+		
+		Metadata(ApplicationProperty property) {
+			iKeyPattern = Pattern.compile(property.key().replace(".", "\\.").replace("%", "(.+)"));
+			try {
+				Field field = ApplicationProperty.class.getField(property.name());
+				DefaultValue defaultValue = field.getAnnotation(DefaultValue.class);
+				iDefaultValue = (defaultValue == null ? null : defaultValue.value());
+				Description description = field.getAnnotation(Description.class);
+				iDescription = (description == null ? null : description.value());
+				Type type = field.getAnnotation(Type.class);
+				iType = (type == null ? String.class : type.value());
+				Implements impl = field.getAnnotation(Implements.class);
+				iImplementation = (impl == null ? null : impl.value());
+				Values values = field.getAnnotation(Values.class);
+				iAvailableValues = (values == null ? null : values.value());
+				Since since = field.getAnnotation(Since.class);
+				iSince = (since == null ? null : since.value());
+				Replaces replaces = field.getAnnotation(Replaces.class);
+				iReplaces = (replaces == null ? null : replaces.value());
+				if (iReplaces != null) {
+					iReplacesPatterns = new Pattern[iReplaces.length];
+					for (int i = 0; i < iReplaces.length; i++)
+						iReplacesPatterns[i] = Pattern.compile(iReplaces[i].replace(".", "\\.").replace("%", "(.+)"));
+				}
+				Parameter reference = field.getAnnotation(Parameter.class);
+				iReference = (reference == null ? null : reference.value());
+				iDeprecated = (field.getAnnotation(Deprecated.class) != null);
+				iSecret = (field.getAnnotation(Secret.class) != null);
+				iReadOnly = (field.getAnnotation(ReadOnly.class) != null);
+			} catch (NoSuchFieldException e) {
+			} catch (SecurityException e) {
+			}
 		}
 	}
 	
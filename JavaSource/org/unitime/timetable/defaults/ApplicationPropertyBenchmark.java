@@ -0,0 +1,115 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.defaults;
+
+import org.unitime.timetable.ApplicationProperties;
+
+/**
+ * Application property lookup benchmark: property values are looked up using the {@link ApplicationPropertyCache}
+ * ({@link ApplicationProperty#value()}) and the way they were looked up before (property key, then old keys from the
+ * {@link ApplicationProperty.Replaces} annotation, then the default value from the {@link ApplicationProperty.DefaultValue} annotation,
+ * on every call). The results of both lookups are compared as well.
+ * It is placed in the defaults package since the annotations are not public.<br>
+ * Usage: ApplicationPropertyBenchmark [-Dbenchmark.iterations=100] [-Dbenchmark.session=academic session id]
+ *
+ * @author Tomas Muller
+ */
+public class ApplicationPropertyBenchmark {
+	
+	private static String legacyValue(ApplicationProperty property) {
+		String value = ApplicationProperties.getProperty(property.key());
+		if (value != null) return value;
+		try {
+			ApplicationProperty.Replaces replaces = ApplicationProperty.class.getField(property.name()).getAnnotation(ApplicationProperty.Replaces.class);
+			if (replaces != null)
+				for (String key: replaces.value()) {
+					value = ApplicationProperties.getProperty(key);
+					if (value != null) return value;
+				}
+			ApplicationProperty.DefaultValue defaultValue = ApplicationProperty.class.getField(property.name()).getAnnotation(ApplicationProperty.DefaultValue.class);
+			return (defaultValue == null ? null : defaultValue.value());
+		} catch (NoSuchFieldException e) {
+			return null;
+		}
+	}
+	
+	private static Integer legacyIntValue(ApplicationProperty property) {
+		try {
+			return Integer.valueOf(legacyValue(property));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	public static void main(String[] args) {
+		int iterations = Integer.getInteger("benchmark.iterations", 100);
+		if (System.getProperty("benchmark.session") != null)
+			ApplicationProperties.setSessionId(Long.valueOf(System.getProperty("benchmark.session")));
+		ApplicationProperty[] properties = ApplicationProperty.values();
+		
+		// check that both lookups return the same values
+		int differences = 0;
+		for (ApplicationProperty p: properties) {
+			String v1 = legacyValue(p), v2 = p.value();
+			if (v1 == null ? v2 != null : !v1.equals(v2)) {
+				System.err.println(p.key() + ": expected " + v1 + ", got " + v2);
+				differences ++;
+			}
+		}
+		System.out.println("Checked " + properties.length + " properties: " + differences + " differences.");
+		
+		// warm up
+		for (int i = 0; i < 10; i++)
+			for (ApplicationProperty p: properties) { legacyValue(p); p.value(); }
+		
+		long sum = 0;
+		long t0 = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			for (ApplicationProperty p: properties) {
+				String v = legacyValue(p);
+				if (v != null) sum += v.length();
+			}
+		long t1 = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			for (ApplicationProperty p: properties) {
+				String v = p.value();
+				if (v != null) sum -= v.length();
+			}
+		long t2 = System.nanoTime();
+		long lookups = ((long)iterations) * properties.length;
+		System.out.println("String values: before " + ((t1 - t0) / lookups) + " ns, cached " + ((t2 - t1) / lookups) + " ns per lookup" + (sum == 0 ? "" : " (results differ)"));
+		
+		t0 = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			for (ApplicationProperty p: properties) {
+				Integer v = legacyIntValue(p);
+				if (v != null) sum += v;
+			}
+		t1 = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			for (ApplicationProperty p: properties) {
+				Integer v = p.intValue();
+				if (v != null) sum -= v;
+			}
+		t2 = System.nanoTime();
+		System.out.println("Integer values: before " + ((t1 - t0) / lookups) + " ns, cached " + ((t2 - t1) / lookups) + " ns per lookup" + (sum == 0 ? "" : " (results differ)"));
+		System.out.println(ApplicationPropertyCache.getStatistics());
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.defaults;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.model.dao._RootDAO;
+
+/**
+ * Cache of the resolved {@link ApplicationProperty} values, by property, reference (the % parameter), and academic session
+ * (see {@link ApplicationProperties#getSessionId()}). Parsed values (integer, double, float, and boolean) are kept as well.<br>
+ * The cache is dropped whenever the {@link ApplicationProperties#getVersion()} changes, that is when the application configuration
+ * or session properties are changed or cleared, or when the property files are reloaded, and also when the database connection
+ * gets configured (the application configuration becomes available).
+ *
+ * @author Tomas Muller
+ */
+public class ApplicationPropertyCache {
+	private static ConcurrentHashMap<Key, Entry> sEntries = new ConcurrentHashMap<Key, Entry>();
+	private static volatile long sStamp = -1;
+	private static AtomicLong sHits = new AtomicLong(0), sMisses = new AtomicLong(0), sInvalidations = new AtomicLong(0);
+	private static final Object sUnparsed = new Object();
+	
+	private static long currentStamp() {
+		return 2 * ApplicationProperties.getVersion() + (_RootDAO.isConfigured() ? 1 : 0);
+	}
+	
+	/** Resolved value of the given property */
+	static Entry get(ApplicationProperty property, String reference) {
+		long stamp = currentStamp();
+		if (stamp != sStamp) {
+			synchronized (sEntries) {
+				if (stamp != sStamp) {
+					if (!sEntries.isEmpty()) {
+						sEntries.clear();
+						sInvalidations.incrementAndGet();
+					}
+					sStamp = stamp;
+				}
+			}
+		}
+		Key key = new Key(property, reference, ApplicationProperties.getSessionId());
+		Entry entry = sEntries.get(key);
+		if (entry != null) {
+			sHits.incrementAndGet();
+			return entry;
+		}
+		sMisses.incrementAndGet();
+		entry = new Entry(property.resolve(reference), property.defaultValue());
+		// do not cache the value if the properties have changed in the meantime
+		if (currentStamp() == stamp)
+			sEntries.put(key, entry);
+		return entry;
+	}
+	
+	/** Drop all the cached values */
+	public static void clear() {
+		synchronized (sEntries) {
+			sEntries.clear();
+			sStamp = -1;
+		}
+	}
+	
+	public static long getHits() { return sHits.get(); }
+	public static long getMisses() { return sMisses.get(); }
+	
+	/** Cache statistics (size, hits, misses, invalidations) */
+	public static String getStatistics() {
+		long hits = sHits.get(), misses = sMisses.get();
+		return "Application properties: " + sEntries.size() + " values, " + hits + " hits, " + misses + " misses" +
+				(hits + misses > 0 ? " (" + (100 * hits / (hits + misses)) + "% hit ratio)" : "") + ", " + sInvalidations.get() + " invalidations";
+	}
+	
+	private static class Key {
+		private ApplicationProperty iProperty;
+		private String iReference;
+		private Long iSessionId;
+		
+		Key(ApplicationProperty property, String reference, Long sessionId) {
+			iProperty = property; iReference = reference; iSessionId = sessionId;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return iProperty == k.iProperty &&
+					(iReference == null ? k.iReference == null : iReference.equals(k.iReference)) &&
+					(iSessionId == null ? k.iSessionId == null : iSessionId.equals(k.iSessionId));
+		}
+		
+		@Override
+		public int hashCode() {
+			return iProperty.hashCode() ^ (iReference == null ? 0 : iReference.hashCode()) ^ (iSessionId == null ? 0 : iSessionId.hashCode());
+		}
+	}
+	
+	/**
+	 * Resolved property value, the value is null when the property is not set
+	 */
+	static class Entry {
+		private String iValue, iDefault;
+		private volatile Object iInteger = sUnparsed, iDouble = sUnparsed, iFloat = sUnparsed;
+		
+		Entry(String value, String defaultValue) {
+			iValue = value; iDefault = defaultValue;
+		}
+		
+		/** Property value, null if not set */
+		String getValue() { return iValue; }
+		
+		/** Property value, or the default value if not set */
+		String getValueOrDefault() { return iValue != null ? iValue : iDefault; }
+		
+		boolean isTrue() { return "true".equalsIgnoreCase(getValueOrDefault()); }
+		
+		Integer getInteger() {
+			Object ret = iInteger;
+			if (ret == sUnparsed) {
+				try {
+					ret = Integer.valueOf(getValueOrDefault());
+				} catch (Exception e) {
+					ret = null;
+				}
+				iInteger = ret;
+			}
+			return (Integer)ret;
+		}
+		
+		Double getDouble() {
+			Object ret = iDouble;
+			if (ret == sUnparsed) {
+				try {
+					ret = Double.valueOf(getValueOrDefault());
+				} catch (Exception e) {
+					ret = null;
+				}
+				iDouble = ret;
+			}
+			return (Double)ret;
+		}
+		
+		Float getFloat() {
+			Object ret = iFloat;
+			if (ret == sUnparsed) {
+				try {
+					ret = Float.valueOf(getValueOrDefault());
+				} catch (Exception e) {
+					ret = null;
+				}
+				iFloat = ret;
+			}
+			return (Float)ret;
+		}
+	}
+}
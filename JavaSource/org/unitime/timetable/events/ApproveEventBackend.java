@@ -19,6 +19,7 @@
 */
 package org.unitime.timetable.events;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -44,6 +45,7 @@ import org.unitime.timetable.model.dao.EventDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.Formats;
+import org.unitime.timetable.util.RoomAvailability;
 
 /**
  * @author Tomas Muller
@@ -203,6 +205,8 @@ public class ApproveEventBackend extends EventAction<ApproveEventRpcRequest, Sav
 				response.setEvent(EventDetailBackend.getEventDetail(session, event, context));
 			}
 			
+			RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
+			
 			tx.commit(); tx = null;
 			
 			new EventEmail(request, response).send(context);
@@ -142,6 +142,18 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 			request.setEventFilter(eventFilter);
 		}
 		
+		if (request.getResourceType() == ResourceType.PERSON && PersonalScheduleCache.isEnabled()) {
+			PersonalScheduleCache cache = PersonalScheduleCache.getInstance();
+			String key = PersonalScheduleCache.getKey(request, context);
+			long version = cache.getVersion(request.getResourceExternalId());
+			GwtRpcResponseList<EventInterface> events = cache.getEvents(key, version);
+			if (events == null) {
+				events = findEvents(request, context);
+				cache.putEvents(key, version, events);
+			}
+			return events;
+		}
+		
 		return findEvents(request, context);
 	}
 	
@@ -19,15 +19,19 @@
 */
 package org.unitime.timetable.events;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.defaults.UserProperty;
 import org.unitime.timetable.gwt.command.server.GwtRpcImplements;
@@ -79,130 +83,93 @@ public class EventRoomAvailabilityBackend extends EventAction<EventRoomAvailabil
 		String nameFormat = context.getUser().getProperty(UserProperty.NameFormat);
 		
 		if (request.hasDates() && request.hasLocations()) {
-			for (int idx = 0; idx < request.getLocations().size(); idx += 1000) {
+			Date firstDate = null, lastDate = null;
+			Set<Integer> dates = new HashSet<Integer>(request.getDates());
+			for (Integer date: request.getDates()) {
+				Date d = CalendarUtils.dateOfYear2date(session.getSessionStartYear(), date);
+				if (firstDate == null || firstDate.after(d)) firstDate = d;
+				if (lastDate == null || lastDate.before(d)) lastDate = d;
+			}
+			boolean canViewContacts = context.hasPermission(Right.EventCanViewMeetingContacts);
+			Map<Long, MeetingConflictInterface> events = new HashMap<Long, MeetingConflictInterface>();
+			Map<Long, ContactInterface> contacts = new HashMap<Long, ContactInterface>();
 			
-				String dates = "";
-				for (int i = 0; i < request.getDates().size(); i++)
-					dates += (dates.isEmpty() ? "" : ",") + ":d" + i;
-				
-				String locations = "";
-				for (int i = 0; i + idx < request.getLocations().size() && i < 1000; i++)
-					locations += (locations.isEmpty() ? "" : ",") + ":l" + i;
+			for (int idx = 0; idx < request.getLocations().size(); idx += 1000) {
+				List<Long> locations = request.getLocations().subList(idx, Math.min(idx + 1000, request.getLocations().size()));
 				
-				Query query = EventDAO.getInstance().getSession().createQuery(
-						"select m from Meeting m, Location l " +
+				// meetings are read as scalar tuples: meeting id, location, date, start and stop slot, offsets, approval, event id
+				List<Object[]> meetings = new ArrayList<Object[]>();
+				Set<Long> eventIds = new HashSet<Long>();
+				ScrollableResults results = EventDAO.getInstance().getSession().createQuery(
+						"select m.uniqueId, m.locationPermanentId, m.meetingDate, m.startPeriod, m.stopPeriod, m.startOffset, m.stopOffset, " +
+						"m.approvalDate, m.approvalStatus, m.event.uniqueId from Meeting m, Location l " +
 						"where m.startPeriod<:stopTime and m.stopPeriod>:startTime and m.approvalStatus <= 1 and " +
-						"l.session.uniqueId = :sessionId and l.permanentId in (" + locations + ") and l.ignoreRoomCheck = false and " +
-						"m.locationPermanentId = l.permanentId and m.meetingDate in ("+dates+")");
-				
-				query.setInteger("startTime", request.getStartSlot());
-				query.setInteger("stopTime", request.getEndSlot());
-				query.setLong("sessionId", request.getSessionId());
-				for (int i = 0; i < request.getDates().size(); i++) {
-					Date date = CalendarUtils.dateOfYear2date(session.getSessionStartYear(), request.getDates().get(i));
-					query.setDate("d" + i, date);
+						"l.session.uniqueId = :sessionId and l.permanentId in (:locations) and l.ignoreRoomCheck = false and " +
+						"m.locationPermanentId = l.permanentId and m.meetingDate >= :firstDate and m.meetingDate <= :lastDate")
+						.setInteger("startTime", request.getStartSlot())
+						.setInteger("stopTime", request.getEndSlot())
+						.setLong("sessionId", request.getSessionId())
+						.setParameterList("locations", locations)
+						.setDate("firstDate", firstDate)
+						.setDate("lastDate", lastDate)
+						.setReadOnly(true).setFetchSize(1000)
+						.scroll(ScrollMode.FORWARD_ONLY);
+				try {
+					while (results.next()) {
+						Object[] m = results.get();
+						Long eventId = (Long)m[9];
+						if (request.hasEventId() && eventId.equals(request.getEventId())) continue;
+						if (!dates.contains(CalendarUtils.date2dayOfYear(session.getSessionStartYear(), (Date)m[2]))) continue;
+						meetings.add(m);
+						if (!events.containsKey(eventId)) eventIds.add(eventId);
+					}
+				} finally {
+					results.close();
 				}
-				for (int i = 0; i + idx < request.getLocations().size() && i < 1000; i++)
-					query.setLong("l" + i, request.getLocations().get(idx + i));
 				
-				for (Meeting m: (List<Meeting>)query.list()) {
+				// event details are computed only once for each conflicting event
+				loadEvents(eventIds, events, nameFormat);
+				
+				Map<Long, List<ContactInterface>> meetingContacts = (canViewContacts ? loadMeetingContacts(meetings, contacts, nameFormat) : null);
+				
+				for (Object[] m: meetings) {
+					MeetingConflictInterface event = events.get((Long)m[9]);
+					if (event == null) continue;
 					MeetingConflictInterface conflict = new MeetingConflictInterface();
-
-					if (request.hasEventId() && m.getEvent().getUniqueId().equals(request.getEventId())) continue;
-
-					conflict.setEventId(m.getEvent().getUniqueId());
-					conflict.setName(m.getEvent().getEventName());
-					conflict.setType(EventInterface.EventType.values()[m.getEvent().getEventType()]);
-					conflict.setLimit(m.getEvent().getMaxCapacity());
-					
-					if (m.getEvent().getSponsoringOrganization() != null) {
-						SponsoringOrganizationInterface sponsor = new SponsoringOrganizationInterface();
-						sponsor.setEmail(m.getEvent().getSponsoringOrganization().getEmail());
-						sponsor.setName(m.getEvent().getSponsoringOrganization().getName());
-						sponsor.setUniqueId(m.getEvent().getSponsoringOrganization().getUniqueId());
-						conflict.setSponsor(sponsor);
-					}
-					
-					if (Event.sEventTypeClass == m.getEvent().getEventType()) {
-			    		ClassEvent ce = (m.getEvent() instanceof ClassEvent ? (ClassEvent)m.getEvent() : ClassEventDAO.getInstance().get(m.getEvent().getUniqueId()));
-			    		Class_ clazz = ce.getClazz();
-			    		conflict.setEnrollment(clazz.getEnrollment());
-			    		if (clazz.getDisplayInstructor()) {
-			    			for (ClassInstructor i: clazz.getClassInstructors()) {
-			    				if (i.getResponsibility() != null && i.getResponsibility().hasOption(TeachingResponsibility.Option.noevents)) continue;
-								ContactInterface instructor = new ContactInterface();
-								instructor.setFirstName(i.getInstructor().getFirstName());
-								instructor.setMiddleName(i.getInstructor().getMiddleName());
-								instructor.setLastName(i.getInstructor().getLastName());
-								instructor.setAcademicTitle(i.getInstructor().getAcademicTitle());
-								instructor.setEmail(i.getInstructor().getEmail());
-								instructor.setFormattedName(i.getInstructor().getName(nameFormat));
-								if (i.getResponsibility() != null) {
-									instructor.setResponsibility(i.getResponsibility().getLabel());
-									instructor.setResponsibilityAbbreviation(i.getResponsibility().getAbbreviation());
-			    				}
-								conflict.addInstructor(instructor);
-			    			}
-			    		}
-					} else if (Event.sEventTypeFinalExam == m.getEvent().getEventType() || Event.sEventTypeMidtermExam == m.getEvent().getEventType()) {
-			    		ExamEvent xe = (m.getEvent() instanceof ExamEvent ? (ExamEvent)m.getEvent() : ExamEventDAO.getInstance().get(m.getEvent().getUniqueId()));
-			    		conflict.setEnrollment(xe.getExam().countStudents());
-		    			for (DepartmentalInstructor i: xe.getExam().getInstructors()) {
-							ContactInterface instructor = new ContactInterface();
-							instructor.setFirstName(i.getFirstName());
-							instructor.setMiddleName(i.getMiddleName());
-							instructor.setLastName(i.getLastName());
-							instructor.setAcademicTitle(i.getAcademicTitle());
-							instructor.setEmail(i.getEmail());
-							instructor.setFormattedName(i.getName(nameFormat));
+					conflict.setEventId(event.getEventId());
+					conflict.setName(event.getName());
+					conflict.setType(event.getType());
+					conflict.setLimit(event.getLimit());
+					conflict.setSponsor(event.getSponsor());
+					conflict.setEnrollment(event.getEnrollment());
+					if (event.hasInstructors())
+						for (ContactInterface instructor: event.getInstructors())
 							conflict.addInstructor(instructor);
-		    			}
-					} else if (Event.sEventTypeCourse == m.getEvent().getEventType()) {
-			    		CourseEvent ce = (m.getEvent() instanceof CourseEvent ? (CourseEvent)m.getEvent() : CourseEventDAO.getInstance().get(m.getEvent().getUniqueId()));
-			    		int enrl = 0;
-						for (RelatedCourseInfo owner: ce.getRelatedCourses()) {
-							enrl += owner.countStudents();
-		    			}
-						conflict.setEnrollment(enrl);
-					}
 					
-					conflict.setId(m.getUniqueId());
-					conflict.setMeetingDate(m.getMeetingDate());
-					conflict.setDayOfYear(CalendarUtils.date2dayOfYear(session.getSessionStartYear(), m.getMeetingDate()));
-					conflict.setStartOffset(m.getStartOffset() == null ? 0 : m.getStartOffset());
-					conflict.setEndOffset(m.getStopOffset() == null ? 0 : m.getStopOffset());
-					conflict.setStartSlot(m.getStartPeriod());
-					conflict.setEndSlot(m.getStopPeriod());
-					conflict.setApprovalDate(m.getApprovalDate());
-					conflict.setApprovalStatus(m.getApprovalStatus());
-
-					if (context.hasPermission(Right.EventCanViewMeetingContacts)) {
-						Map<Long, ContactInterface> contacts = new HashMap<Long, ContactInterface>();
-						for (EventContact c: m.getMeetingContacts()) {
-							ContactInterface contact = contacts.get(c.getUniqueId());
-							if (contact == null) {
-								contact = new ContactInterface();
-								contact.setFirstName(c.getFirstName());
-								contact.setMiddleName(c.getMiddleName());
-								contact.setLastName(c.getLastName());
-								contact.setAcademicTitle(c.getAcademicTitle());
-								contact.setExternalId(c.getExternalUniqueId());
-								contact.setPhone(c.getPhone());
-								contact.setEmail(c.getEmailAddress());
-								contact.setFormattedName(c.getName(nameFormat));
-								contacts.put(c.getUniqueId(), contact);
-							}
-							conflict.addMeetingContact(contact);
-						}
+					Date meetingDate = (Date)m[2];
+					conflict.setId((Long)m[0]);
+					conflict.setMeetingDate(meetingDate);
+					conflict.setDayOfYear(CalendarUtils.date2dayOfYear(session.getSessionStartYear(), meetingDate));
+					conflict.setStartOffset(m[5] == null ? 0 : (Integer)m[5]);
+					conflict.setEndOffset(m[6] == null ? 0 : (Integer)m[6]);
+					conflict.setStartSlot((Integer)m[3]);
+					conflict.setEndSlot((Integer)m[4]);
+					conflict.setApprovalDate((Date)m[7]);
+					conflict.setApprovalStatus((Integer)m[8]);
+					
+					if (meetingContacts != null) {
+						List<ContactInterface> mc = meetingContacts.get((Long)m[0]);
+						if (mc != null)
+							for (ContactInterface contact: mc)
+								conflict.addMeetingContact(contact);
 					}
 					
-					response.addOverlap(CalendarUtils.date2dayOfYear(session.getSessionStartYear(), m.getMeetingDate()), m.getLocationPermanentId(), conflict);
+					response.addOverlap(conflict.getDayOfYear(), (Long)m[1], conflict);
 				}
 				
-				query = EventDAO.getInstance().getSession().createQuery(
-						"from Location where session.uniqueId = :sessionId and permanentId in (" + locations + ")");
-				for (int i = 0; i + idx < request.getLocations().size() && i < 1000; i++)
-					query.setLong("l" + i, request.getLocations().get(idx + i));
+				Query query = EventDAO.getInstance().getSession().createQuery(
+						"from Location where session.uniqueId = :sessionId and permanentId in (:locations)")
+						.setParameterList("locations", locations);
 
 				for (Location location: (List<Location>)query.setLong("sessionId", request.getSessionId()).setCacheable(true).list()) {
 					if (context.hasPermission(location, request.getEventType() == EventType.Unavailabile ? Right.EventLocationUnavailable : Right.EventLocation)) {
@@ -424,6 +391,126 @@ public class EventRoomAvailabilityBackend extends EventAction<EventRoomAvailabil
 		return response;
 	}
 	
+	/**
+	 * Compute conflict details (name, type, limit, sponsor, enrollment, and instructors) of the given events.
+	 * Events are loaded in bulk, together with the classes and instructors of class events.
+	 */
+	protected void loadEvents(Set<Long> eventIds, Map<Long, MeetingConflictInterface> events, String nameFormat) {
+		if (eventIds.isEmpty()) return;
+		org.hibernate.Session hibSession = EventDAO.getInstance().getSession();
+		List<Long> ids = new ArrayList<Long>(eventIds);
+		for (int idx = 0; idx < ids.size(); idx += 1000) {
+			List<Long> chunk = ids.subList(idx, Math.min(idx + 1000, ids.size()));
+			List<Event> list = (List<Event>)hibSession.createQuery(
+					"select e from Event e left join fetch e.sponsoringOrganization where e.uniqueId in (:eventIds)")
+					.setParameterList("eventIds", chunk).list();
+			hibSession.createQuery(
+					"select distinct c from ClassEvent e inner join e.clazz c left join fetch c.classInstructors ci left join fetch ci.instructor " +
+					"where e.uniqueId in (:eventIds)")
+					.setParameterList("eventIds", chunk).list();
+			for (Event event: list) {
+				MeetingConflictInterface conflict = new MeetingConflictInterface();
+				conflict.setEventId(event.getUniqueId());
+				conflict.setName(event.getEventName());
+				conflict.setType(EventInterface.EventType.values()[event.getEventType()]);
+				conflict.setLimit(event.getMaxCapacity());
+				
+				if (event.getSponsoringOrganization() != null) {
+					SponsoringOrganizationInterface sponsor = new SponsoringOrganizationInterface();
+					sponsor.setEmail(event.getSponsoringOrganization().getEmail());
+					sponsor.setName(event.getSponsoringOrganization().getName());
+					sponsor.setUniqueId(event.getSponsoringOrganization().getUniqueId());
+					conflict.setSponsor(sponsor);
+				}
+				
+				if (Event.sEventTypeClass == event.getEventType()) {
+		    		ClassEvent ce = (event instanceof ClassEvent ? (ClassEvent)event : ClassEventDAO.getInstance().get(event.getUniqueId()));
+		    		Class_ clazz = ce.getClazz();
+		    		conflict.setEnrollment(clazz.getEnrollment());
+		    		if (clazz.getDisplayInstructor()) {
+		    			for (ClassInstructor i: clazz.getClassInstructors()) {
+		    				if (i.getResponsibility() != null && i.getResponsibility().hasOption(TeachingResponsibility.Option.noevents)) continue;
+							ContactInterface instructor = new ContactInterface();
+							instructor.setFirstName(i.getInstructor().getFirstName());
+							instructor.setMiddleName(i.getInstructor().getMiddleName());
+							instructor.setLastName(i.getInstructor().getLastName());
+							instructor.setAcademicTitle(i.getInstructor().getAcademicTitle());
+							instructor.setEmail(i.getInstructor().getEmail());
+							instructor.setFormattedName(i.getInstructor().getName(nameFormat));
+							if (i.getResponsibility() != null) {
+								instructor.setResponsibility(i.getResponsibility().getLabel());
+								instructor.setResponsibilityAbbreviation(i.getResponsibility().getAbbreviation());
+		    				}
+							conflict.addInstructor(instructor);
+		    			}
+		    		}
+				} else if (Event.sEventTypeFinalExam == event.getEventType() || Event.sEventTypeMidtermExam == event.getEventType()) {
+		    		ExamEvent xe = (event instanceof ExamEvent ? (ExamEvent)event : ExamEventDAO.getInstance().get(event.getUniqueId()));
+		    		conflict.setEnrollment(xe.getExam().countStudents());
+	    			for (DepartmentalInstructor i: xe.getExam().getInstructors()) {
+						ContactInterface instructor = new ContactInterface();
+						instructor.setFirstName(i.getFirstName());
+						instructor.setMiddleName(i.getMiddleName());
+						instructor.setLastName(i.getLastName());
+						instructor.setAcademicTitle(i.getAcademicTitle());
+						instructor.setEmail(i.getEmail());
+						instructor.setFormattedName(i.getName(nameFormat));
+						conflict.addInstructor(instructor);
+	    			}
+				} else if (Event.sEventTypeCourse == event.getEventType()) {
+		    		CourseEvent ce = (event instanceof CourseEvent ? (CourseEvent)event : CourseEventDAO.getInstance().get(event.getUniqueId()));
+		    		int enrl = 0;
+					for (RelatedCourseInfo owner: ce.getRelatedCourses()) {
+						enrl += owner.countStudents();
+	    			}
+					conflict.setEnrollment(enrl);
+				}
+				
+				events.put(event.getUniqueId(), conflict);
+			}
+		}
+	}
+	
+	/**
+	 * Load meeting contacts of the given meetings (scalar tuples with the meeting id first) in bulk.
+	 * @return meeting id -> contacts
+	 */
+	protected Map<Long, List<ContactInterface>> loadMeetingContacts(List<Object[]> meetings, Map<Long, ContactInterface> contacts, String nameFormat) {
+		Map<Long, List<ContactInterface>> ret = new HashMap<Long, List<ContactInterface>>();
+		if (meetings.isEmpty()) return ret;
+		org.hibernate.Session hibSession = EventDAO.getInstance().getSession();
+		List<Long> ids = new ArrayList<Long>(meetings.size());
+		for (Object[] m: meetings) ids.add((Long)m[0]);
+		for (int idx = 0; idx < ids.size(); idx += 1000) {
+			for (Object[] o: (List<Object[]>)hibSession.createQuery(
+					"select m.uniqueId, c from Meeting m inner join m.meetingContacts c where m.uniqueId in (:meetingIds)")
+					.setParameterList("meetingIds", ids.subList(idx, Math.min(idx + 1000, ids.size()))).list()) {
+				Long meetingId = (Long)o[0];
+				EventContact c = (EventContact)o[1];
+				ContactInterface contact = contacts.get(c.getUniqueId());
+				if (contact == null) {
+					contact = new ContactInterface();
+					contact.setFirstName(c.getFirstName());
+					contact.setMiddleName(c.getMiddleName());
+					contact.setLastName(c.getLastName());
+					contact.setAcademicTitle(c.getAcademicTitle());
+					contact.setExternalId(c.getExternalUniqueId());
+					contact.setPhone(c.getPhone());
+					contact.setEmail(c.getEmailAddress());
+					contact.setFormattedName(c.getName(nameFormat));
+					contacts.put(c.getUniqueId(), contact);
+				}
+				List<ContactInterface> list = ret.get(meetingId);
+				if (list == null) {
+					list = new ArrayList<ContactInterface>();
+					ret.put(meetingId, list);
+				}
+				list.add(contact);
+			}
+		}
+		return ret;
+	}
+	
 	public static TreeSet<MeetingConflictInterface> generateUnavailabilityMeetings(Location location, List<Integer> dates, int startSlot, int endSlot) {
 		if (location.getEventAvailability() == null || location.getEventAvailability().length() != Constants.SLOTS_PER_DAY * Constants.DAY_CODES.length) return null;
 
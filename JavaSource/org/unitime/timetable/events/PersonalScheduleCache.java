@@ -0,0 +1,302 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.events;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.unitime.commons.hibernate.util.ChangeTracker;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.defaults.UserProperty;
+import org.unitime.timetable.gwt.command.client.GwtRpcResponseList;
+import org.unitime.timetable.gwt.shared.EventInterface;
+import org.unitime.timetable.gwt.shared.EventInterface.EventLookupRpcRequest;
+import org.unitime.timetable.gwt.shared.EventInterface.FilterRpcRequest;
+import org.unitime.timetable.gwt.shared.EventInterface.ResourceType;
+import org.unitime.timetable.model.Assignment;
+import org.unitime.timetable.model.ClassInstructor;
+import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.model.CourseOffering;
+import org.unitime.timetable.model.Department;
+import org.unitime.timetable.model.DepartmentStatusType;
+import org.unitime.timetable.model.DepartmentalInstructor;
+import org.unitime.timetable.model.Event;
+import org.unitime.timetable.model.EventContact;
+import org.unitime.timetable.model.EventServiceProvider;
+import org.unitime.timetable.model.Exam;
+import org.unitime.timetable.model.ExamPeriod;
+import org.unitime.timetable.model.ExamStatus;
+import org.unitime.timetable.model.InstrOfferingConfig;
+import org.unitime.timetable.model.InstructionalOffering;
+import org.unitime.timetable.model.Location;
+import org.unitime.timetable.model.ManagerRole;
+import org.unitime.timetable.model.Meeting;
+import org.unitime.timetable.model.OfferingCoordinator;
+import org.unitime.timetable.model.Roles;
+import org.unitime.timetable.model.SchedulingSubpart;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.Solution;
+import org.unitime.timetable.model.Student;
+import org.unitime.timetable.model.StudentClassEnrollment;
+import org.unitime.timetable.model.StudentGroup;
+import org.unitime.timetable.model.TeachingResponsibility;
+import org.unitime.timetable.model.TimetableManager;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.context.AnonymousUserContext;
+import org.unitime.timetable.util.BoundedCache;
+import org.unitime.timetable.util.CachedBody;
+
+/**
+ * Personal schedules (events of a person, {@link ResourceType#PERSON}) kept in memory, so that repeated lookups
+ * of the same schedule (the Personal Timetable page, the iCalendar feed) do not need to be computed again.<br>
+ * Each schedule is cached together with its version, which is composed of the version of the shared data (events, meetings,
+ * classes, assignments, exams, rooms, academic session and status changes, see {@link ChangeTracker#getVersion(Class...)})
+ * and of the version of the person (enrollments, instructor assignments, coordinators and event contacts of the person,
+ * see {@link ChangeTracker#getVersion(String)}). A cached schedule is used only while the version has not changed and
+ * for at most {@link ApplicationProperty#PersonalScheduleCacheTimeToLive} seconds (changes that are not made through Hibernate
+ * on this server are only noticed after this time).<br>
+ * The event lookups are cached by the person, the filter, and the user making the request (the computed events depend on the user's permissions),
+ * the iCalendar feeds by their parameters. Each cached calendar has an ETag, so that an unchanged feed does not need to be sent again.
+ *
+ * @author Tomas Muller
+ */
+public class PersonalScheduleCache {
+	private static PersonalScheduleCache sInstance = null;
+	private static final Class<?>[] sSharedDependencies = new Class<?>[] {
+		Event.class, Meeting.class, EventContact.class, EventServiceProvider.class,
+		Class_.class, SchedulingSubpart.class, InstrOfferingConfig.class, InstructionalOffering.class, CourseOffering.class,
+		Assignment.class, Solution.class, Exam.class, ExamPeriod.class, ExamStatus.class, StudentGroup.class, TeachingResponsibility.class,
+		Location.class, Session.class, Department.class, DepartmentStatusType.class,
+		Roles.class, ManagerRole.class, TimetableManager.class
+	};
+	private BoundedCache<String, CachedEvents> iEvents;
+	private BoundedCache<String, CachedBody> iCalendars;
+	
+	private PersonalScheduleCache() {
+		long maxSize = 1024l * 1024l * ApplicationProperty.PersonalScheduleCacheMaxSize.intValue();
+		long timeToLive = 1000l * ApplicationProperty.PersonalScheduleCacheTimeToLive.intValue();
+		iEvents = new BoundedCache<String, CachedEvents>("PersonalScheduleCache.events", maxSize, timeToLive,
+				new BoundedCache.Weigher<CachedEvents>() {
+					@Override
+					public long weight(CachedEvents value) {
+						return value.getWeight();
+					}
+				}, true);
+		iCalendars = new BoundedCache<String, CachedBody>("PersonalScheduleCache.calendars", maxSize, timeToLive,
+				new BoundedCache.Weigher<CachedBody>() {
+					@Override
+					public long weight(CachedBody value) {
+						return value.getBody().length + 100;
+					}
+				}, true);
+		ChangeTracker.addKeyProvider(Student.class, new ChangeTracker.KeyProvider() {
+			@Override
+			public Collection<String> getKeys(Object entity) {
+				return key(((Student)entity).getExternalUniqueId());
+			}
+		});
+		ChangeTracker.addKeyProvider(StudentClassEnrollment.class, new ChangeTracker.KeyProvider() {
+			@Override
+			public Collection<String> getKeys(Object entity) {
+				Student student = ((StudentClassEnrollment)entity).getStudent();
+				return (student == null ? null : key(student.getExternalUniqueId()));
+			}
+		});
+		ChangeTracker.addKeyProvider(DepartmentalInstructor.class, new ChangeTracker.KeyProvider() {
+			@Override
+			public Collection<String> getKeys(Object entity) {
+				return key(((DepartmentalInstructor)entity).getExternalUniqueId());
+			}
+		});
+		ChangeTracker.addKeyProvider(ClassInstructor.class, new ChangeTracker.KeyProvider() {
+			@Override
+			public Collection<String> getKeys(Object entity) {
+				DepartmentalInstructor instructor = ((ClassInstructor)entity).getInstructor();
+				return (instructor == null ? null : key(instructor.getExternalUniqueId()));
+			}
+		});
+		ChangeTracker.addKeyProvider(OfferingCoordinator.class, new ChangeTracker.KeyProvider() {
+			@Override
+			public Collection<String> getKeys(Object entity) {
+				DepartmentalInstructor instructor = ((OfferingCoordinator)entity).getInstructor();
+				return (instructor == null ? null : key(instructor.getExternalUniqueId()));
+			}
+		});
+	}
+	
+	public static synchronized PersonalScheduleCache getInstance() {
+		if (sInstance == null) sInstance = new PersonalScheduleCache();
+		return sInstance;
+	}
+	
+	/** True if the cache is enabled and the changes are being tracked */
+	public static boolean isEnabled() {
+		return ApplicationProperty.PersonalScheduleCacheEnabled.isTrue() && ChangeTracker.isRegistered();
+	}
+	
+	private static Collection<String> key(String externalId) {
+		if (externalId == null || externalId.isEmpty()) return null;
+		return Collections.singleton("person:" + externalId);
+	}
+	
+	/**
+	 * Current version of the schedule of the given person, to be taken before the schedule is computed
+	 */
+	public long getVersion(String externalId) {
+		long version = ChangeTracker.getVersion(sSharedDependencies);
+		if (externalId != null && !externalId.isEmpty())
+			version += ChangeTracker.getVersion("person:" + externalId);
+		return version;
+	}
+	
+	/**
+	 * Cache key of a person event lookup, null if the request is not a person lookup.
+	 * The key contains the request (academic session, person, filters, limit), the user making the request (including the current role and name format),
+	 * and the current day (meetings in the past are flagged).
+	 */
+	public static String getKey(EventLookupRpcRequest request, EventAction.EventContext context) {
+		if (request.getResourceType() != ResourceType.PERSON || !request.hasResourceExternalId()) return null;
+		StringBuffer key = new StringBuffer(request.getSessionId() + "|" + request.getResourceExternalId());
+		UserContext user = (context.isAuthenticated() ? context.getUser() : null);
+		if (user == null || user instanceof AnonymousUserContext) {
+			key.append("|anonymous");
+		} else {
+			key.append("|" + user.getExternalUserId());
+			if (user.getCurrentAuthority() != null)
+				key.append("|" + user.getCurrentAuthority().getAuthority());
+			key.append("|" + user.getProperty(UserProperty.NameFormat));
+		}
+		key.append("|" + new SimpleDateFormat("yyyyMMdd").format(new Date()));
+		key.append("|" + filterKey(request.getEventFilter()));
+		key.append("|" + filterKey(request.getRoomFilter()));
+		key.append("|" + request.getLimit());
+		return key.toString();
+	}
+	
+	private static String filterKey(FilterRpcRequest filter) {
+		if (filter == null) return "";
+		Map<String, Set<String>> options = new TreeMap<String, Set<String>>();
+		if (filter.hasOptions())
+			for (Map.Entry<String, Set<String>> option: filter.getOptions().entrySet())
+				options.put(option.getKey(), new TreeSet<String>(option.getValue()));
+		return options + (filter.hasText() ? "," + filter.getText() : "");
+	}
+	
+	/**
+	 * Cache key of an iCalendar feed: the academic session and the parameters of the feed
+	 */
+	public static String getCalendarKey(Long sessionId, Map<String, String> parameters) {
+		List<String> params = new ArrayList<String>();
+		for (Map.Entry<String, String> e: parameters.entrySet())
+			if (e.getValue() != null)
+				params.add(e.getKey() + "=" + e.getValue());
+		Collections.sort(params);
+		StringBuffer key = new StringBuffer("ical|" + sessionId);
+		for (String param: params)
+			key.append("|" + param);
+		return key.toString();
+	}
+	
+	/**
+	 * Cached events of the given key, null if there are no events cached or if they are not up-to-date
+	 */
+	public GwtRpcResponseList<EventInterface> getEvents(String key, long version) {
+		if (key == null) return null;
+		CachedEvents cached = iEvents.get(key);
+		if (cached == null) return null;
+		if (cached.getVersion() != version) {
+			iEvents.remove(key);
+			return null;
+		}
+		return cached.getEvents();
+	}
+	
+	/**
+	 * Cache the given events, the version must be taken before the events are computed
+	 */
+	public void putEvents(String key, long version, GwtRpcResponseList<EventInterface> events) {
+		if (key == null || events == null) return;
+		iEvents.put(key, new CachedEvents(events, version));
+	}
+	
+	/**
+	 * Cached calendar of the given key, null if there is no calendar cached or if it is not up-to-date
+	 */
+	public CachedBody getCalendar(String key, long version) {
+		if (key == null) return null;
+		CachedBody cached = iCalendars.get(key);
+		if (cached == null) return null;
+		if (cached.getVersion() != version) {
+			iCalendars.remove(key);
+			return null;
+		}
+		return cached;
+	}
+	
+	/**
+	 * Cache the given calendar, the version must be taken before the calendar is computed
+	 */
+	public CachedBody putCalendar(String key, long version, byte[] body) {
+		CachedBody cached = new CachedBody(body, version);
+		if (key != null) iCalendars.put(key, cached);
+		return cached;
+	}
+	
+	/** Cache statistics */
+	public String getStatistics() {
+		return iEvents.getStatistics() + "\n" + iCalendars.getStatistics();
+	}
+	
+	/** Remove all cached schedules */
+	public void clear() {
+		iEvents.clear();
+		iCalendars.clear();
+	}
+	
+	/**
+	 * Cached event lookup. The events are shared between the requests, they must not be modified.
+	 */
+	private static class CachedEvents {
+		private GwtRpcResponseList<EventInterface> iEvents;
+		private long iVersion;
+		private long iWeight;
+		
+		CachedEvents(GwtRpcResponseList<EventInterface> events, long version) {
+			iEvents = events;
+			iVersion = version;
+			// rough estimate: about 1 kB for an event and 250 bytes for a meeting
+			iWeight = 100;
+			for (EventInterface event: events)
+				iWeight += 1000 + 250 * (event.hasMeetings() ? event.getMeetings().size() : 0);
+		}
+		
+		public GwtRpcResponseList<EventInterface> getEvents() { return iEvents; }
+		public long getVersion() { return iVersion; }
+		public long getWeight() { return iWeight; }
+	}
+}
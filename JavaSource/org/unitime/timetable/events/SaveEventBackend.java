@@ -20,6 +20,7 @@
 package org.unitime.timetable.events;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -74,6 +75,7 @@ import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.CalendarUtils;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
+import org.unitime.timetable.util.RoomAvailability;
 
 /**
  * @author Tomas Muller
@@ -623,6 +625,8 @@ public class SaveEventBackend extends EventAction<SaveEventRpcRequest, SaveOrApp
 				response.setEvent(EventDetailBackend.getEventDetail(SessionDAO.getInstance().get(request.getSessionId(), hibSession), event, context));
 			}
 			
+			RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
+			
 			tx.commit();
 			
 			new EventEmail(request, response).send(context);
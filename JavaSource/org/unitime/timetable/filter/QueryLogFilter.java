@@ -20,14 +20,12 @@
 package org.unitime.timetable.filter;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -52,6 +50,7 @@ import org.unitime.timetable.model.dao.QueryLogDAO;
 import org.unitime.timetable.security.UserContext;
 import org.unitime.timetable.spring.gwt.GwtDispatcherServlet;
 import org.unitime.timetable.spring.gwt.GwtDispatcherServlet.GwtCallInfo;
+import org.unitime.timetable.util.BatchedSaver;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -202,73 +201,36 @@ public class QueryLogFilter implements Filter {
 			iSaver.interrupt();
 	}
 	
-	public static class Saver extends Thread {
-		private List<QueryLog> iQueries = new Vector<QueryLog>();
-		private boolean iActive = true;
-		private int iLogLimit = -1;
+	public static class Saver extends BatchedSaver<QueryLog> {
 		
 		public Saver() {
-			super("QueryLogSaver");
-			iLogLimit = ApplicationProperty.QueryLogLimit.intValue();
-			setDaemon(true);
+			super("QueryLogSaver", ApplicationProperty.QueryLogLimit.intValue());
 		}
 		
 		@Override
-		public void interrupt() {
-			iActive = false;
-			super.interrupt();
-			try { join(); } catch (InterruptedException e) {}
+		protected Log getLog() {
+			return sLog;
 		}
 		
-		public void add(QueryLog q) {
-			if (!iActive) return;
-			synchronized (iQueries) {
-				if (iLogLimit <= 0 || iQueries.size() < iLogLimit)
-					iQueries.add(q);
-			}
-		}
-		
-		public void run() {
-			sLog.debug("Query Log Saver is up.");
-			while (true) {
-				try {
-					try {
-						sleep(60000);
-					} catch (InterruptedException e) {
-					}
-					List<QueryLog> queriesToSave = null;
-					synchronized (iQueries) {
-						if (!iQueries.isEmpty()) {
-							queriesToSave = new ArrayList<QueryLog>(iQueries);
-							iQueries.clear();
-						}
-					}
-					if (queriesToSave != null) {
-						sLog.debug("Persisting " + queriesToSave.size() + " log entries...");
-						if (iLogLimit > 0 && queriesToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
-						Session hibSession = QueryLogDAO.getInstance().createNewSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
-						Transaction tx = hibSession.beginTransaction();
-						try {
-							for (QueryLog q: queriesToSave)
-								hibSession.save(q);
-							hibSession.flush();
-							tx.commit();
-						} catch (Exception e) {
-							tx.rollback();
-							sLog.error("Failed to persist " + queriesToSave.size() + " log entries:" + e.getMessage(), e);
-						} finally {
-							hibSession.close();
-						}
-					}
-					if (!iActive) break;
-				} catch (Exception e) {
-					sLog.error("Failed to persist log entries:" + e.getMessage(), e);
+		@Override
+		protected void save(List<QueryLog> queriesToSave) throws Exception {
+			Session hibSession = QueryLogDAO.getInstance().createNewSession();
+			hibSession.setCacheMode(CacheMode.IGNORE);
+			Transaction tx = hibSession.beginTransaction();
+			try {
+				int count = 0;
+				for (QueryLog q: queriesToSave) {
+					hibSession.save(q);
+					if (++count % 100 == 0) { hibSession.flush(); hibSession.clear(); }
 				}
+				hibSession.flush();
+				tx.commit();
+			} catch (Exception e) {
+				tx.rollback();
+				throw e;
+			} finally {
+				hibSession.close();
 			}
-			sLog.debug("Query Log Saver is down.");
 		}
-		
 	}
 }
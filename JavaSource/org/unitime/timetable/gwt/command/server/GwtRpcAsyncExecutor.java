@@ -0,0 +1,363 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.gwt.command.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.ifs.util.Progress;
+import org.cpsolver.ifs.util.ProgressListener;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.command.client.GwtRpcCancelledException;
+import org.unitime.timetable.gwt.command.client.GwtRpcException;
+import org.unitime.timetable.gwt.command.client.GwtRpcResponse;
+
+/**
+ * Executor of asynchronous RPC requests (see {@link GwtRpcServlet#executeAsync(org.unitime.timetable.gwt.command.client.GwtRpcRequest)}).<br>
+ * Executions run in a bounded thread pool with a bounded queue, and each user can only have a limited number
+ * of executions that have not finished yet. Results that are not picked up are removed after
+ * {@link ApplicationProperty#GwtRpcAsyncTimeToLive} seconds.<br>
+ * Cancellation is cooperative: the execution thread is interrupted and the execution is marked as cancelled,
+ * an implementation can check {@link GwtRpcAsyncExecutor#isCancelled()} or use the {@link Progress} returned
+ * by {@link GwtRpcAsyncExecutor#getProgress()}, which throws {@link GwtRpcCancelledException} on the next progress change
+ * once the execution has been cancelled.<br>
+ * Queue time, execution time, and the numbers of completed, failed, cancelled, and rejected executions are
+ * tracked for each RPC implementation (see {@link GwtRpcAsyncExecutor#getStatistics()}).
+ *
+ * @author Tomas Muller
+ */
+public class GwtRpcAsyncExecutor {
+	private static Log sLog = LogFactory.getLog(GwtRpcAsyncExecutor.class);
+	private static GwtRpcAsyncExecutor sInstance = null;
+	private static ThreadLocal<Execution<?>> sCurrentExecution = new ThreadLocal<Execution<?>>();
+
+	private ThreadPoolExecutor iExecutor;
+	private Map<Long, Execution<?>> iExecutions = new ConcurrentHashMap<Long, Execution<?>>();
+	private Map<String, AtomicInteger> iUserExecutions = new ConcurrentHashMap<String, AtomicInteger>();
+	private Map<String, Statistics> iStatistics = new ConcurrentHashMap<String, Statistics>();
+	private AtomicLong iNextId = new AtomicLong(0);
+	private int iMaxPerUser;
+	private long iTimeToLive;
+	private long iLastReap = System.currentTimeMillis();
+
+	private GwtRpcAsyncExecutor() {
+		int poolSize = Math.max(1, ApplicationProperty.GwtRpcAsyncPoolSize.intValue());
+		int queueSize = Math.max(1, ApplicationProperty.GwtRpcAsyncQueueSize.intValue());
+		iMaxPerUser = ApplicationProperty.GwtRpcAsyncMaxPerUser.intValue();
+		iTimeToLive = 1000l * ApplicationProperty.GwtRpcAsyncTimeToLive.intValue();
+		iExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+			private AtomicInteger iThreadNumber = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "RPC-Async-" + iThreadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		iExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized GwtRpcAsyncExecutor getInstance() {
+		if (sInstance == null) sInstance = new GwtRpcAsyncExecutor();
+		return sInstance;
+	}
+
+	/** Stop the executor, the running executions are interrupted */
+	public static synchronized void stop() {
+		if (sInstance != null) {
+			for (String line: sInstance.getStatistics())
+				sLog.info(line);
+			sInstance.iExecutor.shutdownNow();
+			sInstance = null;
+		}
+	}
+
+	/**
+	 * Submit an execution
+	 * @return execution id
+	 * @throws GwtRpcException when the user has too many executions running or the queue is full
+	 */
+	public Long submit(Execution<?> execution) throws GwtRpcException {
+		reap();
+		Statistics stats = getStatistics(execution.getName());
+		AtomicInteger userExecutions = null;
+		if (execution.getUser() != null) {
+			synchronized (iUserExecutions) {
+				userExecutions = iUserExecutions.get(execution.getUser());
+				if (userExecutions == null) {
+					userExecutions = new AtomicInteger(0);
+					iUserExecutions.put(execution.getUser(), userExecutions);
+				}
+			}
+			if (iMaxPerUser > 0 && userExecutions.incrementAndGet() > iMaxPerUser) {
+				userExecutions.decrementAndGet();
+				stats.iRejected.incrementAndGet();
+				throw new GwtRpcException("Too many requests are being processed, please wait for some of them to finish.");
+			}
+		}
+		execution.iExecutor = this;
+		execution.iExecutionId = iNextId.incrementAndGet();
+		execution.iUserExecutions = userExecutions;
+		execution.iStatistics = stats;
+		// the future is published before the execution can be looked up (and cancelled) or started
+		FutureTask<Void> future = new FutureTask<Void>(execution, null);
+		execution.iFuture = future;
+		iExecutions.put(execution.getExecutionId(), execution);
+		try {
+			iExecutor.execute(future);
+		} catch (RejectedExecutionException e) {
+			iExecutions.remove(execution.getExecutionId());
+			if (userExecutions != null) userExecutions.decrementAndGet();
+			stats.iRejected.incrementAndGet();
+			throw new GwtRpcException("The server is too busy at the moment, please try again later.");
+		}
+		stats.iSubmitted.incrementAndGet();
+		return execution.getExecutionId();
+	}
+
+	/** Execution of the given id, null if there is no such execution */
+	public Execution<?> getExecution(Long executionId) {
+		return iExecutions.get(executionId);
+	}
+
+	/** Remove execution (once its results have been picked up) */
+	public Execution<?> removeExecution(Long executionId) {
+		return iExecutions.remove(executionId);
+	}
+
+	/** Remove executions that have finished more than the time to live ago */
+	protected void reap() {
+		long now = System.currentTimeMillis();
+		if (iTimeToLive <= 0 || now - iLastReap < Math.min(iTimeToLive, 60000)) return;
+		iLastReap = now;
+		for (Iterator<Execution<?>> i = iExecutions.values().iterator(); i.hasNext(); ) {
+			Execution<?> execution = i.next();
+			if (execution.isFinished() && now - execution.iFinishedTime > iTimeToLive) {
+				sLog.info("Removing " + execution.getName() + " results that were not picked up (finished " + ((now - execution.iFinishedTime) / 1000) + " s ago).");
+				i.remove();
+				execution.iStatistics.iReaped.incrementAndGet();
+			}
+		}
+	}
+
+	protected Statistics getStatistics(String name) {
+		Statistics stats = iStatistics.get(name);
+		if (stats == null) {
+			synchronized (iStatistics) {
+				stats = iStatistics.get(name);
+				if (stats == null) {
+					stats = new Statistics();
+					iStatistics.put(name, stats);
+				}
+			}
+		}
+		return stats;
+	}
+
+	/** Executor statistics, one line for the pool and one line for each RPC implementation */
+	public List<String> getStatistics() {
+		List<String> ret = new ArrayList<String>();
+		ret.add("RPC async executor: " + iExecutor.getActiveCount() + " active of " + iExecutor.getMaximumPoolSize() + " threads, " + iExecutor.getQueue().size() + " queued, " +
+				iExecutions.size() + " executions held, " + iExecutor.getCompletedTaskCount() + " completed");
+		for (Map.Entry<String, Statistics> e: new TreeMap<String, Statistics>(iStatistics).entrySet())
+			ret.add("  " + e.getKey() + ": " + e.getValue());
+		return ret;
+	}
+
+	/** Execution that is being executed by the current thread, null if not executed asynchronously */
+	public static Execution<?> getCurrentExecution() {
+		return sCurrentExecution.get();
+	}
+
+	/** True if the execution that is being executed by the current thread has been cancelled */
+	public static boolean isCancelled() {
+		Execution<?> execution = sCurrentExecution.get();
+		return execution != null && execution.isCancelled();
+	}
+
+	/** Throw {@link GwtRpcCancelledException} if the execution that is being executed by the current thread has been cancelled */
+	public static void checkCancelled() throws GwtRpcCancelledException {
+		if (isCancelled()) throw new GwtRpcCancelledException("Operation cancelled by the user.");
+	}
+
+	/** Progress of the execution that is being executed by the current thread (the default progress instance when not executed asynchronously) */
+	public static Progress getProgress() {
+		Execution<?> execution = sCurrentExecution.get();
+		return execution != null ? execution.getProgress() : Progress.getInstance();
+	}
+
+	/**
+	 * An asynchronous execution
+	 */
+	public static abstract class Execution<T extends GwtRpcResponse> implements Runnable {
+		private String iName, iUser;
+		private GwtRpcAsyncExecutor iExecutor;
+		private Long iExecutionId;
+		private AtomicInteger iUserExecutions;
+		private Statistics iStatistics;
+		private volatile Future<?> iFuture;
+		private AtomicBoolean iStarted = new AtomicBoolean(false);
+		private volatile boolean iCancelled = false;
+		private boolean iFinished = false;
+		private long iCreated = System.currentTimeMillis(), iFinishedTime = 0;
+		private Progress iProgress = null;
+		private T iResponse = null;
+		private GwtRpcException iException = null;
+
+		/**
+		 * @param name name of the execution (e.g., the implementation class), used in the statistics
+		 * @param user user for which the execution is made (used to limit the number of concurrent executions of a user), can be null
+		 */
+		public Execution(String name, String user) {
+			iName = name; iUser = user;
+		}
+
+		public String getName() { return iName; }
+		public String getUser() { return iUser; }
+		public Long getExecutionId() { return iExecutionId; }
+		public boolean isCancelled() { return iCancelled; }
+		public synchronized boolean isFinished() { return iFinished; }
+
+		public T getResponse() { return iResponse; }
+		protected void setResponse(T response) { iResponse = response; }
+
+		public synchronized GwtRpcException getException() { return iException; }
+		protected synchronized void setException(GwtRpcException exception) {
+			if (!iCancelled) iException = exception;
+		}
+
+		/** Execute the request, the response or exception are to be set using {@link Execution#setResponse(GwtRpcResponse)} or {@link Execution#setException(GwtRpcException)} */
+		protected abstract void execute();
+
+		@Override
+		public void run() {
+			if (!iStarted.compareAndSet(false, true)) return; // cancelled before started
+			long started = System.currentTimeMillis();
+			iStatistics.iQueueTime.addAndGet(started - iCreated);
+			sCurrentExecution.set(this);
+			try {
+				execute();
+			} catch (GwtRpcCancelledException e) {
+			} catch (Throwable t) {
+				sLog.error("Execution of " + iName + " failed: " + t.getMessage(), t);
+				setException(new GwtRpcException(t.getMessage()));
+			} finally {
+				sCurrentExecution.remove();
+				Thread.interrupted(); // clear the interrupted flag before the thread is returned to the pool
+				iStatistics.iExecutionTime.addAndGet(System.currentTimeMillis() - started);
+				if (iCancelled)
+					iStatistics.iCancelled.incrementAndGet();
+				else if (getException() != null)
+					iStatistics.iFailed.incrementAndGet();
+				else
+					iStatistics.iCompleted.incrementAndGet();
+				finished();
+			}
+		}
+
+		private void finished() {
+			if (iProgress != null) Progress.removeInstance(this);
+			if (iUserExecutions != null) iUserExecutions.decrementAndGet();
+			synchronized (this) {
+				iFinished = true;
+				iFinishedTime = System.currentTimeMillis();
+				notifyAll();
+			}
+		}
+
+		/** Cancel the execution: it is removed from the queue if it has not started yet, the executing thread is interrupted otherwise */
+		public void cancel() {
+			synchronized (this) {
+				iException = new GwtRpcCancelledException("Operation cancelled by the user.");
+				iCancelled = true;
+				notifyAll();
+			}
+			if (iStarted.compareAndSet(false, true)) {
+				// not started yet
+				if (iFuture != null) iFuture.cancel(false);
+				iExecutor.iExecutor.purge();
+				iStatistics.iCancelled.incrementAndGet();
+				finished();
+			} else if (iFuture != null) {
+				iFuture.cancel(true);
+			}
+		}
+
+		/** Wait until the execution is finished or cancelled */
+		public synchronized void waitToFinish() throws InterruptedException {
+			while (!iFinished && !iCancelled)
+				wait();
+		}
+
+		/** Progress of this execution, an attempt to change it throws {@link GwtRpcCancelledException} once the execution has been cancelled */
+		public synchronized Progress getProgress() {
+			if (iProgress == null) {
+				iProgress = Progress.getInstance(this);
+				iProgress.addProgressListener(new ProgressListener() {
+					@Override
+					public void statusChanged(String status) { checkCancelled(); }
+					@Override
+					public void phaseChanged(String phase) { checkCancelled(); }
+					@Override
+					public void progressChanged(long currentProgress, long maxProgress) { checkCancelled(); }
+					@Override
+					public void progressSaved() {}
+					@Override
+					public void progressRestored() {}
+					@Override
+					public void progressMessagePrinted(Progress.Message message) {}
+					private void checkCancelled() {
+						if (iCancelled) throw new GwtRpcCancelledException("Operation cancelled by the user.");
+					}
+				});
+			}
+			return iProgress;
+		}
+	}
+
+	private static class Statistics {
+		private AtomicLong iSubmitted = new AtomicLong(0), iCompleted = new AtomicLong(0), iFailed = new AtomicLong(0), iCancelled = new AtomicLong(0),
+				iRejected = new AtomicLong(0), iReaped = new AtomicLong(0), iQueueTime = new AtomicLong(0), iExecutionTime = new AtomicLong(0);
+
+		@Override
+		public String toString() {
+			long finished = iCompleted.get() + iFailed.get() + iCancelled.get();
+			return iSubmitted.get() + " submitted, " + iCompleted.get() + " completed, " + iFailed.get() + " failed, " + iCancelled.get() + " cancelled, " +
+					iRejected.get() + " rejected, " + iReaped.get() + " not picked up" +
+					(finished > 0 ? ", average queue time " + (iQueueTime.get() / finished) + " ms, average execution time " + (iExecutionTime.get() / finished) + " ms" : "");
+		}
+	}
+}
@@ -23,8 +23,6 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Hashtable;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,6 +50,7 @@ import org.unitime.timetable.model.QueryLog;
 import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.context.HttpSessionContext;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.unitime.timetable.security.evaluation.PermissionCheck;
 import org.unitime.timetable.util.Formats;
 
@@ -72,8 +71,6 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	private static final long serialVersionUID = 1L;
 	private static Log sLog = LogFactory.getLog(GwtRpcServlet.class);
 	private QueryLogFilter.Saver iSaver = null;
-	private static IdGenerator sIdGenerator = new IdGenerator();
-	private static Map<Long, Execution> sExecutions = new Hashtable<Long, Execution>();
 	private Gson iGson = null;
 	
 	protected SessionContext getSessionContext() {
@@ -127,6 +124,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public void destroy() {
 		if (iSaver != null) iSaver.interrupt();
+		GwtRpcAsyncExecutor.stop();
 	}
 	
 	public static <T extends GwtRpcResponse> GwtRpcImplementation<GwtRpcRequest<T>, T> getImplementation(Class<? extends GwtRpcRequest<T>> requestClass, ApplicationContext applicationContext) throws BeansException {
@@ -265,12 +263,9 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public <T extends GwtRpcResponse> Long executeAsync(GwtRpcRequest<T> request) throws GwtRpcException {
 		try {
-			Execution<GwtRpcRequest<T>, T> execution = new Execution<GwtRpcRequest<T>, T>(request);
-			synchronized (sExecutions) {
-				sExecutions.put(execution.getExecutionId(), execution);
-			}
-			execution.start();
-			return execution.getExecutionId();
+			return GwtRpcAsyncExecutor.getInstance().submit(new Execution<GwtRpcRequest<T>, T>(request));
+		} catch (GwtRpcException e) {
+			throw e;
 		} catch (Exception e) {
 			sLog.warn("Execute async failed: " + e.getMessage());
 			throw new GwtRpcException(e.getMessage(), e);
@@ -280,18 +275,13 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public <T extends GwtRpcResponse> T waitForResults(Long executionId) throws GwtRpcException {
 		try {
-			Execution<GwtRpcRequest<T>, T> execution = null;
-			synchronized (sExecutions) {
-				execution = sExecutions.get(executionId);
-			}
+			GwtRpcAsyncExecutor.Execution<T> execution = (GwtRpcAsyncExecutor.Execution<T>)GwtRpcAsyncExecutor.getInstance().getExecution(executionId);
 			if (execution == null) throw new GwtRpcException("No execution with given id found.");
 			try {
 				execution.waitToFinish();
 			} catch (InterruptedException e) {
 			}
-			synchronized (sExecutions) {
-				sExecutions.remove(executionId);
-			}
+			GwtRpcAsyncExecutor.getInstance().removeExecution(executionId);
 			if (execution.getException() != null) throw execution.getException();
 			return execution.getResponse();
 		} catch (GwtRpcCancelledException e) {
@@ -307,120 +297,84 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public Boolean cancelExecution(Long executionId) throws GwtRpcException {
 		try {
-			Execution execution = null;
-			synchronized (sExecutions) {
-				execution = sExecutions.get(executionId);
-			}
+			GwtRpcAsyncExecutor.Execution<?> execution = GwtRpcAsyncExecutor.getInstance().getExecution(executionId);
 			if (execution == null) return false;
-			execution.cancelExecution();
+			execution.cancel();
 			return true;
 		} catch (Exception e) {
 			sLog.warn("Cancel execution failed: " + e.getMessage());
 			throw new GwtRpcException(e.getMessage(), e);
 		}
 	}
-		
-	private static class IdGenerator {
-		long iNextId = 0;
-		synchronized Long generatedId() {
-			return iNextId++;
-		}
-	}
 	
-	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> extends Thread {
+	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> extends GwtRpcAsyncExecutor.Execution<T> {
 		R iRequest;
-		T iResponse = null;
+		GwtRpcImplementation<GwtRpcRequest<T>, T> iImplementation;
 		SessionContext iContext = null;
-		GwtRpcException iException = null;
-		Thread iWaitingThread = null;
-		long iExecutionId;
-		boolean iRunning = false;
 		String iLocale = null;
 		
-		Execution(R request) {
-			setName("RPC:" + request);
-			setDaemon(true);
+		Execution(R request) throws Exception {
+			this(request, getImplementation(request), new GwtRpcHelper(getSessionContext(), getPermissionCheck()));
+		}
+		
+		private Execution(R request, GwtRpcImplementation<GwtRpcRequest<T>, T> implementation, SessionContext context) {
+			super(implementation.getClass().getSimpleName(), context.isAuthenticated() ? context.getUser().getTrueExternalUserId() : context.getHttpSessionId());
 			iRequest = request;
-			iExecutionId = sIdGenerator.generatedId();
-			iContext = new GwtRpcHelper(getSessionContext(), getPermissionCheck());
+			iImplementation = implementation;
+			iContext = context;
 			iLocale = Localization.getLocale();
 		}
 
 		@Override
-		public void run() {
-			iRunning = true;
+		protected void execute() {
 			Localization.setLocale(iLocale);
 			ApplicationProperties.setSessionId(iContext.getUser() == null ? null : iContext.getUser().getCurrentAcademicSessionId());
 			// start time
 			long t0 = JProf.currentTimeMillis();
 			GwtRpcLogging logging = null;
+			PermissionCache.begin();
 			try {
-				// retrieve implementation from given request
-				GwtRpcImplementation<GwtRpcRequest<T>, T> implementation = getImplementation(iRequest);
-				
 				// get logging
-				logging = implementation.getClass().getAnnotation(GwtRpcLogging.class);
+				logging = iImplementation.getClass().getAnnotation(GwtRpcLogging.class);
 				
 				// execute request
-				iResponse = implementation.execute(iRequest, iContext);
+				setResponse(iImplementation.execute(iRequest, iContext));
 				
 				// log request
-				log(iRequest, iResponse, null, JProf.currentTimeMillis() - t0, iContext, logging);
+				log(iRequest, getResponse(), null, JProf.currentTimeMillis() - t0, iContext, logging);
 			} catch (Throwable t) {
 				// log exception
 				log(iRequest, null, t, JProf.currentTimeMillis() - t0, iContext, logging);
 				
 				// re-throw exception as GwtRpcException or IsSerializable runtime exception
-				if (t instanceof GwtRpcException) {
-					iException = (GwtRpcException)t;
-					if (iException.hasCause())
+				if (t instanceof GwtRpcCancelledException) {
+					sLog.info("Execution cancelled: " + t.getMessage());
+					setException((GwtRpcCancelledException)t);
+				} else if (t instanceof GwtRpcException) {
+					GwtRpcException e = (GwtRpcException)t;
+					if (e.hasCause())
 						sLog.warn("Seen server exception: " + t.getMessage(), t.getCause());
 					else
 						sLog.info("Seen server exception: " + t.getMessage());
+					setException(e);
 				} else if (t instanceof IsSerializable) {
 					if (t.getCause() != null)
 						sLog.error("Seen server exception: " + t.getMessage(), t);
 					else
 						sLog.warn("Seen server exception: " + t.getMessage(), t);
-					iException = new GwtRpcException(t.getMessage(), t);
+					setException(new GwtRpcException(t.getMessage(), t));
 				} else {
 					sLog.error("Seen exception: " + t.getMessage(), t);
-					iException = new GwtRpcException(t.getMessage());
+					setException(new GwtRpcException(t.getMessage()));
 				}
 			} finally {
 				Localization.removeLocale();
 				Formats.removeFormats();
 				ApplicationProperties.setSessionId(null);
 				_RootDAO.closeCurrentThreadSessions();
-			}
-			synchronized (this) {
-				iWaitingThread = null;
-				iRunning = false;
+				PermissionCache.end();
 				iContext = null;
 			}
 		}
-		
-		void waitToFinish() throws InterruptedException {
-			synchronized (this) {
-				if (iRunning) {
-					iWaitingThread = Thread.currentThread();
-					join();
-				}
-			}
-		}
-		
-		void cancelExecution() {
-			synchronized (this) {
-				iException = new GwtRpcCancelledException("Operation cancelled by the user.");
-				if (iWaitingThread != null) iWaitingThread.interrupt();
-			}
-			interrupt();
-		}
-		
-		T getResponse() { return iResponse; }
-		
-		GwtRpcException getException() { return iException; }
-		
-		Long getExecutionId() { return iExecutionId; }
 	}
-}
\ No newline at end of file
+}
@@ -20,7 +20,8 @@
 package org.unitime.timetable.gwt.server;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
@@ -51,6 +52,7 @@ import org.unitime.commons.Debug;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.action.PersonalizedExamReportAction;
 import org.unitime.timetable.events.EventDetailBackend;
+import org.unitime.timetable.events.PersonalScheduleCache;
 import org.unitime.timetable.events.QueryEncoderBackend;
 import org.unitime.timetable.export.events.EventsExportEventsToICal;
 import org.unitime.timetable.gwt.resources.GwtConstants;
@@ -80,6 +82,7 @@ import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.UserContext;
 import org.unitime.timetable.server.CourseDetailsBackend;
 import org.unitime.timetable.solver.service.SolverServerService;
+import org.unitime.timetable.util.CachedBody;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.DateUtils;
 
@@ -166,10 +169,24 @@ public class CalendarServlet extends HttpServlet {
     	String userId = params.getParameter("uid");
     	if (q == null) userId = QueryEncoderBackend.decode(userId);
    
-		response.setContentType("text/calendar; charset=UTF-8");
-		response.setCharacterEncoding("UTF-8");
-		response.setHeader( "Content-Disposition", "attachment; filename=\"schedule.ics\"" );
-        
+    	
+    	PersonalScheduleCache cache = null;
+    	String cacheKey = null;
+    	long cacheVersion = 0;
+    	if (PersonalScheduleCache.isEnabled()) {
+    		cache = PersonalScheduleCache.getInstance();
+    		Map<String, String> cacheParams = new HashMap<String, String>();
+    		cacheParams.put("cid", classIds); cacheParams.put("ft", fts); cacheParams.put("xid", examIds);
+    		cacheParams.put("eid", eventIds); cacheParams.put("uid", userId);
+    		cacheKey = PersonalScheduleCache.getCalendarKey(sessionId, cacheParams);
+    		cacheVersion = cache.getVersion(userId);
+    		CachedBody cached = cache.getCalendar(cacheKey, cacheVersion);
+    		if (cached != null) {
+    			sendCalendar(cached, request, response);
+    			return;
+    		}
+    	}
+   
 		ICalendar ical = new ICalendar();
 		ical.setVersion(ICalVersion.V2_0);
 		ical.setCalendarScale(CalendarScale.gregorian());
@@ -270,19 +287,43 @@ public class CalendarServlet extends HttpServlet {
         } catch (Exception e) {
         	Debug.error(e.getMessage(), e);
         	response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        	return;
         }
 		
-		PrintWriter out = response.getWriter();
+		StringWriter out = new StringWriter();
         ICalWriter writer = new ICalWriter(out, ICalVersion.V2_0);
 		try {
 	    	writer.getTimezoneInfo().setDefaultTimeZone(TimeZone.getDefault());
         	writer.write(ical);
         	writer.flush();
-        	out.flush();
 		} finally {
-			out.close();
 			writer.close();
 		}
+		byte[] body = out.toString().getBytes("UTF-8");
+		if (cache != null)
+			sendCalendar(cache.putCalendar(cacheKey, cacheVersion, body), request, response);
+		else
+			sendCalendar(new CachedBody(body, 0), request, response);
+	}
+	
+	private void sendCalendar(CachedBody calendar, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setHeader("ETag", calendar.getETag());
+		response.setHeader("Cache-Control", "private, no-cache");
+		if (calendar.matches(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		response.setContentType("text/calendar; charset=UTF-8");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader( "Content-Disposition", "attachment; filename=\"schedule.ics\"" );
+		response.setContentLength(calendar.getBody().length);
+		OutputStream out = response.getOutputStream();
+		try {
+			out.write(calendar.getBody());
+		} finally {
+			out.flush();
+			out.close();
+		}
 	}
 
 	private void printExam(Exam exam, ICalendar ical) throws IOException {
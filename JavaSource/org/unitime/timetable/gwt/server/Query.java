@@ -185,6 +185,8 @@ public class Query implements Serializable {
 		
 		protected List<Term> terms() { return iTerms; }
 		
+		public List<Term> getTerms() { return iTerms; }
+		
 		public abstract String getOp();
 		
 		public boolean hasAttribute(String attribute) {
@@ -252,6 +254,8 @@ public class Query implements Serializable {
 			iTerm = t;
 		}
 		
+		public Term getTerm() { return iTerm; }
+		
 		public boolean match(TermMatcher m) {
 			return !iTerm.match(m);
 		}
@@ -275,6 +279,10 @@ public class Query implements Serializable {
 			iAttr = attr; iBody = body;
 		}
 		
+		public String getAttr() { return iAttr; }
+		
+		public String getBody() { return iBody; }
+		
 		public boolean match(TermMatcher m) {
 			return m.match(iAttr, iBody);
 		}
@@ -22,6 +22,7 @@ package org.unitime.timetable.model;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
@@ -64,6 +65,7 @@ import org.unitime.timetable.solver.course.ui.ClassInstructorInfo;
 import org.unitime.timetable.solver.course.ui.ClassRoomInfo;
 import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 import org.unitime.timetable.util.DefaultExternalClassNameHelper;
+import org.unitime.timetable.util.RoomAvailability;
 import org.unitime.timetable.util.duration.DurationModel;
 import org.unitime.timetable.webutil.Navigation;
 
@@ -143,6 +145,7 @@ public class Class_ extends BaseClass_ {
         	ClassEvent event = getEvent();
         	if (event != null) {
         		if (deleteEvent) {
+        			RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
             		if (ApplicationProperty.ClassAssignmentChangePastMeetings.isTrue()) {
                 		hibSession.delete(event);
                 	} else {
@@ -1335,6 +1338,7 @@ public class Class_ extends BaseClass_ {
             
             ClassEvent event = getEvent();
             if (event != null) {
+            	RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
             	if (ApplicationProperty.ClassAssignmentChangePastMeetings.isTrue()) {
             		hibSession.delete(event);
             	} else {
@@ -1509,6 +1513,8 @@ public class Class_ extends BaseClass_ {
             }
 		    if (event != null && event.getMeetings().isEmpty() && event.getUniqueId() != null)
 		    	hibSession.delete(event);
+		    if (event != null && event.getUniqueId() != null)
+		    	RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
 
             setCommittedAssignment(a);
             hibSession.update(this);
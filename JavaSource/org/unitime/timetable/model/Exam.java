@@ -22,6 +22,7 @@ package org.unitime.timetable.model;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -50,6 +51,7 @@ import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
 import org.unitime.timetable.solver.exam.ui.ExamInfo;
 import org.unitime.timetable.solver.exam.ui.ExamRoomInfo;
 import org.unitime.timetable.util.Constants;
+import org.unitime.timetable.util.RoomAvailability;
 
 /**
  * @author Tomas Muller, Stephanie Schluttenhofer
@@ -412,6 +414,7 @@ public class Exam extends BaseExam implements Comparable<Exam> {
         
         ExamEvent event = getEvent();
         if (event!=null) {
+            RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
             hibSession.delete(event);
             deleted = true;
         }
@@ -821,6 +824,7 @@ public class Exam extends BaseExam implements Comparable<Exam> {
                 }
                 event.setMainContact(contact);
                 hibSession.saveOrUpdate(event);
+                RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
             }
             
             hibSession.update(this);
@@ -886,7 +890,10 @@ public class Exam extends BaseExam implements Comparable<Exam> {
             }
 
             ExamEvent event = getEvent();
-            if (event!=null) hibSession.delete(event);
+            if (event!=null) {
+                RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
+                hibSession.delete(event);
+            }
             
             hibSession.update(this);
             for (Iterator i=otherExams.iterator();i.hasNext();)
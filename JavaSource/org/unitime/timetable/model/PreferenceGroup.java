@@ -178,7 +178,10 @@ public abstract class PreferenceGroup extends BasePreferenceGroup {
     	return htmlForPrefs(assignment, prefList, timeVertical, gridAsText, timeGridSize, nameFormat, ApplicationProperty.PreferencesHighlighClassPreferences.isTrue());
     }
     
-    private String htmlForPrefs(Assignment assignment, Set prefList, boolean timeVertical, boolean gridAsText, String timeGridSize, String nameFormat, boolean highlightClassPrefs){
+    /**
+     * HTML of the given (effective) preferences, used by the {@link org.unitime.timetable.webutil.EffectivePreferenceResolver}
+     */
+    public String htmlForPrefs(Assignment assignment, Set prefList, boolean timeVertical, boolean gridAsText, String timeGridSize, String nameFormat, boolean highlightClassPrefs){
        	StringBuffer sb = new StringBuffer();
        	if (prefList != null && !prefList.isEmpty()) {
        		if (prefList.toArray()[0] instanceof TimePref){
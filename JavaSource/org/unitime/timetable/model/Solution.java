@@ -26,12 +26,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
@@ -67,6 +69,7 @@ import org.unitime.timetable.solver.ui.TimetableInfo;
 import org.unitime.timetable.solver.ui.TimetableInfoFileProxy;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
+import org.unitime.timetable.util.RoomAvailability;
 
 
 /**
@@ -239,6 +242,79 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
         return false;
     }
 
+    /**
+     * In-memory version of {@link Solution#shareRooms(Assignment, Assignment)}: all required meet with / can share room
+     * distribution preferences of the academic session are loaded at once, instead of walking the distribution objects and
+     * looking up all the instructor's records for each conflicting pair of assignments.
+     */
+    private static class SharedRoomsIndex {
+    	private Map<Long, Set<Long>> iGroup2Prefs = new HashMap<Long, Set<Long>>();
+    	private Map<Long, Set<Long>> iPref2Groups = new HashMap<Long, Set<Long>>();
+    	private Set<Long> iInstructorsWithPrefs = new HashSet<Long>();
+    	private Map<String, Set<Long>> iInstructorClasses = new HashMap<String, Set<Long>>();
+    	
+    	SharedRoomsIndex(org.hibernate.Session hibSession, Long sessionId) {
+    		for (Object[] o: (List<Object[]>)hibSession.createQuery(
+    				"select dp.uniqueId, o.prefGroup.uniqueId from DistributionPref dp inner join dp.distributionObjects o where " +
+    				"dp.distributionType.reference in ('MEET_WITH', 'CAN_SHARE_ROOM') and dp.prefLevel.prefProlog = :required and " +
+    				"dp.owner.uniqueId in (select d.uniqueId from Department d where d.session.uniqueId = :sessionId)")
+    				.setString("required", PreferenceLevel.sRequired).setLong("sessionId", sessionId).list()) {
+    			Long prefId = (Long)o[0], groupId = (Long)o[1];
+    			Set<Long> prefs = iGroup2Prefs.get(groupId);
+    			if (prefs == null) { prefs = new HashSet<Long>(); iGroup2Prefs.put(groupId, prefs); }
+    			prefs.add(prefId);
+    			Set<Long> groups = iPref2Groups.get(prefId);
+    			if (groups == null) { groups = new HashSet<Long>(); iPref2Groups.put(prefId, groups); }
+    			groups.add(groupId);
+    		}
+    		iInstructorsWithPrefs.addAll((List<Long>)hibSession.createQuery(
+    				"select distinct i.uniqueId from DistributionPref dp, DepartmentalInstructor i where dp.owner.uniqueId = i.uniqueId and " +
+    				"dp.distributionType.reference in ('MEET_WITH', 'CAN_SHARE_ROOM') and dp.prefLevel.prefProlog = :required and " +
+    				"i.department.session.uniqueId = :sessionId")
+    				.setString("required", PreferenceLevel.sRequired).setLong("sessionId", sessionId).list());
+    		if (!iInstructorsWithPrefs.isEmpty()) {
+    			for (Object[] o: (List<Object[]>)hibSession.createQuery(
+    					"select i.uniqueId, i.externalUniqueId, ci.classInstructing.uniqueId from ClassInstructor ci inner join ci.instructor i " +
+    					"where i.department.session.uniqueId = :sessionId")
+    					.setLong("sessionId", sessionId).list()) {
+    				String key = key((Long)o[0], (String)o[1]);
+    				Set<Long> classIds = iInstructorClasses.get(key);
+    				if (classIds == null) { classIds = new HashSet<Long>(); iInstructorClasses.put(key, classIds); }
+    				classIds.add((Long)o[2]);
+    			}
+    		}
+    	}
+    	
+    	private static String key(Long instructorId, String externalId) {
+    		return (externalId == null || externalId.trim().isEmpty() ? "#" + instructorId : externalId);
+    	}
+    	
+    	private boolean shareRooms(Long groupId, Class_ other) {
+    		Set<Long> prefs = iGroup2Prefs.get(groupId);
+    		if (prefs == null) return false;
+    		for (Long prefId: prefs) {
+    			Set<Long> groups = iPref2Groups.get(prefId);
+    			if (groups.contains(other.getUniqueId()) || groups.contains(other.getSchedulingSubpart().getUniqueId())) return true;
+    		}
+    		return false;
+    	}
+    	
+    	boolean shareRooms(Assignment a1, Assignment a2) {
+    		if (!a1.getPlacement().sameRooms(a2.getPlacement())) return false;
+    		if (shareRooms(a1.getClazz().getUniqueId(), a2.getClazz())) return true;
+    		if (shareRooms(a1.getClazz().getSchedulingSubpart().getUniqueId(), a2.getClazz())) return true;
+    		if (!iInstructorsWithPrefs.isEmpty()) {
+    			for (Iterator i = a1.getInstructors().iterator(); i.hasNext(); ) {
+    				DepartmentalInstructor instr = (DepartmentalInstructor)i.next();
+    				if (!iInstructorsWithPrefs.contains(instr.getUniqueId())) continue;
+    				Set<Long> classIds = iInstructorClasses.get(key(instr.getUniqueId(), instr.getExternalUniqueId()));
+    				if (classIds != null && classIds.contains(a2.getClazz().getUniqueId())) return true;
+    			}
+    		}
+    		return false;
+    	}
+    }
+
 	public boolean commitSolution(List<String> messages, org.hibernate.Session hibSession, String sendNotificationPuid) {
 		List solutions = hibSession.createCriteria(Solution.class).add(Restrictions.eq("owner",getOwner())).list();
 		Solution uncommittedSolution = null;
@@ -251,6 +327,15 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 			}
 		}
 		if (DEBUG) sLog.debug("commit["+getUniqueId()+","+getOwner().getName()+"] -------------------------------------------------------");
+		long t0 = System.currentTimeMillis();
+		
+		// pre-load assignments of the solution together with their classes and rooms
+		hibSession.createQuery(
+				"select distinct a from Assignment a left join fetch a.rooms left join fetch a.clazz c left join fetch c.schedulingSubpart " +
+				"where a.solution.uniqueId = :solutionId")
+				.setLong("solutionId", getUniqueId()).list();
+		SharedRoomsIndex sharedRooms = new SharedRoomsIndex(hibSession, getOwner().getSession().getUniqueId());
+		long t1 = System.currentTimeMillis();
 			
 		boolean isOK = true;
 		for (Object[] o: (List<Object[]>)hibSession.createQuery(
@@ -265,7 +350,7 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 			Location room = (Location)o[0];
 			Assignment a = (Assignment)o[1];
 			Assignment b = (Assignment)o[2];
-			if (!room.isIgnoreRoomCheck() && a.getTimeLocation().hasIntersection(b.getTimeLocation()) && !shareRooms(a, b)) {
+			if (!room.isIgnoreRoomCheck() && a.getTimeLocation().hasIntersection(b.getTimeLocation()) && !sharedRooms.shareRooms(a, b)) {
 				messages.add("Class "+a.getClassName()+" "+a.getTimeLocation().getName(CONSTANTS.useAmPm())+" overlaps with "+b.getClassName()+" "+b.getTimeLocation().getName(CONSTANTS.useAmPm())+" (room "+room.getLabel()+")");
 				isOK=false;
 			}
@@ -287,12 +372,14 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 			DepartmentalInstructor instructor = (DepartmentalInstructor)o[0];
 			Assignment a = (Assignment)o[1];
 			Assignment b = (Assignment)o[2];
-			if (a.getTimeLocation().hasIntersection(b.getTimeLocation()) && !shareRooms(a,b)) {
+			if (a.getTimeLocation().hasIntersection(b.getTimeLocation()) && !sharedRooms.shareRooms(a, b)) {
 				messages.add("Class "+a.getClassName()+" "+a.getTimeLocation().getName(CONSTANTS.useAmPm())+" overlaps with "+b.getClassName()+" "+b.getTimeLocation().getName(CONSTANTS.useAmPm())+" (instructor "+instructor.nameLastNameFirst()+")");
 				isOK=false;
 			}
 		}
 		
+		long t2 = System.currentTimeMillis();
+		
 		if (!isOK) {
 			if (sendNotificationPuid!=null) sendNotification(uncommittedSolution, this, sendNotificationPuid, false, messages);
 			return false;
@@ -353,13 +440,14 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 		    }
 		}
         Hashtable<Long,ClassEvent> classEvents = new Hashtable();
-        for (Iterator i=hibSession.createQuery(
-                "select e from Solution s inner join s.assignments a, ClassEvent e where e.clazz=a.clazz and s.uniqueId=:solutionId")
+        for (ClassEvent e: (List<ClassEvent>)hibSession.createQuery(
+                "select distinct e from Solution s inner join s.assignments a, ClassEvent e left join fetch e.meetings where e.clazz=a.clazz and s.uniqueId=:solutionId")
                 .setLong("solutionId",getUniqueId())
-                .iterate(); i.hasNext();) {
-            ClassEvent e = (ClassEvent)i.next();
+                .list()) {
             classEvents.put(e.getClazz().getUniqueId(),e);
         }
+        long t3 = System.currentTimeMillis();
+        Set<Long> changedEventIds = new HashSet<Long>();
 		for (Iterator i=getAssignments().iterator();i.hasNext();) {
 		    Assignment a = (Assignment)i.next();
 		    ClassEvent event = a.generateCommittedEvent(classEvents.get(a.getClassId()),true);
@@ -378,14 +466,18 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 				note.setMeetings(a.getPlacement().getLongName(CONSTANTS.useAmPm()));
 				event.getNotes().add(note);
 		        hibSession.saveOrUpdate(event);
+		        changedEventIds.add(event.getUniqueId());
 		    }
-		    if (event != null && event.getMeetings().isEmpty() && event.getUniqueId() != null)
+		    if (event != null && event.getMeetings().isEmpty() && event.getUniqueId() != null) {
+		    	changedEventIds.add(event.getUniqueId());
 		    	hibSession.delete(event);
+		    }
 		}
 		
 		if (ApplicationProperty.ClassAssignmentChangePastMeetings.isTrue()) {
 			for (Enumeration e=classEvents.elements();e.hasMoreElements();) {
 			    ClassEvent event = (ClassEvent)e.nextElement();
+			    changedEventIds.add(event.getUniqueId());
 			    hibSession.delete(event);
 			}
 		} else {
@@ -398,6 +490,7 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 
 			for (Enumeration e=classEvents.elements();e.hasMoreElements();) {
 			    ClassEvent event = (ClassEvent)e.nextElement();
+			    changedEventIds.add(event.getUniqueId());
 	        	for (Iterator<Meeting> i = event.getMeetings().iterator(); i.hasNext(); )
 	        		if (!i.next().getMeetingDate().before(today)) i.remove();
 	        	if (event.getMeetings().isEmpty()) {
@@ -419,11 +512,17 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 			}
 		}
 		
+		RoomAvailability.eventsChanged(hibSession, changedEventIds);
+		long t4 = System.currentTimeMillis();
+		
 		if (sendNotificationPuid!=null) sendNotification(uncommittedSolution, this, sendNotificationPuid, true, messages);
 
 		// Manually fix the Clazz_.committedAssignment cache.
 		for (Assignment a: getAssignments())
 			a.getClazz().setCommittedAssignment(a);
+		
+		sLog.info("Solution " + getOwner().getName() + " committed in " + (System.currentTimeMillis() - t0) + " ms (pre-load: " + (t1 - t0) + " ms, conflicts: " + (t2 - t1) +
+				" ms, existing events: " + (t3 - t2) + " ms, events: " + (t4 - t3) + " ms).");
 
 		return true;
 	}
@@ -22,9 +22,6 @@ package org.unitime.timetable.model;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -37,11 +34,13 @@ import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.hibernate.HibernateException;
 import org.unitime.commons.Debug;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.base.BaseSolverInfo;
 import org.unitime.timetable.solver.ui.FileInfo;
 import org.unitime.timetable.solver.ui.TimetableInfo;
 import org.unitime.timetable.solver.ui.TimetableInfoFileProxy;
 import org.unitime.timetable.solver.ui.TimetableInfoUtil;
+import org.unitime.timetable.util.BoundedCache;
 
 
 /**
@@ -155,92 +154,33 @@ public class SolverInfo extends BaseSolverInfo {
 	}
 	
 	public static TimetableInfo getCached(Long uniqueId) {
-		if (uniqueId==null) return null;
-		synchronized (sInfoCache) {
-			CachedTimetableInfo cInfo = (CachedTimetableInfo)sInfoCache.get(uniqueId);
-			if (cInfo==null) return null;
-			cInfo.mark();
-			return cInfo.getInfo();
-		}
+		return sInfoCache.get(uniqueId);
 	}
 	
 	public static void setCached(Long uniqueId, TimetableInfo info) {
-		if (uniqueId==null) return;
-		synchronized (sInfoCache) {
-			sInfoCache.put(uniqueId, new CachedTimetableInfo(info));
-		}		
+		sInfoCache.put(uniqueId, info);
 	}
 	
 	public static void removeCached(Long uniqueId) {
-		if (uniqueId==null) return;
-		synchronized (sInfoCache) {
-			sInfoCache.remove(uniqueId);
-		}		
+		sInfoCache.remove(uniqueId);
 	}
-
-	protected static Hashtable sInfoCache = null;
-	protected static InfoCacheCleanup sCleanupThread = null;   
-	protected static long sInfoCacheTimeToLive = 600000; //10 minutes
-	protected static long sInfoCacheCleanupInterval = 30000; //30 secs
 	
-	static {
-		sInfoCache = new Hashtable();
-		sCleanupThread = new InfoCacheCleanup();
-		sCleanupThread.start();
+	/**
+	 * Solver info cache, bounded by the total serialized size of the cached infos (see {@link ApplicationProperty#SolverInfoCacheMaxSize})
+	 * and with entries expiring when not used for {@link ApplicationProperty#SolverInfoCacheTimeToLive} seconds.
+	 */
+	protected static BoundedCache<Long, TimetableInfo> sInfoCache = new BoundedCache<Long, TimetableInfo>("SolverInfo",
+			1024l * 1024l * ApplicationProperty.SolverInfoCacheMaxSize.intValue(),
+			1000l * ApplicationProperty.SolverInfoCacheTimeToLive.intValue());
+	
+	public static BoundedCache<Long, TimetableInfo> getInfoCache() {
+		return sInfoCache;
 	}
 	
 	public static void stopInfoCacheCleanup() {
-		sInfoCache = null;
-		if (sCleanupThread!=null && sCleanupThread.isAlive())
-			sCleanupThread.interrupt();
-	}
-
-	protected static class InfoCacheCleanup extends Thread {
-		public InfoCacheCleanup() {
-			setDaemon(true);
-			setName("InfoCacheCleanup");
-		}
-		
-		public void run() {
-			Debug.info("InfoCache cleanup thread started.");
-			try {
-				while (true) {
-					sleep(sInfoCacheCleanupInterval);
-					if (sInfoCache==null) return;
-					synchronized (sInfoCache) {
-						if (sInfoCache.isEmpty()) continue;
-						for (Iterator i=sInfoCache.entrySet().iterator();i.hasNext();) {
-							Map.Entry entry = (Map.Entry)i.next();
-							CachedTimetableInfo cInfo = (CachedTimetableInfo)entry.getValue();
-							if (cInfo.getAge()>sInfoCacheTimeToLive) {
-								i.remove();
-							}
-						}
-					}
-				}
-			} catch (InterruptedException ex) {
-				Debug.info("InfoCache cleanup thread interrupted.");
-			}
-			Debug.info("InfoCache cleanup thread finished.");
-		}
+		Debug.info("InfoCache: " + sInfoCache.getStatistics());
+		sInfoCache.clear();
 	}
-
-	protected static class CachedTimetableInfo {
-    	private TimetableInfo iInfo = null;
-    	private long iTimeStamp = System.currentTimeMillis();
-    	public CachedTimetableInfo(TimetableInfo info) {
-    		iInfo = info;
-    	}
-    	public TimetableInfo getInfo() {
-    		return iInfo;
-    	}
-    	public long getAge() {
-    		return System.currentTimeMillis()-iTimeStamp;
-    	}
-    	public void mark() {
-    		iTimeStamp = System.currentTimeMillis();
-    	}
-    }
 	
 	public Document getValue() {
 		try {
@@ -0,0 +1,212 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Variant of the {@link MultiLock} that does not funnel all the lock requests through a single monitor.
+ * Each id has its own binary semaphore (created on demand and discarded when no longer used). All the ids are first
+ * tried without blocking (when one is not available, the acquired ones are released and the lock waits for the blocking id),
+ * after a few unsuccessful attempts the ids are acquired in ascending order (which makes the locking deadlock free). The {@link MultiLock#lockAll()} is implemented
+ * using a fair semaphore that every individual lock acquires a single permit of, while the lock all
+ * takes all the permits (waiting for all the individual locks to be released and blocking any new ones).<br>
+ * The semaphores are not bound to a thread, so (just like with the {@link MultiLock}) a lock can be released
+ * by a different thread than the one that has acquired it.
+ *
+ * @author Tomas Muller
+ */
+public class ConcurrentMultiLock extends MultiLock {
+	private static final int sAllPermits = Integer.MAX_VALUE;
+	private Semaphore iGlobal = new Semaphore(sAllPermits, true);
+	private AtomicBoolean iAllLocked = new AtomicBoolean(false);
+	private ConcurrentMap<Long, IdLock> iIndividualLocks = new ConcurrentHashMap<Long, IdLock>();
+	private int iMaxAttempts = 3;
+
+	public ConcurrentMultiLock() {
+		super();
+	}
+
+	public ConcurrentMultiLock(AcademicSessionInfo session) {
+		super(session);
+	}
+
+	@Override
+	public OnlineSectioningServer.Lock lockAll() {
+		iLog.debug("Locking all ...");
+		iGlobal.acquireUninterruptibly(sAllPermits);
+		iAllLocked.set(true);
+		iLog.debug("Locked: all");
+		return new UnlockAll();
+	}
+
+	@Override
+	public void unlockAll() {
+		if (!iAllLocked.compareAndSet(true, false)) return;
+		iLog.debug("Unlocking all ...");
+		iGlobal.release(sAllPermits);
+		iLog.debug("Unlocked: all");
+	}
+
+	@Override
+	public OnlineSectioningServer.Lock lock(Collection<Long> ids) {
+		if (ids == null || ids.isEmpty()) return new Unlock(null, null);
+		iLog.debug("Locking " + ids + " ...");
+		TreeSet<Long> sorted = new TreeSet<Long>(ids);
+		iGlobal.acquireUninterruptibly();
+		List<IdLock> locks = new ArrayList<IdLock>(sorted.size());
+		for (Long id: sorted)
+			locks.add(retain(id));
+		for (int attempt = 1; ; attempt++) {
+			IdLock blocking = null;
+			int acquired = 0;
+			for (IdLock lock: locks) {
+				if (!lock.tryAcquire()) { blocking = lock; break; }
+				acquired ++;
+			}
+			if (blocking == null) break;
+			if (attempt >= iMaxAttempts) {
+				// fall back to the ordered acquisition (deadlock free, but it may hold some of the ids while waiting)
+				for (int i = acquired; i < locks.size(); i++)
+					locks.get(i).acquire();
+				break;
+			}
+			// release what was acquired, wait for the blocking id, and try again
+			for (int i = 0; i < acquired; i++)
+				locks.get(i).release();
+			blocking.acquire();
+			blocking.release();
+		}
+		iLog.debug("Locked: " + ids);
+		return new Unlock(ids, locks);
+	}
+
+	private IdLock retain(Long id) {
+		while (true) {
+			IdLock lock = iIndividualLocks.get(id);
+			if (lock == null) {
+				lock = new IdLock(id);
+				IdLock other = iIndividualLocks.putIfAbsent(id, lock);
+				if (other != null) lock = other;
+			}
+			if (lock.retain()) return lock;
+			// lock is being discarded by some other thread -> try again
+			iIndividualLocks.remove(id, lock);
+		}
+	}
+
+	private void unlock(Collection<Long> ids, List<IdLock> acquired) {
+		if (acquired == null || acquired.isEmpty()) return;
+		iLog.debug("Unlocking " + ids + " ...");
+		for (IdLock lock: acquired) {
+			lock.release();
+			if (lock.dispose())
+				iIndividualLocks.remove(lock.getId(), lock);
+		}
+		iGlobal.release();
+		iLog.debug("Unlocked: " + ids);
+	}
+
+	@Override
+	public Set<Long> locked() {
+		Set<Long> locked = new TreeSet<Long>();
+		for (Map.Entry<Long, IdLock> entry: iIndividualLocks.entrySet())
+			if (entry.getValue().isLocked()) locked.add(entry.getKey());
+		return locked;
+	}
+
+	@Override
+	public boolean isLocked(Long id) {
+		IdLock lock = iIndividualLocks.get(id);
+		return lock != null && lock.isLocked();
+	}
+
+	private static class IdLock {
+		private Long iId;
+		private Semaphore iSemaphore = new Semaphore(1, false);
+		private AtomicInteger iUsers = new AtomicInteger(0);
+
+		private IdLock(Long id) {
+			iId = id;
+		}
+
+		public Long getId() { return iId; }
+
+		/**
+		 * Register a user of the lock, returns false if the lock has been already disposed
+		 */
+		public boolean retain() {
+			while (true) {
+				int users = iUsers.get();
+				if (users < 0) return false;
+				if (iUsers.compareAndSet(users, users + 1)) return true;
+			}
+		}
+
+		/**
+		 * Unregister a user of the lock, returns true if the lock is no longer used (and it has been disposed)
+		 */
+		public boolean dispose() {
+			return iUsers.decrementAndGet() == 0 && iUsers.compareAndSet(0, -1);
+		}
+
+		public void acquire() { iSemaphore.acquireUninterruptibly(); }
+
+		public boolean tryAcquire() { return iSemaphore.tryAcquire(); }
+
+		public void release() { iSemaphore.release(); }
+
+		public boolean isLocked() { return iSemaphore.availablePermits() == 0; }
+	}
+
+	public class Unlock implements OnlineSectioningServer.Lock {
+		private Collection<Long> iIds;
+		private List<IdLock> iAcquired;
+
+		private Unlock(Collection<Long> ids, List<IdLock> acquired) {
+			iIds = ids; iAcquired = acquired;
+		}
+
+		public synchronized void release() {
+			unlock(iIds, iAcquired);
+			iAcquired = null;
+		}
+	}
+
+	public class UnlockAll implements OnlineSectioningServer.Lock {
+
+		private UnlockAll() {
+		}
+
+		public void release() {
+			unlockAll();
+		}
+	}
+}
@@ -19,6 +19,7 @@
 */
 package org.unitime.timetable.onlinesectioning;
 
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -27,6 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -40,7 +43,7 @@ import org.cpsolver.ifs.util.ToolBox;
  * @author Tomas Muller
  */
 public class MultiLock {
-    private Log iLog = LogFactory.getLog(MultiLock.class);
+    protected Log iLog = LogFactory.getLog(MultiLock.class);
     private Lock iLock = new ReentrantLock();
     private Condition iAllLocked = null;
     private Map<Long, Condition> iIndividualLocks = new HashMap<Long, Condition>();
@@ -62,14 +65,14 @@ public class MultiLock {
 		return null;
 	}
 	
-	public Unlock lock(Long... ids) {
+	public OnlineSectioningServer.Lock lock(Long... ids) {
 		List<Long> list = new ArrayList<Long>(ids.length);
 		for (Long id: ids)
 			list.add(id);
 		return lock(list);
 	}
 	
-	public UnlockAll lockAll() {
+	public OnlineSectioningServer.Lock lockAll() {
 		iLock.lock();
 		try {
 			iLog.debug("Locking all ...");
@@ -100,7 +103,7 @@ public class MultiLock {
 		}
 	}
 	
-	public Unlock lock(Collection<Long> ids) {
+	public OnlineSectioningServer.Lock lock(Collection<Long> ids) {
 		iLock.lock();
 		try {
 			if (ids == null || ids.isEmpty()) return new Unlock(ids);
@@ -174,75 +177,113 @@ public class MultiLock {
 		}
 	}
 
+	/**
+	 * Stress test and throughput benchmark comparing {@link MultiLock} with {@link ConcurrentMultiLock}.<br>
+	 * System properties: threads (number of locking threads, defaults to 1000), allThreads (number of threads calling lock all, defaults to 3),
+	 * courses (number of distinct ids, defaults to 10000), sleep (max time in ms spent holding a lock, defaults to 0),
+	 * duration (length of each run in seconds, defaults to 30), verbose (print individual lock operations, defaults to false).
+	 */
 	public static void main(String[] args) {
 		try {
-			final MultiLock lock = new MultiLock();
-			for (int i = 1; i <= 1000; i++) {
-				Thread t = new Thread(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							while (true) {
-								int nrCourses = 2 + ToolBox.random(9);
-								Set<Long> courses = new HashSet<Long>();
-								String s = "";
-								for (int i = 0; i < nrCourses; i++) {
-									long courseId;
-									do {
-										courseId = ToolBox.random(10000);
-									} while (!courses.add(courseId));
-									s += (i > 0 ? ", " : "") + courseId;
-								}
-								System.out.println(Thread.currentThread().getName() + "Locking: [" + s + "]");
-								Unlock l = lock.lock(courses);
-								System.out.println(Thread.currentThread().getName() + "Locked: [" + s + "]");
+			int nrThreads = Integer.parseInt(System.getProperty("threads", "1000"));
+			int nrAllThreads = Integer.parseInt(System.getProperty("allThreads", "3"));
+			int nrCourses = Integer.parseInt(System.getProperty("courses", "10000"));
+			int maxSleep = Integer.parseInt(System.getProperty("sleep", "0"));
+			long duration = 1000l * Integer.parseInt(System.getProperty("duration", "30"));
+			boolean verbose = "true".equalsIgnoreCase(System.getProperty("verbose", "false"));
+			
+			for (MultiLock lock: new MultiLock[] { new MultiLock(), new ConcurrentMultiLock() }) {
+				benchmark(lock, nrThreads, nrAllThreads, nrCourses, maxSleep, duration, verbose);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private static void benchmark(final MultiLock lock, int nrThreads, int nrAllThreads, final int nrCourses, final int maxSleep, long duration, final boolean verbose) throws InterruptedException {
+		final long end = System.currentTimeMillis() + duration;
+		final AtomicLong locks = new AtomicLong(0), allLocks = new AtomicLong(0), waitNanos = new AtomicLong(0), violations = new AtomicLong(0);
+		final Map<Long, String> held = new ConcurrentHashMap<Long, String>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 1; i <= nrThreads; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (System.currentTimeMillis() < end) {
+							int nrIds = 2 + ToolBox.random(9);
+							Set<Long> ids = new HashSet<Long>();
+							for (int i = 0; i < nrIds; i++) {
+								long courseId;
+								do {
+									courseId = ToolBox.random(nrCourses);
+								} while (!ids.add(courseId));
+							}
+							if (verbose) System.out.println(Thread.currentThread().getName() + "Locking: " + ids);
+							long t0 = System.nanoTime();
+							OnlineSectioningServer.Lock l = lock.lock(ids);
+							waitNanos.addAndGet(System.nanoTime() - t0);
+							if (verbose) System.out.println(Thread.currentThread().getName() + "Locked: " + ids);
+							for (Long id: ids)
+								if (held.put(id, Thread.currentThread().getName()) != null) violations.incrementAndGet();
+							if (maxSleep > 0)
 								try {
-									Thread.sleep(ToolBox.random(1000));
+									Thread.sleep(ToolBox.random(maxSleep));
 								} catch (InterruptedException e) {}
-								System.out.println(Thread.currentThread().getName() + "Unlocking: [" + s + "]");
-								l.release();
-								System.out.println(Thread.currentThread().getName() + "Unlocked: [" + s + "]");
-							}
-						} catch (Exception e) {
-							System.err.println(Thread.currentThread().getName() + e.getMessage());
-							e.printStackTrace();
+							for (Long id: ids)
+								held.remove(id);
+							if (verbose) System.out.println(Thread.currentThread().getName() + "Unlocking: " + ids);
+							l.release();
+							locks.incrementAndGet();
 						}
+					} catch (Exception e) {
+						System.err.println(Thread.currentThread().getName() + e.getMessage());
+						e.printStackTrace();
 					}
-				});
-				t.setName("[T" + i + "]: ");
-				t.start();
-			}
-			for (int i = 1; i <= 3; i++) {
-				Thread t = new Thread(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							while (true) {
-								try {
-									Thread.sleep(ToolBox.random(5000));
-								} catch (InterruptedException e) {}
-								System.out.println(Thread.currentThread().getName() + "Locking all...");
-								lock.lockAll();
-								System.out.println(Thread.currentThread().getName() + "All locked.");
-								try {
-									Thread.sleep(ToolBox.random(1000));
-								} catch (InterruptedException e) {}
-								System.out.println(Thread.currentThread().getName() + "Unlocking all.");
-								lock.unlockAll();
-								System.out.println(Thread.currentThread().getName() + "All unlocked.");
-							}
-						} catch (Exception e) {
-							System.err.println(Thread.currentThread().getName() + e.getMessage());
-							e.printStackTrace();
+				}
+			});
+			t.setName("[T" + i + "]: ");
+			t.setDaemon(true);
+			threads.add(t);
+		}
+		for (int i = 1; i <= nrAllThreads; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							try {
+								Thread.sleep(ToolBox.random(5000));
+							} catch (InterruptedException e) {}
+							if (System.currentTimeMillis() >= end) break;
+							if (verbose) System.out.println(Thread.currentThread().getName() + "Locking all...");
+							OnlineSectioningServer.Lock l = lock.lockAll();
+							if (verbose) System.out.println(Thread.currentThread().getName() + "All locked.");
+							if (!held.isEmpty()) violations.incrementAndGet();
+							try {
+								Thread.sleep(ToolBox.random(100));
+							} catch (InterruptedException e) {}
+							if (verbose) System.out.println(Thread.currentThread().getName() + "Unlocking all.");
+							l.release();
+							allLocks.incrementAndGet();
 						}
+					} catch (Exception e) {
+						System.err.println(Thread.currentThread().getName() + e.getMessage());
+						e.printStackTrace();
 					}
-				});
-				t.setName("[A" + i + "]: ");
-				t.start();		
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+				}
+			});
+			t.setName("[A" + i + "]: ");
+			t.setDaemon(true);
+			threads.add(t);
 		}
+		long t0 = System.currentTimeMillis();
+		for (Thread t: threads) t.start();
+		for (Thread t: threads) t.join();
+		long time = System.currentTimeMillis() - t0;
+		DecimalFormat df = new DecimalFormat("0.00");
+		System.out.println(lock.getClass().getSimpleName() + ": " + locks.get() + " locks (" + df.format(1000.0 * locks.get() / time) + " locks/s, " +
+				"average wait " + df.format(locks.get() == 0 ? 0.0 : waitNanos.get() / 1000000.0 / locks.get()) + " ms), " +
+				allLocks.get() + " lock all, " + violations.get() + " violations, " + df.format(time / 1000.0) + " s");
 	}
-
 }
@@ -25,29 +25,25 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.CacheMode;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.Session;
-import org.unitime.timetable.model.Student;
 import org.unitime.timetable.model.dao.OnlineSectioningLogDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao.StudentDAO;
+import org.unitime.timetable.util.BatchedSaver;
 
 /**
  * @author Tomas Muller
  */
-public class OnlineSectioningLogger extends Thread {
+public class OnlineSectioningLogger extends BatchedSaver<OnlineSectioningLog.Action> {
 	private static Log sLog = LogFactory.getLog(OnlineSectioningLogger.class);
-	private List<OnlineSectioningLog.Action> iActions = new Vector<OnlineSectioningLog.Action>();
-	private boolean iActive = false;
 	private boolean iEnabled = false;
-	private int iLogLimit = -1;
 	private PrintWriter iOut = null;
 	
 	private static OnlineSectioningLogger sInstance = null;
@@ -66,20 +62,16 @@ public class OnlineSectioningLogger extends Thread {
 	
 	public static void stopLogger() {
 		if (sInstance != null) {
-			sInstance.iActive = false;
 			sInstance.interrupt();
-			try {
-				sInstance.join();
-			} catch (InterruptedException e) {}
+			if (sInstance.iOut != null) { sInstance.iOut.flush(); sInstance.iOut.close(); }
+			sLog.info("Online Sectioning Logger is down (" + sInstance + ").");
 			sInstance = null;
 		}
 	}
 	
 	private OnlineSectioningLogger() {
-		super("OnlineSectioningLogger");
-		setDaemon(true);
+		super("OnlineSectioningLogger", ApplicationProperty.OnlineSchedulingLogLimit.intValue());
 		iEnabled = ApplicationProperty.OnlineSchedulingLoggingEnabled.isTrue(); 
-		iLogLimit = ApplicationProperty.OnlineSchedulingLogLimit.intValue();
 		try {
 			if (ApplicationProperty.OnlineSchedulingLogFile.value() != null)
 				iOut = new PrintWriter(new FileWriter(new File(ApplicationProperty.OnlineSchedulingLogFile.value()), true));
@@ -88,18 +80,17 @@ public class OnlineSectioningLogger extends Thread {
 		}
 	}
 	
+	@Override
+	protected Log getLog() { return sLog; }
+	
 	public boolean isEnabled() { return iEnabled; }
 	public void setEnabled(boolean enabled) { iEnabled = enabled; }
-	public boolean isActive() { return iActive; }
 
 	public void record(OnlineSectioningLog.Log log) {
 		if (log == null || !isEnabled() || !isActive()) return;
 		for (OnlineSectioningLog.Action action: log.getActionList()) {
 			if (action.hasStartTime() && action.hasStudent() && action.hasOperation() && action.hasSession()) {
-				synchronized (iActions) {
-					if (iLogLimit <= 0 || iActions.size() < iLogLimit)
-						iActions.add(action);
-				}
+				add(action);
 				if (iOut != null) {
 					synchronized (iOut) {
 						iOut.print(OnlineSectioningLog.Log.newBuilder().addAction(action).build().toString());
@@ -110,92 +101,91 @@ public class OnlineSectioningLogger extends Thread {
 		}
 	}
 	
-	public void run() {
-		sLog.info("Online Sectioning Logger is up.");
+	@Override
+	protected void save(List<OnlineSectioningLog.Action> actionsToSave) throws Exception {
+		org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
+		hibSession.setCacheMode(CacheMode.IGNORE);
 		try {
-			iActive = true;
-			while (true) {
-				try {
-					sleep(60000);
-				} catch (InterruptedException e) {
+			Map<Long, String> externalIds = getStudentExternalIds(hibSession, actionsToSave);
+			Map<Long, Session> sessions = new HashMap<Long, Session>();
+			int count = 0;
+			for (OnlineSectioningLog.Action q: actionsToSave) {
+				org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
+				log.setAction(q.toByteArray());
+				log.setOperation(q.getOperation());
+				String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
+				if (studentExternalId == null || studentExternalId.isEmpty()) {
+					studentExternalId = externalIds.get(q.getStudent().getUniqueId());
+					if (studentExternalId == null) continue;
 				}
-				List<OnlineSectioningLog.Action> actionsToSave = null;
-				synchronized (iActions) {
-					if (!iActions.isEmpty()) {
-						actionsToSave = new ArrayList<OnlineSectioningLog.Action>(iActions);
-						iActions.clear();
+				log.setStudent(studentExternalId);
+				log.setTimeStamp(new Date(q.getStartTime()));
+				if (q.hasResult())
+					log.setResult(q.getResult().getNumber());
+				if (q.hasUser() && q.getUser().hasExternalId())
+					log.setUser(q.getUser().getExternalId());
+				if (q.hasCpuTime())
+					log.setCpuTime(q.getCpuTime());
+				if (q.hasStartTime() && q.hasEndTime())
+					log.setWallTime(q.getEndTime() - q.getStartTime());
+				if (q.hasApiGetTime())
+					log.setApiGetTime(q.getApiGetTime());
+				if (q.hasApiPostTime())
+					log.setApiPostTime(q.getApiPostTime());
+				if (q.hasApiException())
+					log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
+				if (!q.getMessageList().isEmpty()) {
+					String message = null; int level = 0;
+					for (OnlineSectioningLog.Message m: q.getMessageList()) {
+						if (message != null && !message.isEmpty() && (!m.hasLevel() || level < m.getLevel().getNumber())) continue;
+						if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
+						else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
 					}
+					if (message != null && !message.isEmpty())
+						log.setMessage(message.length() > 255 ? message.substring(0, 255) : message);
 				}
-				try {
-					if (actionsToSave != null) {
-						sLog.debug("Persisting " + actionsToSave.size() + " actions...");
-						if (iLogLimit > 0 && actionsToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
-						org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
-						try {
-							Hashtable<Long, Session> sessions = new Hashtable<Long, Session>();
-							for (OnlineSectioningLog.Action q: actionsToSave) {
-								org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
-								log.setAction(q.toByteArray());
-								log.setOperation(q.getOperation());
-								String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
-								if (studentExternalId == null || studentExternalId.isEmpty()) {
-									Student student = StudentDAO.getInstance().get(q.getStudent().getUniqueId(), hibSession);
-									if (student == null) continue;
-									studentExternalId = student.getExternalUniqueId();
-								}
-								log.setStudent(studentExternalId);
-								log.setTimeStamp(new Date(q.getStartTime()));
-								if (q.hasResult())
-									log.setResult(q.getResult().getNumber());
-								if (q.hasUser() && q.getUser().hasExternalId())
-									log.setUser(q.getUser().getExternalId());
-								if (q.hasCpuTime())
-									log.setCpuTime(q.getCpuTime());
-								if (q.hasStartTime() && q.hasEndTime())
-									log.setWallTime(q.getEndTime() - q.getStartTime());
-								if (q.hasApiGetTime())
-									log.setApiGetTime(q.getApiGetTime());
-								if (q.hasApiPostTime())
-									log.setApiPostTime(q.getApiPostTime());
-								if (q.hasApiException())
-									log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
-								if (!q.getMessageList().isEmpty()) {
-									String message = null; int level = 0;
-									for (OnlineSectioningLog.Message m: q.getMessageList()) {
-										if (message != null && !message.isEmpty() && (!m.hasLevel() || level < m.getLevel().getNumber())) continue;
-										if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
-										else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
-									}
-									if (message != null && !message.isEmpty())
-										log.setMessage(message.length() > 255 ? message.substring(0, 255) : message);
-								}
-								Long sessionId = q.getSession().getUniqueId();
-								Session session = sessions.get(sessionId);
-								if (session == null) {
-									session = SessionDAO.getInstance().get(sessionId, hibSession);
-									sessions.put(sessionId, session);
-								}
-								log.setSession(session);
-								hibSession.save(log);
-							}
-							hibSession.flush();
-						} finally {
-							hibSession.close();
-						}
-					}
-				} catch (Throwable t) {
-					sLog.warn("Failed to save " + actionsToSave.size() + " log actions: " + t.getMessage(), t);
+				Long sessionId = q.getSession().getUniqueId();
+				Session session = sessions.get(sessionId);
+				if (session == null) {
+					session = SessionDAO.getInstance().get(sessionId, hibSession);
+					sessions.put(sessionId, session);
+				}
+				log.setSession(session);
+				hibSession.save(log);
+				if (++count % 100 == 0) {
+					// keep the first level cache small, inserts are sent in JDBC batches (hibernate.jdbc.batch_size)
+					hibSession.flush(); hibSession.clear();
 				}
-				if (!iActive) break;
 			}
-		} catch (Throwable t) {
-			sLog.error("Online Sectioning Logger failed: " + t.getMessage(), t);
+			hibSession.flush();
 		} finally {
-			iActive = false;
-			if (iOut != null) { iOut.flush(); iOut.close(); }
+			hibSession.close();
 		}
-		sLog.info("Online Sectioning Logger is down.");	}
-
+	}
+	
+	/**
+	 * Resolve external ids of the students that have no external id in the log (using one query per up to 1000 students)
+	 */
+	private Map<Long, String> getStudentExternalIds(org.hibernate.Session hibSession, List<OnlineSectioningLog.Action> actions) {
+		Map<Long, String> externalIds = new HashMap<Long, String>();
+		List<Long> studentIds = new ArrayList<Long>();
+		for (OnlineSectioningLog.Action q: actions) {
+			if (!q.getStudent().hasExternalId() || q.getStudent().getExternalId().isEmpty()) {
+				Long studentId = q.getStudent().getUniqueId();
+				if (!externalIds.containsKey(studentId)) {
+					externalIds.put(studentId, null);
+					studentIds.add(studentId);
+				}
+			}
+		}
+		for (int i = 0; i < studentIds.size(); i += 1000) {
+			List<Long> ids = studentIds.subList(i, Math.min(i + 1000, studentIds.size()));
+			for (Object[] o: (List<Object[]>)hibSession.createQuery(
+					"select s.uniqueId, s.externalUniqueId from Student s where s.uniqueId in (:ids)"
+					).setParameterList("ids", ids).setCacheable(false).list()) {
+				externalIds.put((Long)o[0], (String)o[1]);
+			}
+		}
+		return externalIds;
+	}
 }
@@ -34,6 +34,7 @@ import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XEnrollments;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XOffering;
@@ -72,6 +73,7 @@ public interface OnlineSectioningServer {
 	public XOffering getOffering(Long offeringId);
 	public Collection<XCourseRequest> getRequests(Long offeringId);
 	public XEnrollments getEnrollments(Long offeringId);
+	public XEnrollmentCounts getEnrollmentCounts(Long offeringId);
 	public XExpectations getExpectations(Long offeringId);
 	public Collection<Long> getInstructedOfferings(String instructorExternalId);
 	
@@ -61,7 +61,7 @@ import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
-import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XFreeTimeRequest;
 import org.unitime.timetable.onlinesectioning.model.XInstructor;
@@ -236,7 +236,7 @@ public class GetAssignment implements OnlineSectioningAction<ClassAssignmentInte
 								if (subpart.getSections().size() > 1) { hasAlt = true; break; }
 							}
 						}
-						XEnrollments enrollments = server.getEnrollments(offering.getOfferingId());
+						XEnrollmentCounts enrollments = server.getEnrollmentCounts(offering.getOfferingId());
 						for (XSection section: sections) {
 							stored.addSection(OnlineSectioningHelper.toProto(section, enrollment));
 							ClassAssignmentInterface.ClassAssignment a = ca.addClassAssignment();
@@ -337,7 +337,7 @@ public class GetAssignment implements OnlineSectioningAction<ClassAssignmentInte
 					}
 					
 					if (iMessages != null) {
-						XEnrollments enrollments = server.getEnrollments(offering.getOfferingId());
+						XEnrollmentCounts enrollments = server.getEnrollmentCounts(offering.getOfferingId());
 						f: for (EnrollmentFailure f: iMessages) {
 							XSection section = f.getSection();
 							if (!f.getCourse().getCourseId().equals(ca.getCourseId())) continue;
@@ -515,7 +515,7 @@ public class GetAssignment implements OnlineSectioningAction<ClassAssignmentInte
 			for (XOffering offering: offerings) {
 				ClassAssignmentInterface.CourseAssignment ca = new ClassAssignmentInterface.CourseAssignment();
 		    	XCourse course = offering.getControllingCourse();
-				XEnrollments enrollments = server.getEnrollments(offering.getOfferingId());
+				XEnrollmentCounts enrollments = server.getEnrollmentCounts(offering.getOfferingId());
 				
 		    	if (server.isOfferingLocked(course.getOfferingId()))
 					ca.setLocked(true);
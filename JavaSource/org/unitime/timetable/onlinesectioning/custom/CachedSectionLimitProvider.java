@@ -0,0 +1,316 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.custom;
+
+import java.text.DecimalFormat;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.cpsolver.studentsct.model.Section;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
+
+/**
+ * Section limit provider decorator. The section limits are retrieved from the underlying provider (one section at a time)
+ * by a bounded pool of worker threads that is shared by all the callers. Concurrent requests for the same class are coalesced
+ * into a single call of the underlying provider.<br>
+ * Retrieved limits are cached: a cached limit that is younger than the time to live is returned as it is, an older limit
+ * (up to the maximal stale time) is returned while a fresh one is retrieved in the background. Callers never wait longer
+ * than the timeout, limits that are not retrieved by then are omitted (or a {@link SectioningException} is thrown
+ * by {@link #getSectionLimit(AcademicSessionInfo, Long, Section)}).<br>
+ * To use it, set unitime.custom.SectionLimitProvider to this class and unitime.custom.SectionLimitProvider.delegate to the
+ * actual provider.
+ *
+ * @author Tomas Muller
+ */
+public class CachedSectionLimitProvider implements SectionLimitProvider {
+	private static StudentSectioningMessages MSG = Localization.create(StudentSectioningMessages.class);
+	private static Logger sLog = Logger.getLogger(CachedSectionLimitProvider.class);
+	private static DecimalFormat sDF = new DecimalFormat("0.00");
+
+	private SectionLimitProvider iProvider;
+	private ThreadPoolExecutor iExecutor;
+	private long iTimeToLive, iMaxStale, iTimeout;
+	private Map<Long, CachedLimit> iCache = new ConcurrentHashMap<Long, CachedLimit>();
+	private ConcurrentHashMap<Long, Future<int[]>> iPending = new ConcurrentHashMap<Long, Future<int[]>>();
+	private AtomicLong iHits = new AtomicLong(0), iStaleHits = new AtomicLong(0), iMisses = new AtomicLong(0), iCoalesced = new AtomicLong(0);
+	private AtomicLong iTimeouts = new AtomicLong(0), iFailures = new AtomicLong(0);
+	private AtomicLong iCalls = new AtomicLong(0), iCallTime = new AtomicLong(0), iMaxCallTime = new AtomicLong(0);
+
+	public CachedSectionLimitProvider() throws SectioningException {
+		this(createProvider(),
+			ApplicationProperty.CustomizationSectionLimitThreads.intValue(),
+			1000l * ApplicationProperty.CustomizationSectionLimitTimeToLive.intValue(),
+			1000l * ApplicationProperty.CustomizationSectionLimitMaxStale.intValue(),
+			ApplicationProperty.CustomizationSectionLimitTimeout.intValue());
+	}
+
+	/**
+	 * @param provider underlying section limit provider
+	 * @param nrThreads maximal number of concurrent calls of the underlying provider
+	 * @param timeToLive time in milliseconds for which a cached limit is used as it is
+	 * @param maxStale time in milliseconds for which a cached limit is used while it is being refreshed
+	 * @param timeout maximal time in milliseconds a caller waits for the limits to be retrieved
+	 */
+	public CachedSectionLimitProvider(SectionLimitProvider provider, int nrThreads, long timeToLive, long maxStale, long timeout) {
+		iProvider = provider;
+		iTimeToLive = timeToLive;
+		iMaxStale = Math.max(timeToLive, maxStale);
+		iTimeout = timeout;
+		iExecutor = new ThreadPoolExecutor(Math.max(1, nrThreads), Math.max(1, nrThreads), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+		iExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private static SectionLimitProvider createProvider() throws SectioningException {
+		try {
+			return (SectionLimitProvider)Class.forName(ApplicationProperty.CustomizationSectionLimitDelegate.value()).newInstance();
+		} catch (Exception e) {
+			throw new SectioningException(MSG.exceptionCustomSectionLimitsFailed(e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Underlying section limit provider
+	 */
+	public SectionLimitProvider getProvider() { return iProvider; }
+
+	/**
+	 * Retrieve the limit of the given section, unless there is already a pending call for the same class
+	 */
+	protected Future<int[]> retrieve(final AcademicSessionInfo session, final Long courseId, final Section section) {
+		Future<int[]> pending = iPending.get(section.getId());
+		if (pending != null) {
+			iCoalesced.incrementAndGet();
+			return pending;
+		}
+		FutureTask<int[]> task = new FutureTask<int[]>(new Callable<int[]>() {
+			@Override
+			public int[] call() throws Exception {
+				try {
+					int[] limit = iProvider.getSectionLimit(session, courseId, section);
+					if (limit != null)
+						iCache.put(section.getId(), new CachedLimit(limit));
+					return limit;
+				} catch (Exception e) {
+					iFailures.incrementAndGet();
+					sLog.warn("Failed to retrieve section limit for " + section.getName(courseId) + " (" + session + "): " + e.getMessage());
+					throw e;
+				} finally {
+					iPending.remove(section.getId());
+				}
+			}
+		});
+		pending = iPending.putIfAbsent(section.getId(), task);
+		if (pending != null) {
+			iCoalesced.incrementAndGet();
+			return pending;
+		}
+		iExecutor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Cached limit of the given section, refreshed in the background when older than the time to live
+	 * @param any use a cached limit regardless of its age
+	 * @return null if there is no usable cached limit
+	 */
+	protected int[] getCachedLimit(AcademicSessionInfo session, Long courseId, Section section, boolean any) {
+		CachedLimit cached = iCache.get(section.getId());
+		if (cached == null) return null;
+		long age = System.currentTimeMillis() - cached.getCreated();
+		if (age <= iTimeToLive) {
+			iHits.incrementAndGet();
+			return cached.getLimit();
+		}
+		if (!any && age > iMaxStale) {
+			iCache.remove(section.getId());
+			return null;
+		}
+		iStaleHits.incrementAndGet();
+		retrieve(session, courseId, section);
+		return cached.getLimit();
+	}
+
+	protected Map<Long, int[]> getSectionLimits(AcademicSessionInfo session, Long courseId, Collection<Section> sections, boolean any) {
+		long t0 = System.currentTimeMillis();
+		Map<Long, int[]> ret = new HashMap<Long, int[]>();
+		Map<Section, Future<int[]>> futures = new HashMap<Section, Future<int[]>>();
+		for (Section section: sections) {
+			int[] limit = getCachedLimit(session, courseId, section, any);
+			if (limit != null) {
+				ret.put(section.getId(), limit);
+			} else {
+				iMisses.incrementAndGet();
+				futures.put(section, retrieve(session, courseId, section));
+			}
+		}
+		for (Map.Entry<Section, Future<int[]>> entry: futures.entrySet()) {
+			try {
+				int[] limit = entry.getValue().get(Math.max(0l, t0 + iTimeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				if (limit != null) ret.put(entry.getKey().getId(), limit);
+			} catch (TimeoutException e) {
+				iTimeouts.incrementAndGet();
+				sLog.info("Section limit for " + entry.getKey().getName(courseId) + " (" + session + ") not retrieved in " + iTimeout + " ms.");
+			} catch (ExecutionException e) {
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+		called(System.currentTimeMillis() - t0);
+		return ret;
+	}
+
+	@Override
+	public int[] getSectionLimit(AcademicSessionInfo session, Long courseId, Section section) throws SectioningException {
+		long t0 = System.currentTimeMillis();
+		try {
+			int[] limit = getCachedLimit(session, courseId, section, false);
+			if (limit != null) return limit;
+			iMisses.incrementAndGet();
+			return retrieve(session, courseId, section).get(iTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			iTimeouts.incrementAndGet();
+			throw new SectioningException(MSG.exceptionCustomSectionLimitsFailed("timeout after " + iTimeout + " ms"));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SectioningException) throw (SectioningException)e.getCause();
+			throw new SectioningException(MSG.exceptionCustomSectionLimitsFailed(e.getCause() == null ? e.getMessage() : e.getCause().getMessage()), e.getCause());
+		} catch (InterruptedException e) {
+			throw new SectioningException(MSG.exceptionCustomSectionLimitsFailed(e.getMessage()), e);
+		} finally {
+			called(System.currentTimeMillis() - t0);
+		}
+	}
+
+	@Override
+	public Map<Long, int[]> getSectionLimits(AcademicSessionInfo session, Long courseId, Collection<Section> sections) {
+		return getSectionLimits(session, courseId, sections, false);
+	}
+
+	@Override
+	public Map<Long, int[]> getSectionLimitsFromCache(AcademicSessionInfo session, Long courseId, Collection<Section> sections) {
+		return getSectionLimits(session, courseId, sections, true);
+	}
+
+	/**
+	 * Same as {@link #getSectionLimits(AcademicSessionInfo, Long, Collection)}, the time spent is recorded in the API get time of the helper's action
+	 */
+	public Map<Long, int[]> getSectionLimits(OnlineSectioningHelper helper, AcademicSessionInfo session, Long courseId, Collection<Section> sections) {
+		long t0 = System.currentTimeMillis();
+		long failures = iFailures.get() + iTimeouts.get();
+		try {
+			return getSectionLimits(session, courseId, sections, false);
+		} finally {
+			helper.getAction().setApiGetTime(System.currentTimeMillis() - t0);
+			if (iFailures.get() + iTimeouts.get() > failures)
+				helper.getAction().setApiException(MSG.exceptionCustomSectionLimitsFailed("some section limits were not retrieved"));
+		}
+	}
+
+	/**
+	 * Same as {@link #getSectionLimitsFromCache(AcademicSessionInfo, Long, Collection)}, the time spent is recorded in the API get time of the helper's action
+	 */
+	public Map<Long, int[]> getSectionLimitsFromCache(OnlineSectioningHelper helper, AcademicSessionInfo session, Long courseId, Collection<Section> sections) {
+		long t0 = System.currentTimeMillis();
+		try {
+			return getSectionLimits(session, courseId, sections, true);
+		} finally {
+			helper.getAction().setApiGetTime(System.currentTimeMillis() - t0);
+		}
+	}
+
+	private void called(long time) {
+		iCalls.incrementAndGet();
+		iCallTime.addAndGet(time);
+		long max = iMaxCallTime.get();
+		while (time > max && !iMaxCallTime.compareAndSet(max, time))
+			max = iMaxCallTime.get();
+	}
+
+	/**
+	 * Remove all cached limits
+	 */
+	public void clearCache() {
+		iCache.clear();
+	}
+
+	/**
+	 * Stop the worker threads, pending calls of the underlying provider are not waited for
+	 */
+	public void dispose() {
+		iExecutor.shutdownNow();
+	}
+
+	/**
+	 * Cache, latency and throughput statistics
+	 */
+	public String getStatistics() {
+		long calls = iCalls.get();
+		return "cached=" + iCache.size() + ", hits=" + iHits.get() + ", stale=" + iStaleHits.get() + ", misses=" + iMisses.get() + ", coalesced=" + iCoalesced.get() +
+				", pending=" + iPending.size() + ", timeouts=" + iTimeouts.get() + ", failures=" + iFailures.get() + ", calls=" + calls +
+				", avgTime=" + (calls == 0 ? "0" : sDF.format(((double)iCallTime.get()) / calls)) + " ms, maxTime=" + iMaxCallTime.get() + " ms";
+	}
+
+	@Override
+	public String toString() {
+		return "CachedSectionLimitProvider[" + iProvider.getClass().getSimpleName() + "]{" + getStatistics() + "}";
+	}
+
+	private static class CachedLimit {
+		private int[] iLimit;
+		private long iCreated;
+
+		private CachedLimit(int[] limit) {
+			iLimit = limit;
+			iCreated = System.currentTimeMillis();
+		}
+
+		public int[] getLimit() { return iLimit; }
+		public long getCreated() { return iCreated; }
+	}
+
+	private static class WorkerFactory implements ThreadFactory {
+		private AtomicInteger iIndex = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "SectionLimit-" + iIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
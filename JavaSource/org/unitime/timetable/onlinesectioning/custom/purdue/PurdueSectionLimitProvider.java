@@ -24,11 +24,18 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,6 +64,7 @@ public class PurdueSectionLimitProvider implements SectionLimitProvider, Section
 	private Pattern iContentRE = Pattern.compile(sContentRE, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.UNIX_LINES);
 	private Pattern iTableRE = Pattern.compile(sTableRE, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.UNIX_LINES);
 	public static int sConcurrencyLimit = 10;
+	private static ExecutorService sExecutor = null;
 	
 	private Hashtable<Long, int[]> iCache = new Hashtable<Long, int[]>();
 
@@ -136,88 +144,81 @@ public class PurdueSectionLimitProvider implements SectionLimitProvider, Section
 	@Override
 	public Map<Long, int[]> getSectionLimits(AcademicSessionInfo session, Long courseId, Collection<Section> sections) {
 		Hashtable<Long, int[]> ret = new Hashtable<Long, int[]>();
-		ThreadPool pool = new ThreadPool();
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
 		for (Section section: sections) {
-			pool.retrieveLimit(session, courseId, section.getId(), section.getName(courseId), ret);
+			tasks.add(getExecutor().submit(new Worker(session, courseId, section.getId(), section.getName(courseId), ret)));
 		}
-		pool.waitForAll();
+		waitForAll(tasks);
 		return ret;
 	}
 
 	@Override
 	public Map<Long, int[]> getSectionLimitsFromCache(AcademicSessionInfo session, Long courseId, Collection<Section> sections) {
 		Hashtable<Long, int[]> ret = new Hashtable<Long, int[]>();
-		ThreadPool pool = new ThreadPool();
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
 		for (Section section: sections) {
 			int[] limits = iCache.get(section.getId());
 			if (limits != null) {
 				ret.put(section.getId(), limits);
 			} else {
-				pool.retrieveLimit(session, courseId, section.getId(), section.getName(courseId), ret);
+				tasks.add(getExecutor().submit(new Worker(session, courseId, section.getId(), section.getName(courseId), ret)));
 			}
 		}
-		pool.waitForAll();
+		waitForAll(tasks);
 		return ret;
 	}
-
-	private class ThreadPool {
-		private Set<Worker> iWorkers = new HashSet<Worker>();
-		
-		private void retrieveLimit(AcademicSessionInfo session, Long courseId, Long classId, String customClassSuffix, Hashtable<Long, int[]> ret) {
-			synchronized (iWorkers) {
-				while (iWorkers.size() > sConcurrencyLimit) {
-					try {
-						iWorkers.wait();
-					} catch (InterruptedException e) {}
+	
+	/**
+	 * Shared pool of (at most {@link #sConcurrencyLimit}) threads retrieving the section limits
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (sExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(sConcurrencyLimit, sConcurrencyLimit, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				private int iIndex = 0;
+				@Override
+				public synchronized Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "PuSectLimitP-" + (++iIndex));
+					thread.setDaemon(true);
+					return thread;
 				}
-				Worker w = new Worker(session, courseId, classId, customClassSuffix, ret);
-				iWorkers.add(w);
-				w.start();
-			}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			sExecutor = executor;
 		}
-		
-		private void done(Worker w) {
-			synchronized (iWorkers) {
-				iWorkers.remove(w);
-				iWorkers.notify();
-			}
+		return sExecutor;
+	}
+	
+	private void waitForAll(List<Future<?>> tasks) {
+		for (Future<?> task: tasks) {
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				break;
+			} catch (ExecutionException e) {}
 		}
+	}
+
+	private class Worker implements Runnable {
+		private AcademicSessionInfo iSession;
+		private Long iCourseId, iClassId;
+		private String iClassName;
+		private Hashtable<Long, int[]> iResults;
 		
-		private void waitForAll() {
-			synchronized (iWorkers) {
-				while (!iWorkers.isEmpty()) {
-					try {
-						iWorkers.wait();
-					} catch (InterruptedException e) {}
-				}
-			}
+		private Worker(AcademicSessionInfo session, Long courseId, Long classId, String className, Hashtable<Long, int[]> ret) {
+			iSession = session;
+			iCourseId = courseId;
+			iClassId = classId;
+			iClassName = className;
+			iResults = ret;
 		}
-	
-		private class Worker extends Thread {
-			private AcademicSessionInfo iSession;
-			private Long iCourseId, iClassId;
-			private String iClassName;
-			private Hashtable<Long, int[]> iResults;
-			
-			private Worker(AcademicSessionInfo session, Long courseId, Long classId, String className, Hashtable<Long, int[]> ret) {
-				iSession = session;
-				iCourseId = courseId;
-				iClassId = classId;
-				iClassName = className;
-				iResults = ret;
-				setName("PuSectLimitP-" + classId);
-			}
-			
-			@Override
-			public void run() {
-				try {
-					int[] limit = getSectionLimit(iSession, iCourseId, iClassId, iClassName);
-					iResults.put(iClassId, limit);
-				} catch (SectioningException e) {
-					sLog.warn("Failed to retrieve section limit for "+iClassName+" ("+iSession.getTerm()+" "+iSession.getYear()+"): "+e.getMessage());
-				} finally {
-					done(this);
-				}
+		
+		@Override
+		public void run() {
+			try {
+				int[] limit = getSectionLimit(iSession, iCourseId, iClassId, iClassName);
+				iResults.put(iClassId, limit);
+			} catch (SectioningException e) {
+				sLog.warn("Failed to retrieve section limit for "+iClassName+" ("+iSession.getTerm()+" "+iSession.getYear()+"): "+e.getMessage());
 			}
 		}
 	}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.custom.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.Instructor;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Subpart;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.custom.CachedSectionLimitProvider;
+import org.unitime.timetable.onlinesectioning.custom.purdue.PurdueSectionLimitProvider;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Section limit provider test: {@link PurdueSectionLimitProvider} wrapped in a {@link CachedSectionLimitProvider} is pointed to
+ * a local stub HTTP server that returns the class detail pages (with a configurable delay). The number of HTTP calls, the maximal
+ * number of concurrent HTTP calls, and the retrieval times are printed out.<br>
+ * Parameters (system properties): test.sections (default 200), test.delay (ms, default 100), test.threads (default 10), test.timeout (ms, default 5000).
+ *
+ * @author Tomas Muller
+ */
+public class SectionLimitProviderTest {
+	private static AtomicInteger sCalls = new AtomicInteger(0), sActive = new AtomicInteger(0), sMaxActive = new AtomicInteger(0);
+
+	private static class StubHandler implements HttpHandler {
+		private long iDelay;
+
+		StubHandler(long delay) { iDelay = delay; }
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			sCalls.incrementAndGet();
+			int active = sActive.incrementAndGet();
+			synchronized (sMaxActive) {
+				if (active > sMaxActive.get()) sMaxActive.set(active);
+			}
+			try {
+				Thread.sleep(iDelay);
+			} catch (InterruptedException e) {}
+			String query = exchange.getRequestURI().getQuery();
+			int crn = Integer.parseInt(query.substring(query.indexOf("crn=") + 4));
+			String page = "<html><body><table class=\"datadisplaytable\" summary=\"This layout table is used to present the seating numbers.\" width=\"100%\"><tr>" +
+					"<td class=\"dddefault\">" + (20 + crn % 30) + "</td><td class=\"dddefault\">" + (crn % 20) + "</td><td class=\"dddefault\">" + (20 + crn % 30 - crn % 20) + "</td>" +
+					"</tr></table></body></html>";
+			byte[] bytes = page.getBytes("UTF-8");
+			exchange.getResponseHeaders().set("Content-Type", "text/html");
+			exchange.sendResponseHeaders(200, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+			sActive.decrementAndGet();
+		}
+	}
+
+	public static void main(String[] args) {
+		try {
+			int nrSections = Integer.getInteger("test.sections", 200);
+			long delay = Long.getLong("test.delay", 100l);
+			int nrThreads = Integer.getInteger("test.threads", 10);
+			long timeout = Long.getLong("test.timeout", 5000l);
+
+			HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			server.createContext("/limits", new StubHandler(delay));
+			server.setExecutor(Executors.newCachedThreadPool());
+			server.start();
+			PurdueSectionLimitProvider.sUrl = "http://localhost:" + server.getAddress().getPort() + "/limits?term=:year:term&crn=:crn";
+
+			AcademicSessionInfo session = new AcademicSessionInfo(1l, "2016", "Fall", "PWL");
+			Offering offering = new Offering(1l, "TEST 101");
+			Course course = new Course(1l, "TEST", "101", offering, -1, -1);
+			Config config = new Config(1l, -1, "1", offering);
+			Subpart subpart = new Subpart(1l, "Lec", "Lec", config, null);
+			List<Section> sections = new ArrayList<Section>();
+			for (int i = 0; i < nrSections; i++)
+				sections.add(new Section(10000l + i, -1, String.valueOf(10000 + i), subpart, null, new ArrayList<Instructor>(), null));
+
+			CachedSectionLimitProvider provider = new CachedSectionLimitProvider(new PurdueSectionLimitProvider(), nrThreads, 60000l, 600000l, timeout);
+
+			long t0 = System.currentTimeMillis();
+			Map<Long, int[]> limits = provider.getSectionLimits(session, course.getId(), sections);
+			System.out.println("Cold: " + limits.size() + " of " + nrSections + " limits in " + (System.currentTimeMillis() - t0) + " ms, " +
+					sCalls.get() + " HTTP calls, at most " + sMaxActive.get() + " concurrent");
+
+			sCalls.set(0); sMaxActive.set(0);
+			t0 = System.currentTimeMillis();
+			limits = provider.getSectionLimits(session, course.getId(), sections);
+			System.out.println("Warm: " + limits.size() + " of " + nrSections + " limits in " + (System.currentTimeMillis() - t0) + " ms, " + sCalls.get() + " HTTP calls");
+
+			provider.clearCache();
+			sCalls.set(0); sMaxActive.set(0);
+			final CachedSectionLimitProvider p = provider;
+			final AcademicSessionInfo s = session;
+			final Long courseId = course.getId();
+			final List<Section> sects = sections;
+			List<Thread> callers = new ArrayList<Thread>();
+			for (int i = 0; i < 5; i++) {
+				Thread caller = new Thread() {
+					@Override
+					public void run() {
+						p.getSectionLimits(s, courseId, sects);
+					}
+				};
+				callers.add(caller);
+				caller.start();
+			}
+			t0 = System.currentTimeMillis();
+			for (Thread caller: callers)
+				caller.join();
+			System.out.println("Coalesced: 5 concurrent callers in " + (System.currentTimeMillis() - t0) + " ms, " + sCalls.get() + " HTTP calls, at most " + sMaxActive.get() + " concurrent");
+
+			System.out.println(provider);
+			provider.dispose();
+			server.stop(0);
+			System.exit(sMaxActive.get() <= nrThreads ? 0 : 1);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.match;
+
+import java.util.BitSet;
+
+import org.unitime.timetable.onlinesectioning.server.StudentIndex;
+
+/**
+ * Student matcher that is able to use the {@link StudentIndex} of the server (when available)
+ * to limit the students that need to be checked by {@link StudentMatcher#match(org.unitime.timetable.onlinesectioning.model.XStudentId)}.
+ *
+ * @author Tomas Muller
+ */
+public interface IndexedStudentMatcher extends StudentMatcher {
+	/**
+	 * Students that can match (the matcher is still called on each of them), null when the index cannot be used
+	 */
+	public BitSet select(StudentIndex index);
+}
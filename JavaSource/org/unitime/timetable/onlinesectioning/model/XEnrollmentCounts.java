@@ -0,0 +1,151 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enrollment and wait-list counts of an instructional offering (per section, configuration, course, and reservation).<br>
+ * Unlike {@link XEnrollments}, the counts do not keep the enrollments themselves: the servers keep one instance per offering
+ * and update it incrementally (using {@link XEnrollmentCounts#add(XCourseRequest)} and {@link XEnrollmentCounts#remove(XCourseRequest)})
+ * every time a course request is added to or removed from the offering. A copy of the counts is returned by
+ * {@link org.unitime.timetable.onlinesectioning.OnlineSectioningServer#getEnrollmentCounts(Long)}.
+ *
+ * @author Tomas Muller
+ */
+public class XEnrollmentCounts implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private Long iOfferingId;
+	private int iEnrollment = 0, iWaitlist = 0;
+	private Map<Long, Integer> iSection2Enrl = new HashMap<Long, Integer>();
+	private Map<Long, Integer> iConfig2Enrl = new HashMap<Long, Integer>();
+	private Map<Long, Integer> iCourse2Enrl = new HashMap<Long, Integer>();
+	private Map<Long, Integer> iReservation2Enrl = new HashMap<Long, Integer>();
+	private Map<Long, Integer> iCourse2Wait = new HashMap<Long, Integer>();
+
+	public XEnrollmentCounts(Long offeringId) {
+		iOfferingId = offeringId;
+	}
+
+	public XEnrollmentCounts(Long offeringId, Collection<XCourseRequest> requests) {
+		this(offeringId);
+		if (requests != null)
+			for (XCourseRequest request: requests)
+				add(request);
+	}
+
+	public XEnrollmentCounts(XEnrollmentCounts counts) {
+		synchronized (counts) {
+			iOfferingId = counts.iOfferingId;
+			iEnrollment = counts.iEnrollment;
+			iWaitlist = counts.iWaitlist;
+			iSection2Enrl.putAll(counts.iSection2Enrl);
+			iConfig2Enrl.putAll(counts.iConfig2Enrl);
+			iCourse2Enrl.putAll(counts.iCourse2Enrl);
+			iReservation2Enrl.putAll(counts.iReservation2Enrl);
+			iCourse2Wait.putAll(counts.iCourse2Wait);
+		}
+	}
+
+	public Long getOfferingId() { return iOfferingId; }
+
+	/**
+	 * Add the given course request (in its current state) into the counts
+	 */
+	public synchronized void add(XCourseRequest request) {
+		update(request, 1);
+	}
+
+	/**
+	 * Remove the given course request (as it was when it was added) from the counts
+	 */
+	public synchronized void remove(XCourseRequest request) {
+		update(request, -1);
+	}
+
+	/**
+	 * Create a copy of the counts that will not change when the enrollments of the offering change
+	 */
+	public XEnrollmentCounts snapshot() {
+		return new XEnrollmentCounts(this);
+	}
+
+	private static void inc(Map<Long, Integer> counts, Long id, int delta) {
+		Integer count = counts.get(id);
+		int value = (count == null ? 0 : count.intValue()) + delta;
+		if (value == 0)
+			counts.remove(id);
+		else
+			counts.put(id, value);
+	}
+
+	private void update(XCourseRequest request, int delta) {
+		XEnrollment enrollment = request.getEnrollment();
+		if (enrollment != null) {
+			if (!enrollment.getOfferingId().equals(iOfferingId)) return;
+			iEnrollment += delta;
+			inc(iConfig2Enrl, enrollment.getConfigId(), delta);
+			inc(iCourse2Enrl, enrollment.getCourseId(), delta);
+			if (enrollment.getReservation() != null)
+				inc(iReservation2Enrl, enrollment.getReservation().getReservationId(), delta);
+			for (Long sectionId: enrollment.getSectionIds())
+				inc(iSection2Enrl, sectionId, delta);
+		} else if (request.isWaitlist()) {
+			boolean waitlisted = false;
+			for (XCourseId course: request.getCourseIds())
+				if (iOfferingId.equals(course.getOfferingId())) {
+					inc(iCourse2Wait, course.getCourseId(), delta);
+					waitlisted = true;
+				}
+			if (waitlisted) iWaitlist += delta;
+		}
+	}
+
+	private static int get(Map<Long, Integer> counts, Long id) {
+		Integer count = counts.get(id);
+		return count == null ? 0 : count.intValue();
+	}
+
+	public int countEnrollments() { return iEnrollment; }
+
+	public int countEnrollmentsForSection(Long sectionId) { return get(iSection2Enrl, sectionId); }
+
+	public int countEnrollmentsForConfig(Long configId) { return get(iConfig2Enrl, configId); }
+
+	public int countEnrollmentsForCourse(Long courseId) { return get(iCourse2Enrl, courseId); }
+
+	public int countEnrollmentsForReservation(Long reservationId) { return get(iReservation2Enrl, reservationId); }
+
+	/** Number of wait-listed (and not enrolled) course requests of the offering */
+	public int countWaitlisted() { return iWaitlist; }
+
+	/** Number of wait-listed (and not enrolled) course requests containing the given course */
+	public int countWaitlistedForCourse(Long courseId) { return get(iCourse2Wait, courseId); }
+
+	@Override
+	public String toString() {
+		return "XEnrollmentCounts{offering=" + iOfferingId + ", enrl=" + iEnrollment + ", wait=" + iWaitlist + ", sections=" + iSection2Enrl + ", configs=" + iConfig2Enrl +
+				", courses=" + iCourse2Enrl + ", reservations=" + iReservation2Enrl + ", waitlist=" + iCourse2Wait + "}";
+	}
+}
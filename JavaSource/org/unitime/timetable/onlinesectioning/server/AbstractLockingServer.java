@@ -27,9 +27,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.ConcurrentMultiLock;
 import org.unitime.timetable.onlinesectioning.MultiLock;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
@@ -51,15 +53,21 @@ public abstract class AbstractLockingServer extends AbstractServer {
 	
 	protected AbstractLockingServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
 		super(session, allowAsyncCalls);
-		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock = createMultiLock();
 	}
 	
 	@Override
 	protected void load(OnlineSectioningServerContext context) {
-		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock = createMultiLock();
 		super.load(context);
 	}
 	
+	protected MultiLock createMultiLock() {
+		if (ApplicationProperty.OnlineSchedulingServerConcurrentLocks.isTrue())
+			return new ConcurrentMultiLock(getAcademicSession());
+		return new MultiLock(getAcademicSession());
+	}
+	
 	@Override
 	public Lock readLock() {
 		if (iLock == null)
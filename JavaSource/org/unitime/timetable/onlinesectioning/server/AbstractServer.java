@@ -32,7 +32,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
@@ -50,7 +49,6 @@ import org.hibernate.CacheMode;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.jgroups.blocks.locking.LockService;
 import org.unitime.localization.impl.Localization;
-import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
 import org.unitime.timetable.gwt.shared.SectioningException;
@@ -62,7 +60,6 @@ import org.unitime.timetable.model.SolverPredefinedSetting;
 import org.unitime.timetable.model.StudentClassEnrollment;
 import org.unitime.timetable.model.TravelTime;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.CacheElement;
 import org.unitime.timetable.onlinesectioning.HasCacheMode;
@@ -76,12 +73,14 @@ import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.custom.CourseDetailsProvider;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XEnrollments;
 import org.unitime.timetable.onlinesectioning.model.XTime;
+import org.unitime.timetable.onlinesectioning.solver.OfferingFragmentCache;
 import org.unitime.timetable.onlinesectioning.updates.CheckAllOfferingsAction;
 import org.unitime.timetable.onlinesectioning.updates.PersistExpectedSpacesAction;
 import org.unitime.timetable.onlinesectioning.updates.ReloadAllData;
-import org.unitime.timetable.util.Formats;
+import org.unitime.timetable.onlinesectioning.updates.StudentEmail;
 import org.unitime.timetable.util.MemoryCounter;
 
 /**
@@ -95,7 +94,6 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	private OnlineSectioningActionFactory iActionFactory = null;
 	
 	protected AsyncExecutor iExecutor = null;
-	private Queue<Runnable> iExecutorQueue = new LinkedList<Runnable>();
 	private HashSet<CacheElement<Long>> iOfferingsToPersistExpectedSpaces = new HashSet<CacheElement<Long>>();
 	private static ThreadLocal<LinkedList<OnlineSectioningHelper>> sHelper = new ThreadLocal<LinkedList<OnlineSectioningHelper>>();
 	protected Map<String, Object> iProperties = new HashMap<String, Object>();
@@ -120,7 +118,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			AcademicSessionInfo academicSession = new AcademicSessionInfo(session);
 			iLog = LogFactory.getLog(OnlineSectioningServer.class.getName() + ".server[" + academicSession.toCompactString() + "]");
 			iProperties.put("AcademicSession", academicSession);
-			iExecutor = new AsyncExecutor(academicSession);
+			iExecutor = new AsyncExecutor(academicSession, iLog);
 			iExecutor.start();
 		} finally {
 			hibSession.close();
@@ -143,7 +141,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		iLog = LogFactory.getLog(OnlineSectioningServer.class.getName() + ".server[" + session.toCompactString() + "]");
 		iProperties.put("AcademicSession", session);
 		if (allowAsyncCalls) {
-			iExecutor = new AsyncExecutor(session);
+			iExecutor = new AsyncExecutor(session, iLog);
 			iExecutor.start();
 		}
 	}
@@ -441,74 +439,52 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			return;
 		}
 		final String locale = Localization.getLocale();
-		synchronized (iExecutorQueue) {
-			iExecutorQueue.offer(new Runnable() {
-				@Override
-				public void run() {
-					Localization.setLocale(locale);
-					try {
-						callback.onSuccess(execute(action, user));
-					} catch (Throwable t) {
-						callback.onFailure(t);
-					}
-				}
-				
-				@Override
-				public String toString() {
-					return action.name();
+		boolean accepted = iExecutor.submit(getExecutorKey(action), new Runnable() {
+			@Override
+			public void run() {
+				Localization.setLocale(locale);
+				try {
+					callback.onSuccess(execute(action, user));
+				} catch (Throwable t) {
+					callback.onFailure(t);
 				}
-			});
-			iExecutorQueue.notify();
-		}
-	}
-	
-	public class AsyncExecutor extends Thread {
-		private boolean iStop = false;
-		
-		public AsyncExecutor(AcademicSessionInfo session) {
-			setName("AsyncExecutor[" + session + "]");
-			setDaemon(true);
-		}
-		
-		public void run() {
+			}
+			
+			@Override
+			public String toString() {
+				return action.name();
+			}
+		});
+		if (!accepted) {
 			try {
-				ApplicationProperties.setSessionId(getAcademicSession().getUniqueId());
-				Runnable job;
-				while (!iStop) {
-					synchronized (iExecutorQueue) {
-						job = iExecutorQueue.poll();
-						if (job == null) {
-							try {
-								iLog.info("Executor is waiting for a new job...");
-								iExecutorQueue.wait();
-							} catch (InterruptedException e) {}
-							continue;
-						}		
-					}
-					job.run();
-					if (_RootDAO.closeCurrentThreadSessions())
-						iLog.debug("Job " + job + " did not close current-thread hibernate session.");
-				}
-				iLog.info("Executor stopped.");
-			} finally {
-				ApplicationProperties.setSessionId(null);
-				Localization.removeLocale();
-				Formats.removeFormats();
+				callback.onSuccess(execute(action, user));
+			} catch (Throwable t) {
+				callback.onFailure(t);
 			}
 		}
-		
+	}
+	
+	/**
+	 * Asynchronous actions with the same key are executed in the order in which they were submitted and never in parallel.
+	 * Actions of a student (e.g., student email) are keyed by the student id, other actions (null key) are executed one at a time.
+	 */
+	protected Object getExecutorKey(OnlineSectioningAction<?> action) {
+		if (action instanceof StudentEmail)
+			return ((StudentEmail)action).getStudentId();
+		return null;
+	}
+	
+	public AsyncExecutor getExecutor() {
+		return iExecutor;
 	}
 	
 	@Override
 	public void unload() {
-		if (iExecutor != null) {
-			iExecutor.iStop = true;
-			synchronized (iExecutorQueue) {
-				iExecutorQueue.notify();
-			}
-		}
+		if (iExecutor != null)
+			iExecutor.stop(1000l * ApplicationProperty.OnlineSchedulingServerAsyncDrainTimeout.intValue());
 		if (iMasterThread != null)
 			iMasterThread.dispose();
+		OfferingFragmentCache.clear(getAcademicSession().getUniqueId());
 	}
 
 	@Override
@@ -676,6 +652,11 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		return new XEnrollments(offeringId, getRequests(offeringId));
 	}
 	
+	@Override
+	public XEnrollmentCounts getEnrollmentCounts(Long offeringId) {
+		return new XEnrollmentCounts(offeringId, getRequests(offeringId));
+	}
+	
 	private class MasterAcquiringThread extends Thread {
 		private java.util.concurrent.locks.Lock iLock;
 		private AtomicBoolean iMaster = new AtomicBoolean(false);
@@ -694,20 +675,19 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		}
 		
 		private void executeLoadOnMaster() {
-			synchronized (iExecutorQueue) {
-				iExecutorQueue.offer(new Runnable() {
-					@Override
-					public void run() {
-						loadOnMaster(iContext);
-					}
-					
-					@Override
-					public String toString() {
-						return "load-on-master";
-					}
-				});
-				iExecutorQueue.notify();
+			Runnable load = new Runnable() {
+				@Override
+				public void run() {
+					loadOnMaster(iContext);
+				}
+				
+				@Override
+				public String toString() {
+					return "load-on-master";
+				}
 			};
+			if (iExecutor == null || !iExecutor.submit(null, load))
+				load.run();
 		}
 		
 		@Override
@@ -0,0 +1,287 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.util.Formats;
+
+/**
+ * Asynchronous executor of an online sectioning server (used by {@link AbstractServer#execute(org.unitime.timetable.onlinesectioning.OnlineSectioningAction, org.unitime.timetable.onlinesectioning.OnlineSectioningLog.Entity, org.unitime.timetable.onlinesectioning.OnlineSectioningServer.ServerCallback)}).<br>
+ * Jobs are processed by a pool of worker threads. Each job has a key (e.g., a student id, or null for session-wide jobs):
+ * jobs with the same key are executed one at a time in the order in which they were submitted, jobs with different keys can run in parallel.<br>
+ * The queue is bounded softly: when the limit is reached, a thread that is not a worker of this executor waits (up to the given time)
+ * for the queue to go down before its job is accepted. Workers never wait, so that a job can always submit a follow-up job.<br>
+ * When stopped, the executor processes the remaining jobs (up to the given drain timeout) before the workers are released.
+ *
+ * @author Tomas Muller
+ */
+public class AsyncExecutor {
+	private static DecimalFormat sDF = new DecimalFormat("0.00");
+	private Log iLog;
+	private AcademicSessionInfo iSession;
+	private List<Worker> iWorkers = new ArrayList<Worker>();
+	private Map<Object, Lane> iLanes = new HashMap<Object, Lane>();
+	private LinkedList<Lane> iReady = new LinkedList<Lane>();
+	private int iQueueLimit, iQueued = 0, iRunning = 0, iMaxQueued = 0, iWarnQueued, iWarnInitial;
+	private long iQueueWait;
+	private boolean iStop = false;
+	private long iSubmitted = 0, iExecuted = 0, iDelayed = 0, iDropped = 0;
+	private long iWaitTime = 0, iMaxWaitTime = 0, iExecTime = 0, iMaxExecTime = 0;
+
+	public AsyncExecutor(AcademicSessionInfo session, Log log) {
+		this(session, log, ApplicationProperty.OnlineSchedulingServerAsyncWorkers.intValue(), ApplicationProperty.OnlineSchedulingServerAsyncQueueLimit.intValue(), ApplicationProperty.OnlineSchedulingServerAsyncQueueWait.intValue());
+	}
+
+	public AsyncExecutor(AcademicSessionInfo session, Log log, int nrWorkers, int queueLimit, long queueWait) {
+		iSession = session;
+		iLog = log;
+		iQueueLimit = queueLimit;
+		iWarnInitial = iWarnQueued = (queueLimit > 0 ? queueLimit : 1000);
+		iQueueWait = queueWait;
+		for (int i = 0; i < Math.max(1, nrWorkers); i++)
+			iWorkers.add(new Worker(i));
+	}
+
+	public void start() {
+		for (Worker worker: iWorkers)
+			worker.start();
+	}
+
+	/**
+	 * Number of worker threads
+	 */
+	public int getNrWorkers() { return iWorkers.size(); }
+
+	private boolean isWorker() {
+		Thread thread = Thread.currentThread();
+		return thread instanceof Worker && ((Worker)thread).getExecutor() == this;
+	}
+
+	/**
+	 * Submit a job
+	 * @param key jobs with the same key are never executed in parallel and they are executed in the order of submission (null key is used for session-wide jobs)
+	 * @param job job to execute
+	 * @return false if the executor has been stopped (the job has not been accepted)
+	 */
+	public synchronized boolean submit(Object key, Runnable job) {
+		if (iStop) return false;
+		if (iQueueLimit > 0 && iQueued >= iQueueLimit && !isWorker()) {
+			long t0 = System.currentTimeMillis();
+			long wait = iQueueWait;
+			while (!iStop && iQueued >= iQueueLimit && wait > 0) {
+				try {
+					wait(wait);
+				} catch (InterruptedException e) {
+					break;
+				}
+				wait = iQueueWait - (System.currentTimeMillis() - t0);
+			}
+			iDelayed ++;
+			if (iStop) return false;
+		}
+		Lane lane = iLanes.get(key);
+		if (lane == null) {
+			lane = new Lane(key);
+			iLanes.put(key, lane);
+		}
+		lane.add(new Job(job));
+		if (!lane.isRunning() && lane.size() == 1)
+			iReady.add(lane);
+		iQueued ++; iSubmitted ++;
+		if (iQueued > iMaxQueued) iMaxQueued = iQueued;
+		if (iQueued >= iWarnQueued) {
+			iLog.warn("Executor queue has reached " + iQueued + " jobs (" + iRunning + " running, " + iLanes.size() + " keys).");
+			iWarnQueued *= 2;
+		}
+		notifyAll();
+		return true;
+	}
+
+	private synchronized Job take(Worker worker) {
+		while (iReady.isEmpty()) {
+			if (iStop) return null;
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				if (iStop) return null;
+			}
+		}
+		Lane lane = iReady.poll();
+		Job job = lane.poll();
+		worker.setLane(lane);
+		lane.setRunning(true);
+		iQueued --; iRunning ++;
+		long wait = System.currentTimeMillis() - job.getCreated();
+		iWaitTime += wait;
+		if (wait > iMaxWaitTime) iMaxWaitTime = wait;
+		if (iWarnQueued > iWarnInitial && iQueued < iWarnQueued / 4) iWarnQueued /= 2;
+		notifyAll();
+		return job;
+	}
+
+	private synchronized void done(Worker worker, long time) {
+		Lane lane = worker.getLane();
+		worker.setLane(null);
+		lane.setRunning(false);
+		iRunning --; iExecuted ++;
+		iExecTime += time;
+		if (time > iMaxExecTime) iMaxExecTime = time;
+		if (lane.isEmpty())
+			iLanes.remove(lane.getKey());
+		else
+			iReady.add(lane);
+		notifyAll();
+	}
+
+	/**
+	 * Number of jobs waiting in the queue
+	 */
+	public synchronized int getQueueSize() { return iQueued; }
+
+	/**
+	 * Number of jobs that are being executed
+	 */
+	public synchronized int getRunning() { return iRunning; }
+
+	/**
+	 * Stop the executor: no new jobs are accepted, the jobs that are already in the queue are processed (waiting up to the drain timeout).
+	 * @param drainTimeout maximal time in milliseconds to wait for the queue to be processed, remaining jobs are dropped
+	 */
+	public void stop(long drainTimeout) {
+		synchronized (this) {
+			iStop = true;
+			notifyAll();
+			if (!isWorker()) {
+				long t0 = System.currentTimeMillis();
+				long wait = drainTimeout;
+				while ((iQueued > 0 || iRunning > 0) && wait > 0) {
+					try {
+						wait(wait);
+					} catch (InterruptedException e) {
+						break;
+					}
+					wait = drainTimeout - (System.currentTimeMillis() - t0);
+				}
+			}
+			if (iQueued > 0) {
+				iLog.warn("Executor stopped with " + iQueued + " jobs remaining in the queue (" + iRunning + " running), these jobs will not be executed.");
+				iDropped += iQueued;
+				iQueued = 0;
+				for (Lane lane: iLanes.values())
+					lane.clear();
+				iReady.clear();
+				iLanes.clear();
+			}
+		}
+		iLog.info("Executor stopped: " + getStatistics());
+	}
+
+	/**
+	 * Queue depth, latency and throughput statistics of the executor
+	 */
+	public synchronized String getStatistics() {
+		return "workers=" + iWorkers.size() + ", queue=" + iQueued + ", running=" + iRunning + ", maxQueue=" + iMaxQueued +
+				", submitted=" + iSubmitted + ", executed=" + iExecuted + ", delayed=" + iDelayed + ", dropped=" + iDropped +
+				", avgWait=" + (iExecuted + iRunning == 0 ? "0" : sDF.format(((double)iWaitTime) / (iExecuted + iRunning))) + " ms, maxWait=" + iMaxWaitTime + " ms" +
+				", avgExec=" + (iExecuted == 0 ? "0" : sDF.format(((double)iExecTime) / iExecuted)) + " ms, maxExec=" + iMaxExecTime + " ms";
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncExecutor[" + iSession + "]{" + getStatistics() + "}";
+	}
+
+	private static class Job {
+		private Runnable iRunnable;
+		private long iCreated;
+
+		private Job(Runnable runnable) {
+			iRunnable = runnable;
+			iCreated = System.currentTimeMillis();
+		}
+
+		public Runnable getRunnable() { return iRunnable; }
+		public long getCreated() { return iCreated; }
+
+		@Override
+		public String toString() { return iRunnable.toString(); }
+	}
+
+	private static class Lane extends LinkedList<Job> {
+		private static final long serialVersionUID = 1L;
+		private Object iKey;
+		private boolean iRunning = false;
+
+		private Lane(Object key) { iKey = key; }
+
+		public Object getKey() { return iKey; }
+		public boolean isRunning() { return iRunning; }
+		public void setRunning(boolean running) { iRunning = running; }
+	}
+
+	private class Worker extends Thread {
+		private Lane iLane = null;
+
+		private Worker(int index) {
+			setName("AsyncExecutor[" + iSession + "]-" + (1 + index));
+			setDaemon(true);
+		}
+
+		private AsyncExecutor getExecutor() { return AsyncExecutor.this; }
+		private Lane getLane() { return iLane; }
+		private void setLane(Lane lane) { iLane = lane; }
+
+		@Override
+		public void run() {
+			try {
+				ApplicationProperties.setSessionId(iSession.getUniqueId());
+				Job job;
+				while ((job = take(this)) != null) {
+					long t0 = System.currentTimeMillis();
+					try {
+						job.getRunnable().run();
+					} catch (Throwable t) {
+						iLog.error("Job " + job + " failed: " + t.getMessage(), t);
+					} finally {
+						if (_RootDAO.closeCurrentThreadSessions())
+							iLog.debug("Job " + job + " did not close current-thread hibernate session.");
+						done(this, System.currentTimeMillis() - t0);
+					}
+				}
+			} finally {
+				ApplicationProperties.setSessionId(null);
+				Localization.removeLocale();
+				Formats.removeFormats();
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+
+/**
+ * Prefix index of the courses of an online sectioning server, used by the course lookup (see {@link #findCourses(String, Integer, CourseMatcher)}).<br>
+ * Two sorted maps are kept, both with lower-cased keys: course names (including the course name followed by the title, as matched by {@link XCourseId#matchCourseName(String)})
+ * and title suffixes starting at a beginning of a word (as matched by {@link XCourseId#matchTitle(String)}).
+ * Courses matching a query are then taken from the key range starting with the query, instead of going through all the courses.<br>
+ * The index is not thread safe, the server updates it under its write lock and reads it under its read lock.
+ *
+ * @author Tomas Muller
+ */
+public class CourseIndex {
+	private Map<Long, XCourseId> iCourses = new HashMap<Long, XCourseId>();
+	private TreeMap<String, List<XCourseId>> iNames = new TreeMap<String, List<XCourseId>>();
+	private TreeMap<String, List<XCourseId>> iTitles = new TreeMap<String, List<XCourseId>>();
+
+	/**
+	 * Add or update the given course
+	 */
+	public void update(XCourseId course) {
+		remove(course.getCourseId());
+		iCourses.put(course.getCourseId(), course);
+		for (String key: getNameKeys(course))
+			add(iNames, key, course);
+		for (String key: getTitleKeys(course))
+			add(iTitles, key, course);
+	}
+
+	/**
+	 * Remove the course of the given id
+	 */
+	public void remove(Long courseId) {
+		XCourseId course = iCourses.remove(courseId);
+		if (course == null) return;
+		for (String key: getNameKeys(course))
+			remove(iNames, key, course);
+		for (String key: getTitleKeys(course))
+			remove(iTitles, key, course);
+	}
+
+	public void clear() {
+		iCourses.clear();
+		iNames.clear();
+		iTitles.clear();
+	}
+
+	/**
+	 * Number of indexed courses
+	 */
+	public int size() {
+		return iCourses.size();
+	}
+
+	/**
+	 * Course lookup, returns the same courses as a scan through all the courses using {@link XCourseId#matchCourseName(String)} first and
+	 * {@link XCourseId#matchTitle(String)} (for queries of three or more characters) when the limit is not reached, ordered by {@link CourseComparator}.
+	 * @param query course name or title prefix
+	 * @param limit maximal number of returned courses (null or non-positive for no limit)
+	 * @param matcher course matcher (can be null), its server must be set by the caller
+	 */
+	public SubSet<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
+		SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, new CourseComparator(query));
+		String queryInLowerCase = query.toLowerCase();
+		Set<Long> checked = new HashSet<Long>();
+		for (Map.Entry<String, List<XCourseId>> entry: iNames.tailMap(queryInLowerCase).entrySet()) {
+			if (!entry.getKey().startsWith(queryInLowerCase)) break;
+			for (XCourseId c: entry.getValue())
+				if (checked.add(c.getCourseId()) && c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+		}
+		if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
+			checked.clear();
+			for (Map.Entry<String, List<XCourseId>> entry: iTitles.tailMap(queryInLowerCase).entrySet()) {
+				if (!entry.getKey().startsWith(queryInLowerCase)) break;
+				for (XCourseId c: entry.getValue())
+					if (checked.add(c.getCourseId()) && c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+			}
+		}
+		return ret;
+	}
+
+	private static Set<String> getNameKeys(XCourseId course) {
+		Set<String> keys = new HashSet<String>(4);
+		keys.add(course.getCourseName().toLowerCase());
+		if (course.getTitle() != null) {
+			keys.add((course.getCourseName() + " " + course.getTitle()).toLowerCase());
+			keys.add((course.getCourseName() + " - " + course.getTitle()).toLowerCase());
+		}
+		return keys;
+	}
+
+	private static Set<String> getTitleKeys(XCourseId course) {
+		Set<String> keys = new HashSet<String>();
+		if (course.getTitle() == null) return keys;
+		String title = course.getTitle().toLowerCase();
+		keys.add(title);
+		for (int idx = title.indexOf(' '); idx >= 0; idx = title.indexOf(' ', idx + 1))
+			keys.add(title.substring(idx + 1));
+		return keys;
+	}
+
+	private static void add(TreeMap<String, List<XCourseId>> map, String key, XCourseId course) {
+		List<XCourseId> courses = map.get(key);
+		if (courses == null) {
+			courses = new ArrayList<XCourseId>(1);
+			map.put(key, courses);
+		}
+		courses.add(course);
+	}
+
+	private static void remove(TreeMap<String, List<XCourseId>> map, String key, XCourseId course) {
+		List<XCourseId> courses = map.get(key);
+		if (courses == null) return;
+		courses.remove(course);
+		if (courses.isEmpty()) map.remove(key);
+	}
+}
@@ -19,26 +19,34 @@
 */
 package org.unitime.timetable.onlinesectioning.server;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.IndexedStudentMatcher;
 import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XOffering;
 import org.unitime.timetable.onlinesectioning.model.XRequest;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.solver.OfferingFragmentCache;
+import org.unitime.timetable.onlinesectioning.updates.CheckAllOfferingsAction;
 
 /**
  * @author Tomas Muller
@@ -50,11 +58,172 @@ public class InMemoryServer extends AbstractLockingServer {
 	private Hashtable<Long, XStudent> iStudentTable = new Hashtable<Long, XStudent>();
 	private Hashtable<Long, XOffering> iOfferingTable = new Hashtable<Long, XOffering>();
 	private Hashtable<Long, List<XCourseRequest>> iOfferingRequests = new Hashtable<Long, List<XCourseRequest>>();
+	private Hashtable<Long, XEnrollmentCounts> iEnrollmentCounts = new Hashtable<Long, XEnrollmentCounts>();
+	private StudentIndex iStudentIndex = new StudentIndex();
+	private CourseIndex iCourseIndex = new CourseIndex();
 	private Hashtable<Long, XExpectations> iExpectations = new Hashtable<Long, XExpectations>();
 	private Hashtable<String, Set<Long>> iInstructedOfferings = new Hashtable<String, Set<Long>>();
+	// no initializers: these fields are set while the super constructor loads the server
+	// (the restore hand-off between the constructor and loadOnMaster is guarded by the server instance)
+	private volatile ServerSnapshot iSnapshot;
+	private OnlineSectioningServerContext iRestoreContext;
+	private boolean iConstructed;
+	private static final String[] sSnapshotProperties = new String[] { "Updater.LastTimeStamp", "Updater.LastReservationCheck" };
 	
 	public InMemoryServer(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
+		final OnlineSectioningServerContext restoreContext;
+		synchronized (this) {
+			iConstructed = true;
+			restoreContext = iRestoreContext;
+			iRestoreContext = null;
+		}
+		if (restoreContext != null) {
+			Runnable restore = new Runnable() {
+				@Override
+				public void run() {
+					restoreOrLoad(restoreContext);
+				}
+				
+				@Override
+				public String toString() {
+					return "restore-snapshot";
+				}
+			};
+			if (restoreContext.isWaitTillStarted() || iExecutor == null || !iExecutor.submit(null, restore))
+				restore.run();
+		}
+	}
+	
+	private synchronized ServerSnapshot getSnapshot() {
+		if (iSnapshot == null && ServerSnapshot.isEnabled())
+			iSnapshot = new ServerSnapshot(getAcademicSession(), iLog);
+		return iSnapshot;
+	}
+	
+	@Override
+	protected void loadOnMaster(OnlineSectioningServerContext context) throws SectioningException {
+		ServerSnapshot snapshot = getSnapshot();
+		if (snapshot != null && snapshot.exists()) {
+			synchronized (this) {
+				if (!iConstructed) {
+					// restore the snapshot when the server is fully constructed (field initializers would clear restored data)
+					iRestoreContext = context;
+					return;
+				}
+			}
+			restoreOrLoad(context);
+		} else {
+			super.loadOnMaster(context);
+		}
+	}
+	
+	private void restoreOrLoad(OnlineSectioningServerContext context) {
+		boolean restored = false;
+		Lock lock = lockAll();
+		try {
+			restored = iSnapshot.restore(new ServerSnapshot.Target() {
+				@Override
+				public void restore(XOffering offering) {
+					update(offering);
+				}
+				@Override
+				public void restoreOfferingRemoval(Long offeringId) {
+					XOffering offering = iOfferingTable.get(offeringId);
+					if (offering != null) remove(offering);
+				}
+				@Override
+				public void restore(XStudent student) {
+					update(student, true);
+				}
+				@Override
+				public void restoreStudentRemoval(Long studentId) {
+					XStudent student = iStudentTable.get(studentId);
+					if (student != null) remove(student);
+				}
+				@Override
+				public void restore(XExpectations expectations) {
+					update(expectations);
+				}
+				@Override
+				public void restoreProperty(String name, Object value) {
+					setProperty(name, value);
+				}
+			});
+			if (!restored) clearAll();
+		} finally {
+			lock.release();
+		}
+		if (!restored) {
+			super.loadOnMaster(context);
+			return;
+		}
+		setProperty("ReloadIsNeeded", Boolean.FALSE);
+		setReady(true);
+		// changes made outside of the server are picked up from the student sectioning queue, re-check offerings in the background
+		if (getAcademicSession().isSectioningEnabled())
+			execute(createAction(CheckAllOfferingsAction.class), getSystemUser(), new ServerCallback<Boolean>() {
+				@Override
+				public void onSuccess(Boolean result) {}
+				@Override
+				public void onFailure(Throwable exception) {
+					iLog.error("Failed to check all offerings: " + exception.getMessage(), exception);
+				}
+			});
+	}
+	
+	/**
+	 * Write a new snapshot of the server if snapshots are enabled and the snapshot interval has passed
+	 */
+	public void checkSnapshot() {
+		ServerSnapshot snapshot = getSnapshot();
+		if (snapshot != null && isReady() && snapshot.isDue())
+			writeSnapshot();
+	}
+	
+	protected void writeSnapshot() {
+		synchronized (iSnapshot) {
+			try {
+				ServerSnapshot.Image image = null;
+				Lock lock = readLock();
+				try {
+					Map<String, Serializable> properties = new HashMap<String, Serializable>();
+					for (String name: sSnapshotProperties) {
+						Object value = getProperty(name, null);
+						if (value != null && value instanceof Serializable) properties.put(name, (Serializable)value);
+					}
+					image = iSnapshot.capture(iOfferingTable.values(), iStudentTable.values(), iExpectations.values(), properties);
+				} finally {
+					lock.release();
+				}
+				iSnapshot.store(image);
+			} catch (Exception e) {
+				iLog.error("Failed to write snapshot: " + e.getMessage(), e);
+				iSnapshot.invalidate();
+			}
+		}
+	}
+	
+	@Override
+	public <E> void setProperty(String name, E value) {
+		super.setProperty(name, value);
+		if (iSnapshot != null) {
+			if ("ReloadIsNeeded".equals(name) && Boolean.TRUE.equals(value)) {
+				iSnapshot.invalidate();
+			} else if (value == null || value instanceof Serializable) {
+				for (String property: sSnapshotProperties)
+					if (property.equals(name)) iSnapshot.journalProperty(name, (Serializable)value);
+			}
+		}
+	}
+	
+	@Override
+	public void unload() {
+		if (iSnapshot != null) {
+			if (isReady() && isMaster()) writeSnapshot();
+			iSnapshot.close();
+		}
+		super.unload();
 	}
 
 	@Override
@@ -62,17 +231,7 @@ public class InMemoryServer extends AbstractLockingServer {
 		if (matcher != null) matcher.setServer(this);
 		Lock lock = readLock();
 		try {
-			SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, new CourseComparator(query));
-			String queryInLowerCase = query.toLowerCase();
-			for (XCourseId c : iCourseForId.values()) {
-				if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
-			}
-			if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
-				for (XCourseId c : iCourseForId.values()) {
-					if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
-				}
-			}
-			return ret;
+			return iCourseIndex.findCourses(query, limit, matcher);
 		} finally {
 			lock.release();
 		}
@@ -99,8 +258,17 @@ public class InMemoryServer extends AbstractLockingServer {
 		Lock lock = readLock();
 		try {
 			List<XStudent> ret = new ArrayList<XStudent>();
-			for (XStudent s: iStudentTable.values())
-				if (matcher.match(s)) ret.add(s);
+			BitSet candidates = (matcher instanceof IndexedStudentMatcher ? ((IndexedStudentMatcher)matcher).select(iStudentIndex) : null);
+			if (candidates != null) {
+				for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+					Long studentId = iStudentIndex.getStudentId(i);
+					XStudent s = (studentId == null ? null : iStudentTable.get(studentId));
+					if (s != null && matcher.match(s)) ret.add(s);
+				}
+			} else {
+				for (XStudent s: iStudentTable.values())
+					if (matcher.match(s)) ret.add(s);
+			}
 			return ret;
 		} finally {
 			lock.release();
@@ -174,6 +342,31 @@ public class InMemoryServer extends AbstractLockingServer {
 			lock.release();
 		}		
 	}
+	
+	@Override
+	public XEnrollmentCounts getEnrollmentCounts(Long offeringId) {
+		Lock lock = readLock();
+		try {
+			XEnrollmentCounts counts = iEnrollmentCounts.get(offeringId);
+			return counts == null ? new XEnrollmentCounts(offeringId) : counts.snapshot();
+		} finally {
+			lock.release();
+		}
+	}
+	
+	private void count(Long offeringId, XCourseRequest request) {
+		XEnrollmentCounts counts = iEnrollmentCounts.get(offeringId);
+		if (counts == null) {
+			counts = new XEnrollmentCounts(offeringId);
+			iEnrollmentCounts.put(offeringId, counts);
+		}
+		counts.add(request);
+	}
+	
+	private void uncount(Long offeringId, XCourseRequest request) {
+		XEnrollmentCounts counts = iEnrollmentCounts.get(offeringId);
+		if (counts != null) counts.remove(request);
+	}
 
 	@Override
 	public XExpectations getExpectations(Long offeringId) {
@@ -191,6 +384,7 @@ public class InMemoryServer extends AbstractLockingServer {
 		Lock lock = writeLock();
 		try {
 			iExpectations.put(expectations.getOfferingId(), expectations);
+			if (iSnapshot != null) iSnapshot.journalUpdate(expectations);
 		} finally {
 			lock.release();
 		}
@@ -201,12 +395,14 @@ public class InMemoryServer extends AbstractLockingServer {
 		Lock lock = writeLock();
 		try {
 			XStudent oldStudent = iStudentTable.remove(student.getStudentId());
+			iStudentIndex.remove(student.getStudentId());
+			if (iSnapshot != null) iSnapshot.journalStudentRemoval(student.getStudentId());
 			if (oldStudent != null) {
 				for (XRequest request: oldStudent.getRequests())
 					if (request instanceof XCourseRequest)
 						for (XCourseId course: ((XCourseRequest)request).getCourseIds()) {
 							List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-							if (requests != null) requests.remove(request);
+							if (requests != null && requests.remove(request)) uncount(course.getOfferingId(), (XCourseRequest)request);
 						}
 			}
 		} finally {
@@ -219,13 +415,15 @@ public class InMemoryServer extends AbstractLockingServer {
 		Lock lock = writeLock();
 		try {
 			XStudent oldStudent = iStudentTable.put(student.getStudentId(), student);
+			iStudentIndex.update(student);
+			if (iSnapshot != null) iSnapshot.journalUpdate(student);
 			if (updateRequests) {
 				if (oldStudent != null) {
 					for (XRequest request: oldStudent.getRequests())
 						if (request instanceof XCourseRequest)
 							for (XCourseId course: ((XCourseRequest)request).getCourseIds()) {
 								List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-								if (requests != null) requests.remove(request);
+								if (requests != null && requests.remove(request)) uncount(course.getOfferingId(), (XCourseRequest)request);
 							}
 				}
 				for (XRequest request: student.getRequests())
@@ -237,6 +435,7 @@ public class InMemoryServer extends AbstractLockingServer {
 								iOfferingRequests.put(course.getOfferingId(), requests);
 							}
 							requests.add((XCourseRequest)request);
+							count(course.getOfferingId(), (XCourseRequest)request);
 						}
 			}
 		} finally {
@@ -246,7 +445,13 @@ public class InMemoryServer extends AbstractLockingServer {
 
 	@Override
 	public void remove(XOffering offering) {
-		remove(offering, true);
+		Lock lock = writeLock();
+		try {
+			remove(offering, true);
+			if (iSnapshot != null) iSnapshot.journalOfferingRemoval(offering.getOfferingId());
+		} finally {
+			lock.release();
+		}
 	}
 	
 	protected void remove(XOffering offering, boolean removeExpectations) {
@@ -254,6 +459,7 @@ public class InMemoryServer extends AbstractLockingServer {
 		try {
 			for (XCourse course: offering.getCourses()) {
 				iCourseForId.remove(course.getCourseId());
+				iCourseIndex.remove(course.getCourseId());
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses != null) {
 					courses.remove(course);
@@ -264,6 +470,7 @@ public class InMemoryServer extends AbstractLockingServer {
 				}
 			}
 			iOfferingTable.remove(offering.getOfferingId());
+			OfferingFragmentCache.invalidate(offering.getOfferingId());
 			if (removeExpectations)
 				iExpectations.remove(offering.getOfferingId());
 			for (String externalId: offering.getInstructorExternalIds()) {
@@ -284,8 +491,10 @@ public class InMemoryServer extends AbstractLockingServer {
 				remove(oldOffering, false);
 			
 			iOfferingTable.put(offering.getOfferingId(), offering);
+			if (iSnapshot != null) iSnapshot.journalUpdate(offering);
 			for (XCourse course: offering.getCourses()) {
 				iCourseForId.put(course.getCourseId(), course);
+				iCourseIndex.update(course);
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses == null) {
 					courses = new TreeSet<XCourseId>();
@@ -326,6 +535,14 @@ public class InMemoryServer extends AbstractLockingServer {
 				iOfferingRequests = new Hashtable<Long, List<XCourseRequest>>();
 			else
 				iOfferingRequests.clear();
+			if (iEnrollmentCounts == null)
+				iEnrollmentCounts = new Hashtable<Long, XEnrollmentCounts>();
+			else
+				iEnrollmentCounts.clear();
+			if (iStudentIndex == null)
+				iStudentIndex = new StudentIndex();
+			else
+				iStudentIndex.clear();
 			if (iExpectations == null)
 				iExpectations = new Hashtable<Long, XExpectations>();
 			else
@@ -338,10 +555,16 @@ public class InMemoryServer extends AbstractLockingServer {
 				iCourseForName = new Hashtable<String, TreeSet<XCourseId>>();
 			else
 				iCourseForName.clear();
+			if (iCourseIndex == null)
+				iCourseIndex = new CourseIndex();
+			else
+				iCourseIndex.clear();
 			if (iInstructedOfferings == null)
 				iInstructedOfferings = new Hashtable<String, Set<Long>>();
 			else
 				iInstructedOfferings.clear();
+			OfferingFragmentCache.clear(getAcademicSession().getUniqueId());
+			if (iSnapshot != null) iSnapshot.invalidate();
 		} finally {
 			lock.release();
 		}
@@ -353,6 +576,9 @@ public class InMemoryServer extends AbstractLockingServer {
 		try {
 			iStudentTable.clear();
 			iOfferingRequests.clear();
+			iEnrollmentCounts.clear();
+			iStudentIndex.clear();
+			if (iSnapshot != null) iSnapshot.invalidate();
 		} finally {
 			lock.release();
 		}
@@ -370,11 +596,13 @@ public class InMemoryServer extends AbstractLockingServer {
 					// remove old requests
 					for (XCourseId course: cr.getCourseIds()) {
 						List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-						if (requests != null) requests.remove(cr);
+						if (requests != null && requests.remove(cr)) uncount(course.getOfferingId(), cr);
 					}
 
 					// assign
 					cr.setEnrollment(enrollment);
+					iStudentIndex.update(student);
+					if (iSnapshot != null) iSnapshot.journalUpdate(student);
 					
 					// put new requests
 					for (XCourseId course: cr.getCourseIds()) {
@@ -384,6 +612,7 @@ public class InMemoryServer extends AbstractLockingServer {
 							iOfferingRequests.put(course.getOfferingId(), requests);
 						}
 						requests.add(cr);
+						count(course.getOfferingId(), cr);
 					}
 					
 					return cr;
@@ -407,11 +636,13 @@ public class InMemoryServer extends AbstractLockingServer {
 					// remove old requests
 					for (XCourseId course: cr.getCourseIds()) {
 						List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
-						if (requests != null) requests.remove(cr);
+						if (requests != null && requests.remove(cr)) uncount(course.getOfferingId(), cr);
 					}
 
 					// assign
 					cr.setWaitlist(waitlist);
+					iStudentIndex.update(student);
+					if (iSnapshot != null) iSnapshot.journalUpdate(student);
 					
 					// put new requests
 					for (XCourseId course: cr.getCourseIds()) {
@@ -421,6 +652,7 @@ public class InMemoryServer extends AbstractLockingServer {
 							iOfferingRequests.put(course.getOfferingId(), requests);
 						}
 						requests.add(cr);
+						count(course.getOfferingId(), cr);
 					}
 					
 					return cr;
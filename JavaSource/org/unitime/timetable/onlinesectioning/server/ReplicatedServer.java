@@ -44,8 +44,16 @@ import org.infinispan.distexec.DistributedCallable;
 import org.infinispan.distexec.DistributedExecutorService;
 import org.infinispan.jmx.CacheJmxRegistration;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryCreatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
 import org.infinispan.transaction.LockingMode;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
@@ -55,10 +63,12 @@ import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XOffering;
 import org.unitime.timetable.onlinesectioning.model.XRequest;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.solver.OfferingFragmentCache;
 import org.unitime.timetable.solver.jgroups.SolverServer;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
 
@@ -74,9 +84,12 @@ public class ReplicatedServer extends AbstractServer {
 	private Cache<Long, XStudent> iStudentTable;
 	private Cache<Long, XOffering> iOfferingTable;
 	private Cache<Long, Set<XCourseRequest>> iOfferingRequests;
+	private Cache<Long, XEnrollmentCounts> iEnrollmentCounts;
 	private Cache<Long, XExpectations> iExpectations;
 	private Cache<Long, Boolean> iOfferingLocks;
 	private Cache<String, Set<Long>> iInstructedOfferings; 
+	private CourseIndex iCourseIndex;
+	private CourseIndexListener iCourseIndexListener;
 
 	public ReplicatedServer(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
@@ -103,9 +116,17 @@ public class ReplicatedServer extends AbstractServer {
 		iStudentTable = getCache("StudentTable");
 		iOfferingTable = getCache("OfferingTable");
 		iOfferingRequests = getCache("OfferingRequests");
+		iEnrollmentCounts = getCache("EnrollmentCounts");
 		iExpectations = getCache("Expectations");
 		iOfferingLocks = getCache("OfferingLocks");
 		iInstructedOfferings = getCache("InstructedOfferings");
+		
+		if (ApplicationProperty.OnlineSchedulingServerReplicatedCourseIndex.isTrue()) {
+			iCourseIndex = new CourseIndex();
+			iCourseIndexListener = new CourseIndexListener();
+			iCourseForId.addListener(iCourseIndexListener);
+			iLog.info("Course index contains " + iCourseIndex.size() + " courses.");
+		}
 
 		Map<String, Object> original = new HashMap<String, Object>(iProperties);
 		iProperties = getCache("Config");
@@ -131,11 +152,14 @@ public class ReplicatedServer extends AbstractServer {
 	@Override
 	public void unload() {
 		super.unload();
+		if (iCourseIndexListener != null)
+			iCourseForId.removeListener(iCourseIndexListener);
 		removeCache(iCourseForId);
 		removeCache(iCourseForName);
 		removeCache(iStudentTable);
 		removeCache(iOfferingTable);
 		removeCache(iOfferingRequests);
+		removeCache(iEnrollmentCounts);
 		removeCache(iExpectations);
 		removeCache(iOfferingLocks);
 		removeCache(iInstructedOfferings);
@@ -159,6 +183,12 @@ public class ReplicatedServer extends AbstractServer {
 	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
 		Lock lock = readLock();
 		try {
+			if (iCourseIndex != null) {
+				if (matcher != null) matcher.setServer(this);
+				synchronized (iCourseIndex) {
+					return iCourseIndex.findCourses(query, limit, matcher);
+				}
+			}
 			DistributedExecutorService ex = new DefaultExecutorService(iCourseForId);
 			SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, new CourseComparator(query));
 			String queryInLowerCase = query.toLowerCase();
@@ -301,6 +331,33 @@ public class ReplicatedServer extends AbstractServer {
 			lock.release();
 		}		
 	}
+	
+	@Override
+	public XEnrollmentCounts getEnrollmentCounts(Long offeringId) {
+		Lock lock = readLock();
+		try {
+			XEnrollmentCounts counts = iEnrollmentCounts.get(offeringId);
+			return counts == null ? new XEnrollmentCounts(offeringId) : counts.snapshot();
+		} finally {
+			lock.release();
+		}
+	}
+	
+	private void count(Long offeringId, XCourseRequest request) {
+		XEnrollmentCounts counts = iEnrollmentCounts.get(offeringId);
+		if (counts == null)
+			counts = new XEnrollmentCounts(offeringId);
+		counts.add(request);
+		iEnrollmentCounts.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(offeringId, counts);
+	}
+	
+	private void uncount(Long offeringId, XCourseRequest request) {
+		XEnrollmentCounts counts = iEnrollmentCounts.get(offeringId);
+		if (counts != null) {
+			counts.remove(request);
+			iEnrollmentCounts.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(offeringId, counts);
+		}
+	}
 
 	@Override
 	public XExpectations getExpectations(Long offeringId) {
@@ -336,6 +393,8 @@ public class ReplicatedServer extends AbstractServer {
 							if (requests != null) {
 								if (!requests.remove(request))
 									iLog.warn("REMOVE[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
+								else
+									uncount(course.getOfferingId(), (XCourseRequest)request);
 								iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 							} else {
 								iLog.warn("REMOVE[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
@@ -362,6 +421,8 @@ public class ReplicatedServer extends AbstractServer {
 								if (requests != null) {
 									if (!requests.remove(request))
 										iLog.warn("UPDATE[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
+									else
+										uncount(course.getOfferingId(), (XCourseRequest)request);
 									iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 								} else {
 									iLog.warn("UPDATE[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
@@ -374,7 +435,7 @@ public class ReplicatedServer extends AbstractServer {
 							Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 							if (requests == null)
 								requests = new HashSet<XCourseRequest>();
-							requests.add((XCourseRequest)request);
+							if (requests.add((XCourseRequest)request)) count(course.getOfferingId(), (XCourseRequest)request);
 							iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 						}
 			} else {
@@ -407,6 +468,7 @@ public class ReplicatedServer extends AbstractServer {
 				}
 			}
 			iOfferingTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
+			OfferingFragmentCache.invalidate(offering.getOfferingId());
 			if (removeExpectations)
 				iExpectations.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
 			for (String externalId: offering.getInstructorExternalIds()) {
@@ -464,10 +526,18 @@ public class ReplicatedServer extends AbstractServer {
 		try {
 			iStudentTable.clear();
 			iOfferingTable.clear();
-			iCourseForId.clear();
+			// removed one by one, clear() does not notify the course index listeners of the other nodes
+			for (Long courseId: new ArrayList<Long>(iCourseForId.keySet()))
+				iCourseForId.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(courseId);
 			iCourseForName.clear();
+			if (iCourseIndex != null)
+				synchronized (iCourseIndex) {
+					iCourseIndex.clear();
+				}
 			iOfferingRequests.clear();
+			iEnrollmentCounts.clear();
 			iInstructedOfferings.clear();
+			OfferingFragmentCache.clear(getAcademicSession().getUniqueId());
 		} finally {
 			lock.release();
 		}
@@ -479,6 +549,7 @@ public class ReplicatedServer extends AbstractServer {
 		try {
 			iStudentTable.clear();
 			iOfferingRequests.clear();
+			iEnrollmentCounts.clear();
 		} finally {
 			lock.release();
 		}
@@ -499,6 +570,8 @@ public class ReplicatedServer extends AbstractServer {
 						if (requests != null) {
 							if (!requests.remove(cr))
 								iLog.warn("ASSIGN[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
+							else
+								uncount(course.getOfferingId(), cr);
 							iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 						} else {
 							iLog.warn("ASSIGN[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
@@ -513,7 +586,7 @@ public class ReplicatedServer extends AbstractServer {
 						Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 						if (requests == null)
 							requests = new HashSet<XCourseRequest>();
-						requests.add(cr);
+						if (requests.add(cr)) count(course.getOfferingId(), cr);
 						iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 					}
 					
@@ -525,7 +598,7 @@ public class ReplicatedServer extends AbstractServer {
 			for (XCourseId course: request.getCourseIds()) {
 				Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 				if (requests != null) {
-					requests.remove(request);
+					if (requests.remove(request)) uncount(course.getOfferingId(), request);
 					iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 				}
 			}
@@ -550,6 +623,8 @@ public class ReplicatedServer extends AbstractServer {
 						if (requests != null) {
 							if (!requests.remove(cr))
 								iLog.warn("WAITLIST[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
+							else
+								uncount(course.getOfferingId(), cr);
 							iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 						} else {
 							iLog.warn("WAITLIST[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
@@ -564,6 +639,7 @@ public class ReplicatedServer extends AbstractServer {
 						Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 						if (requests == null)
 							requests = new HashSet<XCourseRequest>();
+						if (requests.add(cr)) count(course.getOfferingId(), cr);
 						iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 					}
 					
@@ -575,7 +651,7 @@ public class ReplicatedServer extends AbstractServer {
 			for (XCourseId course: request.getCourseIds()) {
 				Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 				if (requests != null) {
-					requests.remove(request);
+					if (requests.remove(request)) uncount(course.getOfferingId(), request);
 					iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
 				}
 			}
@@ -590,6 +666,38 @@ public class ReplicatedServer extends AbstractServer {
 		return server == null ? null : server.getOnlineStudentSchedulingContainer().getSolver(sessionId.toString());
 	}
 	
+	/**
+	 * Keeps the local course index up to date: a clustered listener is notified about all the changes of the course cache,
+	 * regardless of which node owns the entry (the current content of the cache is delivered when the listener is registered).
+	 */
+	@Listener(clustered = true, includeCurrentState = true)
+	public class CourseIndexListener {
+		
+		@CacheEntryCreated
+		public void created(CacheEntryCreatedEvent<Long, XCourseId> event) {
+			if (!event.isPre() && event.getValue() != null)
+				synchronized (iCourseIndex) {
+					iCourseIndex.update(event.getValue());
+				}
+		}
+		
+		@CacheEntryModified
+		public void modified(CacheEntryModifiedEvent<Long, XCourseId> event) {
+			if (!event.isPre() && event.getValue() != null)
+				synchronized (iCourseIndex) {
+					iCourseIndex.update(event.getValue());
+				}
+		}
+		
+		@CacheEntryRemoved
+		public void removed(CacheEntryRemovedEvent<Long, XCourseId> event) {
+			if (!event.isPre())
+				synchronized (iCourseIndex) {
+					iCourseIndex.remove(event.getKey());
+				}
+		}
+	}
+	
 	public static class FindCoursesCallable implements DistributedCallable<Long, XCourseId, Collection<XCourseId>>, Serializable {
 		private static final long serialVersionUID = 1L;
 		private Long iSessionId;
@@ -55,6 +55,7 @@ import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequestSet;
 import org.unitime.timetable.onlinesectioning.model.XOffering;
@@ -62,6 +63,7 @@ import org.unitime.timetable.onlinesectioning.model.XRequest;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XCourseIdSet;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.solver.OfferingFragmentCache;
 
 /**
  * @author Tomas Muller
@@ -70,9 +72,11 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 	private EmbeddedCacheManager iCacheManager;
 	private Map<Long, XCourseId> iCourseForId;
 	private Map<String, XCourseIdSet> iCourseForName;
+	private CourseIndex iCourseIndex;
 	private Cache<Long, XStudent> iStudentTable;
 	private Cache<Long, XOffering> iOfferingTable;
 	private Map<Long, XCourseRequestSet> iOfferingRequests;
+	private Map<Long, XEnrollmentCounts> iEnrollmentCounts;
 	private Cache<Long, XExpectations> iExpectations;
 	private Cache<Long, Boolean> iOfferingLocks;
 	private Map<String, Set<Long>> iInstructedOfferings;
@@ -99,9 +103,11 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 		iCacheManager = context.getCacheManager();
 		iCourseForId = new Hashtable<Long, XCourseId>();
 		iCourseForName = new Hashtable<String, XCourseIdSet>();
+		iCourseIndex = new CourseIndex();
 		iStudentTable = getCache("StudentTable");
 		iOfferingTable = getCache("OfferingTable");
 		iOfferingRequests = new HashMap<Long, XCourseRequestSet>();
+		iEnrollmentCounts = new HashMap<Long, XEnrollmentCounts>();
 		iExpectations = getCache("Expectations");
 		iOfferingLocks = getCache("OfferingLocks");
 		iInstructedOfferings = new HashMap<String, Set<Long>>();
@@ -144,17 +150,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 		if (matcher != null) matcher.setServer(this);
 		Lock lock = readLock();
 		try {
-			SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, new CourseComparator(query));
-			String queryInLowerCase = query.toLowerCase();
-			for (XCourseId c : iCourseForId.values()) {
-				if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
-			}
-			if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
-				for (XCourseId c : iCourseForId.values()) {
-					if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
-				}
-			}
-			return ret;
+			return iCourseIndex.findCourses(query, limit, matcher);
 		} finally {
 			lock.release();
 		}
@@ -257,6 +253,17 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 			lock.release();
 		}		
 	}
+	
+	@Override
+	public XEnrollmentCounts getEnrollmentCounts(Long offeringId) {
+		Lock lock = readLock();
+		try {
+			XEnrollmentCounts counts = iEnrollmentCounts.get(offeringId);
+			return counts == null ? new XEnrollmentCounts(offeringId) : counts.snapshot();
+		} finally {
+			lock.release();
+		}
+	}
 
 	@Override
 	public XExpectations getExpectations(Long offeringId) {
@@ -314,6 +321,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 		try {
 			iOfferingTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
 			iExpectations.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
+			OfferingFragmentCache.invalidate(offering.getOfferingId());
 		} finally {
 			lock.release();
 		}
@@ -326,6 +334,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 		Lock lock = writeLock();
 		try {
 			iOfferingTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(offering.getOfferingId(), offering);
+			OfferingFragmentCache.invalidate(offering.getOfferingId());
 		} finally {
 			lock.release();
 		}
@@ -341,6 +350,9 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 			iOfferingTable.clear();
 			iExpectations.clear();
 			iOfferingLocks.clear();
+			iOfferingRequests.clear();
+			iEnrollmentCounts.clear();
+			OfferingFragmentCache.clear(getAcademicSession().getUniqueId());
 		} finally {
 			lock.release();
 		}
@@ -353,6 +365,8 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 		Lock lock = writeLock();
 		try {
 			iStudentTable.clear();
+			iOfferingRequests.clear();
+			iEnrollmentCounts.clear();
 		} finally {
 			lock.release();
 		}
@@ -594,6 +608,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 			try {
 				for (XCourse course: offering.getCourses()) {
 					iCourseForId.remove(course.getCourseId());
+					iCourseIndex.remove(course.getCourseId());
 					XCourseIdSet courses = iCourseForName.get(course.getCourseNameInLowerCase());
 					if (courses != null) {
 						courses.remove(course);
@@ -616,7 +631,9 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 			Lock lock = writeLockIfNotHeld();
 			try {
 				for (XCourse course: offering.getCourses()) {
-					iCourseForId.put(course.getCourseId(), new XCourseId(course));
+					XCourseId courseId = new XCourseId(course);
+					iCourseForId.put(course.getCourseId(), courseId);
+					iCourseIndex.update(courseId);
 					XCourseIdSet courses = iCourseForName.get(course.getCourseNameInLowerCase());
 					if (courses == null) {
 						courses = new XCourseIdSet();
@@ -682,6 +699,10 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 							if (requests != null) {
 								if (!requests.remove(request))
 									iLog.warn("UPDATE[1]: Request " + oldStudent + " " + request + " was not present in the offering requests table for " + course);
+								else {
+									XEnrollmentCounts counts = iEnrollmentCounts.get(course.getOfferingId());
+									if (counts != null) counts.remove((XCourseRequest)request);
+								}
 								iOfferingRequests.put(course.getOfferingId(), requests);
 							} else {
 								iLog.warn("UPDATE[2]: Request " + oldStudent + " " + request + " was not present in the offering requests table for " + course);
@@ -701,7 +722,14 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 							XCourseRequestSet requests = iOfferingRequests.get(course.getOfferingId());
 							if (requests == null)
 								requests = new XCourseRequestSet();
-							requests.add((XCourseRequest)request);
+							if (requests.add((XCourseRequest)request)) {
+								XEnrollmentCounts counts = iEnrollmentCounts.get(course.getOfferingId());
+								if (counts == null) {
+									counts = new XEnrollmentCounts(course.getOfferingId());
+									iEnrollmentCounts.put(course.getOfferingId(), counts);
+								}
+								counts.add((XCourseRequest)request);
+							}
 							iOfferingRequests.put(course.getOfferingId(), requests);
 						}
 			} finally {
@@ -0,0 +1,533 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.util.Constants;
+
+/**
+ * Binary snapshot of an in-memory online sectioning server, used to warm-start the server without reloading all the data from the database.<br>
+ * The snapshot file contains a versioned header (format version, application version, academic session, snapshot id) and a compressed,
+ * CRC32-checked image of all offerings, students (with their course requests and enrollments), expectations, and a few server properties
+ * (e.g., the time stamp of the last processed student sectioning queue item).<br>
+ * Changes made after the snapshot was taken are appended into a journal file, each record having its own length and checksum, so that
+ * a record torn by a crash is detected and ignored. The journal records are serialized by the caller, but they are written (and flushed) to the disk
+ * by a single background thread, so that the changes of the server do not need to wait for the disk. The snapshot is restored by reading the image and replaying the journal; changes made
+ * to the database outside of the server are then picked up from the student sectioning queue.<br>
+ * A snapshot that does not match (different version, academic session, or a journal that belongs to a different snapshot) is ignored.
+ *
+ * @author Tomas Muller
+ */
+public class ServerSnapshot {
+	private static final int SNAPSHOT_MAGIC = 0x55534e50; // USNP
+	private static final int JOURNAL_MAGIC = 0x554a524e; // UJRN
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte STUDENT_UPDATE = 1;
+	private static final byte STUDENT_REMOVE = 2;
+	private static final byte OFFERING_UPDATE = 3;
+	private static final byte OFFERING_REMOVE = 4;
+	private static final byte EXPECTATIONS_UPDATE = 5;
+	private static final byte PROPERTY_UPDATE = 6;
+
+	private Log iLog;
+	private AcademicSessionInfo iSession;
+	private File iSnapshotFile, iJournalFile;
+	private Object iJournalLock = new Object();
+	private DataOutputStream iJournal = null;
+	private long iJournalRecords = 0;
+	private long iLastWritten = 0;
+	private ExecutorService iJournalWriter;
+	private volatile boolean iJournaling = false;
+
+	/**
+	 * Server that can be restored from a snapshot
+	 */
+	public static interface Target {
+		public void restore(XOffering offering);
+		public void restoreOfferingRemoval(Long offeringId);
+		public void restore(XStudent student);
+		public void restoreStudentRemoval(Long studentId);
+		public void restore(XExpectations expectations);
+		public void restoreProperty(String name, Object value);
+	}
+
+	/**
+	 * Captured image of the server (see {@link ServerSnapshot#capture(Collection, Collection, Collection, Map)}),
+	 * the objects are serialized when the image is stored
+	 */
+	public static class Image {
+		private long iId;
+		private List<XOffering> iOfferings;
+		private List<XStudent> iStudents;
+		private List<XExpectations> iExpectations;
+		private Map<String, Serializable> iProperties;
+
+		private Image(long id, Collection<XOffering> offerings, Collection<XStudent> students, Collection<XExpectations> expectations, Map<String, Serializable> properties) {
+			iId = id;
+			iOfferings = new ArrayList<XOffering>(offerings);
+			iStudents = new ArrayList<XStudent>(students);
+			iExpectations = new ArrayList<XExpectations>(expectations);
+			iProperties = new HashMap<String, Serializable>(properties);
+		}
+	}
+
+	public ServerSnapshot(AcademicSessionInfo session, Log log) {
+		iSession = session;
+		iLog = log;
+		File folder = new File(ApplicationProperties.getDataFolder(), "snapshot");
+		folder.mkdirs();
+		iSnapshotFile = new File(folder, session.getUniqueId() + ".snapshot");
+		iJournalFile = new File(folder, session.getUniqueId() + ".journal");
+		final String name = "SnapshotJournal-" + session.getUniqueId();
+		iJournalWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Snapshots are enabled (unitime.enrollment.server.snapshot is set to true)
+	 */
+	public static boolean isEnabled() {
+		return ApplicationProperty.OnlineSchedulingServerSnapshot.isTrue();
+	}
+
+	/**
+	 * There is a snapshot that can be restored (both the snapshot and the journal exist and the snapshot is not too old)
+	 */
+	public boolean exists() {
+		if (!iSnapshotFile.exists() || !iJournalFile.exists()) return false;
+		long maxAge = 3600000l * ApplicationProperty.OnlineSchedulingServerSnapshotMaxAge.intValue();
+		return maxAge <= 0 || System.currentTimeMillis() - iSnapshotFile.lastModified() <= maxAge;
+	}
+
+	/**
+	 * A new snapshot should be written (there is no valid snapshot or the snapshot interval has passed)
+	 */
+	public boolean isDue() {
+		if (iLastWritten == 0) return true;
+		long interval = 60000l * ApplicationProperty.OnlineSchedulingServerSnapshotInterval.intValue();
+		return interval > 0 && System.currentTimeMillis() - iLastWritten >= interval;
+	}
+
+	/**
+	 * Capture the image of the server and start a new journal. Only the references to the given objects are copied,
+	 * so the caller must make sure no change can happen on the server while this method is running (e.g., by holding the server read lock).
+	 * The objects are serialized later by {@link ServerSnapshot#store(Image)}, which does not need the lock: an object that is changed
+	 * in the meantime is also recorded in the new journal, and replaying the full state of an object is idempotent.
+	 */
+	public Image capture(Collection<XOffering> offerings, Collection<XStudent> students, Collection<XExpectations> expectations, Map<String, Serializable> properties) {
+		final long id = System.currentTimeMillis();
+		iJournaling = true;
+		// the new journal is started after the records that have been queued so far are written into the old one
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (iJournalLock) {
+					closeJournal();
+					try {
+						DataOutputStream journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(iJournalFile, false)));
+						writeHeader(journal, JOURNAL_MAGIC, id);
+						journal.flush();
+						iJournal = journal;
+						iJournalRecords = 0;
+					} catch (IOException e) {
+						iLog.warn("Failed to start journal, snapshot is no longer valid: " + e.getMessage(), e);
+						deleteFiles();
+					}
+				}
+			}
+		});
+		return new Image(id, offerings, students, expectations, properties);
+	}
+
+	/**
+	 * Serialize the captured image and store it on disk (the snapshot is first written into a temporary file which then replaces the old snapshot)
+	 */
+	public void store(Image image) throws IOException {
+		long t0 = System.currentTimeMillis();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes));
+		int count = 0;
+		out.writeInt(image.iOfferings.size());
+		for (XOffering offering: image.iOfferings) {
+			offering.writeExternal(out);
+			if (++count % 1000 == 0) out.reset();
+		}
+		out.writeInt(image.iStudents.size());
+		for (XStudent student: image.iStudents) {
+			student.writeExternal(out);
+			if (++count % 1000 == 0) out.reset();
+		}
+		out.writeInt(image.iExpectations.size());
+		for (XExpectations expectation: image.iExpectations)
+			expectation.writeExternal(out);
+		out.writeInt(image.iProperties.size());
+		for (Map.Entry<String, Serializable> property: image.iProperties.entrySet()) {
+			out.writeUTF(property.getKey());
+			out.writeObject(property.getValue());
+		}
+		out.close();
+		byte[] data = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		File temp = new File(iSnapshotFile.getParentFile(), iSnapshotFile.getName() + ".tmp");
+		DataOutputStream file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			writeHeader(file, SNAPSHOT_MAGIC, image.iId);
+			file.writeInt(data.length);
+			file.writeLong(crc.getValue());
+			file.write(data);
+			file.flush();
+		} finally {
+			file.close();
+		}
+		if (iSnapshotFile.exists() && !iSnapshotFile.delete())
+			throw new IOException("Failed to delete " + iSnapshotFile);
+		if (!temp.renameTo(iSnapshotFile))
+			throw new IOException("Failed to rename " + temp + " to " + iSnapshotFile);
+		iLastWritten = System.currentTimeMillis();
+		iLog.info("Snapshot written: " + image.iOfferings.size() + " offerings, " + image.iStudents.size() + " students, " + (data.length / 1024) + " kB in " + (iLastWritten - t0) + " ms.");
+	}
+
+	private void writeHeader(DataOutputStream out, int magic, long id) throws IOException {
+		out.writeInt(magic);
+		out.writeInt(FORMAT_VERSION);
+		out.writeUTF(Constants.getVersion());
+		out.writeLong(iSession.getUniqueId());
+		out.writeLong(id);
+	}
+
+	private long readHeader(DataInputStream in, int magic) throws IOException {
+		if (in.readInt() != magic) throw new IOException("not a snapshot file");
+		int version = in.readInt();
+		if (version != FORMAT_VERSION) throw new IOException("format version " + version + " is not supported");
+		String appVersion = in.readUTF();
+		if (!Constants.getVersion().equals(appVersion)) throw new IOException("written by a different version (" + appVersion + ")");
+		long sessionId = in.readLong();
+		if (sessionId != iSession.getUniqueId()) throw new IOException("belongs to a different academic session (" + sessionId + ")");
+		return in.readLong();
+	}
+
+	/**
+	 * Restore the snapshot and replay the journal
+	 * @return true if the snapshot was restored, false if there is no snapshot or it cannot be used
+	 */
+	public boolean restore(Target target) {
+		if (!exists()) return false;
+		long t0 = System.currentTimeMillis();
+		synchronized (iJournalLock) {
+			closeJournal();
+			try {
+				// snapshot
+				long id;
+				byte[] data;
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(iSnapshotFile)));
+				try {
+					id = readHeader(in, SNAPSHOT_MAGIC);
+					data = new byte[in.readInt()];
+					long checksum = in.readLong();
+					in.readFully(data);
+					CRC32 crc = new CRC32();
+					crc.update(data);
+					if (crc.getValue() != checksum) throw new IOException("snapshot checksum does not match");
+				} finally {
+					in.close();
+				}
+
+				// journal header
+				DataInputStream journal = new DataInputStream(new BufferedInputStream(new FileInputStream(iJournalFile)));
+				long valid;
+				int records = 0;
+				try {
+					if (readHeader(journal, JOURNAL_MAGIC) != id) throw new IOException("journal does not belong to the snapshot");
+
+					ObjectInputStream image = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
+					int offerings = image.readInt();
+					for (int i = 0; i < offerings; i++)
+						target.restore(new XOffering(image));
+					int students = image.readInt();
+					for (int i = 0; i < students; i++)
+						target.restore(new XStudent(image));
+					int expectations = image.readInt();
+					for (int i = 0; i < expectations; i++)
+						target.restore(new XExpectations(image));
+					int properties = image.readInt();
+					for (int i = 0; i < properties; i++)
+						target.restoreProperty(image.readUTF(), image.readObject());
+					image.close();
+					iLog.info("Snapshot restored: " + offerings + " offerings, " + students + " students.");
+
+					// journal records
+					valid = 2 * 4 + 2 + Constants.getVersion().getBytes("UTF-8").length + 2 * 8;
+					while (true) {
+						byte[] record;
+						try {
+							record = new byte[journal.readInt()];
+							journal.readFully(record);
+							long checksum = journal.readLong();
+							CRC32 crc = new CRC32();
+							crc.update(record);
+							if (crc.getValue() != checksum) {
+								iLog.warn("Journal record " + (1 + records) + " is corrupted, the remaining records are ignored.");
+								break;
+							}
+						} catch (EOFException e) {
+							break;
+						}
+						replay(record, target);
+						valid += 4 + record.length + 8;
+						records ++;
+					}
+				} finally {
+					journal.close();
+				}
+
+				// drop torn records (if any) and continue appending into the journal
+				RandomAccessFile raf = new RandomAccessFile(iJournalFile, "rw");
+				try {
+					raf.setLength(valid);
+				} finally {
+					raf.close();
+				}
+				iJournal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(iJournalFile, true)));
+				iJournalRecords = records;
+				iJournaling = true;
+				iLastWritten = id;
+				iLog.info("Journal replayed: " + records + " records, server restored in " + (System.currentTimeMillis() - t0) + " ms.");
+				return true;
+			} catch (Exception e) {
+				iLog.warn("Failed to restore snapshot: " + e.getMessage(), e);
+				deleteFiles();
+				return false;
+			}
+		}
+	}
+
+	private void replay(byte[] record, Target target) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record));
+		try {
+			switch (in.readByte()) {
+			case STUDENT_UPDATE:
+				target.restore(new XStudent(in));
+				break;
+			case STUDENT_REMOVE:
+				target.restoreStudentRemoval(in.readLong());
+				break;
+			case OFFERING_UPDATE:
+				target.restore(new XOffering(in));
+				break;
+			case OFFERING_REMOVE:
+				target.restoreOfferingRemoval(in.readLong());
+				break;
+			case EXPECTATIONS_UPDATE:
+				target.restore(new XExpectations(in));
+				break;
+			case PROPERTY_UPDATE:
+				target.restoreProperty(in.readUTF(), in.readObject());
+				break;
+			default:
+				throw new IOException("unknown journal record");
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void append(byte type, Object object) {
+		if (!iJournaling) return;
+		// the record is serialized right away (the object may change later), the writing is done in the background
+		final byte[] record;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeByte(type);
+			if (object instanceof XStudent)
+				((XStudent)object).writeExternal(out);
+			else if (object instanceof XOffering)
+				((XOffering)object).writeExternal(out);
+			else if (object instanceof XExpectations)
+				((XExpectations)object).writeExternal(out);
+			else if (object instanceof Long)
+				out.writeLong((Long)object);
+			else if (object instanceof Object[]) {
+				out.writeUTF((String)((Object[])object)[0]);
+				out.writeObject(((Object[])object)[1]);
+			}
+			out.close();
+			record = bytes.toByteArray();
+		} catch (IOException e) {
+			iLog.warn("Failed to serialize journal record, snapshot is no longer valid: " + e.getMessage(), e);
+			invalidate();
+			return;
+		}
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (iJournalLock) {
+					if (iJournal == null) return;
+					try {
+						CRC32 crc = new CRC32();
+						crc.update(record);
+						iJournal.writeInt(record.length);
+						iJournal.write(record);
+						iJournal.writeLong(crc.getValue());
+						iJournal.flush();
+						iJournalRecords ++;
+					} catch (IOException e) {
+						iLog.warn("Failed to write journal, snapshot is no longer valid: " + e.getMessage(), e);
+						closeJournal();
+						deleteFiles();
+					}
+				}
+			}
+		});
+	}
+
+	private Future<?> submit(Runnable task) {
+		try {
+			return iJournalWriter.submit(task);
+		} catch (RejectedExecutionException e) {
+			return null;
+		}
+	}
+
+	private void submitAndWait(Runnable task) {
+		Future<?> future = submit(task);
+		if (future == null) {
+			task.run();
+			return;
+		}
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			iLog.warn("Journal task failed: " + e.getMessage(), e);
+		}
+	}
+
+	public void journalUpdate(XStudent student) { append(STUDENT_UPDATE, student); }
+
+	public void journalStudentRemoval(Long studentId) { append(STUDENT_REMOVE, studentId); }
+
+	public void journalUpdate(XOffering offering) { append(OFFERING_UPDATE, offering); }
+
+	public void journalOfferingRemoval(Long offeringId) { append(OFFERING_REMOVE, offeringId); }
+
+	public void journalUpdate(XExpectations expectations) { append(EXPECTATIONS_UPDATE, expectations); }
+
+	public void journalProperty(String name, Serializable value) { append(PROPERTY_UPDATE, new Object[] { name, value }); }
+
+	/**
+	 * Number of journal records since the last snapshot
+	 */
+	public long getJournalRecords() { return iJournalRecords; }
+
+	private void closeJournal() {
+		if (iJournal != null) {
+			try {
+				iJournal.close();
+			} catch (IOException e) {}
+			iJournal = null;
+		}
+	}
+
+	private void deleteFiles() {
+		iJournaling = false;
+		iJournalFile.delete();
+		iSnapshotFile.delete();
+		iLastWritten = 0;
+	}
+
+	/**
+	 * Stop journaling and delete the snapshot (e.g., when all the data are being reloaded from the database).
+	 * Waits until the journal records queued so far are processed.
+	 */
+	public void invalidate() {
+		iJournaling = false;
+		submitAndWait(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (iJournalLock) {
+					closeJournal();
+					deleteFiles();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write the queued journal records and stop journaling, the snapshot stays on the disk
+	 */
+	public void close() {
+		iJournaling = false;
+		submitAndWait(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (iJournalLock) {
+					closeJournal();
+				}
+			}
+		});
+		iJournalWriter.shutdown();
+	}
+}
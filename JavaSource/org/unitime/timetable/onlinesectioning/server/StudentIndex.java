@@ -0,0 +1,191 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.unitime.timetable.onlinesectioning.model.XAreaClassificationMajor;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * Secondary (inverted) index of the students of an online sectioning server.<br>
+ * Each student gets a dense index (reused when the student is removed) and for each attribute value
+ * (academic area, classification, major, group, accommodation, status, name token or external id, wait-list)
+ * the index keeps a {@link BitSet} of the students having the value. Values are case insensitive.
+ * Filters are then evaluated as bit set intersections, see {@link org.unitime.timetable.onlinesectioning.status.CompiledStudentQuery}.<br>
+ * The index is not thread safe, the server updates it under its write lock and reads it under its read lock.
+ *
+ * @author Tomas Muller
+ */
+public class StudentIndex {
+	public static final String AREA = "area";
+	public static final String CLASSIFICATION = "classification";
+	public static final String MAJOR = "major";
+	public static final String GROUP = "group";
+	public static final String ACCOMMODATION = "accommodation";
+	/** Student name, name tokens, and external id */
+	public static final String STUDENT = "student";
+	/** Student status, students with no status are indexed under an empty string */
+	public static final String STATUS = "status";
+	/** Students with at least one wait-listed course request that is not assigned, indexed under true */
+	public static final String WAITLIST = "waitlist";
+	/** Students with at least one course request, indexed under true */
+	public static final String REQUESTS = "requests";
+
+	private Map<Long, Integer> iStudent2Index = new HashMap<Long, Integer>();
+	private List<Long> iIndex2Student = new ArrayList<Long>();
+	private BitSet iStudents = new BitSet();
+	private BitSet iFree = new BitSet();
+	private Map<String, Map<String, BitSet>> iValues = new HashMap<String, Map<String, BitSet>>();
+	private Map<Integer, List<BitSet>> iMemberships = new HashMap<Integer, List<BitSet>>();
+
+	/**
+	 * Add or update the given student (all its attribute values are re-indexed)
+	 */
+	public void update(XStudent student) {
+		Integer index = iStudent2Index.get(student.getStudentId());
+		if (index == null) {
+			index = iFree.nextSetBit(0);
+			if (index < 0) {
+				index = iIndex2Student.size();
+				iIndex2Student.add(student.getStudentId());
+			} else {
+				iFree.clear(index);
+				iIndex2Student.set(index, student.getStudentId());
+			}
+			iStudent2Index.put(student.getStudentId(), index);
+			iStudents.set(index);
+		} else {
+			clearMemberships(index);
+		}
+		List<BitSet> memberships = new ArrayList<BitSet>();
+		for (XAreaClassificationMajor acm: student.getMajors()) {
+			add(memberships, index, AREA, acm.getArea());
+			add(memberships, index, CLASSIFICATION, acm.getClassification());
+			add(memberships, index, MAJOR, acm.getMajor());
+		}
+		for (String group: student.getGroups())
+			add(memberships, index, GROUP, group);
+		for (String acc: student.getAccomodations())
+			add(memberships, index, ACCOMMODATION, acc);
+		add(memberships, index, STATUS, student.getStatus() == null ? "" : student.getStatus());
+		if (student.getName() != null) {
+			add(memberships, index, STUDENT, student.getName());
+			for (String token: student.getName().split(" |,"))
+				add(memberships, index, STUDENT, token);
+		}
+		add(memberships, index, STUDENT, student.getExternalId());
+		boolean requests = false, waitlist = false;
+		for (XRequest request: student.getRequests()) {
+			if (request instanceof XCourseRequest) {
+				requests = true;
+				XCourseRequest cr = (XCourseRequest)request;
+				if (cr.getEnrollment() == null && cr.isWaitlist()) waitlist = true;
+			}
+		}
+		if (requests) add(memberships, index, REQUESTS, "true");
+		if (waitlist) add(memberships, index, WAITLIST, "true");
+		iMemberships.put(index, memberships);
+	}
+
+	/**
+	 * Remove the given student from the index
+	 */
+	public void remove(Long studentId) {
+		Integer index = iStudent2Index.remove(studentId);
+		if (index == null) return;
+		clearMemberships(index);
+		iMemberships.remove(index);
+		iStudents.clear(index);
+		iIndex2Student.set(index, null);
+		iFree.set(index);
+	}
+
+	public void clear() {
+		iStudent2Index.clear();
+		iIndex2Student.clear();
+		iStudents.clear();
+		iFree.clear();
+		iValues.clear();
+		iMemberships.clear();
+	}
+
+	private void add(List<BitSet> memberships, int index, String attribute, String value) {
+		if (value == null) return;
+		Map<String, BitSet> values = iValues.get(attribute);
+		if (values == null) {
+			values = new HashMap<String, BitSet>();
+			iValues.put(attribute, values);
+		}
+		String key = value.toLowerCase();
+		BitSet set = values.get(key);
+		if (set == null) {
+			set = new BitSet();
+			values.put(key, set);
+		}
+		if (!set.get(index)) {
+			set.set(index);
+			memberships.add(set);
+		}
+	}
+
+	private void clearMemberships(int index) {
+		List<BitSet> memberships = iMemberships.get(index);
+		if (memberships != null)
+			for (BitSet set: memberships)
+				set.clear(index);
+	}
+
+	/**
+	 * Students having the given attribute value (case insensitive), the returned set must not be modified
+	 */
+	public BitSet get(String attribute, String value) {
+		Map<String, BitSet> values = iValues.get(attribute);
+		BitSet set = (values == null || value == null ? null : values.get(value.toLowerCase()));
+		return set == null ? new BitSet() : set;
+	}
+
+	/**
+	 * All indexed students, the returned set must not be modified
+	 */
+	public BitSet all() {
+		return iStudents;
+	}
+
+	/**
+	 * Student id of the given index
+	 */
+	public Long getStudentId(int index) {
+		return index < iIndex2Student.size() ? iIndex2Student.get(index) : null;
+	}
+
+	/**
+	 * Number of indexed students
+	 */
+	public int size() {
+		return iStudent2Index.size();
+	}
+}
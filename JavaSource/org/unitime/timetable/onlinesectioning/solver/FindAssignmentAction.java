@@ -34,7 +34,6 @@ import java.util.TreeSet;
 import java.util.Vector;
 
 import org.cpsolver.coursett.Constants;
-import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.RoomLocation;
 import org.cpsolver.coursett.model.TimeLocation;
@@ -91,7 +90,7 @@ import org.unitime.timetable.onlinesectioning.model.XCourseReservation;
 import org.unitime.timetable.onlinesectioning.model.XDistributionType;
 import org.unitime.timetable.onlinesectioning.model.XDummyReservation;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
-import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XDistribution;
 import org.unitime.timetable.onlinesectioning.model.XOffering;
@@ -204,7 +203,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 								if (ci != null) {
 									XOffering x = server.getOffering(ci.getOfferingId());
 									if (x != null) {
-										cr.getCourses().add(clone(x, server.getEnrollments(x.getOfferingId()), ci.getCourseId(), student.getId(), original, classTable, server, model));
+										cr.getCourses().add(clone(x, server.getEnrollmentCounts(x.getOfferingId()), ci.getCourseId(), student.getId(), original, classTable, server, model));
 										distributions.addAll(x.getDistributions());
 									}
 								}
@@ -378,18 +377,29 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 	}
 	
 	@SuppressWarnings("unchecked")
-	protected Course clone(XOffering offering, XEnrollments enrollments, Long courseId, long studentId, XStudent originalStudent, Map<Long, Section> sections, OnlineSectioningServer server, StudentSectioningModel model) {
+	protected static XEnrollment getEnrollment(XStudent student, Long offeringId) {
+		if (student == null) return null;
+		for (XRequest request: student.getRequests())
+			if (request instanceof XCourseRequest) {
+				XEnrollment enrollment = ((XCourseRequest)request).getEnrollment();
+				if (enrollment != null && enrollment.getOfferingId().equals(offeringId)) return enrollment;
+			}
+		return null;
+	}
+	
+	protected Course clone(XOffering offering, XEnrollmentCounts enrollments, Long courseId, long studentId, XStudent originalStudent, Map<Long, Section> sections, OnlineSectioningServer server, StudentSectioningModel model) {
 		Offering clonedOffering = new Offering(offering.getOfferingId(), offering.getName());
 		clonedOffering.setModel(model);
 		XExpectations expectations = server.getExpectations(offering.getOfferingId());
+		OfferingFragmentCache.Fragment fragment = OfferingFragmentCache.getFragment(server.getAcademicSession().getUniqueId(), offering);
+		// current enrollment of the student in the offering (its own enrollment is not counted against the limits)
+		XEnrollment studentEnrollment = (originalStudent != null && originalStudent.getStudentId().equals(studentId) ? getEnrollment(originalStudent, offering.getOfferingId()) : null);
 		XCourse course = offering.getCourse(courseId);
 		int courseLimit = course.getLimit();
 		if (courseLimit >= 0) {
 			courseLimit -= enrollments.countEnrollmentsForCourse(courseId);
 			if (courseLimit < 0) courseLimit = 0;
-			for (XEnrollment enrollment: enrollments.getEnrollmentsForCourse(courseId)) {
-				if (enrollment.getStudentId().equals(studentId)) { courseLimit++; break; }
-			}
+			if (studentEnrollment != null && studentEnrollment.getCourseId().equals(courseId)) courseLimit++;
 		}
 		Course clonedCourse = new Course(courseId, course.getSubjectArea(), course.getCourseNumber(), clonedOffering, courseLimit, course.getProjected());
 		clonedCourse.setNote(course.getNote());
@@ -399,9 +409,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 			int configLimit = config.getLimit();
 			int configEnrl = enrollments.countEnrollmentsForConfig(config.getConfigId());
 			boolean configStudent = false;
-			if (studentId >= 0)
-				for (XEnrollment enrollment: enrollments.getEnrollmentsForConfig(config.getConfigId()))
-					if (enrollment.getStudentId().equals(studentId)) { configEnrl--; configStudent = true; break; }
+			if (studentEnrollment != null && studentEnrollment.getConfigId().equals(config.getConfigId())) { configEnrl--; configStudent = true; }
 			if (configLimit >= 0) {
 				// limited configuration, deduct enrollments
 				configLimit -= configEnrl;
@@ -425,37 +433,25 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 					int limit = section.getLimit();
 					int enrl = enrollments.countEnrollmentsForSection(section.getSectionId());
 					boolean student = false;
-					if (studentId >= 0)
-						for (XEnrollment enrollment: enrollments.getEnrollmentsForSection(section.getSectionId()))
-							if (enrollment.getStudentId().equals(studentId)) { enrl--; student = true; break; }
+					if (studentEnrollment != null && studentEnrollment.getSectionIds().contains(section.getSectionId())) { enrl--; student = true; }
 					if (limit >= 0) {
 						// limited section, deduct enrollments
 						limit -= enrl;
 						if (limit < 0) limit = 0; // over-enrolled, but not unlimited
 						if (student && limit == 0) limit = 1; // allow enrolled student in
 					}
-                    List<RoomLocation> rooms = new ArrayList<RoomLocation>();
-                    for (XRoom r: section.getRooms())
-                    	rooms.add(new RoomLocation(r.getUniqueId(), r.getName(), null, 0, 0, r.getX(), r.getY(), r.getIgnoreTooFar(), null));
-                    Placement placement = section.getTime() == null || section.getTime().getDays() == 0 ? null : new Placement(
-                    		new Lecture(section.getSectionId(), null, section.getSubpartId(), section.getName(), new ArrayList<TimeLocation>(), new ArrayList<RoomLocation>(), section.getNrRooms(), null, section.getLimit(), section.getLimit(), 1.0),
-                    		new TimeLocation(section.getTime().getDays(), section.getTime().getSlot(), section.getTime().getLength(), 0, 0.0,
-                    				section.getTime().getDatePatternId(), section.getTime().getDatePatternName(), section.getTime().getWeeks(),
-                    				section.getTime().getBreakTime()),
-                    		rooms);
 					OnlineSection clonedSection = new OnlineSection(section.getSectionId(), limit,
-							section.getName(course.getCourseId()), clonedSubpart, placement, section.toInstructors(),
+							section.getName(course.getCourseId()), clonedSubpart, fragment.getPlacement(section.getSectionId()), fragment.getInstructors(section.getSectionId()),
 							(section.getParentId() == null ? null : sections.get(section.getParentId())));
 					clonedSection.setName(-1l, section.getName(-1l));
 					clonedSection.setNote(section.getNote());
 					clonedSection.setSpaceExpected(expectations.getExpectedSpace(section.getSectionId()));
 					clonedSection.setEnrollment(enrl);
 					clonedSection.setCancelled(section.isCancelled());
-					for (XDistribution distribution: offering.getDistributions())
-						if (distribution.getDistributionType() == XDistributionType.IngoreConflicts && distribution.hasSection(section.getSectionId()))
-							for (Long id: distribution.getSectionIds())
-								if (!id.equals(section.getSectionId()))
-									clonedSection.addIgnoreConflictWith(id);
+					Set<Long> ignoreConflicts = fragment.getIgnoreConflicts(section.getSectionId());
+					if (ignoreConflicts != null)
+						for (Long id: ignoreConflicts)
+							clonedSection.addIgnoreConflictWith(id);
 			        if (limit > 0) {
 			        	double available = Math.round(clonedSection.getSpaceExpected() - limit);
 						clonedSection.setPenalty(available / section.getLimit());
@@ -470,9 +466,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 			if (reservationLimit >= 0) {
 				reservationLimit -= enrollments.countEnrollmentsForReservation(reservation.getReservationId());
 				if (reservationLimit < 0) reservationLimit = 0;
-				for (XEnrollment enrollment: enrollments.getEnrollmentsForReservation(reservation.getReservationId())) {
-					if (enrollment.getStudentId().equals(studentId)) { reservationLimit++; break; }
-				}
+				if (studentEnrollment != null && studentEnrollment.getReservation() != null && studentEnrollment.getReservation().getReservationId().equals(reservation.getReservationId())) reservationLimit++;
 				if (reservationLimit <= 0 && !(reservation.mustBeUsed() & !reservation.isExpired())) continue;
 			}
 			boolean applicable = originalStudent != null && reservation.isApplicable(originalStudent);
@@ -480,8 +474,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 				applicable = ((XCourseReservation)reservation).getCourseId().equals(courseId);
 			if (reservation instanceof XDummyReservation) {
 				// Ignore by reservation only flag (dummy reservation) when the student is already enrolled in the course
-				for (XEnrollment enrollment: enrollments.getEnrollmentsForCourse(courseId))
-					if (enrollment.getStudentId().equals(studentId)) { applicable = true; break; }
+				if (studentEnrollment != null && studentEnrollment.getCourseId().equals(courseId)) applicable = true;
 			}
 			if (applicable && reservation.mustBeUsed() && !reservation.isExpired()) hasMustUse = true;
 			Reservation clonedReservation = new OnlineReservation(reservation.getType().ordinal(), reservation.getReservationId(), clonedOffering,
@@ -497,23 +490,20 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 			}
 		}
 		// There are reservations >> allow user to keep the current enrollment by providing a dummy reservation for it
-		if (!offering.getReservations().isEmpty())
-			for (XEnrollment enrollment: enrollments.getEnrollmentsForCourse(courseId))
-				if (enrollment.getStudentId().equals(studentId)) {
-					Reservation clonedReservation = null;
-					if (hasMustUse) {
-						clonedReservation = new OnlineReservation(XReservationType.Dummy.ordinal(), -2l, clonedOffering, 0, false, 1, true, true, false, true) {
-							@Override
-							public boolean mustBeUsed() { return true; }
-						};
-					} else {
-						clonedReservation = new OnlineReservation(XReservationType.Dummy.ordinal(), -2l, clonedOffering, 0, false, 1, true, false, false, true);
-					}
-					clonedReservation.addConfig(configs.get(enrollment.getConfigId()));
-					for (Long sectionId: enrollment.getSectionIds())
-						clonedReservation.addSection(sections.get(sectionId));
-					break;
-				}
+		if (!offering.getReservations().isEmpty() && studentEnrollment != null && studentEnrollment.getCourseId().equals(courseId)) {
+			Reservation clonedReservation = null;
+			if (hasMustUse) {
+				clonedReservation = new OnlineReservation(XReservationType.Dummy.ordinal(), -2l, clonedOffering, 0, false, 1, true, true, false, true) {
+					@Override
+					public boolean mustBeUsed() { return true; }
+				};
+			} else {
+				clonedReservation = new OnlineReservation(XReservationType.Dummy.ordinal(), -2l, clonedOffering, 0, false, 1, true, false, false, true);
+			}
+			clonedReservation.addConfig(configs.get(studentEnrollment.getConfigId()));
+			for (Long sectionId: studentEnrollment.getSectionIds())
+				clonedReservation.addSection(sections.get(sectionId));
+		}
 		return clonedCourse;
 	}
 	
@@ -538,7 +528,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 					XOffering offering = null;
 					if (courseInfo != null) offering = server.getOffering(courseInfo.getOfferingId());
 					if (offering != null) {
-						Course course = clone(offering, server.getEnrollments(offering.getOfferingId()), courseInfo.getCourseId(), student.getId(), originalStudent, classTable, server, model);
+						Course course = clone(offering, server.getEnrollmentCounts(offering.getOfferingId()), courseInfo.getCourseId(), student.getId(), originalStudent, classTable, server, model);
 						cr.add(course);
 						if (rc.hasSelectedIntructionalMethods()) {
 							for (Config config: course.getOffering().getConfigs()) {
@@ -747,7 +737,7 @@ public class FindAssignmentAction implements OnlineSectioningAction<List<ClassAs
 				}
 				XOffering offering = server.getOffering(course.getOffering().getId());
 				ca.setTitle(offering.getCourse(course.getId()).getTitle());
-				XEnrollments enrl = server.getEnrollments(offering.getOfferingId());
+				XEnrollmentCounts enrl = server.getEnrollmentCounts(offering.getOfferingId());
 				for (Iterator<Section> i = sections.iterator(); i.hasNext();) {
 					Section section = (Section)i.next();
 					ClassAssignmentInterface.ClassAssignment a = ca.addClassAssignment();
@@ -0,0 +1,213 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.studentsct.model.Instructor;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.onlinesectioning.model.XConfig;
+import org.unitime.timetable.onlinesectioning.model.XDistribution;
+import org.unitime.timetable.onlinesectioning.model.XDistributionType;
+import org.unitime.timetable.onlinesectioning.model.XInstructor;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRoom;
+import org.unitime.timetable.onlinesectioning.model.XSection;
+import org.unitime.timetable.onlinesectioning.model.XSubpart;
+import org.unitime.timetable.onlinesectioning.model.XTime;
+import org.unitime.timetable.util.BoundedCache;
+
+/**
+ * Cache of the parts of the online sectioning model that only depend on the offering (not on the enrollments or on the student),
+ * used by {@link FindAssignmentAction} and {@link ComputeSuggestionsAction} when cloning an offering into a new model.
+ * For each section, it keeps the placement (time and rooms), the list of instructors, and the sections with which the
+ * section is allowed to overlap (ignore conflicts distribution).<br>
+ * A fragment is valid for the offering instance it was created for, or for any other instance with the same fingerprint
+ * (a hash of the section times, rooms, limits, instructors, and ignore conflicts distributions). This way, fragments are also reused
+ * by the replicated servers, where each access of an offering returns a new (deserialized) instance.
+ * Servers also call {@link OfferingFragmentCache#invalidate(Long)} when an offering is updated or removed.
+ * At most {@link ApplicationProperty#OnlineSchedulingServerFragmentCacheSize} fragments are kept, the least recently used ones are evicted.
+ *
+ * @author Tomas Muller
+ */
+public class OfferingFragmentCache {
+	private static BoundedCache<Long, Fragment> sFragments = new BoundedCache<Long, Fragment>("OfferingFragmentCache",
+			ApplicationProperty.OnlineSchedulingServerFragmentCacheSize.intValue(), 0, BoundedCache.sSingleton, true);
+	private static AtomicLong sHits = new AtomicLong(0), sMisses = new AtomicLong(0);
+
+	/**
+	 * Return cached fragment for the given offering, create a new one if there is no fragment or if it was created for
+	 * a different instance of the offering with a different fingerprint
+	 */
+	public static Fragment getFragment(Long sessionId, XOffering offering) {
+		Fragment fragment = sFragments.get(offering.getOfferingId());
+		if (fragment != null && (fragment.getOffering() == offering || fragment.getFingerprint() == fingerprint(offering))) {
+			sHits.incrementAndGet();
+			return fragment;
+		}
+		sMisses.incrementAndGet();
+		fragment = new Fragment(sessionId, offering);
+		sFragments.put(offering.getOfferingId(), fragment);
+		return fragment;
+	}
+
+	/**
+	 * Hash of the parts of the offering that the fragment depends on
+	 */
+	public static long fingerprint(XOffering offering) {
+		long h = offering.getOfferingId();
+		for (XConfig config: offering.getConfigs())
+			for (XSubpart subpart: config.getSubparts())
+				for (XSection section: subpart.getSections()) {
+					h = 31 * h + section.getSectionId();
+					h = 31 * h + hash(section.getSubpartId());
+					h = 31 * h + hash(section.getName());
+					h = 31 * h + section.getLimit();
+					h = 31 * h + section.getNrRooms();
+					XTime time = section.getTime();
+					if (time != null) {
+						h = 31 * h + time.getDays();
+						h = 31 * h + time.getSlot();
+						h = 31 * h + time.getLength();
+						h = 31 * h + time.getBreakTime();
+						h = 31 * h + hash(time.getDatePatternId());
+						h = 31 * h + hash(time.getDatePatternName());
+						h = 31 * h + hash(time.getWeeks());
+					}
+					for (XRoom room: section.getRooms()) {
+						h = 31 * h + hash(room.getUniqueId());
+						h = 31 * h + hash(room.getName());
+						h = 31 * h + hash(room.getX());
+						h = 31 * h + hash(room.getY());
+						h = 31 * h + (room.getIgnoreTooFar() ? 1 : 0);
+					}
+					if (section.getInstructors() != null)
+						for (XInstructor instructor: section.getInstructors()) {
+							h = 31 * h + hash(instructor.getIntructorId());
+							h = 31 * h + hash(instructor.getExternalId());
+							h = 31 * h + hash(instructor.getName());
+							h = 31 * h + hash(instructor.getEmail());
+						}
+				}
+		for (XDistribution distribution: offering.getDistributions())
+			if (distribution.getDistributionType() == XDistributionType.IngoreConflicts)
+				h = 31 * h + hash(distribution.getSectionIds());
+		return h;
+	}
+
+	private static int hash(Object o) {
+		return (o == null ? 0 : o.hashCode());
+	}
+
+	/**
+	 * Drop the cached fragment of the given offering
+	 */
+	public static void invalidate(Long offeringId) {
+		sFragments.remove(offeringId);
+	}
+
+	/**
+	 * Drop all cached fragments of the given academic session
+	 */
+	public static void clear(Long sessionId) {
+		if (sessionId == null) {
+			sFragments.clear();
+			return;
+		}
+		for (Long offeringId: sFragments.keys()) {
+			Fragment fragment = sFragments.get(offeringId);
+			if (fragment != null && sessionId.equals(fragment.getSessionId())) sFragments.remove(offeringId);
+		}
+	}
+
+	public static int size() { return sFragments.size(); }
+	public static long getHits() { return sHits.get(); }
+	public static long getMisses() { return sMisses.get(); }
+
+	public static class Fragment {
+		private Long iSessionId;
+		private XOffering iOffering;
+		private long iFingerprint;
+		private Map<Long, Placement> iPlacements = new HashMap<Long, Placement>();
+		private Map<Long, List<Instructor>> iInstructors = new HashMap<Long, List<Instructor>>();
+		private Map<Long, Set<Long>> iIgnoreConflicts = new HashMap<Long, Set<Long>>();
+
+		private Fragment(Long sessionId, XOffering offering) {
+			iSessionId = sessionId;
+			iOffering = offering;
+			iFingerprint = fingerprint(offering);
+			for (XConfig config: offering.getConfigs())
+				for (XSubpart subpart: config.getSubparts())
+					for (XSection section: subpart.getSections()) {
+						List<RoomLocation> rooms = new ArrayList<RoomLocation>();
+						for (XRoom r: section.getRooms())
+							rooms.add(new RoomLocation(r.getUniqueId(), r.getName(), null, 0, 0, r.getX(), r.getY(), r.getIgnoreTooFar(), null));
+						Placement placement = section.getTime() == null || section.getTime().getDays() == 0 ? null : new Placement(
+								new Lecture(section.getSectionId(), null, section.getSubpartId(), section.getName(), new ArrayList<TimeLocation>(), new ArrayList<RoomLocation>(), section.getNrRooms(), null, section.getLimit(), section.getLimit(), 1.0),
+								new TimeLocation(section.getTime().getDays(), section.getTime().getSlot(), section.getTime().getLength(), 0, 0.0,
+										section.getTime().getDatePatternId(), section.getTime().getDatePatternName(), section.getTime().getWeeks(),
+										section.getTime().getBreakTime()),
+								rooms);
+						if (placement != null)
+							iPlacements.put(section.getSectionId(), placement);
+						List<Instructor> instructors = section.toInstructors();
+						if (instructors != null)
+							iInstructors.put(section.getSectionId(), instructors);
+					}
+			for (XDistribution distribution: offering.getDistributions())
+				if (distribution.getDistributionType() == XDistributionType.IngoreConflicts)
+					for (Long sectionId: distribution.getSectionIds()) {
+						Set<Long> ignore = iIgnoreConflicts.get(sectionId);
+						if (ignore == null) {
+							ignore = new HashSet<Long>();
+							iIgnoreConflicts.put(sectionId, ignore);
+						}
+						for (Long id: distribution.getSectionIds())
+							if (!id.equals(sectionId)) ignore.add(id);
+					}
+		}
+
+		public Long getSessionId() { return iSessionId; }
+
+		public XOffering getOffering() { return iOffering; }
+
+		/** Fingerprint of the offering for which the fragment was created, see {@link OfferingFragmentCache#fingerprint(XOffering)} */
+		public long getFingerprint() { return iFingerprint; }
+
+		/** Section placement, null when the section has no time (arranged hours) */
+		public Placement getPlacement(Long sectionId) { return iPlacements.get(sectionId); }
+
+		/** Section instructors, null when the section has no instructors */
+		public List<Instructor> getInstructors(Long sectionId) { return iInstructors.get(sectionId); }
+
+		/** Sections with which the given section is allowed to overlap, null if there are none */
+		public Set<Long> getIgnoreConflicts(Long sectionId) { return iIgnoreConflicts.get(sectionId); }
+	}
+}
@@ -0,0 +1,456 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.status;
+
+import java.io.Serializable;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.unitime.timetable.gwt.server.Query;
+import org.unitime.timetable.gwt.server.Query.AndTerm;
+import org.unitime.timetable.gwt.server.Query.AtomTerm;
+import org.unitime.timetable.gwt.server.Query.NotTerm;
+import org.unitime.timetable.gwt.server.Query.OrTerm;
+import org.unitime.timetable.gwt.server.Query.Term;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.match.AbstractStudentMatcher;
+import org.unitime.timetable.onlinesectioning.match.IndexedStudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XAreaClassificationMajor;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.model.XStudentId;
+import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
+import org.unitime.timetable.onlinesectioning.server.StudentIndex;
+import org.unitime.timetable.onlinesectioning.status.StatusPageSuggestionsAction.StudentMatcher;
+
+/**
+ * Sectioning status query compiled into typed student predicates.<br>
+ * The {@link Query} term tree is walked once: each attribute is resolved into a node that compares the student's
+ * values directly (instead of dispatching on the attribute name for every student, like {@link StudentMatcher} does),
+ * and that can also be evaluated on a {@link StudentIndex} as a bit set (and / or / not being intersection, union, and complement).
+ * <ul>
+ * <li>{@link CompiledStudentQuery#match(XStudent)} and {@link CompiledStudentQuery#select(StudentIndex)} have the same
+ * semantics as the {@link StudentMatcher} (used for students without course requests).
+ * <li>{@link CompiledStudentQuery#bound(StudentIndex)} is a necessary condition on the student of a course request matched by the
+ * {@link StatusPageSuggestionsAction.CourseRequestMatcher}: the student level conditions (area, classification, major, group, accommodation, student,
+ * status, and wait-listed) of the top-level conjunction. Requests of students outside of the bound do not need to be checked.
+ * </ul>
+ *
+ * @author Tomas Muller
+ */
+public class CompiledStudentQuery implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private Node iStudentNode;
+	private Node iBoundNode;
+
+	public CompiledStudentQuery(Query query, String defaultStatus) {
+		iStudentNode = compile(query.getQuery(), defaultStatus);
+		iBoundNode = bound(query.getQuery(), defaultStatus);
+	}
+
+	/**
+	 * Same as <code>query.match(new StudentMatcher(student, defaultStatus))</code>
+	 */
+	public boolean match(XStudent student) {
+		return iStudentNode.match(student);
+	}
+
+	/**
+	 * Students matching the query (same as {@link CompiledStudentQuery#match(XStudent)}), evaluated on the index
+	 */
+	public BitSet select(StudentIndex index) {
+		return iStudentNode.select(index);
+	}
+
+	/**
+	 * True if there are some student level conditions that a course request must meet to match the query
+	 */
+	public boolean hasBound() {
+		return iBoundNode != null;
+	}
+
+	/**
+	 * Students that can have a course request matching the query, null if there is no such condition
+	 */
+	public BitSet bound(StudentIndex index) {
+		return iBoundNode == null ? null : iBoundNode.select(index);
+	}
+
+	/**
+	 * Check the student against the bound, true if there is no bound
+	 */
+	public boolean inBound(XStudent student) {
+		return iBoundNode == null || iBoundNode.match(student);
+	}
+
+	protected static String attribute(String attr) {
+		if (attr == null) return null;
+		if ("area".equals(attr)) return StudentIndex.AREA;
+		if ("clasf".equals(attr) || "classification".equals(attr)) return StudentIndex.CLASSIFICATION;
+		if ("major".equals(attr)) return StudentIndex.MAJOR;
+		if ("group".equals(attr)) return StudentIndex.GROUP;
+		if ("accommodation".equals(attr)) return StudentIndex.ACCOMMODATION;
+		if ("student".equals(attr)) return StudentIndex.STUDENT;
+		if ("status".equals(attr)) return StudentIndex.STATUS;
+		return null;
+	}
+
+	protected static boolean isStudentLevel(Term term) {
+		if (term instanceof AtomTerm)
+			return attribute(((AtomTerm)term).getAttr()) != null;
+		if (term instanceof NotTerm)
+			return isStudentLevel(((NotTerm)term).getTerm());
+		if (term instanceof Query.CompositeTerm) {
+			if (((Query.CompositeTerm)term).getTerms().isEmpty()) return false;
+			for (Term t: ((Query.CompositeTerm)term).getTerms())
+				if (!isStudentLevel(t)) return false;
+			return true;
+		}
+		return false;
+	}
+
+	protected static Node compile(Term term, String defaultStatus) {
+		if (term instanceof AndTerm) {
+			List<Node> nodes = new ArrayList<Node>();
+			for (Term t: ((AndTerm)term).getTerms())
+				nodes.add(compile(t, defaultStatus));
+			return new AndNode(nodes);
+		}
+		if (term instanceof OrTerm) {
+			if (((OrTerm)term).getTerms().isEmpty()) return new ConstantNode(true);
+			List<Node> nodes = new ArrayList<Node>();
+			for (Term t: ((OrTerm)term).getTerms())
+				nodes.add(compile(t, defaultStatus));
+			return new OrNode(nodes);
+		}
+		if (term instanceof NotTerm)
+			return new NotNode(compile(((NotTerm)term).getTerm(), defaultStatus));
+		if (term instanceof AtomTerm) {
+			String attr = ((AtomTerm)term).getAttr();
+			String body = ((AtomTerm)term).getBody();
+			if (attr == null && body.isEmpty()) return new ConstantNode(true);
+			if ("limit".equals(attr)) return new ConstantNode(true);
+			if ("registered".equals(attr)) return new ConstantNode(!("true".equalsIgnoreCase(body) || "1".equalsIgnoreCase(body)));
+			String attribute = attribute(attr);
+			if (StudentIndex.STUDENT.equals(attribute)) return new StudentNode(body);
+			if (StudentIndex.STATUS.equals(attribute)) return new StatusNode(body, defaultStatus);
+			if (attribute != null) return new ValueNode(attribute, body);
+			return new ConstantNode(false);
+		}
+		return new ConstantNode(false);
+	}
+
+	protected static Node bound(Term term, String defaultStatus) {
+		if (isStudentLevel(term))
+			return compile(term, defaultStatus);
+		if (term instanceof AtomTerm) {
+			String attr = ((AtomTerm)term).getAttr();
+			String body = ((AtomTerm)term).getBody();
+			if ((("waitlisted".equals(attr) || "waitlist".equals(attr)) && ("true".equalsIgnoreCase(body) || "1".equalsIgnoreCase(body))) ||
+				("assignment".equals(attr) && "Wait-Listed".equalsIgnoreCase(body)))
+				return new WaitlistNode();
+			return null;
+		}
+		if (term instanceof AndTerm) {
+			List<Node> nodes = new ArrayList<Node>();
+			for (Term t: ((AndTerm)term).getTerms()) {
+				Node node = bound(t, defaultStatus);
+				if (node != null) nodes.add(node);
+			}
+			return nodes.isEmpty() ? null : nodes.size() == 1 ? nodes.get(0) : new AndNode(nodes);
+		}
+		if (term instanceof OrTerm) {
+			if (((OrTerm)term).getTerms().isEmpty()) return null;
+			List<Node> nodes = new ArrayList<Node>();
+			for (Term t: ((OrTerm)term).getTerms()) {
+				Node node = bound(t, defaultStatus);
+				if (node == null) return null;
+				nodes.add(node);
+			}
+			return new OrNode(nodes);
+		}
+		return null;
+	}
+
+	protected static boolean eq(String name, String term) {
+		if (name == null) return false;
+		return name.equalsIgnoreCase(term);
+	}
+
+	protected static boolean has(String name, String term) {
+		if (name == null) return false;
+		if (eq(name, term)) return true;
+		for (String t: name.split(" |,"))
+			if (t.equalsIgnoreCase(term)) return true;
+		return false;
+	}
+
+	protected static interface Node extends Serializable {
+		public boolean match(XStudent student);
+		public BitSet select(StudentIndex index);
+	}
+
+	protected static class ConstantNode implements Node {
+		private static final long serialVersionUID = 1L;
+		private boolean iValue;
+		ConstantNode(boolean value) { iValue = value; }
+		@Override
+		public boolean match(XStudent student) { return iValue; }
+		@Override
+		public BitSet select(StudentIndex index) { return iValue ? (BitSet)index.all().clone() : new BitSet(); }
+	}
+
+	protected static class AndNode implements Node {
+		private static final long serialVersionUID = 1L;
+		private List<Node> iNodes;
+		AndNode(List<Node> nodes) { iNodes = nodes; }
+		@Override
+		public boolean match(XStudent student) {
+			for (Node node: iNodes)
+				if (!node.match(student)) return false;
+			return true;
+		}
+		@Override
+		public BitSet select(StudentIndex index) {
+			BitSet ret = null;
+			for (Node node: iNodes) {
+				BitSet set = node.select(index);
+				if (ret == null) ret = set; else ret.and(set);
+				if (ret.isEmpty()) break;
+			}
+			return ret == null ? (BitSet)index.all().clone() : ret;
+		}
+	}
+
+	protected static class OrNode implements Node {
+		private static final long serialVersionUID = 1L;
+		private List<Node> iNodes;
+		OrNode(List<Node> nodes) { iNodes = nodes; }
+		@Override
+		public boolean match(XStudent student) {
+			for (Node node: iNodes)
+				if (node.match(student)) return true;
+			return false;
+		}
+		@Override
+		public BitSet select(StudentIndex index) {
+			BitSet ret = new BitSet();
+			for (Node node: iNodes)
+				ret.or(node.select(index));
+			return ret;
+		}
+	}
+
+	protected static class NotNode implements Node {
+		private static final long serialVersionUID = 1L;
+		private Node iNode;
+		NotNode(Node node) { iNode = node; }
+		@Override
+		public boolean match(XStudent student) { return !iNode.match(student); }
+		@Override
+		public BitSet select(StudentIndex index) {
+			BitSet ret = (BitSet)index.all().clone();
+			ret.andNot(iNode.select(index));
+			return ret;
+		}
+	}
+
+	protected static class ValueNode implements Node {
+		private static final long serialVersionUID = 1L;
+		private String iAttribute, iValue;
+		ValueNode(String attribute, String value) { iAttribute = attribute; iValue = value; }
+		@Override
+		public boolean match(XStudent student) {
+			if (StudentIndex.AREA.equals(iAttribute)) {
+				for (XAreaClassificationMajor acm: student.getMajors())
+					if (eq(acm.getArea(), iValue)) return true;
+			} else if (StudentIndex.CLASSIFICATION.equals(iAttribute)) {
+				for (XAreaClassificationMajor acm: student.getMajors())
+					if (eq(acm.getClassification(), iValue)) return true;
+			} else if (StudentIndex.MAJOR.equals(iAttribute)) {
+				for (XAreaClassificationMajor acm: student.getMajors())
+					if (eq(acm.getMajor(), iValue)) return true;
+			} else if (StudentIndex.GROUP.equals(iAttribute)) {
+				for (String group: student.getGroups())
+					if (eq(group, iValue)) return true;
+			} else if (StudentIndex.ACCOMMODATION.equals(iAttribute)) {
+				for (String acc: student.getAccomodations())
+					if (eq(acc, iValue)) return true;
+			}
+			return false;
+		}
+		@Override
+		public BitSet select(StudentIndex index) { return (BitSet)index.get(iAttribute, iValue).clone(); }
+	}
+
+	protected static class StudentNode implements Node {
+		private static final long serialVersionUID = 1L;
+		private String iValue;
+		StudentNode(String value) { iValue = value; }
+		@Override
+		public boolean match(XStudent student) {
+			return has(student.getName(), iValue) || eq(student.getExternalId(), iValue) || eq(student.getName(), iValue);
+		}
+		@Override
+		public BitSet select(StudentIndex index) { return (BitSet)index.get(StudentIndex.STUDENT, iValue).clone(); }
+	}
+
+	protected static class StatusNode implements Node {
+		private static final long serialVersionUID = 1L;
+		private String iValue, iDefaultStatus;
+		private boolean iNotSet, iDefault;
+		StatusNode(String value, String defaultStatus) {
+			iValue = value; iDefaultStatus = defaultStatus;
+			iNotSet = "default".equalsIgnoreCase(value) || "Not Set".equalsIgnoreCase(value);
+			iDefault = !iNotSet && value.equalsIgnoreCase(defaultStatus);
+		}
+		@Override
+		public boolean match(XStudent student) {
+			if (iNotSet) return student.getStatus() == null;
+			return iValue.equalsIgnoreCase(student.getStatus() == null ? iDefaultStatus : student.getStatus());
+		}
+		@Override
+		public BitSet select(StudentIndex index) {
+			if (iNotSet) return (BitSet)index.get(StudentIndex.STATUS, "").clone();
+			BitSet ret = (BitSet)index.get(StudentIndex.STATUS, iValue).clone();
+			if (iDefault) ret.or(index.get(StudentIndex.STATUS, ""));
+			return ret;
+		}
+	}
+
+	protected static class WaitlistNode implements Node {
+		private static final long serialVersionUID = 1L;
+		@Override
+		public boolean match(XStudent student) {
+			for (XRequest r: student.getRequests())
+				if (r instanceof XCourseRequest && ((XCourseRequest)r).getEnrollment() == null && ((XCourseRequest)r).isWaitlist()) return true;
+			return false;
+		}
+		@Override
+		public BitSet select(StudentIndex index) { return (BitSet)index.get(StudentIndex.WAITLIST, "true").clone(); }
+	}
+
+	/**
+	 * Students that can have a course request matching the given query (see {@link CompiledStudentQuery#bound(StudentIndex)})
+	 */
+	public static class BoundMatcher extends AbstractStudentMatcher implements IndexedStudentMatcher {
+		private static final long serialVersionUID = 1L;
+		private CompiledStudentQuery iQuery;
+
+		public BoundMatcher(CompiledStudentQuery query) {
+			iQuery = query;
+		}
+
+		@Override
+		public boolean match(XStudentId id) {
+			XStudent student = (id instanceof XStudent ? (XStudent)id : getServer().getStudent(id.getStudentId()));
+			return student != null && iQuery.inBound(student);
+		}
+
+		@Override
+		public BitSet select(StudentIndex index) {
+			return iQuery.bound(index);
+		}
+	}
+
+	/**
+	 * Ids of the students that can have a course request matching the given query. Returns null when there is no such condition
+	 * or when the server does not keep a {@link StudentIndex} (in which case it is cheaper to check the course requests directly).
+	 */
+	public static Set<Long> getBoundStudentIds(OnlineSectioningServer server, Query query, String defaultStatus) {
+		if (!(server instanceof InMemoryServer)) return null;
+		CompiledStudentQuery compiled = new CompiledStudentQuery(query, defaultStatus);
+		if (!compiled.hasBound()) return null;
+		Set<Long> ret = new HashSet<Long>();
+		for (XStudentId id: server.findStudents(new BoundMatcher(compiled)))
+			ret.add(id.getStudentId());
+		return ret;
+	}
+
+	/**
+	 * Benchmark: compare the {@link StudentMatcher} based evaluation with the compiled query (with and without the index).<br>
+	 * System properties: students (number of students, defaults to 40000), repeat (number of evaluations of each query, defaults to 20).
+	 */
+	public static void main(String[] args) {
+		int nrStudents = Integer.getInteger("students", 40000);
+		int repeat = Integer.getInteger("repeat", 20);
+		String defaultStatus = "Enabled";
+		Random rnd = new Random(13);
+		String[] areas = new String[] {"A", "BIO", "CHEM", "ENGR", "LA", "MGMT", "PHYS", "SCI", "TECH", "PHAR"};
+		String[] clasfs = new String[] {"01", "02", "03", "04", "05", "06", "07", "08", "GR"};
+		String[] groups = new String[] {"ATHL", "HONR", "SPEC", "VET", "INTL"};
+		String[] accommodations = new String[] {"WC", "SD", "LT"};
+		String[] statuses = new String[] {null, null, null, "Disabled", "Assistant", "Enabled"};
+		String[] firstNames = new String[] {"John", "Jane", "Alice", "Bob", "Carol", "Dave", "Eve", "Frank", "Grace", "Heidi"};
+		String[] lastNames = new String[] {"Smith", "Doe", "Brown", "Johnson", "Miller", "Davis", "Garcia", "Wilson", "Moore", "Taylor"};
+		List<XStudent> students = new ArrayList<XStudent>();
+		StudentIndex index = new StudentIndex();
+		for (int i = 0; i < nrStudents; i++) {
+			XStudent student = new XStudent((long)i, String.valueOf(1000000 + i), lastNames[rnd.nextInt(lastNames.length)] + ", " + firstNames[rnd.nextInt(firstNames.length)]);
+			for (int j = 1 + (rnd.nextInt(5) == 0 ? 1 : 0); j > 0; j--) {
+				String area = areas[rnd.nextInt(areas.length)];
+				student.getMajors().add(new XAreaClassificationMajor(area, clasfs[rnd.nextInt(clasfs.length)], area + "-M" + rnd.nextInt(20)));
+			}
+			if (rnd.nextInt(4) == 0) student.getGroups().add(groups[rnd.nextInt(groups.length)]);
+			if (rnd.nextInt(20) == 0) student.getAccomodations().add(accommodations[rnd.nextInt(accommodations.length)]);
+			student.setStatus(statuses[rnd.nextInt(statuses.length)]);
+			students.add(student);
+			index.update(student);
+		}
+		String[] queries = new String[] {
+				"area:BIO", "area:BIO clasf:03", "area:ENGR major:ENGR-M3", "group:HONR or accommodation:WC", "(area:SCI or area:PHYS) and not clasf:GR",
+				"status:Enabled", "status:default", "student:Smith", "student:1012345", "area:A clasf:01 group:ATHL", "not area:BIO and not area:CHEM"
+		};
+		DecimalFormat df = new DecimalFormat("0.000");
+		System.out.println("Students: " + nrStudents + ", repeat: " + repeat);
+		for (String q: queries) {
+			Query query = new Query(q);
+			CompiledStudentQuery compiled = new CompiledStudentQuery(query, defaultStatus);
+			int m1 = 0, m2 = 0, m3 = 0;
+			long t0 = System.nanoTime();
+			for (int r = 0; r < repeat; r++) {
+				m1 = 0;
+				for (XStudent student: students)
+					if (query.match(new StudentMatcher(student, defaultStatus))) m1++;
+			}
+			long t1 = System.nanoTime();
+			for (int r = 0; r < repeat; r++) {
+				m2 = 0;
+				for (XStudent student: students)
+					if (compiled.match(student)) m2++;
+			}
+			long t2 = System.nanoTime();
+			for (int r = 0; r < repeat; r++) {
+				m3 = compiled.select(index).cardinality();
+			}
+			long t3 = System.nanoTime();
+			System.out.println(q + ": matches " + m1 + (m1 == m2 && m2 == m3 ? "" : " (MISMATCH: compiled " + m2 + ", indexed " + m3 + ")") +
+					", matcher " + df.format((t1 - t0) / 1000000.0 / repeat) + " ms" +
+					", compiled " + df.format((t2 - t1) / 1000000.0 / repeat) + " ms" +
+					", indexed " + df.format((t3 - t2) / 1000000.0 / repeat) + " ms");
+		}
+	}
+}
@@ -123,6 +123,7 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 			int gtEnrl = 0, gtWait = 0, gtRes = 0, gtUnasg = 0;
 			int gConNeed = 0, gtConNeed = 0;
 			
+			Set<Long> bound = CompiledStudentQuery.getBoundStudentIds(server, query(), session.getDefaultSectioningStatus());
 			for (XCourseId info: server.findCourses(new FindEnrollmentInfoCourseMatcher(iCoursesIcoordinate, iCoursesIcanApprove, iQuery))) {
 				XOffering offering = server.getOffering(info.getOfferingId());
 				if (offering == null) continue;
@@ -169,7 +170,7 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 					XStudent student = server.getStudent(request.getStudentId());
 					if (student == null) continue;
 					CourseRequestMatcher m = new CourseRequestMatcher(session, course, student, offering, request, isConsentToDoCourse);
-					if (query().match(m)) {
+					if ((bound == null || bound.contains(request.getStudentId())) && query().match(m)) {
 						matchingStudents.add(request.getStudentId());
 						match++;
 						if (m.enrollment() != null) {
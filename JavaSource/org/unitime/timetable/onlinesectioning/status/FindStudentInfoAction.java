@@ -20,6 +20,7 @@
 package org.unitime.timetable.onlinesectioning.status;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -40,6 +41,7 @@ import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.match.AbstractStudentMatcher;
+import org.unitime.timetable.onlinesectioning.match.IndexedStudentMatcher;
 import org.unitime.timetable.onlinesectioning.model.XAreaClassificationMajor;
 import org.unitime.timetable.onlinesectioning.model.XConfig;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
@@ -52,9 +54,9 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XStudentId;
 import org.unitime.timetable.onlinesectioning.model.XSubpart;
 import org.unitime.timetable.onlinesectioning.server.DatabaseServer;
+import org.unitime.timetable.onlinesectioning.server.StudentIndex;
 import org.unitime.timetable.onlinesectioning.status.FindEnrollmentInfoAction.FindEnrollmentInfoCourseMatcher;
 import org.unitime.timetable.onlinesectioning.status.StatusPageSuggestionsAction.CourseRequestMatcher;
-import org.unitime.timetable.onlinesectioning.status.StatusPageSuggestionsAction.StudentMatcher;
 
 /**
  * @author Tomas Muller
@@ -108,6 +110,7 @@ public class FindStudentInfoAction implements OnlineSectioningAction<List<Studen
 		Set<Long> unassigned = new HashSet<Long>();
 		AcademicSessionInfo session = server.getAcademicSession();
 		Set<Long> studentIds = (iFilter == null ? null : server.createAction(SectioningStatusFilterAction.class).forRequest(iFilter).getStudentIds(server, helper));
+		Set<Long> bound = CompiledStudentQuery.getBoundStudentIds(server, query(), session.getDefaultSectioningStatus());
 		for (XCourseId info: findCourses(server, helper)) {
 			XOffering offering = server.getOffering(info.getOfferingId());
 			if (offering == null) continue;
@@ -120,6 +123,7 @@ public class FindStudentInfoAction implements OnlineSectioningAction<List<Studen
 				if (!request.hasCourse(info.getCourseId())) continue;
 				if (request.getEnrollment() != null && !request.getEnrollment().getCourseId().equals(info.getCourseId())) continue;
 				if (studentIds != null && !studentIds.contains(request.getStudentId())) continue;
+				if (bound != null && !bound.contains(request.getStudentId())) continue;
 				XStudent student = server.getStudent(request.getStudentId());
 				if (student == null) continue;
 				CourseRequestMatcher m = new CourseRequestMatcher(session, course, student, offering, request, isConsentToDoCourse);
@@ -370,20 +374,29 @@ public class FindStudentInfoAction implements OnlineSectioningAction<List<Studen
 		return "find-student-infos";
 	}
 	
-	public static class FindStudentInfoMatcher extends AbstractStudentMatcher {
+	public static class FindStudentInfoMatcher extends AbstractStudentMatcher implements IndexedStudentMatcher {
 		private static final long serialVersionUID = 1L;
 		protected Query iQuery;
+		protected CompiledStudentQuery iCompiledQuery;
 		protected String iDefaultSectioningStatus;
 		
 		public FindStudentInfoMatcher(AcademicSessionInfo session, Query query) {
 			iQuery = query;
 			iDefaultSectioningStatus = session.getDefaultSectioningStatus();
+			iCompiledQuery = new CompiledStudentQuery(query, iDefaultSectioningStatus);
 		}
 
 		@Override
 		public boolean match(XStudentId id) {
 			XStudent student = (id instanceof XStudent ? (XStudent)id : getServer().getStudent(id.getStudentId()));
-			return student != null && student.getRequests().isEmpty() && iQuery.match(new StudentMatcher(student, iDefaultSectioningStatus));
+			return student != null && student.getRequests().isEmpty() && iCompiledQuery.match(student);
+		}
+		
+		@Override
+		public BitSet select(StudentIndex index) {
+			BitSet ret = iCompiledQuery.select(index);
+			ret.andNot(index.get(StudentIndex.REQUESTS, "true"));
+			return ret;
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,430 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.unitime.timetable.gwt.server.Query;
+import org.unitime.timetable.onlinesectioning.ConcurrentMultiLock;
+import org.unitime.timetable.onlinesectioning.MultiLock;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
+import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.server.CourseComparator;
+import org.unitime.timetable.onlinesectioning.server.CourseIndex;
+import org.unitime.timetable.onlinesectioning.server.StudentIndex;
+import org.unitime.timetable.onlinesectioning.server.SubSet;
+import org.unitime.timetable.onlinesectioning.solver.OfferingFragmentCache;
+import org.unitime.timetable.onlinesectioning.status.CompiledStudentQuery;
+import org.unitime.timetable.onlinesectioning.status.StatusPageSuggestionsAction.StudentMatcher;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Micro-benchmarks of the online sectioning hot paths over {@link SyntheticSectioningData} (no database is needed).<br>
+ * Each benchmark is run for a number of warm-up and measurement iterations of a fixed duration, the throughput (operations per second)
+ * of each measurement iteration is recorded. Results are printed and written into a JSON file, optionally compared with the results
+ * of a previous run (baseline) to report regressions.<br>
+ * Parameters (system properties):<ul>
+ * <li>benchmark.offerings, benchmark.students ... size of the synthetic data (defaults 2000 and 10000)
+ * <li>benchmark.warmup, benchmark.iterations ... number of warm-up and measurement iterations (defaults 3 and 5)
+ * <li>benchmark.time ... duration of an iteration in milliseconds (default 1000)
+ * <li>benchmark.filter ... regular expression, only benchmarks with a matching name are executed
+ * <li>benchmark.output ... JSON file with the results (default benchmark-results.json)
+ * <li>benchmark.baseline ... JSON file with the results of a previous run
+ * <li>benchmark.threshold ... throughput decrease (in percent) against the baseline that is reported as a regression (default 10)
+ * </ul>
+ * The process exits with status 1 when a regression is found.
+ *
+ * @author Tomas Muller
+ */
+public class OnlineSectioningBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("#,##0.000");
+	private static volatile int sSink = 0;
+
+	private SyntheticSectioningData iData;
+	private List<Benchmark> iBenchmarks = new ArrayList<Benchmark>();
+
+	/**
+	 * Single benchmark: {@link Benchmark#run()} is one operation, its result is consumed so that it cannot be optimized away
+	 */
+	public static abstract class Benchmark {
+		private String iName;
+
+		public Benchmark(String name) { iName = name; }
+
+		public String getName() { return iName; }
+
+		public abstract Object run() throws Exception;
+	}
+
+	/**
+	 * Benchmark result (the JSON output is a list of these)
+	 */
+	public static class Result {
+		String benchmark;
+		String unit = "ops/s";
+		double score, error, min, max;
+		double nsPerOp;
+		double[] iterations;
+		Double baseline;
+		Double change;
+	}
+
+	public OnlineSectioningBenchmark(SyntheticSectioningData data) {
+		iData = data;
+		addExternalizationBenchmarks();
+		addLockBenchmarks();
+		addFindCoursesBenchmarks();
+		addFindStudentsBenchmarks();
+		addEnrollmentBenchmarks();
+		addModelBuildingBenchmarks();
+	}
+
+	public void add(Benchmark benchmark) {
+		iBenchmarks.add(benchmark);
+	}
+
+	protected void addExternalizationBenchmarks() {
+		final List<XStudent> students = iData.getStudents();
+		final List<XOffering> offerings = iData.getOfferings();
+		final List<byte[]> studentBytes = new ArrayList<byte[]>();
+		final List<byte[]> offeringBytes = new ArrayList<byte[]>();
+		try {
+			for (XStudent student: students) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				student.writeExternal(out);
+				out.close();
+				studentBytes.add(bytes.toByteArray());
+			}
+			for (XOffering offering: offerings) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				offering.writeExternal(out);
+				out.close();
+				offeringBytes.add(bytes.toByteArray());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		add(new Benchmark("externalization.XStudent.write") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				students.get(i++ % students.size()).writeExternal(out);
+				out.close();
+				return bytes.size();
+			}
+		});
+		add(new Benchmark("externalization.XStudent.read") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				return new XStudent(new ObjectInputStream(new ByteArrayInputStream(studentBytes.get(i++ % studentBytes.size()))));
+			}
+		});
+		add(new Benchmark("externalization.XOffering.write") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				offerings.get(i++ % offerings.size()).writeExternal(out);
+				out.close();
+				return bytes.size();
+			}
+		});
+		add(new Benchmark("externalization.XOffering.read") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				return new XOffering(new ObjectInputStream(new ByteArrayInputStream(offeringBytes.get(i++ % offeringBytes.size()))));
+			}
+		});
+	}
+
+	protected void addLockBenchmarks() {
+		final List<XStudent> students = iData.getStudents();
+		final List<XOffering> offerings = iData.getOfferings();
+		for (final MultiLock lock: new MultiLock[] { new MultiLock(), new ConcurrentMultiLock() }) {
+			add(new Benchmark(lock.getClass().getSimpleName() + ".lock") {
+				Random rnd = new Random(1);
+				@Override
+				public Object run() throws Exception {
+					List<Long> ids = new ArrayList<Long>(4);
+					ids.add(students.get(rnd.nextInt(students.size())).getStudentId());
+					for (int i = 0; i < 3; i++)
+						ids.add(offerings.get(rnd.nextInt(offerings.size())).getOfferingId());
+					lock.lock(ids).release();
+					return ids.size();
+				}
+			});
+		}
+	}
+
+	protected void addFindCoursesBenchmarks() {
+		final List<XCourseId> courses = iData.getCourses();
+		final String[] queries = new String[] { "c", "cs", "chem 1", "ma 10010", "phys 100", "stat 1002" };
+		add(new Benchmark("findCourses.scan") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				String query = queries[i++ % queries.length];
+				SubSet<XCourseId> ret = new SubSet<XCourseId>(20, new CourseComparator(query));
+				String queryInLowerCase = query.toLowerCase();
+				for (XCourseId c : courses)
+					if (c.matchCourseName(queryInLowerCase)) ret.add(c);
+				if (!ret.isLimitReached() && queryInLowerCase.length() > 2)
+					for (XCourseId c : courses)
+						if (c.matchTitle(queryInLowerCase)) ret.add(c);
+				return ret.size();
+			}
+		});
+		final CourseIndex index = new CourseIndex();
+		for (XCourseId course: courses)
+			index.update(course);
+		add(new Benchmark("findCourses.indexed") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				return index.findCourses(queries[i++ % queries.length], 20, null).size();
+			}
+		});
+	}
+
+	protected void addFindStudentsBenchmarks() {
+		final List<XStudent> students = iData.getStudents();
+		final StudentIndex index = new StudentIndex();
+		for (XStudent student: students)
+			index.update(student);
+		final String defaultStatus = "Enabled";
+		final String[] filters = new String[] {
+				"area:BIO", "area:BIO clasf:03", "area:ENGR major:ENGR-M3", "group:HONR or accommodation:WC", "(area:SCI or area:PHYS) and not clasf:GR",
+				"status:Enabled", "status:default", "student:Smith", "not area:BIO and not area:CHEM"
+		};
+		final Query[] queries = new Query[filters.length];
+		final CompiledStudentQuery[] compiled = new CompiledStudentQuery[filters.length];
+		for (int i = 0; i < filters.length; i++) {
+			queries[i] = new Query(filters[i]);
+			compiled[i] = new CompiledStudentQuery(queries[i], defaultStatus);
+		}
+		add(new Benchmark("Query.parse") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				return new Query(filters[i++ % filters.length]);
+			}
+		});
+		add(new Benchmark("findStudents.matcher") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				Query query = queries[i++ % queries.length];
+				int count = 0;
+				for (XStudent student: students)
+					if (query.match(new StudentMatcher(student, defaultStatus))) count++;
+				return count;
+			}
+		});
+		add(new Benchmark("findStudents.compiled") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				CompiledStudentQuery query = compiled[i++ % compiled.length];
+				int count = 0;
+				for (XStudent student: students)
+					if (query.match(student)) count++;
+				return count;
+			}
+		});
+		add(new Benchmark("findStudents.indexed") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				return compiled[i++ % compiled.length].select(index).cardinality();
+			}
+		});
+	}
+
+	protected void addEnrollmentBenchmarks() {
+		final List<XOffering> offerings = iData.getOfferings();
+		add(new Benchmark("XEnrollments.construct") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				XOffering offering = offerings.get(i++ % offerings.size());
+				return new XEnrollments(offering.getOfferingId(), iData.getRequests(offering.getOfferingId()));
+			}
+		});
+		add(new Benchmark("XEnrollmentCounts.construct") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				XOffering offering = offerings.get(i++ % offerings.size());
+				return new XEnrollmentCounts(offering.getOfferingId(), iData.getRequests(offering.getOfferingId()));
+			}
+		});
+	}
+
+	protected void addModelBuildingBenchmarks() {
+		final List<XOffering> offerings = iData.getOfferings();
+		final Long sessionId = -1l;
+		add(new Benchmark("FindAssignmentAction.fragment.build") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				XOffering offering = offerings.get(i++ % offerings.size());
+				OfferingFragmentCache.invalidate(offering.getOfferingId());
+				return OfferingFragmentCache.getFragment(sessionId, offering);
+			}
+		});
+		add(new Benchmark("FindAssignmentAction.fragment.cached") {
+			int i = 0;
+			@Override
+			public Object run() throws Exception {
+				return OfferingFragmentCache.getFragment(sessionId, offerings.get(i++ % offerings.size()));
+			}
+		});
+	}
+
+	/**
+	 * Run a benchmark: warm-up iterations followed by the measurement iterations
+	 */
+	public Result run(Benchmark benchmark, int warmup, int iterations, long time) throws Exception {
+		Result result = new Result();
+		result.benchmark = benchmark.getName();
+		result.iterations = new double[iterations];
+		for (int i = 0; i < warmup; i++)
+			iteration(benchmark, time);
+		double sum = 0, sum2 = 0, ns = 0;
+		result.min = Double.MAX_VALUE; result.max = 0;
+		for (int i = 0; i < iterations; i++) {
+			double opsPerSecond = iteration(benchmark, time);
+			result.iterations[i] = opsPerSecond;
+			sum += opsPerSecond; sum2 += opsPerSecond * opsPerSecond;
+			ns += 1.0e9 / opsPerSecond;
+			result.min = Math.min(result.min, opsPerSecond);
+			result.max = Math.max(result.max, opsPerSecond);
+		}
+		result.score = sum / iterations;
+		result.error = iterations <= 1 ? 0.0 : Math.sqrt(Math.max(0.0, (sum2 - sum * sum / iterations) / (iterations - 1)));
+		result.nsPerOp = ns / iterations;
+		return result;
+	}
+
+	private double iteration(Benchmark benchmark, long time) throws Exception {
+		long ops = 0;
+		long t0 = System.nanoTime(), end = t0 + 1000000l * time, t1;
+		int sink = 0;
+		do {
+			Object ret = benchmark.run();
+			if (ret != null) sink += ret.hashCode();
+			ops ++;
+			t1 = System.nanoTime();
+		} while (t1 < end);
+		sSink += sink;
+		return ops * 1.0e9 / (t1 - t0);
+	}
+
+	public List<Benchmark> getBenchmarks() { return iBenchmarks; }
+
+	public static void main(String[] args) {
+		try {
+			int nrOfferings = Integer.getInteger("benchmark.offerings", 2000);
+			int nrStudents = Integer.getInteger("benchmark.students", 10000);
+			int warmup = Integer.getInteger("benchmark.warmup", 3);
+			int iterations = Integer.getInteger("benchmark.iterations", 5);
+			long time = Long.getLong("benchmark.time", 1000l);
+			String filter = System.getProperty("benchmark.filter");
+			File output = new File(System.getProperty("benchmark.output", "benchmark-results.json"));
+			String baselineFile = System.getProperty("benchmark.baseline");
+			double threshold = Double.parseDouble(System.getProperty("benchmark.threshold", "10"));
+
+			long t0 = System.currentTimeMillis();
+			SyntheticSectioningData data = new SyntheticSectioningData(nrOfferings, nrStudents, 13l);
+			System.out.println("Generated " + data.getOfferings().size() + " offerings, " + data.getCourses().size() + " courses, " + data.getStudents().size() +
+					" students in " + (System.currentTimeMillis() - t0) + " ms.");
+
+			Gson gson = new GsonBuilder().setPrettyPrinting().create();
+			Map<String, Result> baseline = new HashMap<String, Result>();
+			if (baselineFile != null) {
+				FileReader reader = new FileReader(baselineFile);
+				try {
+					for (Result r: gson.fromJson(reader, Result[].class))
+						baseline.put(r.benchmark, r);
+				} finally {
+					reader.close();
+				}
+			}
+
+			OnlineSectioningBenchmark benchmarks = new OnlineSectioningBenchmark(data);
+			List<Result> results = new ArrayList<Result>();
+			int regressions = 0;
+			for (Benchmark benchmark: benchmarks.getBenchmarks()) {
+				if (filter != null && !benchmark.getName().matches(filter)) continue;
+				Result result = benchmarks.run(benchmark, warmup, iterations, time);
+				Result base = baseline.get(result.benchmark);
+				String change = "";
+				if (base != null && base.score > 0) {
+					result.baseline = base.score;
+					result.change = 100.0 * (result.score - base.score) / base.score;
+					change = " (" + (result.change >= 0 ? "+" : "") + sDF.format(result.change) + "%" + (result.change < -threshold ? ", REGRESSION" : "") + ")";
+					if (result.change < -threshold) regressions ++;
+				}
+				System.out.println(result.benchmark + ": " + sDF.format(result.score) + " ± " + sDF.format(result.error) + " ops/s, " + sDF.format(result.nsPerOp) + " ns/op" + change);
+				results.add(result);
+			}
+
+			FileWriter writer = new FileWriter(output);
+			try {
+				gson.toJson(results, writer);
+			} finally {
+				writer.close();
+			}
+			System.out.println("Results written to " + output.getAbsolutePath() + (sSink == 0 ? "" : "."));
+			if (regressions > 0) {
+				System.err.println(regressions + " benchmark(s) regressed by more than " + threshold + "%.");
+				System.exit(1);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.cpsolver.coursett.Constants;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.studentsct.model.AreaClassificationMajor;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Instructor;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.SctAssignment;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.Subpart;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * Synthetic online sectioning data (offerings, students, course requests and enrollments) generated in-process,
+ * with no database access. The data are first created as a student sectioning (cpsolver) model and then converted
+ * into the X model classes used by the online sectioning servers. The generator is deterministic for the given seed.
+ *
+ * @author Tomas Muller
+ */
+public class SyntheticSectioningData {
+	private static final String[] sSubjects = new String[] {"AAE", "BIOL", "CHEM", "CS", "ECE", "ENGL", "HIST", "MA", "ME", "PHYS", "PSY", "STAT"};
+	private static final String[] sAreas = new String[] {"A", "BIO", "CHEM", "ENGR", "LA", "MGMT", "PHYS", "SCI", "TECH", "PHAR"};
+	private static final String[] sClassifications = new String[] {"01", "02", "03", "04", "05", "06", "07", "08", "GR"};
+	private static final String[] sGroups = new String[] {"ATHL", "HONR", "SPEC", "VET", "INTL"};
+	private static final String[] sAccommodations = new String[] {"WC", "SD", "LT"};
+	private static final String[] sStatuses = new String[] {null, null, null, "Disabled", "Assistant", "Enabled"};
+	private static final String[] sFirstNames = new String[] {"John", "Jane", "Alice", "Bob", "Carol", "Dave", "Eve", "Frank", "Grace", "Heidi"};
+	private static final String[] sLastNames = new String[] {"Smith", "Doe", "Brown", "Johnson", "Miller", "Davis", "Garcia", "Wilson", "Moore", "Taylor"};
+	private static final int[] sDays = new int[] {
+		Constants.DAY_CODES[0] | Constants.DAY_CODES[2] | Constants.DAY_CODES[4],
+		Constants.DAY_CODES[1] | Constants.DAY_CODES[3],
+		Constants.DAY_CODES[0] | Constants.DAY_CODES[2],
+		Constants.DAY_CODES[0], Constants.DAY_CODES[1], Constants.DAY_CODES[2], Constants.DAY_CODES[3], Constants.DAY_CODES[4] };
+
+	private Random iRandom;
+	private long iId = 0;
+	private BitSet iWeeks;
+	private List<XOffering> iOfferings = new ArrayList<XOffering>();
+	private List<XCourseId> iCourses = new ArrayList<XCourseId>();
+	private List<XStudent> iStudents = new ArrayList<XStudent>();
+	private Map<Long, List<XCourseRequest>> iRequests = new HashMap<Long, List<XCourseRequest>>();
+
+	/**
+	 * Generate the data
+	 * @param nrOfferings number of instructional offerings (about 10% of them are cross-listed)
+	 * @param nrStudents number of students (each with 4 to 6 course requests, about 70% of the requests are enrolled)
+	 * @param seed random seed
+	 */
+	public SyntheticSectioningData(int nrOfferings, int nrStudents, long seed) {
+		iRandom = new Random(seed);
+		iWeeks = new BitSet(112);
+		iWeeks.set(0, 112);
+		List<Offering> offerings = new ArrayList<Offering>();
+		for (int i = 0; i < nrOfferings; i++)
+			offerings.add(createOffering(i));
+		for (Offering offering: offerings) {
+			XOffering xo = new XOffering(offering, null);
+			iOfferings.add(xo);
+			iCourses.addAll(xo.getCourses());
+		}
+		for (int i = 0; i < nrStudents; i++) {
+			XStudent student = createStudent(offerings);
+			iStudents.add(student);
+			for (XRequest request: student.getRequests()) {
+				if (request instanceof XCourseRequest) {
+					for (XCourseId course: ((XCourseRequest)request).getCourseIds()) {
+						List<XCourseRequest> requests = iRequests.get(course.getOfferingId());
+						if (requests == null) {
+							requests = new ArrayList<XCourseRequest>();
+							iRequests.put(course.getOfferingId(), requests);
+						}
+						requests.add((XCourseRequest)request);
+					}
+				}
+			}
+		}
+	}
+
+	private long nextId() { return ++iId; }
+
+	private Placement createPlacement(long sectionId, String name, int limit) {
+		int length = (iRandom.nextBoolean() ? 12 : 18);
+		TimeLocation time = new TimeLocation(sDays[iRandom.nextInt(sDays.length)], 90 + 6 * iRandom.nextInt(20), length, 0, 0.0, 1l, "Full Term", iWeeks, 10);
+		RoomLocation room = new RoomLocation(nextId(), "ROOM " + iRandom.nextInt(500), null, 0, limit, (double)iRandom.nextInt(1000), (double)iRandom.nextInt(1000), false, null);
+		Lecture lecture = new Lecture(sectionId, null, null, name, new ArrayList<TimeLocation>(), new ArrayList<RoomLocation>(), 1, null, limit, limit, 1.0);
+		return new Placement(lecture, time, room);
+	}
+
+	private Offering createOffering(int index) {
+		String subject = sSubjects[index % sSubjects.length];
+		String number = String.valueOf(10000 + 10 * (index / sSubjects.length));
+		Offering offering = new Offering(nextId(), subject + " " + number);
+		Course course = new Course(nextId(), subject, number, offering, 100, 100);
+		course.setCredit("3");
+		if (iRandom.nextInt(10) == 0) {
+			String other = sSubjects[(index + 1 + iRandom.nextInt(sSubjects.length - 1)) % sSubjects.length];
+			new Course(nextId(), other, number, offering, 20, 20);
+		}
+		Config config = new Config(nextId(), 100, "1", offering);
+		Subpart lec = new Subpart(nextId(), "Lec", "Lec", config, null);
+		Subpart rec = new Subpart(nextId(), "Rec", "Rec", config, lec);
+		for (int l = 0; l < 2 + iRandom.nextInt(3); l++) {
+			long lecId = nextId();
+			Section lecture = new Section(lecId, 50, "L" + (1 + l), lec, createPlacement(lecId, "Lec " + (1 + l), 50), new ArrayList<Instructor>(), null);
+			for (int r = 0; r < 2; r++) {
+				long recId = nextId();
+				new Section(recId, 25, "R" + (1 + l) + (1 + r), rec, createPlacement(recId, "Rec " + (1 + l) + (1 + r), 25), new ArrayList<Instructor>(), lecture);
+			}
+		}
+		return offering;
+	}
+
+	private XStudent createStudent(List<Offering> offerings) {
+		long studentId = nextId();
+		Student student = new Student(studentId);
+		student.setExternalId(String.valueOf(1000000 + studentId));
+		student.setName(sLastNames[iRandom.nextInt(sLastNames.length)] + ", " + sFirstNames[iRandom.nextInt(sFirstNames.length)]);
+		for (int j = 1 + (iRandom.nextInt(5) == 0 ? 1 : 0); j > 0; j--) {
+			String area = sAreas[iRandom.nextInt(sAreas.length)];
+			student.getAreaClassificationMajors().add(new AreaClassificationMajor(area, sClassifications[iRandom.nextInt(sClassifications.length)], area + "-M" + iRandom.nextInt(20)));
+		}
+		student.setStatus(sStatuses[iRandom.nextInt(sStatuses.length)]);
+		Map<Long, Enrollment> enrollments = new HashMap<Long, Enrollment>();
+		Set<Offering> requested = new HashSet<Offering>();
+		int nrRequests = 4 + iRandom.nextInt(3);
+		for (int priority = 0; priority < nrRequests; priority++) {
+			Offering offering = offerings.get(iRandom.nextInt(offerings.size()));
+			if (!requested.add(offering)) continue;
+			List<Course> courses = new ArrayList<Course>();
+			courses.add(offering.getCourses().get(0));
+			CourseRequest request = new CourseRequest(nextId(), priority, false, student, courses, iRandom.nextInt(10) == 0, null);
+			if (iRandom.nextInt(10) < 7) {
+				Config config = offering.getConfigs().get(0);
+				Subpart lec = config.getSubparts().get(0);
+				Subpart rec = config.getSubparts().get(1);
+				Section lecture = lec.getSections().get(iRandom.nextInt(lec.getSections().size()));
+				List<Section> recitations = new ArrayList<Section>();
+				for (Section section: rec.getSections())
+					if (lecture.equals(section.getParent())) recitations.add(section);
+				Set<SctAssignment> sections = new HashSet<SctAssignment>();
+				sections.add(lecture);
+				sections.add(recitations.get(iRandom.nextInt(recitations.size())));
+				enrollments.put(request.getId(), new Enrollment(request, 0, courses.get(0), config, sections, null));
+			}
+		}
+		XStudent xs = new XStudent(student, null);
+		for (XRequest request: xs.getRequests()) {
+			Enrollment enrollment = enrollments.get(request.getRequestId());
+			if (enrollment != null && request instanceof XCourseRequest)
+				((XCourseRequest)request).setEnrollment(new XEnrollment(enrollment));
+		}
+		if (iRandom.nextInt(4) == 0) xs.getGroups().add(sGroups[iRandom.nextInt(sGroups.length)]);
+		if (iRandom.nextInt(20) == 0) xs.getAccomodations().add(sAccommodations[iRandom.nextInt(sAccommodations.length)]);
+		return xs;
+	}
+
+	/** Generated offerings */
+	public List<XOffering> getOfferings() { return iOfferings; }
+
+	/** Courses of the generated offerings */
+	public List<XCourseId> getCourses() { return iCourses; }
+
+	/** Generated students (with their course requests and enrollments) */
+	public List<XStudent> getStudents() { return iStudents; }
+
+	/** Course requests of the given offering */
+	public List<XCourseRequest> getRequests(Long offeringId) {
+		List<XCourseRequest> requests = iRequests.get(offeringId);
+		return requests == null ? new ArrayList<XCourseRequest>() : requests;
+	}
+}
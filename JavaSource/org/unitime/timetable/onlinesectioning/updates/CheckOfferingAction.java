@@ -219,6 +219,7 @@ public class CheckOfferingAction extends WaitlistedOnlineSectioningAction<Boolea
 				if (r.getLastEnrollment() != null && r.getLastEnrollment().equals(r.getRequest().getEnrollment())) continue;
 				
 				boolean tx = helper.beginTransaction();
+				boolean waitlisted = false;
 				try {
 					org.unitime.timetable.model.Student student = StudentDAO.getInstance().get(r.getRequest().getStudentId(), helper.getHibSession());
 					Map<Long, StudentClassEnrollment> oldEnrollments = new HashMap<Long, StudentClassEnrollment>();
@@ -278,7 +279,11 @@ public class CheckOfferingAction extends WaitlistedOnlineSectioningAction<Boolea
 							cd.setWaitlist(true);
 							helper.getHibSession().saveOrUpdate(cd);
 						}
-						r.getRequest().setWaitlist(true);
+						// through the server, so that the enrollment counts, the student index, and the snapshot journal are updated too
+						if (!r.getRequest().isWaitlist()) {
+							XCourseRequest request = server.waitlist(r.getRequest(), true);
+							if (request != null) { r.setRequest(request); waitlisted = true; }
+						}
 					}
 					
 					helper.getHibSession().save(student);
@@ -294,6 +299,11 @@ public class CheckOfferingAction extends WaitlistedOnlineSectioningAction<Boolea
 					if (tx) helper.commitTransaction();
 					r.getAction().setResult(enrollment == null ? OnlineSectioningLog.Action.ResultType.NULL : OnlineSectioningLog.Action.ResultType.SUCCESS);
 				} catch (Exception e) {
+					if (waitlisted) {
+						// the wait-list change is rolled back in the database, revert it on the server (including the student index) as well
+						XCourseRequest request = server.waitlist(r.getRequest(), false);
+						if (request != null) r.setRequest(request);
+					}
 					server.assign(r.getRequest(), r.getLastEnrollment());
 					r.getAction().setResult(OnlineSectioningLog.Action.ResultType.FAILURE);
 					r.getAction().addMessage(OnlineSectioningLog.Message.newBuilder()
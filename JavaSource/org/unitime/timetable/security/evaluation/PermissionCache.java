@@ -0,0 +1,271 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.security.evaluation;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.unitime.commons.hibernate.util.ChangeTracker;
+import org.unitime.timetable.model.Department;
+import org.unitime.timetable.model.DepartmentStatusType;
+import org.unitime.timetable.model.ExternalDepartmentStatusType;
+import org.unitime.timetable.model.ManagerRole;
+import org.unitime.timetable.model.Roles;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.SolverGroup;
+import org.unitime.timetable.model.TimetableManager;
+import org.unitime.timetable.security.Qualifiable;
+import org.unitime.timetable.security.UserAuthority;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Memoization of the permission decisions of {@link UniTimePermissionCheck#hasPermission(UserContext, Object, Right)}
+ * and {@link UniTimePermissionCheck#hasPermission(UserContext, java.io.Serializable, String, Right)}.<br>
+ * Decisions are cached by user, authority, right, and target only within a scope, that is a single request
+ * (started by the {@link org.unitime.timetable.filter.HibSessionFilter}) or an asynchronous execution.
+ * Outside of a scope, nothing is cached. The cached decisions are dropped when a role, a manager, a status,
+ * an academic session, a department, or a solver group is changed (see {@link ChangeTracker}). Decisions about a particular
+ * target are also dropped when an entity of the target's class is changed (e.g., when the request changes the target itself).<br>
+ * Targets are identified by their qualifier type and id (see {@link Qualifiable}), by their type and id when given as an id,
+ * and by the object instance otherwise (instances are the same within a request as they come from the same Hibernate session).<br>
+ * Hit and miss counts of each request are logged on the debug level, the overall statistics ({@link PermissionCache#getStatistics()})
+ * are logged every 1000 requests.
+ *
+ * @author Tomas Muller
+ */
+public class PermissionCache {
+	private static Log sLog = LogFactory.getLog(PermissionCache.class);
+	private static ThreadLocal<Scope> sScope = new ThreadLocal<Scope>();
+	private static Class<?>[] sDependencies = new Class<?>[] {
+		Roles.class, ManagerRole.class, TimetableManager.class, DepartmentStatusType.class, ExternalDepartmentStatusType.class,
+		Session.class, Department.class, SolverGroup.class
+	};
+	private static AtomicLong sHits = new AtomicLong(0), sMisses = new AtomicLong(0), sInvalidations = new AtomicLong(0), sScopes = new AtomicLong(0);
+	
+	/** Start a new scope for the current thread (scopes can be nested, the cache is shared) */
+	public static void begin() {
+		Scope scope = sScope.get();
+		if (scope == null) {
+			sScope.set(new Scope());
+			sScopes.incrementAndGet();
+		} else {
+			scope.iDepth ++;
+		}
+	}
+	
+	/** End the current scope */
+	public static void end() {
+		Scope scope = sScope.get();
+		if (scope == null) return;
+		if (scope.iDepth > 0) {
+			scope.iDepth --;
+		} else {
+			sScope.remove();
+			if (sLog.isDebugEnabled() && scope.iHits + scope.iMisses > 0)
+				sLog.debug("Permission cache: " + scope.iHits + " hits, " + scope.iMisses + " misses, " + scope.iDecisions.size() + " decisions");
+			if (sScopes.get() % 1000 == 0)
+				sLog.info(getStatistics());
+		}
+	}
+	
+	/** Is there a scope for the current thread */
+	public static boolean isActive() {
+		return sScope.get() != null;
+	}
+	
+	/** Cached decision, null if not cached (or when there is no active scope) */
+	static Boolean get(Key key) {
+		Scope scope = sScope.get();
+		if (scope == null || key == null) return null;
+		scope.checkVersion(key);
+		Boolean ret = scope.iDecisions.get(key);
+		if (ret == null) {
+			sMisses.incrementAndGet(); scope.iMisses ++;
+		} else {
+			sHits.incrementAndGet(); scope.iHits ++;
+		}
+		return ret;
+	}
+	
+	/** Is the decision cached (does not count as a hit or a miss) */
+	static boolean contains(Key key) {
+		Scope scope = sScope.get();
+		if (scope == null || key == null) return false;
+		scope.checkVersion(key);
+		return scope.iDecisions.containsKey(key);
+	}
+	
+	/** Cache a decision (ignored when there is no active scope) */
+	static void put(Key key, boolean decision) {
+		Scope scope = sScope.get();
+		if (scope != null && key != null) scope.iDecisions.put(key, decision);
+	}
+	
+	/** Create a cache key for a target given by an id, null if there is no active scope */
+	static Key createKey(UserContext user, Right right, String targetType, Object targetId) {
+		if (!isActive()) return null;
+		if (targetId == null)
+			return new Key(user, right, targetType, null);
+		if (targetId instanceof Qualifiable)
+			return new Key(user, right, ((Qualifiable)targetId).getQualifierType() + ":" + ((Qualifiable)targetId).getQualifierId(), getEntityClass(((Qualifiable)targetId).getQualifierType()));
+		if (targetId instanceof Number || targetId instanceof String)
+			return new Key(user, right, targetType + ":" + targetId, getEntityClass(targetType));
+		return null;
+	}
+	
+	/** Create a cache key for a target object, null if there is no active scope */
+	static Key createKey(UserContext user, Right right, Object target) {
+		if (!isActive()) return null;
+		if (target == null) return new Key(user, right, null, null);
+		if (target instanceof Qualifiable)
+			return new Key(user, right, ((Qualifiable)target).getQualifierType() + ":" + ((Qualifiable)target).getQualifierId(), getEntityClass(target));
+		if (target instanceof Number || target instanceof String)
+			return new Key(user, right, target, null);
+		return new Key(user, right, new Instance(target), getEntityClass(target));
+	}
+	
+	private static Map<String, Class<?>> sEntityClasses = new ConcurrentHashMap<String, Class<?>>();
+	
+	/** Entity class of the given target type (e.g., InstructionalOffering), null if there is no such class */
+	private static Class<?> getEntityClass(String type) {
+		if (type == null) return null;
+		Class<?> clazz = sEntityClasses.get(type);
+		if (clazz == null) {
+			try {
+				clazz = Class.forName(type.indexOf('.') < 0 ? "org.unitime.timetable.model." + type : type);
+			} catch (ClassNotFoundException e) {
+				clazz = Void.class;
+			}
+			sEntityClasses.put(type, clazz);
+		}
+		return (clazz == Void.class ? null : clazz);
+	}
+	
+	/** Entity class of the given target object (unwrapping Hibernate proxies), null if the object is not an entity */
+	private static Class<?> getEntityClass(Object target) {
+		Class<?> clazz = HibernateProxyHelper.getClassWithoutInitializingProxy(target);
+		return (clazz.getName().startsWith("org.unitime.timetable.model.") ? clazz : null);
+	}
+	
+	/** Hit, miss, and invalidation counts */
+	public static String getStatistics() {
+		long hits = sHits.get(), misses = sMisses.get();
+		return "Permission cache: " + sScopes.get() + " requests, " + hits + " hits, " + misses + " misses" +
+				(hits + misses > 0 ? " (" + (100 * hits / (hits + misses)) + "% hit ratio)" : "") + ", " + sInvalidations.get() + " invalidations";
+	}
+	
+	public static long getHits() { return sHits.get(); }
+	public static long getMisses() { return sMisses.get(); }
+	
+	private static class Scope {
+		private Map<Key, Boolean> iDecisions = new HashMap<Key, Boolean>();
+		private long iVersion = ChangeTracker.getVersion(sDependencies);
+		private Map<Class<?>, Long> iTargetVersions = new HashMap<Class<?>, Long>();
+		private int iDepth = 0;
+		private int iHits = 0, iMisses = 0;
+		
+		void checkVersion(Key key) {
+			long version = ChangeTracker.getVersion(sDependencies);
+			if (version != iVersion) {
+				if (!iDecisions.isEmpty()) {
+					iDecisions.clear();
+					sInvalidations.incrementAndGet();
+				}
+				iVersion = version;
+			}
+			Class<?> targetClass = key.getTargetClass();
+			if (targetClass != null) {
+				long targetVersion = ChangeTracker.getVersion(targetClass);
+				Long old = iTargetVersions.put(targetClass, targetVersion);
+				if (old != null && old != targetVersion) {
+					// an entity of the target class has been changed, drop decisions about targets of the class
+					boolean removed = false;
+					for (Iterator<Key> i = iDecisions.keySet().iterator(); i.hasNext(); ) {
+						if (targetClass.equals(i.next().getTargetClass())) { i.remove(); removed = true; }
+					}
+					if (removed) sInvalidations.incrementAndGet();
+				}
+			}
+		}
+	}
+	
+	static class Key {
+		private String iUser;
+		private String iAuthority;
+		private Long iAuthorityId;
+		private Long iSessionId;
+		private Right iRight;
+		private Object iTarget;
+		private Class<?> iTargetClass;
+		
+		Key(UserContext user, Right right, Object target, Class<?> targetClass) {
+			iUser = user.getExternalUserId();
+			UserAuthority authority = user.getCurrentAuthority();
+			iAuthority = (authority == null ? null : authority.getAuthority());
+			iAuthorityId = (authority == null ? null : authority.getUniqueId());
+			iSessionId = user.getCurrentAcademicSessionId();
+			iRight = right;
+			iTarget = target;
+			iTargetClass = targetClass;
+		}
+		
+		/** Entity class of the target, null if the target is not an entity */
+		Class<?> getTargetClass() { return iTargetClass; }
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return iRight == k.iRight && equals(iUser, k.iUser) && equals(iAuthority, k.iAuthority) && equals(iAuthorityId, k.iAuthorityId) && equals(iSessionId, k.iSessionId) && equals(iTarget, k.iTarget);
+		}
+		
+		private static boolean equals(Object o1, Object o2) {
+			return (o1 == null ? o2 == null : o1.equals(o2));
+		}
+		
+		@Override
+		public int hashCode() {
+			return (iUser == null ? 0 : iUser.hashCode()) ^ (iAuthority == null ? 0 : iAuthority.hashCode()) ^ (iRight == null ? 0 : iRight.hashCode()) ^ (iTarget == null ? 0 : iTarget.hashCode());
+		}
+	}
+	
+	private static class Instance {
+		private Object iObject;
+		
+		Instance(Object object) { iObject = object; }
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Instance && ((Instance)o).iObject == iObject;
+		}
+		
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(iObject);
+		}
+	}
+}
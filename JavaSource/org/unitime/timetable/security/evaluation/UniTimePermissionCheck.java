@@ -20,6 +20,8 @@
 package org.unitime.timetable.security.evaluation;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -361,17 +363,54 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 		if (targetType == null) return true;
 		
 		if (targetId != null && targetId instanceof Collection) {
+			preload(user, (Collection<Serializable>) targetId, targetType, right);
 			for (Serializable id: (Collection<Serializable>) targetId)
 				if (!hasPermission(user, id, targetType, right)) return false;
 			return true;
 		}
 		
 		if (targetId != null && targetId.getClass().isArray()) {
+			preload(user, Arrays.asList((Serializable[])targetId), targetType, right);
 			for (Serializable id: (Serializable[])targetId)
 				if (!hasPermission(user, id, targetType, right)) return false;
 			return true;
 		}
 		
+		PermissionCache.Key key = PermissionCache.createKey(user, right, targetType, targetId);
+		Boolean cached = PermissionCache.get(key);
+		if (cached != null) return cached;
+		boolean ret = evaluate(user, targetId, targetType, right);
+		PermissionCache.put(key, ret);
+		return ret;
+	}
+	
+	/**
+	 * Load domain objects of the given ids in one query (in chunks of 1000) into the current Hibernate session,
+	 * so that they do not need to be loaded one by one. Only ids of the type {@link Long} with no decision cached are loaded.
+	 */
+	protected void preload(UserContext user, Collection<? extends Serializable> targetIds, String targetType, Right right) {
+		if (targetIds.size() <= 1) return;
+		String className = targetType;
+		if (className.indexOf('.') < 0) className = "org.unitime.timetable.model." + className;
+		List<Long> ids = new ArrayList<Long>();
+		for (Serializable id: targetIds) {
+			if (!(id instanceof Long)) continue;
+			if (PermissionCache.contains(PermissionCache.createKey(user, right, targetType, id))) continue;
+			ids.add((Long)id);
+		}
+		if (ids.size() <= 1) return;
+		try {
+			org.hibernate.Session hibSession = new _RootDAO().getSession();
+			if (hibSession.getSessionFactory().getClassMetadata(className) == null) return;
+			for (int i = 0; i < ids.size(); i += 1000)
+				hibSession.createQuery("from " + className + " where uniqueId in :ids")
+					.setParameterList("ids", ids.subList(i, Math.min(i + 1000, ids.size()))).list();
+		} catch (Exception e) {
+			sLog.debug("Failed to preload " + targetType + " objects: " + e.getMessage());
+		}
+	}
+	
+	private boolean evaluate(UserContext user, Serializable targetId, String targetType, Right right) {
 		try {
 			String className = targetType;
 			if (className.indexOf('.') < 0) className = "org.unitime.timetable.model." + className;
@@ -471,7 +510,16 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 				if (!hasPermission(user, o, right)) return false;
 			return true;
 		}
-
+		
+		PermissionCache.Key key = PermissionCache.createKey(user, right, domainObject);
+		Boolean cached = PermissionCache.get(key);
+		if (cached != null) return cached;
+		boolean ret = evaluate(user, domainObject, right);
+		PermissionCache.put(key, ret);
+		return ret;
+	}
+	
+	private boolean evaluate(UserContext user, Object domainObject, Right right) {
 		if (right.hasType() && !right.type().isInstance(domainObject)) {
 			if (domainObject instanceof Qualifiable) {
 				return hasPermission(user, ((Qualifiable)domainObject).getQualifierId(), ((Qualifiable)domainObject).getQualifierType(), right);
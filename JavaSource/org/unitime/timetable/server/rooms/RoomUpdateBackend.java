@@ -21,6 +21,7 @@ package org.unitime.timetable.server.rooms;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -97,6 +98,7 @@ import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.LocationPermIdGenerator;
+import org.unitime.timetable.util.RoomAvailability;
 
 /**
  * @author Tomas Muller
@@ -239,6 +241,7 @@ public class RoomUpdateBackend implements GwtRpcImplementation<RoomUpdateRpcRequ
 				Event event = entry.getKey();
 				List<Meeting> meetings = entry.getValue();
 				if (event.getMeetings().isEmpty()) {
+					RoomAvailability.eventsChanged(hibSession, Collections.singleton(event.getUniqueId()));
 					hibSession.delete(event);
 				} else {
 					EventNote note = new EventNote();
@@ -19,10 +19,15 @@
 */
 package org.unitime.timetable.solver;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
@@ -32,6 +37,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -51,6 +58,7 @@ import org.cpsolver.ifs.util.ProblemSaver;
 import org.cpsolver.ifs.util.Progress;
 import org.cpsolver.ifs.util.ProgressWriter;
 import org.dom4j.Document;
+import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
@@ -378,28 +386,44 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     @Override
     public boolean backup(File folder, String puid) {
         folder.mkdirs();
+        return backup(new File(folder, getType().getPrefix() + puid + BackupFileFilter.sXmlExtension), false);
+    }
+    
+    /**
+     * Write the current solution backup into the given file.
+     * @param file output file
+     * @param passivation when true, the document is written without any indentation and (when {@link ApplicationProperty#SolverPasivationCompression} is enabled) gzip compressed,
+     * otherwise a pretty-printed XML file is created (e.g., to be restored after a restart)
+     */
+    protected boolean backup(File file, boolean passivation) {
         if (currentSolution()==null) return false;
         Lock lock = currentSolution().getLock().readLock();
         lock.lock();
         try {
-            File outXmlFile = new File(folder, getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
             try {
-                FileOutputStream fos = null;
+                OutputStream out = null;
                 try {
-                    fos = new FileOutputStream(outXmlFile);
+                    long t0 = System.currentTimeMillis();
+                    out = new BufferedOutputStream(new FileOutputStream(file), 65536);
+                    if (passivation && ApplicationProperty.SolverPasivationCompression.isTrue())
+                        out = new GZIPOutputStream(out, 65536);
                     Document document = createCurrentSolutionBackup(false, false);
                     saveProperties(document);
-                    (new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
-                    fos.flush(); fos.close(); fos=null;
+                    XMLWriter writer = new XMLWriter(out, passivation ? new OutputFormat() : OutputFormat.createPrettyPrint());
+                    writer.write(document);
+                    document = null;
+                    writer.flush(); out.close(); out = null;
+                    sLog.debug(" -- " + (passivation ? "passivation" : "backup") + " of " + getType().name().toLowerCase() + " solver took " +
+                            (System.currentTimeMillis() - t0) + " ms, " + file.length() + " bytes written");
                 } finally {
                     try {
-                        if (fos!=null) fos.close();
+                        if (out!=null) out.close();
                     } catch (IOException e) {}
                 }
                 return true;
             } catch (Exception e) {
                 sLog.error(e.getMessage(),e);
-                if (outXmlFile.exists()) outXmlFile.delete();
+                if (file.exists()) file.delete();
             }
         } finally {
         	lock.unlock();
@@ -407,6 +431,23 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         return false;
     }
     
+    /**
+     * Read a backup file, both plain and gzip compressed XML files are supported.
+     */
+    protected static Document readBackup(File file) throws IOException, DocumentException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 65536);
+        try {
+            in.mark(2);
+            int magic = in.read() | (in.read() << 8);
+            in.reset();
+            if (magic == GZIPInputStream.GZIP_MAGIC)
+                in = new GZIPInputStream(in, 65536);
+            return (new SAXReader()).read(in);
+        } finally {
+            in.close();
+        }
+    }
+    
     @Override
     public boolean restore(File folder, String puid) {
         return restore(folder, puid, false);
@@ -417,14 +458,17 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     @Override
     public boolean restore(File folder, String puid, boolean removeFiles) {
         sLog.debug("restore(folder="+folder+","+puid+")");
-        File inXmlFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+        File inXmlFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sPassivationExtension);
+        if (!inXmlFile.exists())
+        	inXmlFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
         
         M model = null;
         try {
             if (isRunning()) stopSolver();
             disposeNoInherit(false);
 
-            Document document = (new SAXReader()).read(inXmlFile);
+            long t0 = System.currentTimeMillis();
+            Document document = readBackup(inXmlFile);
             readProperties(document);
             
             model = createModel(getProperties());
@@ -433,7 +477,9 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
             initSolver();
 
             restureCurrentSolutionFromBackup(document);
+            document = null;
             Progress.getInstance(model).setStatus("Awaiting commands ...");
+            sLog.debug(" -- restore of " + getType().name().toLowerCase() + " solver took " + (System.currentTimeMillis() - t0) + " ms, " + inXmlFile.length() + " bytes read");
             
             if (removeFiles) {
                 inXmlFile.delete();
@@ -523,7 +569,8 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         
         iPassivationFolder = folder;
         iPassivationPuid = puid;
-        backup(iPassivationFolder, iPassivationPuid);
+        iPassivationFolder.mkdirs();
+        backup(new File(iPassivationFolder, getType().getPrefix() + iPassivationPuid + BackupFileFilter.sPassivationExtension), true);
 
         disposeNoInherit(false);
         
@@ -26,10 +26,12 @@ import java.util.Set;
 import java.util.Vector;
 import java.util.Enumeration;
 
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
 import org.unitime.timetable.model.Assignment;
 import org.unitime.timetable.model.Class_;
 import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
+import org.unitime.timetable.util.BoundedCache;
 
 
 /**
@@ -38,11 +40,14 @@ import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
 	private static Object sNULL = Boolean.FALSE;
 	private ClassAssignmentProxy iProxy;
-	private Hashtable iAssignmentTable = new Hashtable();
-	private Hashtable iAssignmentInfoTable = new Hashtable();
+	private BoundedCache<Long, Object> iAssignmentTable;
+	private BoundedCache<Long, Object> iAssignmentInfoTable;
 	
 	public CachedClassAssignmentProxy(ClassAssignmentProxy proxy) {
 		iProxy = proxy;
+		int maxSize = ApplicationProperty.SolverAssignmentCacheMaxSize.intValue();
+		iAssignmentTable = new BoundedCache<Long, Object>("CachedClassAssignmentProxy.assignments", maxSize, 0, BoundedCache.sSingleton, false);
+		iAssignmentInfoTable = new BoundedCache<Long, Object>("CachedClassAssignmentProxy.infos", maxSize, 0, BoundedCache.sSingleton, false);
 	}
 	
 	public Assignment getAssignment(Long classId) {
@@ -168,4 +173,9 @@ public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
 	public Set<TimeBlock> getConflictingTimeBlocks(Long classId) {
 		return iProxy.getConflictingTimeBlocks(classId);
 	}
+	
+	@Override
+	public String toString() {
+		return iAssignmentTable.getStatistics() + "; " + iAssignmentInfoTable.getStatistics();
+	}
 }
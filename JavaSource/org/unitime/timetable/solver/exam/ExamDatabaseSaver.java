@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.cpsolver.exam.model.Exam;
@@ -55,6 +56,7 @@ import org.unitime.timetable.model.dao.StudentDAO;
 import org.unitime.timetable.solver.exam.ui.ExamAssignment;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
+import org.unitime.timetable.util.RoomAvailability;
 
 
 /**
@@ -117,6 +119,7 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
             ExamEvent e = (ExamEvent)i.next();
             examEvents.put(e.getExam().getUniqueId(),e);
         }
+        Set<Long> changedEvents = new HashSet<Long>();
         iProgress.setPhase("Saving assignments...", exams.size());
         Hashtable examTable = new Hashtable();
         for (Iterator i=exams.iterator();i.hasNext();) {
@@ -127,7 +130,10 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
             exam.setAssignedPreference(null);
             exam.getAssignedRooms().clear();
             ExamEvent event = examEvents.get(exam.getUniqueId());
-            if (event!=null) hibSession.delete(event);
+            if (event!=null) {
+                changedEvents.add(event.getUniqueId());
+                hibSession.delete(event);
+            }
             for (Iterator j=exam.getConflicts().iterator();j.hasNext();) {
                 ExamConflict conf = (ExamConflict)j.next();
                 hibSession.delete(conf);
@@ -404,9 +410,12 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
                 event.setMaxCapacity(examVar.getSize());
                 event.setMainContact(contact);
                 hibSession.saveOrUpdate(event);
+                if (event.getUniqueId()!=null) changedEvents.add(event.getUniqueId());
             }
             if (event!=null || !exam.getConflicts().isEmpty()) hibSession.saveOrUpdate(exam);
         }
+        // deleted and re-created exam events are not noted, let the room availability cache know about them
+        RoomAvailability.eventsChanged(hibSession, changedEvents);
     }
     
     protected HashSet getStudents(org.hibernate.Session hibSession, Collection studentIds) {
@@ -19,6 +19,7 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.lang.management.ManagementFactory;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -40,6 +41,7 @@ import org.unitime.timetable.model.InstructionalOffering;
 import org.unitime.timetable.model.Solution;
 import org.unitime.timetable.model.TeachingRequest;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.solver.CommonSolverInterface;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.RoomAvailability;
 
@@ -120,6 +122,45 @@ public abstract class AbstractSolverServer implements SolverServer {
 		return 1024l * 1024l * Long.parseLong(ApplicationProperties.getProperty(ApplicationProperty.SolverMemoryLimit));
 	}
 	
+	@Override
+	public SolverServerLoad getLoad() {
+		SolverServerLoad load = new SolverServerLoad();
+		load.setHost(getHost());
+		load.setLocal(isLocal());
+		load.setActive(isActive());
+		if (getMemoryLimit() > getAvailableMemory()) System.gc();
+		Runtime rt = Runtime.getRuntime();
+		load.setMaxMemory(rt.maxMemory());
+		load.setUsedMemory(rt.totalMemory() - rt.freeMemory());
+		load.setAvailableMemory(getAvailableMemory());
+		load.setMemoryLimit(getMemoryLimit());
+		load.setUsageBase(iUsageBase);
+		load.setAvailableProcessors(getAvailableProcessors());
+		load.setSystemLoad(ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+		countSolvers(load, getCourseSolverContainer());
+		countSolvers(load, getExamSolverContainer());
+		countSolvers(load, getStudentSolverContainer());
+		countSolvers(load, getInstructorSchedulingContainer());
+		return load;
+	}
+	
+	private static <T extends CommonSolverInterface> void countSolvers(SolverServerLoad load, SolverContainer<T> container) {
+		if (container == null) return;
+		for (String user: container.getSolvers()) {
+			T solver = container.getSolver(user);
+			if (solver == null) continue;
+			try {
+				if (solver.isPassivated()) {
+					load.setPassivatedSolvers(1 + load.getPassivatedSolvers());
+				} else {
+					load.setActiveSolvers(1 + load.getActiveSolvers());
+					if (solver.isWorking()) load.setWorkingSolvers(1 + load.getWorkingSolvers());
+					else load.addLoadedSolver(user);
+				}
+			} catch (Exception e) {}
+		}
+	}
+	
 	@Override
 	public String getVersion() {
 		return Constants.getVersion();
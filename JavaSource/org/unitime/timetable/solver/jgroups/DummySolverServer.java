@@ -92,9 +92,10 @@ public class DummySolverServer extends AbstractSolverServer implements MessageLi
 		iOnlineStudentSchedulingContainer = new ReplicatedDummyContainer<OnlineSectioningServer>(channel, SCOPE_ONLINE, OnlineSectioningServer.class);
 		iRoomAvailabilityDispatcher = new MuxRpcDispatcher(SCOPE_AVAILABILITY, channel, null, null, this);
 		
-		iCourseSolverContainerWrapper = new SolverContainerWrapper<SolverProxy>(iDispatcher, iCourseSolverContainer, false);
-		iExamSolverContainerWrapper = new SolverContainerWrapper<ExamSolverProxy>(iDispatcher, iExamSolverContainer, false);
-		iStudentSolverContainerWrapper = new SolverContainerWrapper<StudentSolverProxy>(iDispatcher, iStudentSolverContainer, false);
+		SolverPlacement placement = new SolverPlacement(iDispatcher);
+		iCourseSolverContainerWrapper = new SolverContainerWrapper<SolverProxy>(iDispatcher, iCourseSolverContainer, false, placement);
+		iExamSolverContainerWrapper = new SolverContainerWrapper<ExamSolverProxy>(iDispatcher, iExamSolverContainer, false, placement);
+		iStudentSolverContainerWrapper = new SolverContainerWrapper<StudentSolverProxy>(iDispatcher, iStudentSolverContainer, false, placement);
 		iOnlineStudentSchedulingContainerWrapper = new SolverContainerWrapper<OnlineSectioningServer>(iDispatcher, iOnlineStudentSchedulingContainer, false);
 	}
 	
@@ -149,6 +150,11 @@ public class DummySolverServer extends AbstractSolverServer implements MessageLi
 		return 0;
 	}
 
+	@Override
+	public SolverServerLoad getLoad() {
+		return null;
+	}
+
 	@Override
 	public boolean isActive() {
 		return false;
@@ -36,6 +36,7 @@ import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.ServerCallback;
+import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
 import org.unitime.timetable.onlinesectioning.updates.CheckAllOfferingsAction;
 import org.unitime.timetable.onlinesectioning.updates.ClassAssignmentChanged;
 import org.unitime.timetable.onlinesectioning.updates.ExpireReservationsAction;
@@ -86,6 +87,8 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 							if (!iRun) break;
 							checkForExpiredReservations(server);
 							persistExpectedSpaces(server);
+							if (server instanceof InMemoryServer)
+								((InMemoryServer)server).checkSnapshot();
 						} else if (!ApplicationProperty.OnlineSchedulingServerReplicated.isTrue()) {
 							// not master, but replication is disabled -> unload
 							try {
@@ -42,11 +42,17 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 	private RpcDispatcher iDispatcher;
 	private RemoteSolverContainer<T> iContainer;
 	private boolean iCheckLocal = true;
+	private SolverPlacement iPlacement;
 
-	public SolverContainerWrapper(RpcDispatcher dispatcher, RemoteSolverContainer<T> container, boolean checkLocal) {
+	public SolverContainerWrapper(RpcDispatcher dispatcher, RemoteSolverContainer<T> container, boolean checkLocal, SolverPlacement placement) {
 		iDispatcher = dispatcher;
 		iContainer = container;
 		iCheckLocal = checkLocal;
+		iPlacement = placement;
+	}
+	
+	public SolverContainerWrapper(RpcDispatcher dispatcher, RemoteSolverContainer<T> container, boolean checkLocal) {
+		this(dispatcher, container, checkLocal, new SolverPlacement(dispatcher));
 	}
 
 	@Override
@@ -132,21 +138,7 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 	@Override
 	public T createSolver(String user, DataProperties config) {
 		try {
-			Address bestAddress = null;
-			int bestUsage = 0;
-			RspList<Boolean> ret = iDispatcher.callRemoteMethods(null, "isAvailable", new Object[] {}, new Class[] {}, SolverServerImplementation.sAllResponses);
-			for (Rsp<Boolean> rsp : ret) {
-				if (Boolean.TRUE.equals(rsp.getValue())) {
-					Integer usage = iDispatcher.callRemoteMethod(rsp.getSender(), "getUsage", new Object[] {}, new Class[] {}, SolverServerImplementation.sFirstResponse);
-					if (bestAddress == null || bestUsage > usage) {
-						bestAddress = rsp.getSender();
-		                bestUsage = usage;
-		            }
-				}
-			}
-				
-			if (bestAddress == null)
-				throw new RuntimeException("Not enough resources to create a solver instance, please try again later.");
+			Address bestAddress = iPlacement.place(user);
 			
 			if (bestAddress.equals(iDispatcher.getChannel().getAddress()))
 				return iContainer.createSolver(user, config);
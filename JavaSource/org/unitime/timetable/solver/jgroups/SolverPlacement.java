@@ -0,0 +1,197 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jgroups.Address;
+import org.jgroups.blocks.RpcDispatcher;
+import org.jgroups.util.Rsp;
+import org.jgroups.util.RspList;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Resource-aware placement of new solver instances in the solver cluster.<br>
+ * The load of all the solver servers ({@link SolverServer#getLoad()}) is collected over the server dispatcher, the memory footprint of the new solver
+ * is estimated (by the configured solver memory limit) and the solver is placed on the server where it fits best (a server with enough memory left and with the processor load
+ * under {@link ApplicationProperty#SolverPlacementMaxLoad}, the one with the least memory left after the placement is used; remote servers are preferred over the local one,
+ * servers with a non-zero usage base, e.g., when the Stop Using button was used on the Manage Solvers page, are only used when no other server can take the solver).
+ * Memory of a placed solver is reserved until the solver is loaded (but for at most {@link ApplicationProperty#SolverPlacementReservation} seconds), so that solvers that are being
+ * loaded are counted in.<br>
+ * When no server can take the new solver, the request waits (in the order in which the requests came) up to {@link ApplicationProperty#SolverPlacementQueueTimeout}
+ * seconds for some resources to free up.
+ *
+ * @author Tomas Muller
+ */
+public class SolverPlacement {
+	private static Log sLog = LogFactory.getLog(SolverPlacement.class);
+	private RpcDispatcher iDispatcher;
+	private ReentrantLock iQueue = new ReentrantLock(true);
+	private Map<Address, List<Reservation>> iReservations = new HashMap<Address, List<Reservation>>();
+	
+	public SolverPlacement(RpcDispatcher dispatcher) {
+		iDispatcher = dispatcher;
+	}
+	
+	/**
+	 * Collect the current load of all the active solver servers
+	 */
+	public Map<Address, SolverServerLoad> getLoads() throws Exception {
+		Map<Address, SolverServerLoad> loads = new LinkedHashMap<Address, SolverServerLoad>();
+		RspList<SolverServerLoad> ret = iDispatcher.callRemoteMethods(null, "getLoad", new Object[] {}, new Class[] {}, SolverServerImplementation.sAllResponses);
+		for (Rsp<SolverServerLoad> rsp : ret) {
+			if (rsp != null && rsp.getValue() != null && rsp.getValue().isActive())
+				loads.put(rsp.getSender(), rsp.getValue());
+		}
+		return loads;
+	}
+	
+	/**
+	 * Estimated memory footprint of a new solver: the largest configured solver memory limit of all the servers
+	 * (the used memory of a server also contains the rest of the application, so it cannot be used to estimate the memory of a solver)
+	 */
+	protected long getEstimatedFootprint(Map<Address, SolverServerLoad> loads) {
+		long footprint = 0;
+		for (SolverServerLoad load: loads.values())
+			footprint = Math.max(footprint, load.getMemoryLimit());
+		return footprint;
+	}
+	
+	/**
+	 * Memory reserved for solvers placed on the given server that are not loaded yet
+	 * (once a solver is loaded, its memory is already included in the available memory of the server)
+	 */
+	protected synchronized long getReservedMemory(Address address, SolverServerLoad load) {
+		List<Reservation> reservations = iReservations.get(address);
+		if (reservations == null) return 0;
+		long reserved = 0;
+		for (Iterator<Reservation> i = reservations.iterator(); i.hasNext(); ) {
+			Reservation r = i.next();
+			if (r.isExpired() || r.isLoaded(load)) i.remove();
+			else reserved += r.getMemory();
+		}
+		if (reservations.isEmpty()) iReservations.remove(address);
+		return reserved;
+	}
+	
+	protected synchronized void reserve(Address address, SolverServerLoad load, String user, long memory) {
+		List<Reservation> reservations = iReservations.get(address);
+		if (reservations == null) {
+			reservations = new ArrayList<Reservation>();
+			iReservations.put(address, reservations);
+		}
+		reservations.add(new Reservation(user, memory, System.currentTimeMillis() + 1000l * ApplicationProperty.SolverPlacementReservation.intValue(), load.getLoadedSolvers().contains(user)));
+	}
+	
+	/**
+	 * Select the best server for a new solver, null if there is no server with enough resources
+	 */
+	protected Address select(Map<Address, SolverServerLoad> loads, long footprint) {
+		double maxLoad = ApplicationProperty.SolverPlacementMaxLoad.doubleValue();
+		Address best = null;
+		boolean bestLocal = false, bestUsed = false;
+		long bestLeft = 0;
+		for (Map.Entry<Address, SolverServerLoad> entry: loads.entrySet()) {
+			SolverServerLoad load = entry.getValue();
+			long left = load.getAvailableMemory() - getReservedMemory(entry.getKey(), load) - footprint;
+			if (left < 0) continue;
+			if (maxLoad > 0.0 && load.getProcessorLoad() > maxLoad) continue;
+			boolean used = (load.getUsageBase() != 0);
+			if (best == null || (bestUsed && !used) ||
+				(bestUsed == used && bestLocal && !load.isLocal()) ||
+				(bestUsed == used && bestLocal == load.isLocal() && left < bestLeft)) {
+				best = entry.getKey(); bestLocal = load.isLocal(); bestUsed = used; bestLeft = left;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Find a server for a new solver instance, waiting for the resources to free up when the cluster is saturated.
+	 * @param user solver owner
+	 * @return address of the server on which the solver is to be created
+	 * @throws RuntimeException when there are not enough resources to create the solver
+	 */
+	public Address place(String user) throws Exception {
+		long timeout = 1000l * ApplicationProperty.SolverPlacementQueueTimeout.intValue();
+		long t0 = System.currentTimeMillis();
+		if (!iQueue.tryLock(timeout, TimeUnit.MILLISECONDS))
+			throw new RuntimeException("Not enough resources to create a solver instance, please try again later.");
+		try {
+			while (true) {
+				Map<Address, SolverServerLoad> loads = getLoads();
+				long footprint = getEstimatedFootprint(loads);
+				Address address = select(loads, footprint);
+				if (address != null) {
+					sLog.info("Solver " + user + " placed on " + loads.get(address) + " (estimated footprint " + (footprint >> 20) + "M)");
+					reserve(address, loads.get(address), user, footprint);
+					return address;
+				}
+				long wait = timeout - (System.currentTimeMillis() - t0);
+				if (wait <= 0) {
+					sLog.warn("No server can take solver " + user + " (estimated footprint " + (footprint >> 20) + "M): " + loads.values());
+					throw new RuntimeException("Not enough resources to create a solver instance, please try again later.");
+				}
+				sLog.debug("Solver " + user + " is waiting for resources (estimated footprint " + (footprint >> 20) + "M): " + loads.values());
+				System.gc();
+				Thread.sleep(Math.min(wait, 5000l));
+			}
+		} finally {
+			iQueue.unlock();
+		}
+	}
+	
+	/**
+	 * Number of solver requests that are waiting for resources
+	 */
+	public int getQueueLength() {
+		return iQueue.getQueueLength();
+	}
+	
+	private static class Reservation {
+		private String iUser;
+		private long iMemory;
+		private long iExpiration;
+		private boolean iHadLoadedSolver;
+		
+		private Reservation(String user, long memory, long expiration, boolean hadLoadedSolver) {
+			iUser = user; iMemory = memory; iExpiration = expiration; iHadLoadedSolver = hadLoadedSolver;
+		}
+		
+		public long getMemory() { return iMemory; }
+		
+		public boolean isExpired() { return iExpiration < System.currentTimeMillis(); }
+		
+		/** The solver has been loaded on the server (the user had no other loaded solver there when the reservation was made) */
+		public boolean isLoaded(SolverServerLoad load) { return !iHadLoadedSolver && load.getLoadedSolvers().contains(iUser); }
+		
+		@Override
+		public String toString() { return iUser + "=" + (iMemory >> 20) + "M"; }
+	}
+}
@@ -65,6 +65,8 @@ public interface SolverServer {
 	
 	public long getMemoryLimit();
 	
+	public SolverServerLoad getLoad();
+	
 	public boolean isActive();
 	
 	public boolean isAvailable();
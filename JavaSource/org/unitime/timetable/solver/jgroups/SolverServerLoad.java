@@ -0,0 +1,111 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Snapshot of the resources of a solver server, as returned by {@link SolverServer#getLoad()}.
+ * Used by the {@link SolverPlacement} to decide where a new solver instance is to be created.
+ *
+ * @author Tomas Muller
+ */
+public class SolverServerLoad implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private String iHost;
+	private boolean iLocal = false, iActive = false;
+	private long iMaxMemory = 0, iUsedMemory = 0, iAvailableMemory = 0, iMemoryLimit = 0;
+	private int iProcessors = 1;
+	private double iSystemLoad = -1.0;
+	private int iActiveSolvers = 0, iPassivatedSolvers = 0, iWorkingSolvers = 0;
+	private int iUsageBase = 0;
+	private Set<String> iLoadedSolvers = new HashSet<String>();
+	
+	public SolverServerLoad() {}
+	
+	public String getHost() { return iHost; }
+	public void setHost(String host) { iHost = host; }
+	
+	public boolean isLocal() { return iLocal; }
+	public void setLocal(boolean local) { iLocal = local; }
+	
+	public boolean isActive() { return iActive; }
+	public void setActive(boolean active) { iActive = active; }
+	
+	/** Maximal heap size in bytes */
+	public long getMaxMemory() { return iMaxMemory; }
+	public void setMaxMemory(long maxMemory) { iMaxMemory = maxMemory; }
+	
+	/** Currently used heap in bytes */
+	public long getUsedMemory() { return iUsedMemory; }
+	public void setUsedMemory(long usedMemory) { iUsedMemory = usedMemory; }
+	
+	/** Heap that can still be allocated in bytes */
+	public long getAvailableMemory() { return iAvailableMemory; }
+	public void setAvailableMemory(long availableMemory) { iAvailableMemory = availableMemory; }
+	
+	/** Minimal amount of free memory needed to load a solver in bytes */
+	public long getMemoryLimit() { return iMemoryLimit; }
+	public void setMemoryLimit(long memoryLimit) { iMemoryLimit = memoryLimit; }
+	
+	public int getAvailableProcessors() { return iProcessors; }
+	public void setAvailableProcessors(int processors) { iProcessors = processors; }
+	
+	/** System load average for the last minute, negative if not available */
+	public double getSystemLoad() { return iSystemLoad; }
+	public void setSystemLoad(double systemLoad) { iSystemLoad = systemLoad; }
+	
+	/** Number of solver instances that are not passivated */
+	public int getActiveSolvers() { return iActiveSolvers; }
+	public void setActiveSolvers(int activeSolvers) { iActiveSolvers = activeSolvers; }
+	
+	/** Number of passivated solver instances */
+	public int getPassivatedSolvers() { return iPassivatedSolvers; }
+	public void setPassivatedSolvers(int passivatedSolvers) { iPassivatedSolvers = passivatedSolvers; }
+	
+	/** Number of solver instances that are currently running or doing some work (e.g., loading or saving) */
+	public int getWorkingSolvers() { return iWorkingSolvers; }
+	public void setWorkingSolvers(int workingSolvers) { iWorkingSolvers = workingSolvers; }
+	
+	/** Owners of the solver instances that are loaded (not passivated and not working) */
+	public Set<String> getLoadedSolvers() { return iLoadedSolvers; }
+	public void addLoadedSolver(String user) { iLoadedSolvers.add(user); }
+	
+	/** Usage base of the server, a non-zero value means that the server should not be used for new solvers (see {@link SolverServer#setUsageBase(int)}) */
+	public int getUsageBase() { return iUsageBase; }
+	public void setUsageBase(int usageBase) { iUsageBase = usageBase; }
+	
+	/**
+	 * Load of the processors: system load average divided by the number of processors, or the number of working solvers
+	 * divided by the number of processors when the system load average is not available.
+	 */
+	public double getProcessorLoad() {
+		if (iSystemLoad >= 0.0) return iSystemLoad / Math.max(1, iProcessors);
+		return ((double)iWorkingSolvers) / Math.max(1, iProcessors);
+	}
+	
+	@Override
+	public String toString() {
+		return iHost + "{mem=" + (iAvailableMemory >> 20) + "/" + (iMaxMemory >> 20) + "M, load=" + Math.round(100.0 * getProcessorLoad()) + "%, solvers=" +
+				iActiveSolvers + "+" + iPassivatedSolvers + " (" + iWorkingSolvers + " working)" + (iUsageBase != 0 ? ", usage=" + iUsageBase : "") + "}";
+	}
+}
@@ -29,6 +29,7 @@ import org.unitime.timetable.model.SolverParameterGroup.SolverType;
  */
 public class BackupFileFilter implements FileFilter {
 	public static String sXmlExtension = ".backup.xml";
+	public static String sPassivationExtension = ".passivated";
 	private SolverType iType;
 	
 	public BackupFileFilter(SolverType type) {
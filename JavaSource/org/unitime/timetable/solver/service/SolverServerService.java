@@ -44,6 +44,7 @@ import org.unitime.timetable.solver.jgroups.LocalSolverServer;
 import org.unitime.timetable.solver.jgroups.RemoteSolverContainer;
 import org.unitime.timetable.solver.jgroups.SolverContainer;
 import org.unitime.timetable.solver.jgroups.SolverContainerWrapper;
+import org.unitime.timetable.solver.jgroups.SolverPlacement;
 import org.unitime.timetable.solver.jgroups.SolverServer;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
 import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
@@ -86,18 +87,20 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 				
 				iServer.start();
 				
+				SolverPlacement placement = new SolverPlacement(((SolverServerImplementation)iServer).getDispatcher());
+				
 				iCourseSolverContainer = new SolverContainerWrapper<SolverProxy>(
 						((SolverServerImplementation)iServer).getDispatcher(),
-						(RemoteSolverContainer<SolverProxy>) iServer.getCourseSolverContainer(), true);
+						(RemoteSolverContainer<SolverProxy>) iServer.getCourseSolverContainer(), true, placement);
 				iExamSolverContainer = new SolverContainerWrapper<ExamSolverProxy>(
 						((SolverServerImplementation)iServer).getDispatcher(),
-						(RemoteSolverContainer<ExamSolverProxy>) iServer.getExamSolverContainer(), true);
+						(RemoteSolverContainer<ExamSolverProxy>) iServer.getExamSolverContainer(), true, placement);
 				iStudentSolverContainer = new SolverContainerWrapper<StudentSolverProxy>(
 						((SolverServerImplementation)iServer).getDispatcher(),
-						(RemoteSolverContainer<StudentSolverProxy>) iServer.getStudentSolverContainer(), true);
+						(RemoteSolverContainer<StudentSolverProxy>) iServer.getStudentSolverContainer(), true, placement);
 				iInstructorSchedulingContainer = new SolverContainerWrapper<InstructorSchedulingProxy>(
 						((SolverServerImplementation)iServer).getDispatcher(),
-						(RemoteSolverContainer<InstructorSchedulingProxy>) iServer.getInstructorSchedulingContainer(), true);
+						(RemoteSolverContainer<InstructorSchedulingProxy>) iServer.getInstructorSchedulingContainer(), true, placement);
 				iOnlineStudentSchedulingContainer = new SolverContainerWrapper<OnlineSectioningServer>(
 						((SolverServerImplementation)iServer).getDispatcher(),
 						(RemoteSolverContainer<OnlineSectioningServer>) iServer.getOnlineStudentSchedulingContainer(), false);
@@ -167,6 +167,8 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
 	private boolean iLinkedClassesMustBeUsed = false;
 	private boolean iAllowDefaultCourseAlternatives = false;
 	private boolean iIncludeUnavailabilities = true;
+	private boolean iStudentProjections = false;
+	private int iNrLoadThreads = 1;
     
     private Progress iProgress = null;
     
@@ -198,6 +200,8 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         iLinkedClassesMustBeUsed = model.getProperties().getPropertyBoolean("LinkedClasses.mustBeUsed", false);
         iAllowDefaultCourseAlternatives = ApplicationProperty.StudentSchedulingAlternativeCourse.isTrue();
         iIncludeUnavailabilities = model.getProperties().getPropertyBoolean("Load.IncludeUnavailabilities", iIncludeUnavailabilities);
+        iStudentProjections = model.getProperties().getPropertyBoolean("Load.StudentProjections", iStudentProjections);
+        iNrLoadThreads = model.getProperties().getPropertyInt("Load.NrThreads", Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
         
         try {
         	String studentCourseDemandsClassName = getModel().getProperties().getProperty("StudentSct.ProjectedCourseDemadsClass", LastLikeStudentCourseDemands.class.getName());
@@ -675,66 +679,55 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         	return null;
         }
         
-        NameFormat nameFormat = NameFormat.fromReference(ApplicationProperty.OnlineSchedulingStudentNameFormat.value());
-        iProgress.debug("Loading student "+s.getUniqueId()+" (id="+s.getExternalUniqueId()+", name="+nameFormat.format(s)+")");
-        Student student = new Student(s.getUniqueId().longValue());
-        student.setExternalId(s.getExternalUniqueId());
-        student.setName(nameFormat.format(s));
-        student.setStatus(s.getSectioningStatus() == null ? null : s.getSectioningStatus().getReference());
-        if (iLoadStudentInfo) loadStudentInfo(student,s);
-
-		TreeSet<CourseDemand> demands = new TreeSet<CourseDemand>(new Comparator<CourseDemand>() {
-			public int compare(CourseDemand d1, CourseDemand d2) {
-				if (d1.isAlternative() && !d2.isAlternative()) return 1;
-				if (!d1.isAlternative() && d2.isAlternative()) return -1;
-				int cmp = d1.getPriority().compareTo(d2.getPriority());
-				if (cmp != 0) return cmp;
-				return d1.getUniqueId().compareTo(d2.getUniqueId());
-			}
-		});
-		Set<CourseOffering> alternatives = new HashSet<CourseOffering>();
-		demands.addAll(s.getCourseDemands());
-        for (CourseDemand cd: demands) {
+        Student student = loadStudent(new EntityStudent(s, NameFormat.fromReference(ApplicationProperty.OnlineSchedulingStudentNameFormat.value())), courseTable, classTable);
+        if (iLoadStudentInfo) loadStudentInfo(student, s);
+        
+        return student;
+    }
+    
+    /**
+     * Create a solver student from the given student data, either a student entity (see {@link #loadStudent(org.unitime.timetable.model.Student, Hashtable, Hashtable)})
+     * or the data loaded by {@link StudentSectioningProjections} (see {@link #loadStudents(Session, org.hibernate.Session, Hashtable, Hashtable, Map)}).
+     * Student info (areas, classifications, majors, groups, and accommodations) is not loaded.
+     */
+    protected Student loadStudent(StudentAccessor s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+        iProgress.debug("Loading student "+s.getId()+" (id="+s.getExternalId()+", name="+s.getName()+")");
+        Student student = new Student(s.getId().longValue());
+        student.setExternalId(s.getExternalId());
+        student.setName(s.getName());
+        student.setStatus(s.getStatus());
+        
+		Set<Long> alternatives = new HashSet<Long>();
+        for (DemandAccessor cd: s.getDemands()) {
             if (cd.getFreeTime()!=null) {
             	TimeLocation ft = new TimeLocation(
-                        cd.getFreeTime().getDayCode(),
-                        cd.getFreeTime().getStartSlot(),
-                        cd.getFreeTime().getLength(),
+                        cd.getFreeTime()[0],
+                        cd.getFreeTime()[1],
+                        cd.getFreeTime()[2],
                         0, 0, -1l, "", iFreeTimePattern, 0);
                 new FreeTimeRequest(
-                        cd.getUniqueId(),
+                        cd.getId(),
                         cd.getPriority(),
                         cd.isAlternative(),
                         student, ft);
-            } else if (!cd.getCourseRequests().isEmpty()) {
+            } else if (!cd.getRequests().isEmpty()) {
                 Vector<Course> courses = new Vector<Course>();
                 HashSet<Choice> selChoices = new HashSet<Choice>();
                 HashSet<Choice> wlChoices = new HashSet<Choice>();
                 HashSet<Section> assignedSections = new HashSet<Section>();
                 Config assignedConfig = null;
-                TreeSet<org.unitime.timetable.model.CourseRequest> crs = new TreeSet<org.unitime.timetable.model.CourseRequest>(new Comparator<org.unitime.timetable.model.CourseRequest>() {
-                	public int compare(org.unitime.timetable.model.CourseRequest r1, org.unitime.timetable.model.CourseRequest r2) {
-                		return r1.getOrder().compareTo(r2.getOrder());
-                	}
-				});
-                crs.addAll(cd.getCourseRequests());
-                for (org.unitime.timetable.model.CourseRequest cr: crs) {
-                    Course course = courseTable.get(cr.getCourseOffering().getUniqueId());
+                for (RequestAccessor cr: cd.getRequests()) {
+                    Course course = courseTable.get(cr.getCourseId());
                     if (course==null) {
-                        iProgress.warn("Student " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + ") requests course " + cr.getCourseOffering().getCourseName() + " that is not loaded.");
+                        iProgress.warn("Student " + s.getName() + " (" + s.getExternalId() + ") requests course " + s.getCourseName(cr.getCourseId()) + " that is not loaded.");
                         continue;
                     }
-                    for (Iterator<ClassWaitList> k=cr.getClassWaitLists().iterator();k.hasNext();) {
-                        ClassWaitList cwl = k.next();
-                        Section section = course.getOffering().getSection(cwl.getClazz().getUniqueId().longValue());
-                        if (section != null && cwl.getType().equals(ClassWaitList.Type.LOCKED.ordinal()))
+                    for (Long classId: cr.getLockedClassIds()) {
+                        Section section = course.getOffering().getSection(classId);
+                        if (section != null)
                         	wlChoices.add(section.getChoice());
                     }
-                    OnlineSectioningLog.CourseRequestOption pref = null;
-                    try {
-                        CourseRequestOption opt = cr.getCourseRequestOption(OnlineSectioningLog.CourseRequestOption.OptionType.REQUEST_PREFERENCE);
-                    	if (opt != null) pref = opt.getOption();
-                    } catch (InvalidProtocolBufferException e) {}
+                    OnlineSectioningLog.CourseRequestOption pref = cr.getPreference();
                     if (pref != null) {
     					if (pref.getInstructionalMethodCount() > 0) {
     						for (OnlineSectioningLog.Entity e: pref.getInstructionalMethodList()) {
@@ -753,59 +746,60 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     }
                     if (assignedConfig==null) {
                         HashSet<Long> subparts = new HashSet<Long>();
-                        for (Iterator<StudentClassEnrollment> i = cr.getClassEnrollments().iterator(); i.hasNext(); ) {
-                        	StudentClassEnrollment enrl = i.next();
-                        	Section section = course.getOffering().getSection(enrl.getClazz().getUniqueId());
+                        for (EnrollmentAccessor enrl: s.getEnrollments()) {
+                        	if (!cr.getId().equals(enrl.getCourseRequestId())) continue;
+                        	Section section = course.getOffering().getSection(enrl.getClassId());
                             if (section!=null) {
                             	if (getModel().isMPP())
                             		selChoices.add(section.getChoice());
                                 assignedSections.add(section);
                                 if (assignedConfig != null && assignedConfig.getId() != section.getSubpart().getConfig().getId()) {
-                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): classes from different configurations.");
                                 }
                                 assignedConfig = section.getSubpart().getConfig();
                                 if (!subparts.add(section.getSubpart().getId())) {
-                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart.");
+                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): two or more classes of the same subpart.");
                                 }
                             } else {
-                            	iProgress.error("There is a problem assigning " + course.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): class " + enrl.getClazz().getClassLabel(iShowClassSuffix, iShowConfigName) + " not known.");
+                            	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): class " + getClassLabel(s, enrl.getClassId(), classTable) + " not known.");
                             }
                         }
                     }
                     courses.addElement(course);
                 }
-                if (iAllowDefaultCourseAlternatives && crs.size() == 1 && !cd.isAlternative()) {
-                	CourseOffering co = crs.first().getCourseOffering();
-                	CourseOffering alt = co.getAlternativeOffering();
-                	if (alt != null) {
+                if (iAllowDefaultCourseAlternatives && cd.getRequests().size() == 1 && !cd.isAlternative()) {
+                	Long coId = cd.getRequests().get(0).getCourseId();
+                	Long altId = s.getAlternativeCourseId(coId);
+                	if (altId != null) {
                 		// there is an alternative, but it is already requested -> do nothing
-                    	demands: for (CourseDemand d: demands)
-                    		for (org.unitime.timetable.model.CourseRequest r: d.getCourseRequests())
-                    			if (alt.equals(r.getCourseOffering())) { alt = null; break demands; } 
+                    	demands: for (DemandAccessor d: s.getDemands())
+                    		for (RequestAccessor r: d.getRequests())
+                    			if (altId.equals(r.getCourseId())) { altId = null; break demands; } 
                 	}
-                	if (alt != null && alternatives.add(alt)) {
+                	if (altId != null && alternatives.add(altId)) {
                 		// there is an alternative, not requested -> add the alternative
-                		Course course = courseTable.get(alt.getUniqueId());
+                		Course course = courseTable.get(altId);
                         if (course == null) {
-                            iProgress.warn("Course " + co.getCourseName() + "has an alternative course " + alt.getCourseName() + " that is not loaded (" + s.getExternalUniqueId() + ").");
+                            iProgress.warn("Course " + s.getCourseName(coId) + "has an alternative course " + s.getCourseName(altId) + " that is not loaded (" + s.getExternalId() + ").");
                         } else {
                         	if (assignedConfig==null) {
                                 HashSet<Long> subparts = new HashSet<Long>();
-                                for (StudentClassEnrollment enrl: alt.getClassEnrollments(s)) {
-                                	Section section = course.getOffering().getSection(enrl.getClazz().getUniqueId());
+                                for (EnrollmentAccessor enrl: s.getEnrollments()) {
+                                	if (!altId.equals(enrl.getCourseId())) continue;
+                                	Section section = course.getOffering().getSection(enrl.getClassId());
                                     if (section != null) {
                                     	if (getModel().isMPP())
                                     		selChoices.add(section.getChoice());
                                         assignedSections.add(section);
                                         if (assignedConfig != null && assignedConfig.getId() != section.getSubpart().getConfig().getId()) {
-                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): classes from different configurations.");
                                         }
                                         assignedConfig = section.getSubpart().getConfig();
                                         if (!subparts.add(section.getSubpart().getId())) {
-                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart.");
+                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): two or more classes of the same subpart.");
                                         }
                                     } else {
-                                    	iProgress.error("There is a problem assigning " + course.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): class " + enrl.getClazz().getClassLabel(iShowClassSuffix, iShowConfigName) + " not known.");
+                                    	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): class " + getClassLabel(s, enrl.getClassId(), classTable) + " not known.");
                                     }
                                 }
                             }
@@ -815,13 +809,13 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                 }
                 if (courses.isEmpty()) continue;
                 CourseRequest request = new CourseRequest(
-                        cd.getUniqueId(),
+                        cd.getId(),
                         cd.getPriority(),
                         cd.isAlternative(),
                         student,
                         courses,
                         cd.isWaitlist(), 
-                        cd.getTimestamp().getTime());
+                        cd.getTimeStamp().getTime());
                 request.getSelectedChoices().addAll(selChoices);
                 request.getWaitlistedChoices().addAll(wlChoices);
                 if (assignedConfig!=null && assignedSections.size() == assignedConfig.getSubparts().size()) {
@@ -829,36 +823,36 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     request.setInitialAssignment(enrollment);
                 }
                 if (assignedConfig!=null && assignedSections.size() != assignedConfig.getSubparts().size()) {
-                	iProgress.error("There is a problem assigning " + request.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + ") wrong number of classes (" +
+                	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.getName() + " (" + s.getExternalId() + ") wrong number of classes (" +
                 			"has " + assignedSections.size() + ", expected " + assignedConfig.getSubparts().size() + ").");
                 }
             }
         }
 
-        if (!s.getClassEnrollments().isEmpty() || !s.getWaitlists().isEmpty()) {
+        if (!s.getEnrollments().isEmpty() || !s.getWaitLists().isEmpty()) {
         	TreeSet<Course> courses = new TreeSet<Course>(new Comparator<Course>() {
         		public int compare(Course c1, Course c2) {
         			return (c1.getSubjectArea() + " " + c1.getCourseNumber()).compareTo(c2.getSubjectArea() + " " + c2.getCourseNumber());
         		}
         	});
         	Map<Long, Long> timeStamp = new Hashtable<Long, Long>();
-        	for (StudentClassEnrollment enrl: s.getClassEnrollments()) {
-        		if (enrl.getCourseRequest() != null || alternatives.contains(enrl.getCourseOffering())) continue; // already loaded
-        		Course course = courseTable.get(enrl.getCourseOffering().getUniqueId());
+        	for (EnrollmentAccessor enrl: s.getEnrollments()) {
+        		if (enrl.getCourseRequestId() != null || alternatives.contains(enrl.getCourseId())) continue; // already loaded
+        		Course course = courseTable.get(enrl.getCourseId());
                 if (course==null) {
-                    iProgress.warn("Student " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + ") requests course " + enrl.getCourseOffering().getCourseName()+" that is not loaded.");
+                    iProgress.warn("Student " + s.getName() + " (" + s.getExternalId() + ") requests course " + s.getCourseName(enrl.getCourseId())+" that is not loaded.");
                     continue;
                 }
-                if (enrl.getTimestamp() != null) timeStamp.put(enrl.getCourseOffering().getUniqueId(), enrl.getTimestamp().getTime());
+                if (enrl.getTimeStamp() != null) timeStamp.put(enrl.getCourseId(), enrl.getTimeStamp().getTime());
                 courses.add(course);
         	}
-        	for (WaitList w: s.getWaitlists()) {
-        		Course course = courseTable.get(w.getCourseOffering().getUniqueId());
+        	for (WaitListAccessor w: s.getWaitLists()) {
+        		Course course = courseTable.get(w.getCourseId());
                 if (course==null) {
-                    iProgress.warn("Student " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + ") requests course " + w.getCourseOffering().getCourseName()+" that is not loaded.");
+                    iProgress.warn("Student " + s.getName() + " (" + s.getExternalId() + ") requests course " + s.getCourseName(w.getCourseId())+" that is not loaded.");
                     continue;
                 }
-                if (w.getTimestamp() != null) timeStamp.put(w.getCourseOffering().getUniqueId(), w.getTimestamp().getTime());
+                if (w.getTimeStamp() != null) timeStamp.put(w.getCourseId(), w.getTimeStamp().getTime());
                 courses.add(course);
         	}
         	int priority = 0;
@@ -884,24 +878,23 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                 HashSet<Section> assignedSections = new HashSet<Section>();
                 Config assignedConfig = null;
                 HashSet<Long> subparts = new HashSet<Long>();
-                for (Iterator<StudentClassEnrollment> i = s.getClassEnrollments().iterator(); i.hasNext(); ) {
-                	StudentClassEnrollment enrl = i.next();
-                	if (course.getId() != enrl.getCourseOffering().getUniqueId()) continue;
-                	Section section = course.getOffering().getSection(enrl.getClazz().getUniqueId());
+                for (EnrollmentAccessor enrl: s.getEnrollments()) {
+                	if (course.getId() != enrl.getCourseId()) continue;
+                	Section section = course.getOffering().getSection(enrl.getClassId());
                     if (section!=null) {
                         assignedSections.add(section);
                         if (assignedConfig != null && assignedConfig.getId() != section.getSubpart().getConfig().getId()) {
-                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): classes from different configurations.");
                         	continue courses;
                         }
                         assignedConfig = section.getSubpart().getConfig();
                         if (!subparts.add(section.getSubpart().getId())) {
-                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart.");
+                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): two or more classes of the same subpart.");
                         	continue courses;
                         }
                     } else {
-                    	iProgress.error("There is a problem assigning " + request.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): class " + enrl.getClazz().getClassLabel(iShowClassSuffix, iShowConfigName) + " not known.");
-                    	Section x = classTable.get(enrl.getClazz().getUniqueId());
+                    	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): class " + getClassLabel(s, enrl.getClassId(), classTable) + " not known.");
+                    	Section x = classTable.get(enrl.getClassId());
                     	if (x != null) {
                     		iProgress.info("  but a class with the same id is loaded, but under offering " + x.getSubpart().getConfig().getOffering().getName() + " (id is " + x.getSubpart().getConfig().getOffering().getId() + 
                     				", expected " +course.getOffering().getId() + ")");
@@ -914,7 +907,7 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     request.setInitialAssignment(enrollment);
                 }
                 if (assignedConfig!=null && assignedSections.size() != assignedConfig.getSubparts().size()) {
-                	iProgress.error("There is a problem assigning " + request.getName() + " to " + nameFormat.format(s) + " (" + s.getExternalUniqueId() + "): wrong number of classes (" +
+                	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.getName() + " (" + s.getExternalId() + "): wrong number of classes (" +
                 			"has " + assignedSections.size() + ", expected " + assignedConfig.getSubparts().size() + ").");
                 }
         	}
@@ -923,6 +916,316 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         return student;
     }
     
+    /**
+     * Add a loaded student into the model (or, in the projection mode, decrease the limits accordingly)
+     */
+    protected void addStudent(Student student, Map<String, Student> ext2student) {
+        updateCurriculumCounts(student);
+        if (iProjections) {
+        	// Decrease the limits accordingly
+        	for (Request request: student.getRequests()) {
+        		if (request.getInitialAssignment() != null && request.getInitialAssignment().isCourseRequest()) {
+        			Enrollment enrollment = request.getInitialAssignment();
+        			if (enrollment.getConfig().getLimit() > 0)
+        				enrollment.getConfig().setLimit(enrollment.getConfig().getLimit() - 1);
+        			for (Section section: enrollment.getSections())
+        				if (section.getLimit() > 0)
+        					section.setLimit(section.getLimit() - 1);
+        			if (enrollment.getCourse() != null && enrollment.getCourse().getLimit() > 0)
+        				enrollment.getCourse().setLimit(enrollment.getCourse().getLimit() - 1);
+        			if (enrollment.getReservation() != null) {
+        				if (enrollment.getReservation() instanceof GroupReservation && enrollment.getReservation().getReservationLimit() >= 1.0) {
+        					((GroupReservation)enrollment.getReservation()).getStudentIds().remove(student.getId());
+        					((GroupReservation)enrollment.getReservation()).setReservationLimit(((GroupReservation)enrollment.getReservation()).getReservationLimit() - 1.0);
+        				} else if (enrollment.getReservation() instanceof IndividualReservation) {
+        					((IndividualReservation)enrollment.getReservation()).getStudentIds().remove(student.getId());
+        				} else if (enrollment.getReservation() instanceof CurriculumReservation && enrollment.getReservation().getReservationLimit() >= 1.0) {
+        					((CurriculumReservation)enrollment.getReservation()).setReservationLimit(enrollment.getReservation().getReservationLimit() - 1.0);
+        				}
+        			}
+        		}
+        		if (request instanceof CourseRequest) {
+        			for (Course course: ((CourseRequest)request).getCourses()) {
+        				course.getRequests().remove(request);
+        			}
+        		}
+        	}
+        } else {
+        	if (student.getExternalId() != null && !student.getExternalId().isEmpty())
+        		ext2student.put(student.getExternalId(), student);
+            getModel().addStudent(student);
+            // assignStudent(student);
+        }
+    }
+    
+    /**
+     * Load students using scalar projections, see {@link StudentSectioningProjections}
+     */
+    protected void loadStudents(Session session, org.hibernate.Session hibSession, Hashtable<Long, Course> courseTable, Hashtable<Long, Section> classTable, Map<String, Student> ext2student) {
+    	StudentSectioningProjections data = new StudentSectioningProjections(iProgress, session.getUniqueId(), iLoadStudentInfo, iLoadRequestGroups && !iProjections, iAllowDefaultCourseAlternatives, iNrLoadThreads);
+    	data.load(hibSession);
+    	
+    	Map<Long, StudentSectioningStatus> statuses = new HashMap<Long, StudentSectioningStatus>();
+    	for (StudentSectioningStatus status: (List<StudentSectioningStatus>)hibSession.createQuery("from StudentSectioningStatus").list())
+    		statuses.put(status.getUniqueId(), status);
+    	try {
+    		data.prepare(session, statuses, NameFormat.fromReference(ApplicationProperty.OnlineSchedulingStudentNameFormat.value()));
+    	} catch (Exception e) {
+    		throw new RuntimeException("Failed to prepare student requests: " + e.getMessage(), e);
+    	}
+    	
+    	long t0 = System.currentTimeMillis();
+    	List<StudentSectioningProjections.StudentData> students = data.getStudents();
+    	iProgress.setPhase("Loading student requests...", students.size());
+    	for (StudentSectioningProjections.StudentData s: students) {
+    		iProgress.incProgress();
+    		if (s.isEmpty()) continue;
+    		if (iCheckForNoBatchStatus && s.isNoBatch()) {
+    			org.unitime.timetable.model.Student student = StudentDAO.getInstance().get(s.getId(), hibSession);
+    			if (student != null) skipStudent(student, courseTable, classTable);
+    			continue;
+    		}
+    		Student student = loadStudent(s, courseTable, classTable);
+    		if (iLoadStudentInfo) loadStudentInfo(student, s);
+    		if (iLoadRequestGroups && !iProjections) {
+    			for (StudentSectioningProjections.GroupData g: s.getGroups())
+    				loadRequestGroup(student, g.getId(), g.getName());
+    		}
+    		addStudent(student, ext2student);
+    	}
+    	iProgress.info("Student requests loaded in " + (System.currentTimeMillis() - t0) + " ms.");
+    }
+    
+    private String getClassLabel(StudentAccessor s, Long classId, Hashtable<Long, Section> classTable) {
+    	String label = s.getClassLabel(classId);
+    	if (label != null) return label;
+    	Section section = classTable.get(classId);
+    	if (section == null) return "#" + classId;
+    	return section.getSubpart().getConfig().getOffering().getName() + " " + section.getSubpart().getName() + " " + section.getName();
+    }
+    
+    /**
+     * Student data needed by {@link StudentSectioningDatabaseLoader#loadStudent(StudentAccessor, Hashtable, Hashtable)} to create a solver student.
+     * Implemented by {@link StudentSectioningProjections.StudentData} and, for a student entity, by {@link EntityStudent}.
+     */
+    public static interface StudentAccessor {
+    	public Long getId();
+    	public String getExternalId();
+    	/** Formatted student name */
+    	public String getName();
+    	/** Sectioning status reference, null if the student has no status */
+    	public String getStatus();
+    	/** Course demands, ordered by alternativity, priority, and unique id */
+    	public List<? extends DemandAccessor> getDemands();
+    	public List<? extends EnrollmentAccessor> getEnrollments();
+    	public List<? extends WaitListAccessor> getWaitLists();
+    	/** Course name of the given course offering (used in the log messages) */
+    	public String getCourseName(Long courseId);
+    	/** Default alternative course offering of the given course offering, null if there is none */
+    	public Long getAlternativeCourseId(Long courseId);
+    	/** Label of the given class (used in the log messages), null if not known */
+    	public String getClassLabel(Long classId);
+    }
+    
+    public static interface DemandAccessor {
+    	public Long getId();
+    	public Integer getPriority();
+    	public boolean isAlternative();
+    	public boolean isWaitlist();
+    	public Date getTimeStamp();
+    	/** Free time day code, start slot, and length; null if not a free time request */
+    	public int[] getFreeTime();
+    	/** Course requests, ordered by their order */
+    	public List<? extends RequestAccessor> getRequests();
+    }
+    
+    public static interface RequestAccessor {
+    	public Long getId();
+    	public Long getCourseId();
+    	/** Request preference (instructional methods and sections), null if there is none */
+    	public OnlineSectioningLog.CourseRequestOption getPreference();
+    	/** Classes of the locked class wait-lists */
+    	public List<Long> getLockedClassIds();
+    }
+    
+    public static interface EnrollmentAccessor {
+    	public Long getClassId();
+    	public Long getCourseId();
+    	/** Course request of the enrollment, null if there is none */
+    	public Long getCourseRequestId();
+    	public Date getTimeStamp();
+    }
+    
+    public static interface WaitListAccessor {
+    	public Long getCourseId();
+    	public Date getTimeStamp();
+    }
+    
+    /**
+     * {@link StudentAccessor} of a student entity
+     */
+    private class EntityStudent implements StudentAccessor {
+    	private org.unitime.timetable.model.Student iStudent;
+    	private String iName;
+    	private List<EntityDemand> iDemands = new ArrayList<EntityDemand>();
+    	private List<EntityEnrollment> iEnrollments = new ArrayList<EntityEnrollment>();
+    	private List<EntityWaitList> iWaitLists = new ArrayList<EntityWaitList>();
+    	private Map<Long, CourseOffering> iCourses = new HashMap<Long, CourseOffering>();
+    	private Map<Long, Class_> iClasses = new HashMap<Long, Class_>();
+    	
+    	private EntityStudent(org.unitime.timetable.model.Student s, NameFormat nameFormat) {
+    		iStudent = s;
+    		iName = nameFormat.format(s);
+    		TreeSet<CourseDemand> demands = new TreeSet<CourseDemand>(new Comparator<CourseDemand>() {
+    			public int compare(CourseDemand d1, CourseDemand d2) {
+    				if (d1.isAlternative() && !d2.isAlternative()) return 1;
+    				if (!d1.isAlternative() && d2.isAlternative()) return -1;
+    				int cmp = d1.getPriority().compareTo(d2.getPriority());
+    				if (cmp != 0) return cmp;
+    				return d1.getUniqueId().compareTo(d2.getUniqueId());
+    			}
+    		});
+    		demands.addAll(s.getCourseDemands());
+    		for (CourseDemand cd: demands) {
+    			iDemands.add(new EntityDemand(cd));
+    			for (org.unitime.timetable.model.CourseRequest cr: cd.getCourseRequests())
+    				iCourses.put(cr.getCourseOffering().getUniqueId(), cr.getCourseOffering());
+    		}
+    		for (StudentClassEnrollment enrl: s.getClassEnrollments()) {
+    			iEnrollments.add(new EntityEnrollment(enrl));
+    			iCourses.put(enrl.getCourseOffering().getUniqueId(), enrl.getCourseOffering());
+    			iClasses.put(enrl.getClazz().getUniqueId(), enrl.getClazz());
+    		}
+    		for (WaitList w: s.getWaitlists()) {
+    			iWaitLists.add(new EntityWaitList(w));
+    			iCourses.put(w.getCourseOffering().getUniqueId(), w.getCourseOffering());
+    		}
+    	}
+    	
+    	@Override
+    	public Long getId() { return iStudent.getUniqueId(); }
+    	@Override
+    	public String getExternalId() { return iStudent.getExternalUniqueId(); }
+    	@Override
+    	public String getName() { return iName; }
+    	@Override
+    	public String getStatus() { return iStudent.getSectioningStatus() == null ? null : iStudent.getSectioningStatus().getReference(); }
+    	@Override
+    	public List<EntityDemand> getDemands() { return iDemands; }
+    	@Override
+    	public List<EntityEnrollment> getEnrollments() { return iEnrollments; }
+    	@Override
+    	public List<EntityWaitList> getWaitLists() { return iWaitLists; }
+    	
+    	@Override
+    	public String getCourseName(Long courseId) {
+    		CourseOffering course = iCourses.get(courseId);
+    		return course == null ? String.valueOf(courseId) : course.getCourseName();
+    	}
+    	
+    	@Override
+    	public Long getAlternativeCourseId(Long courseId) {
+    		CourseOffering course = iCourses.get(courseId);
+    		CourseOffering alternative = (course == null ? null : course.getAlternativeOffering());
+    		if (alternative == null) return null;
+    		iCourses.put(alternative.getUniqueId(), alternative);
+    		return alternative.getUniqueId();
+    	}
+    	
+    	@Override
+    	public String getClassLabel(Long classId) {
+    		Class_ clazz = iClasses.get(classId);
+    		return clazz == null ? null : clazz.getClassLabel(iShowClassSuffix, iShowConfigName);
+    	}
+    }
+    
+    private static class EntityDemand implements DemandAccessor {
+    	private CourseDemand iDemand;
+    	private List<EntityRequest> iRequests = new ArrayList<EntityRequest>();
+    	
+    	private EntityDemand(CourseDemand cd) {
+    		iDemand = cd;
+    		TreeSet<org.unitime.timetable.model.CourseRequest> crs = new TreeSet<org.unitime.timetable.model.CourseRequest>(new Comparator<org.unitime.timetable.model.CourseRequest>() {
+    			public int compare(org.unitime.timetable.model.CourseRequest r1, org.unitime.timetable.model.CourseRequest r2) {
+    				return r1.getOrder().compareTo(r2.getOrder());
+    			}
+    		});
+    		crs.addAll(cd.getCourseRequests());
+    		for (org.unitime.timetable.model.CourseRequest cr: crs)
+    			iRequests.add(new EntityRequest(cr));
+    	}
+    	
+    	@Override
+    	public Long getId() { return iDemand.getUniqueId(); }
+    	@Override
+    	public Integer getPriority() { return iDemand.getPriority(); }
+    	@Override
+    	public boolean isAlternative() { return iDemand.isAlternative(); }
+    	@Override
+    	public boolean isWaitlist() { return iDemand.isWaitlist(); }
+    	@Override
+    	public Date getTimeStamp() { return iDemand.getTimestamp(); }
+    	@Override
+    	public int[] getFreeTime() {
+    		if (iDemand.getFreeTime() == null) return null;
+    		return new int[] { iDemand.getFreeTime().getDayCode(), iDemand.getFreeTime().getStartSlot(), iDemand.getFreeTime().getLength() };
+    	}
+    	@Override
+    	public List<EntityRequest> getRequests() { return iRequests; }
+    }
+    
+    private static class EntityRequest implements RequestAccessor {
+    	private org.unitime.timetable.model.CourseRequest iRequest;
+    	private OnlineSectioningLog.CourseRequestOption iPreference = null;
+    	private List<Long> iLockedClassIds = new ArrayList<Long>();
+    	
+    	private EntityRequest(org.unitime.timetable.model.CourseRequest cr) {
+    		iRequest = cr;
+    		for (ClassWaitList cwl: cr.getClassWaitLists())
+    			if (cwl.getType().equals(ClassWaitList.Type.LOCKED.ordinal()))
+    				iLockedClassIds.add(cwl.getClazz().getUniqueId());
+    		try {
+    			CourseRequestOption opt = cr.getCourseRequestOption(OnlineSectioningLog.CourseRequestOption.OptionType.REQUEST_PREFERENCE);
+    			if (opt != null) iPreference = opt.getOption();
+    		} catch (InvalidProtocolBufferException e) {}
+    	}
+    	
+    	@Override
+    	public Long getId() { return iRequest.getUniqueId(); }
+    	@Override
+    	public Long getCourseId() { return iRequest.getCourseOffering().getUniqueId(); }
+    	@Override
+    	public OnlineSectioningLog.CourseRequestOption getPreference() { return iPreference; }
+    	@Override
+    	public List<Long> getLockedClassIds() { return iLockedClassIds; }
+    }
+    
+    private static class EntityEnrollment implements EnrollmentAccessor {
+    	private StudentClassEnrollment iEnrollment;
+    	
+    	private EntityEnrollment(StudentClassEnrollment enrl) { iEnrollment = enrl; }
+    	
+    	@Override
+    	public Long getClassId() { return iEnrollment.getClazz().getUniqueId(); }
+    	@Override
+    	public Long getCourseId() { return iEnrollment.getCourseOffering().getUniqueId(); }
+    	@Override
+    	public Long getCourseRequestId() { return iEnrollment.getCourseRequest() == null ? null : iEnrollment.getCourseRequest().getUniqueId(); }
+    	@Override
+    	public Date getTimeStamp() { return iEnrollment.getTimestamp(); }
+    }
+    
+    private static class EntityWaitList implements WaitListAccessor {
+    	private WaitList iWaitList;
+    	
+    	private EntityWaitList(WaitList w) { iWaitList = w; }
+    	
+    	@Override
+    	public Long getCourseId() { return iWaitList.getCourseOffering().getUniqueId(); }
+    	@Override
+    	public Date getTimeStamp() { return iWaitList.getTimestamp(); }
+    }
+    
     public void assignStudent(Student student) {
 		for (Request r: student.getRequests()) {
 			if (r.getInitialAssignment() != null && student.isAvailable(r.getInitialAssignment()) && r.getModel().conflictValues(getAssignment(), r.getInitialAssignment()).isEmpty())
@@ -1221,23 +1524,35 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         	student.getMinors().add(new AcademicAreaCode("A", a.getAbbreviation()));
     }
     
+    public void loadStudentInfo(Student student, StudentSectioningProjections.StudentData s) {
+    	for (String[] acm: s.getAreaClasfMajors())
+    		student.getAreaClassificationMajors().add(new AreaClassificationMajor(acm[0], acm[1], acm[2]));
+    	for (StudentSectioningProjections.GroupData g: s.getGroups())
+    		student.getMinors().add(new AcademicAreaCode("", g.getAbbreviation()));
+    	for (String a: s.getAccommodations())
+    		student.getMinors().add(new AcademicAreaCode("A", a));
+    }
+    
     public void loadRequestGroups(Student student, org.unitime.timetable.model.Student s) {
-        for (StudentGroup g: s.getGroups()) {
-        	if (iRequestGroupRegExp != null && !iRequestGroupRegExp.isEmpty() && !g.getGroupName().matches(iRequestGroupRegExp)) continue;
-        	for (Request r: student.getRequests()) {
-        		if (r instanceof CourseRequest) {
-        			CourseRequest cr = (CourseRequest)r;
-        			Course course = cr.getCourses().get(0);
-        			RequestGroup group = null;
-        			for (RequestGroup rg: course.getRequestGroups()) {
-        				if (rg.getId() == g.getUniqueId()) { group = rg; break; }
-        			}
-        			if (group == null)
-        				group = new RequestGroup(g.getUniqueId(), g.getGroupName(), course);
-        			cr.addRequestGroup(group);
-        		}
-        	}
-        }
+        for (StudentGroup g: s.getGroups())
+        	loadRequestGroup(student, g.getUniqueId(), g.getGroupName());
+    }
+    
+    protected void loadRequestGroup(Student student, Long groupId, String groupName) {
+    	if (iRequestGroupRegExp != null && !iRequestGroupRegExp.isEmpty() && !groupName.matches(iRequestGroupRegExp)) return;
+    	for (Request r: student.getRequests()) {
+    		if (r instanceof CourseRequest) {
+    			CourseRequest cr = (CourseRequest)r;
+    			Course course = cr.getCourses().get(0);
+    			RequestGroup group = null;
+    			for (RequestGroup rg: course.getRequestGroups()) {
+    				if (rg.getId() == groupId) { group = rg; break; }
+    			}
+    			if (group == null)
+    				group = new RequestGroup(groupId, groupName, course);
+    			cr.addRequestGroup(group);
+    		}
+    	}
     }
     
 	public static BitSet getFreeTimeBitSet(Session session) {
@@ -1494,7 +1809,9 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         }
         
         Map<String, Student> ext2student = new HashMap<String, Student>();
-        if (iIncludeCourseDemands || iProjections) {
+        if ((iIncludeCourseDemands || iProjections) && iStudentProjections && iStudentQuery == null) {
+        	loadStudents(session, hibSession, courseTable, classTable, ext2student);
+        } else if (iIncludeCourseDemands || iProjections) {
             List students = hibSession.createQuery(
                     "select distinct s from Student s " +
                     "left join fetch s.courseDemands as cd "+
@@ -1512,43 +1829,8 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                 if (s.getCourseDemands().isEmpty() && s.getClassEnrollments().isEmpty() && s.getWaitlists().isEmpty()) continue;
                 Student student = loadStudent(s, courseTable, classTable);
                 if (student == null) continue;
-                updateCurriculumCounts(student);
-                if (iProjections) {
-                	// Decrease the limits accordingly
-                	for (Request request: student.getRequests()) {
-                		if (request.getInitialAssignment() != null && request.getInitialAssignment().isCourseRequest()) {
-                			Enrollment enrollment = request.getInitialAssignment();
-                			if (enrollment.getConfig().getLimit() > 0)
-                				enrollment.getConfig().setLimit(enrollment.getConfig().getLimit() - 1);
-                			for (Section section: enrollment.getSections())
-                				if (section.getLimit() > 0)
-                					section.setLimit(section.getLimit() - 1);
-                			if (enrollment.getCourse() != null && enrollment.getCourse().getLimit() > 0)
-                				enrollment.getCourse().setLimit(enrollment.getCourse().getLimit() - 1);
-                			if (enrollment.getReservation() != null) {
-                				if (enrollment.getReservation() instanceof GroupReservation && enrollment.getReservation().getReservationLimit() >= 1.0) {
-                					((GroupReservation)enrollment.getReservation()).getStudentIds().remove(student.getId());
-                					((GroupReservation)enrollment.getReservation()).setReservationLimit(((GroupReservation)enrollment.getReservation()).getReservationLimit() - 1.0);
-                				} else if (enrollment.getReservation() instanceof IndividualReservation) {
-                					((IndividualReservation)enrollment.getReservation()).getStudentIds().remove(student.getId());
-                				} else if (enrollment.getReservation() instanceof CurriculumReservation && enrollment.getReservation().getReservationLimit() >= 1.0) {
-                					((CurriculumReservation)enrollment.getReservation()).setReservationLimit(enrollment.getReservation().getReservationLimit() - 1.0);
-                				}
-                			}
-                		}
-                		if (request instanceof CourseRequest) {
-                			for (Course course: ((CourseRequest)request).getCourses()) {
-                				course.getRequests().remove(request);
-                			}
-                		}
-                	}
-                } else {
-                	if (iLoadRequestGroups) loadRequestGroups(student, s);
-                	if (student.getExternalId() != null && !student.getExternalId().isEmpty())
-                		ext2student.put(student.getExternalId(), student);
-                    getModel().addStudent(student);
-                    // assignStudent(student);
-                }
+                if (iLoadRequestGroups && !iProjections) loadRequestGroups(student, s);
+                addStudent(student, ext2student);
             }
         }
         
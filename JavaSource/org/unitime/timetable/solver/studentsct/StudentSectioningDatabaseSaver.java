@@ -19,11 +19,19 @@
 */
 package org.unitime.timetable.solver.studentsct;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -42,9 +50,15 @@ import org.cpsolver.studentsct.model.Request;
 import org.cpsolver.studentsct.model.Section;
 import org.cpsolver.studentsct.model.Student;
 import org.cpsolver.studentsct.model.Subpart;
+import org.hibernate.Cache;
 import org.hibernate.CacheMode;
 import org.hibernate.FlushMode;
 import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.Class_;
 import org.unitime.timetable.model.CourseDemand;
@@ -82,6 +96,8 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
     
     private Progress iProgress = null;
 	private boolean iProjections = false;
+	private boolean iSaveChangesOnly = false;
+	private int iBatchSize = 1000;
 
     public StudentSectioningDatabaseSaver(Solver solver) {
         super(solver);
@@ -93,6 +109,8 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         iProjections = "Projection".equals(solver.getProperties().getProperty("StudentSctBasic.Mode", "Initial"));
         iUpdateCourseRequests = solver.getProperties().getPropertyBoolean("Interactive.UpdateCourseRequests", true);
         iOwnerId = solver.getProperties().getProperty("General.OwnerPuid");
+        iSaveChangesOnly = solver.getProperties().getPropertyBoolean("Save.ChangesOnly", iSaveChangesOnly);
+        iBatchSize = solver.getProperties().getPropertyInt("Save.BatchSize", iBatchSize);
     }
     
     public void save() {
@@ -118,12 +136,14 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
             
             hibSession.flush();
             
+            // the transaction may have been committed and re-opened when saving changes in chunks
+            tx = hibSession.getTransaction();
             tx.commit(); tx = null;
             
         } catch (Exception e) {
             iProgress.fatal("Unable to save student schedule, reason: "+e.getMessage(),e);
             sLog.error(e.getMessage(),e);
-            if (tx != null) tx.rollback();
+            if (hibSession != null && hibSession.getTransaction().isActive()) hibSession.getTransaction().rollback();
         } finally {
             // here we need to close the session since this code may run in a separate thread
             if (hibSession!=null && hibSession.isOpen()) hibSession.close();
@@ -291,6 +311,345 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         hibSession.saveOrUpdate(s);
     }    
     
+    /**
+     * Save only the differences between the solver's assignment and the database. Current enrollments, wait-lists,
+     * and sectioning statuses are loaded using scalar queries, students with no change are skipped, and the changes
+     * are written using JDBC batches that are committed in chunks of Save.BatchSize changes.
+     */
+    protected void saveChanges(Session session, org.hibernate.Session hibSession) {
+    	EnrollmentChanges changes = new EnrollmentChanges(hibSession);
+    	changes.load(session);
+    	
+    	List<Student> students = new ArrayList<Student>();
+    	List<Student> requestsChanged = new ArrayList<Student>();
+    	for (Student student: getModel().getStudents()) {
+    		if (student.isDummy()) continue;
+    		if (iUpdateCourseRequests && BatchEnrollStudent.sRequestsChangedStatus.equals(student.getStatus()))
+    			requestsChanged.add(student);
+    		else
+    			students.add(student);
+    	}
+    	
+    	if (!requestsChanged.isEmpty()) {
+    		// course demands have changed: these students are saved through Hibernate
+    		loadStudents(session, hibSession, requestsChanged);
+    		iProgress.setPhase("Saving students with changed course requests...", requestsChanged.size());
+    		for (Student student: requestsChanged) {
+    			iProgress.incProgress();
+    			saveStudent(hibSession, student);
+    		}
+    		flush(hibSession);
+    		hibSession.getTransaction().commit();
+    		hibSession.beginTransaction();
+    	}
+    	
+    	iProgress.setPhase("Saving student enrollment changes...", students.size());
+    	int changed = 0, unchanged = 0;
+    	long t0 = System.currentTimeMillis();
+    	for (Student student: students) {
+    		iProgress.incProgress();
+    		if (changes.diff(student))
+    			changed ++;
+    		else
+    			unchanged ++;
+    		if (changes.size() >= iBatchSize) {
+    			changes.apply();
+    			hibSession.getTransaction().commit();
+    			hibSession.beginTransaction();
+    		}
+    	}
+    	changes.apply();
+    	changes.evictCaches();
+    	
+    	iProgress.info(changed + " students changed, " + unchanged + " students unchanged (" + changes.getNrStatements() + " rows updated in " + (System.currentTimeMillis() - t0) + " ms).");
+    	sLog.info("Saved " + changed + " students (" + unchanged + " unchanged, " + changes.getNrStatements() + " rows updated) in " + (System.currentTimeMillis() - t0) + " ms.");
+    }
+    
+    /**
+     * Load the entities needed by {@link StudentSectioningDatabaseSaver#saveStudent(org.hibernate.Session, Student)} for the given students only.
+     */
+    protected void loadStudents(Session session, org.hibernate.Session hibSession, List<Student> students) {
+    	iProgress.setPhase("Loading students with changed course requests...", 1);
+        iCourses = new Hashtable<Long, CourseOffering>();
+        for (CourseOffering course: (List<CourseOffering>)hibSession.createQuery(
+        		"select distinct c from CourseOffering c where c.subjectArea.session.uniqueId = :sessionId")
+        		.setLong("sessionId", session.getUniqueId()).list()) {
+            iCourses.put(course.getUniqueId(), course);
+        }
+        iStudents = new Hashtable<Long, org.unitime.timetable.model.Student>();
+        iRequests = new Hashtable<String, org.unitime.timetable.model.CourseRequest>();
+        List<Long> studentIds = new ArrayList<Long>();
+        for (Iterator<Student> i = students.iterator(); i.hasNext(); ) {
+        	studentIds.add(i.next().getId());
+        	if (studentIds.size() == 1000 || !i.hasNext()) {
+        		for (org.unitime.timetable.model.Student student: (List<org.unitime.timetable.model.Student>)hibSession.createQuery(
+                		"select distinct s from Student s " +
+                        "left join fetch s.courseDemands as cd "+
+                        "left join fetch cd.courseRequests as cr "+
+                        "left join fetch s.classEnrollments as e " +
+                        "left join fetch s.waitlists as w " +
+                		"where s.uniqueId in :studentIds")
+                		.setParameterList("studentIds", studentIds).list()) {
+                	iStudents.put(student.getUniqueId(), student);
+                	for (CourseDemand demand: student.getCourseDemands())
+                		for (org.unitime.timetable.model.CourseRequest request: demand.getCourseRequests())
+                            iRequests.put(demand.getUniqueId()+":"+request.getCourseOffering().getInstructionalOffering().getUniqueId(), request);
+                }
+        		studentIds.clear();
+        	}
+        }
+        iProgress.incProgress();
+    }
+    
+    /**
+     * Current state of student enrollments in the database and the pending changes that are to be written using JDBC batches.
+     */
+    private class EnrollmentChanges {
+    	private org.hibernate.Session iHibSession;
+    	private Set<Long> iCourseIds = new HashSet<Long>();
+    	private Map<Long, Long> iClassCourse = new HashMap<Long, Long>();
+    	private Map<Long, Long> iStudentStatus = new HashMap<Long, Long>();
+    	private Map<String, Long[]> iCourseRequests = new HashMap<String, Long[]>();
+    	private Map<Long, List<Long[]>> iEnrollments = new HashMap<Long, List<Long[]>>();
+    	private Map<Long, List<Long[]>> iWaitLists = new HashMap<Long, List<Long[]>>();
+    	
+    	private List<Object[]> iEnrollmentDeletes = new ArrayList<Object[]>();
+    	private List<Object[]> iEnrollmentUpdates = new ArrayList<Object[]>();
+    	private List<Object[]> iEnrollmentInserts = new ArrayList<Object[]>();
+    	private List<Object[]> iWaitListDeletes = new ArrayList<Object[]>();
+    	private List<Object[]> iWaitListInserts = new ArrayList<Object[]>();
+    	private List<Object[]> iStatusUpdates = new ArrayList<Object[]>();
+    	private int iNrStatements = 0;
+    	private boolean iStatusChanged = false;
+    	
+    	private IdentifierGenerator iEnrollmentIdGenerator, iWaitListIdGenerator;
+    	private String iEnrollmentTable, iWaitListTable, iStudentTable;
+    	
+    	EnrollmentChanges(org.hibernate.Session hibSession) {
+    		iHibSession = hibSession;
+    		SessionFactoryImplementor factory = (SessionFactoryImplementor)hibSession.getSessionFactory();
+    		iEnrollmentIdGenerator = factory.getIdentifierGenerator(StudentClassEnrollment.class.getName());
+    		iWaitListIdGenerator = factory.getIdentifierGenerator(WaitList.class.getName());
+    		iEnrollmentTable = ((AbstractEntityPersister)factory.getEntityPersister(StudentClassEnrollment.class.getName())).getTableName();
+    		iWaitListTable = ((AbstractEntityPersister)factory.getEntityPersister(WaitList.class.getName())).getTableName();
+    		iStudentTable = ((AbstractEntityPersister)factory.getEntityPersister(org.unitime.timetable.model.Student.class.getName())).getTableName();
+    	}
+    	
+    	void load(Session session) {
+    		iProgress.setPhase("Loading current enrollments...", 6);
+    		iCourseIds.addAll((List<Long>)iHibSession.createQuery(
+    				"select co.uniqueId from CourseOffering co where co.subjectArea.session.uniqueId = :sessionId")
+    				.setLong("sessionId", session.getUniqueId()).list());
+    		iProgress.incProgress();
+    		
+    		for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+    				"select c.uniqueId, co.uniqueId from Class_ c inner join c.schedulingSubpart.instrOfferingConfig.instructionalOffering.courseOfferings co " +
+    				"where co.isControl = true and co.subjectArea.session.uniqueId = :sessionId")
+    				.setLong("sessionId", session.getUniqueId()).list()) {
+    			iClassCourse.put((Long)o[0], (Long)o[1]);
+    		}
+    		iProgress.incProgress();
+    		
+    		for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+    				"select s.uniqueId, ss.uniqueId from Student s left outer join s.sectioningStatus ss where s.session.uniqueId = :sessionId")
+    				.setLong("sessionId", session.getUniqueId()).list()) {
+    			iStudentStatus.put((Long)o[0], (Long)o[1]);
+    		}
+    		iProgress.incProgress();
+    		
+    		for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+    				"select cd.uniqueId, io.uniqueId, cr.uniqueId, co.uniqueId from CourseRequest cr inner join cr.courseDemand cd " +
+    				"inner join cr.courseOffering co inner join co.instructionalOffering io where cd.student.session.uniqueId = :sessionId")
+    				.setLong("sessionId", session.getUniqueId()).list()) {
+    			iCourseRequests.put(o[0] + ":" + o[1], new Long[] {(Long)o[2], (Long)o[3]});
+    		}
+    		iProgress.incProgress();
+    		
+    		for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+    				"select s.uniqueId, e.uniqueId, c.uniqueId, co.uniqueId, cr.uniqueId from StudentClassEnrollment e inner join e.student s inner join e.clazz c " +
+    				"left outer join e.courseOffering co left outer join e.courseRequest cr where s.session.uniqueId = :sessionId")
+    				.setLong("sessionId", session.getUniqueId()).list()) {
+    			List<Long[]> enrollments = iEnrollments.get((Long)o[0]);
+    			if (enrollments == null) {
+    				enrollments = new ArrayList<Long[]>();
+    				iEnrollments.put((Long)o[0], enrollments);
+    			}
+    			enrollments.add(new Long[] {(Long)o[1], (Long)o[2], (Long)o[3], (Long)o[4]});
+    		}
+    		iProgress.incProgress();
+    		
+    		for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+    				"select s.uniqueId, w.uniqueId, co.uniqueId from WaitList w inner join w.student s inner join w.courseOffering co where s.session.uniqueId = :sessionId")
+    				.setLong("sessionId", session.getUniqueId()).list()) {
+    			List<Long[]> waitlists = iWaitLists.get((Long)o[0]);
+    			if (waitlists == null) {
+    				waitlists = new ArrayList<Long[]>();
+    				iWaitLists.put((Long)o[0], waitlists);
+    			}
+    			waitlists.add(new Long[] {(Long)o[1], (Long)o[2]});
+    		}
+    		iProgress.incProgress();
+    	}
+    	
+    	/**
+    	 * Compare the solver's assignment of the given student with the database
+    	 * @return true if there is at least one change to be saved for the student
+    	 */
+    	boolean diff(Student student) {
+    		if (!iStudentStatus.containsKey(student.getId())) {
+    			iProgress.warn("Student "+student.getId()+" not found.");
+    			return false;
+    		}
+    		int before = size();
+    		Timestamp ts = new Timestamp(iTimeStamp.getTime());
+    		
+    		// class id -> course offering id, course request id
+    		Map<Long, Long[]> enrollments = new HashMap<Long, Long[]>();
+    		Set<Long> waitlists = new HashSet<Long>();
+    		for (Request request: student.getRequests()) {
+    			if (!(request instanceof CourseRequest)) continue;
+    			CourseRequest courseRequest = (CourseRequest)request;
+    			Enrollment enrollment = getAssignment().getValue(request);
+    			if (enrollment == null) {
+    				if (courseRequest.isWaitlist() && student.canAssign(getAssignment(), courseRequest)) {
+    					Long courseId = courseRequest.getCourses().get(0).getId();
+    					if (!iCourseIds.contains(courseId)) {
+    						iProgress.warn("Course offering " + courseId + " not found.");
+    						continue;
+    					}
+    					waitlists.add(courseId);
+    				}
+    			} else {
+    				Long[] cr = iCourseRequests.get(request.getId() + ":" + enrollment.getOffering().getId());
+    				for (Section section: enrollment.getSections()) {
+    					Long controllingCourseId = iClassCourse.get(section.getId());
+    					if (controllingCourseId == null) {
+    						iProgress.warn("Class " + section.getId() + " not found.");
+    						continue;
+    					}
+    					if (cr != null)
+    						enrollments.put(section.getId(), new Long[] {cr[1], cr[0]});
+    					else
+    						enrollments.put(section.getId(), new Long[] {iCourseIds.contains(enrollment.getCourse().getId()) ? enrollment.getCourse().getId() : controllingCourseId, null});
+    				}
+    			}
+    		}
+    		
+    		List<Long[]> currentEnrollments = iEnrollments.get(student.getId());
+    		if (currentEnrollments != null)
+    			for (Long[] current: currentEnrollments) {
+    				Long[] target = enrollments.remove(current[1]);
+    				if (target == null)
+    					iEnrollmentDeletes.add(new Object[] {current[0]});
+    				else if (!equals(current[2], target[0]) || !equals(current[3], target[1]))
+    					iEnrollmentUpdates.add(new Object[] {target[0], target[1], ts, StudentClassEnrollment.SystemChange.BATCH.toString(), current[0]});
+    			}
+    		for (Map.Entry<Long, Long[]> e: enrollments.entrySet())
+    			iEnrollmentInserts.add(new Object[] {
+    					iEnrollmentIdGenerator.generate((SessionImplementor)iHibSession, null),
+    					student.getId(), e.getKey(), e.getValue()[0], e.getValue()[1], ts, StudentClassEnrollment.SystemChange.BATCH.toString()});
+    		
+    		List<Long[]> currentWaitLists = iWaitLists.get(student.getId());
+    		if (currentWaitLists != null)
+    			for (Long[] current: currentWaitLists) {
+    				if (!waitlists.remove(current[1]))
+    					iWaitListDeletes.add(new Object[] {current[0]});
+    			}
+    		for (Long courseId: waitlists)
+    			iWaitListInserts.add(new Object[] {
+    					iWaitListIdGenerator.generate((SessionImplementor)iHibSession, null),
+    					student.getId(), courseId, new Integer(0), ts});
+    		
+    		Long status = iStudentStatus.get(student.getId());
+    		if (iStatusToSet != null && !iStatusToSet.getUniqueId().equals(status))
+    			iStatusUpdates.add(new Object[] {iStatusToSet.getUniqueId(), student.getId()});
+    		else if (iResetStatus && status != null)
+    			iStatusUpdates.add(new Object[] {null, student.getId()});
+    		
+    		return size() > before;
+    	}
+    	
+    	private boolean equals(Long a, Long b) {
+    		return (a == null ? b == null : a.equals(b));
+    	}
+    	
+    	int size() {
+    		return iEnrollmentDeletes.size() + iEnrollmentUpdates.size() + iEnrollmentInserts.size() + iWaitListDeletes.size() + iWaitListInserts.size() + iStatusUpdates.size();
+    	}
+    	
+    	int getNrStatements() {
+    		return iNrStatements;
+    	}
+    	
+    	void apply() {
+    		if (size() == 0) return;
+    		iHibSession.doWork(new Work() {
+				@Override
+				public void execute(Connection connection) throws SQLException {
+					executeBatch(connection, "delete from " + iEnrollmentTable + " where uniqueid = ?", iEnrollmentDeletes);
+					executeBatch(connection, "delete from " + iWaitListTable + " where uniqueid = ?", iWaitListDeletes);
+					executeBatch(connection, "update " + iEnrollmentTable + " set course_offering_id = ?, course_request_id = ?, timestamp = ?, changed_by = ? where uniqueid = ?", iEnrollmentUpdates);
+					executeBatch(connection, "insert into " + iEnrollmentTable + " (uniqueid, student_id, class_id, course_offering_id, course_request_id, timestamp, changed_by) values (?, ?, ?, ?, ?, ?, ?)", iEnrollmentInserts);
+					executeBatch(connection, "insert into " + iWaitListTable + " (uniqueid, student_id, course_offering_id, type, timestamp) values (?, ?, ?, ?, ?)", iWaitListInserts);
+					executeBatch(connection, "update " + iStudentTable + " set sect_status = ? where uniqueid = ?", iStatusUpdates);
+				}
+			});
+    		if (!iStatusUpdates.isEmpty()) iStatusChanged = true;
+    		iNrStatements += size();
+    		iEnrollmentDeletes.clear(); iEnrollmentUpdates.clear(); iEnrollmentInserts.clear();
+    		iWaitListDeletes.clear(); iWaitListInserts.clear(); iStatusUpdates.clear();
+    	}
+    	
+    	private void executeBatch(Connection connection, String sql, List<Object[]> rows) throws SQLException {
+    		if (rows.isEmpty()) return;
+    		PreparedStatement ps = connection.prepareStatement(sql);
+    		try {
+    			for (Object[] row: rows) {
+    				for (int i = 0; i < row.length; i++) {
+    					if (row[i] == null)
+    						ps.setNull(i + 1, Types.BIGINT);
+    					else
+    						ps.setObject(i + 1, row[i]);
+    				}
+    				ps.addBatch();
+    			}
+    			ps.executeBatch();
+    		} finally {
+    			ps.close();
+    		}
+    	}
+    	
+    	/**
+    	 * The rows were changed directly, bypassing Hibernate: evict the affected second level cache regions.
+    	 */
+    	void evictCaches() {
+    		Cache cache = iHibSession.getSessionFactory().getCache();
+    		cache.evictEntityRegion(StudentClassEnrollment.class);
+    		cache.evictEntityRegion(WaitList.class);
+    		cache.evictCollectionRegion(org.unitime.timetable.model.Student.class.getName() + ".classEnrollments");
+    		cache.evictCollectionRegion(org.unitime.timetable.model.Student.class.getName() + ".waitlists");
+    		cache.evictCollectionRegion(Class_.class.getName() + ".studentEnrollments");
+    		if (iStatusChanged)
+    			cache.evictEntityRegion(org.unitime.timetable.model.Student.class);
+    	}
+    }
+    
+    protected void setupStudentStatus(Session session, org.hibernate.Session hibSession) {
+        String statusToSet = getSolver().getProperties().getProperty("Save.StudentSectioningStatusToSet");
+        if ("Default".equalsIgnoreCase(statusToSet)) {
+        	iStatusToSet = null; iResetStatus = true;
+        	iProgress.info("Setting student sectioning status to " + (session.getDefaultSectioningStatus() == null ? "System Default (All Enabled)" : "Session Default (" + session.getDefaultSectioningStatus().getLabel() + ")") + ".");
+        } else if (statusToSet != null && !statusToSet.isEmpty() && !statusToSet.equals("N/A")) {
+        	iStatusToSet = StudentSectioningStatus.getStatus(statusToSet, null, hibSession);
+        	if (iStatusToSet == null)
+        		iProgress.warn("Student sectioning status " + statusToSet + " does not exist.");
+        	else
+        		iProgress.info("Setting student sectioning status to " + iStatusToSet.getLabel());
+        }
+        if (iStatusToSet == null && !iResetStatus)
+        	iProgress.info("Keeping student sectioning status unchanged.");
+    }
+    
     public void save(Session session, org.hibernate.Session hibSession) {
         iClasses = new Hashtable<Long, Class_>();
         iProgress.setPhase("Loading classes...", 1);
@@ -302,7 +661,10 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         }
         iProgress.incProgress();
         
-        if (iIncludeCourseDemands && !iProjections) {
+        if (iIncludeCourseDemands && !iProjections && iSaveChangesOnly) {
+        	setupStudentStatus(session, hibSession);
+        	saveChanges(session, hibSession);
+        } else if (iIncludeCourseDemands && !iProjections) {
             iCourses = new Hashtable<Long, CourseOffering>();
             iProgress.setPhase("Loading courses...", 1);
             for (CourseOffering course: (List<CourseOffering>)hibSession.createQuery(
@@ -343,19 +705,7 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
             iProgress.incProgress();
             
             iProgress.setPhase("Saving student enrollments...", getModel().getStudents().size());
-            String statusToSet = getSolver().getProperties().getProperty("Save.StudentSectioningStatusToSet");
-            if ("Default".equalsIgnoreCase(statusToSet)) {
-            	iStatusToSet = null; iResetStatus = true;
-            	iProgress.info("Setting student sectioning status to " + (session.getDefaultSectioningStatus() == null ? "System Default (All Enabled)" : "Session Default (" + session.getDefaultSectioningStatus().getLabel() + ")") + ".");
-            } else if (statusToSet != null && !statusToSet.isEmpty() && !statusToSet.equals("N/A")) {
-            	iStatusToSet = StudentSectioningStatus.getStatus(statusToSet, null, hibSession);
-            	if (iStatusToSet == null)
-            		iProgress.warn("Student sectioning status " + statusToSet + " does not exist.");
-            	else
-            		iProgress.info("Setting student sectioning status to " + iStatusToSet.getLabel());
-            }
-            if (iStatusToSet == null && !iResetStatus)
-            	iProgress.info("Keeping student sectioning status unchanged.");
+            setupStudentStatus(session, hibSession);
             for (Iterator e=getModel().getStudents().iterator();e.hasNext();) {
                 Student student = (Student)e.next(); iProgress.incProgress();
                 if (student.isDummy()) continue;
@@ -0,0 +1,504 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.studentsct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cpsolver.ifs.util.Progress;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.unitime.timetable.model.ClassWaitList;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.StudentSectioningStatus;
+import org.unitime.timetable.solver.studentsct.StudentSectioningDatabaseLoader.DemandAccessor;
+import org.unitime.timetable.solver.studentsct.StudentSectioningDatabaseLoader.EnrollmentAccessor;
+import org.unitime.timetable.solver.studentsct.StudentSectioningDatabaseLoader.RequestAccessor;
+import org.unitime.timetable.solver.studentsct.StudentSectioningDatabaseLoader.StudentAccessor;
+import org.unitime.timetable.solver.studentsct.StudentSectioningDatabaseLoader.WaitListAccessor;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
+import org.unitime.timetable.util.NameFormat;
+import org.unitime.timetable.util.NameInterface;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Student course demands, course requests, enrollments, and wait-lists of an academic session read using a few flat (scalar) queries
+ * that are streamed through {@link ScrollableResults}, instead of walking the Hibernate entities student by student.
+ * The data are then prepared (sorted, request preferences parsed, names formatted, sectioning statuses resolved) in parallel partitions
+ * and used by {@link StudentSectioningDatabaseLoader} to create the solver students (see the Load.StudentProjections parameter).
+ *
+ * @author Tomas Muller
+ */
+public class StudentSectioningProjections {
+	private Progress iProgress;
+	private Long iSessionId;
+	private boolean iLoadStudentInfo = true, iLoadGroups = false, iLoadAlternatives = false;
+	private int iNrThreads = 1;
+	private Map<Long, StudentData> iStudents = new HashMap<Long, StudentData>();
+	private Map<Long, String> iCourseNames = new HashMap<Long, String>();
+	private Map<Long, Long> iAlternatives = new HashMap<Long, Long>();
+
+	public StudentSectioningProjections(Progress progress, Long sessionId, boolean loadStudentInfo, boolean loadGroups, boolean loadAlternatives, int nrThreads) {
+		iProgress = progress;
+		iSessionId = sessionId;
+		iLoadStudentInfo = loadStudentInfo;
+		iLoadGroups = loadGroups;
+		iLoadAlternatives = loadAlternatives;
+		iNrThreads = Math.max(1, nrThreads);
+	}
+
+	/**
+	 * Read all the student data of the session
+	 */
+	public void load(org.hibernate.Session hibSession) {
+		iProgress.setPhase("Loading student data...", 9);
+		long t0 = System.currentTimeMillis();
+
+		ScrollableResults rs = scroll(hibSession,
+				"select s.uniqueId, s.externalUniqueId, s.firstName, s.middleName, s.lastName, ss.uniqueId from Student s left join s.sectioningStatus ss " +
+				"where s.session.uniqueId = :sessionId");
+		try {
+			while (rs.next()) {
+				StudentData s = new StudentData(this, (Long)rs.get(0));
+				s.iExternalId = (String)rs.get(1);
+				s.iFirstName = (String)rs.get(2);
+				s.iMiddleName = (String)rs.get(3);
+				s.iLastName = (String)rs.get(4);
+				s.iStatusId = (Long)rs.get(5);
+				iStudents.put(s.getId(), s);
+			}
+		} finally { rs.close(); }
+		iProgress.incProgress();
+
+		Map<Long, DemandData> demands = new HashMap<Long, DemandData>();
+		rs = scroll(hibSession,
+				"select cd.student.uniqueId, cd.uniqueId, cd.priority, cd.alternative, cd.waitlist, cd.timestamp, ft.dayCode, ft.startSlot, ft.length " +
+				"from CourseDemand cd left join cd.freeTime ft where cd.student.session.uniqueId = :sessionId");
+		try {
+			while (rs.next()) {
+				StudentData s = iStudents.get((Long)rs.get(0));
+				if (s == null) continue;
+				DemandData d = new DemandData((Long)rs.get(1));
+				d.iPriority = (Integer)rs.get(2);
+				d.iAlternative = Boolean.TRUE.equals(rs.get(3));
+				d.iWaitlist = Boolean.TRUE.equals(rs.get(4));
+				d.iTimeStamp = (Date)rs.get(5);
+				if (rs.get(6) != null)
+					d.iFreeTime = new int[] {(Integer)rs.get(6), (Integer)rs.get(7), (Integer)rs.get(8)};
+				s.iDemands.add(d);
+				demands.put(d.getId(), d);
+			}
+		} finally { rs.close(); }
+		iProgress.incProgress();
+
+		Map<Long, RequestData> requests = new HashMap<Long, RequestData>();
+		rs = scroll(hibSession,
+				"select cr.courseDemand.uniqueId, cr.uniqueId, cr.order, cr.courseOffering.uniqueId " +
+				"from CourseRequest cr where cr.courseDemand.student.session.uniqueId = :sessionId");
+		try {
+			while (rs.next()) {
+				DemandData d = demands.get((Long)rs.get(0));
+				if (d == null) continue;
+				RequestData r = new RequestData((Long)rs.get(1));
+				r.iOrder = (Integer)rs.get(2);
+				r.iCourseId = (Long)rs.get(3);
+				d.iRequests.add(r);
+				requests.put(r.getId(), r);
+			}
+		} finally { rs.close(); }
+		demands = null;
+		iProgress.incProgress();
+
+		rs = scroll(hibSession,
+				"select o.courseRequest.uniqueId, o.value from CourseRequestOption o " +
+				"where o.optionType = :optionType and o.courseRequest.courseDemand.student.session.uniqueId = :sessionId",
+				"optionType", OnlineSectioningLog.CourseRequestOption.OptionType.REQUEST_PREFERENCE.getNumber());
+		try {
+			while (rs.next()) {
+				RequestData r = requests.get((Long)rs.get(0));
+				if (r != null) r.iPreferenceData = (byte[])rs.get(1);
+			}
+		} finally { rs.close(); }
+		iProgress.incProgress();
+
+		rs = scroll(hibSession,
+				"select cw.courseRequest.uniqueId, cw.clazz.uniqueId from ClassWaitList cw " +
+				"where cw.type = :type and cw.student.session.uniqueId = :sessionId",
+				"type", ClassWaitList.Type.LOCKED.ordinal());
+		try {
+			while (rs.next()) {
+				RequestData r = requests.get((Long)rs.get(0));
+				if (r != null) r.iLockedClassIds.add((Long)rs.get(1));
+			}
+		} finally { rs.close(); }
+		requests = null;
+		iProgress.incProgress();
+
+		rs = scroll(hibSession,
+				"select e.student.uniqueId, e.clazz.uniqueId, e.courseOffering.uniqueId, cr.uniqueId, e.timestamp " +
+				"from StudentClassEnrollment e left join e.courseRequest cr where e.student.session.uniqueId = :sessionId");
+		try {
+			while (rs.next()) {
+				StudentData s = iStudents.get((Long)rs.get(0));
+				if (s == null) continue;
+				s.iEnrollments.add(new EnrollmentData((Long)rs.get(1), (Long)rs.get(2), (Long)rs.get(3), (Date)rs.get(4)));
+			}
+		} finally { rs.close(); }
+		iProgress.incProgress();
+
+		rs = scroll(hibSession,
+				"select w.student.uniqueId, w.courseOffering.uniqueId, w.timestamp from WaitList w where w.student.session.uniqueId = :sessionId");
+		try {
+			while (rs.next()) {
+				StudentData s = iStudents.get((Long)rs.get(0));
+				if (s == null) continue;
+				s.iWaitLists.add(new WaitListData((Long)rs.get(1), (Date)rs.get(2)));
+			}
+		} finally { rs.close(); }
+		iProgress.incProgress();
+
+		if (iLoadStudentInfo) {
+			rs = scroll(hibSession,
+					"select a.student.uniqueId, a.academicArea.academicAreaAbbreviation, a.academicClassification.code, a.major.code " +
+					"from StudentAreaClassificationMajor a where a.student.session.uniqueId = :sessionId");
+			try {
+				while (rs.next()) {
+					StudentData s = iStudents.get((Long)rs.get(0));
+					if (s != null) s.iAreaClasfMajors.add(new String[] {(String)rs.get(1), (String)rs.get(2), (String)rs.get(3)});
+				}
+			} finally { rs.close(); }
+			rs = scroll(hibSession,
+					"select s.uniqueId, a.abbreviation from Student s inner join s.accomodations a where s.session.uniqueId = :sessionId");
+			try {
+				while (rs.next()) {
+					StudentData s = iStudents.get((Long)rs.get(0));
+					if (s != null) s.iAccommodations.add((String)rs.get(1));
+				}
+			} finally { rs.close(); }
+		}
+		if (iLoadStudentInfo || iLoadGroups) {
+			rs = scroll(hibSession,
+					"select s.uniqueId, g.uniqueId, g.groupAbbreviation, g.groupName from Student s inner join s.groups g where s.session.uniqueId = :sessionId");
+			try {
+				while (rs.next()) {
+					StudentData s = iStudents.get((Long)rs.get(0));
+					if (s != null) s.iGroups.add(new GroupData((Long)rs.get(1), (String)rs.get(2), (String)rs.get(3)));
+				}
+			} finally { rs.close(); }
+		}
+		iProgress.incProgress();
+
+		rs = scroll(hibSession,
+				"select co.uniqueId, co.subjectAreaAbbv, co.courseNbr, alt.uniqueId from CourseOffering co left join co.alternativeOffering alt " +
+				"where co.subjectArea.session.uniqueId = :sessionId");
+		try {
+			while (rs.next()) {
+				iCourseNames.put((Long)rs.get(0), rs.get(1) + " " + rs.get(2));
+				if (iLoadAlternatives && rs.get(3) != null)
+					iAlternatives.put((Long)rs.get(0), (Long)rs.get(3));
+			}
+		} finally { rs.close(); }
+		iProgress.incProgress();
+
+		iProgress.info("Student data loaded in " + (System.currentTimeMillis() - t0) + " ms (" + iStudents.size() + " students).");
+	}
+
+	protected ScrollableResults scroll(org.hibernate.Session hibSession, String hql, Object... params) {
+		Query q = hibSession.createQuery(hql).setLong("sessionId", iSessionId).setFetchSize(1000).setReadOnly(true);
+		for (int i = 0; i + 1 < params.length; i += 2)
+			q.setParameter((String)params[i], params[i + 1]);
+		return q.scroll(ScrollMode.FORWARD_ONLY);
+	}
+
+	/**
+	 * Prepare the loaded students in parallel partitions: sort course demands and course requests, parse the request preferences,
+	 * format student names and resolve the sectioning statuses (using the session's default status when a student has none).
+	 */
+	public void prepare(Session session, Map<Long, StudentSectioningStatus> statuses, final NameFormat nameFormat) throws Exception {
+		long t0 = System.currentTimeMillis();
+		final StudentSectioningStatus defaultStatus = session.getDefaultSectioningStatus();
+		final Map<Long, StudentSectioningStatus> statusTable = statuses;
+		List<StudentData> students = new ArrayList<StudentData>(iStudents.values());
+		int partitionSize = Math.max(1, (students.size() + iNrThreads - 1) / iNrThreads);
+		iProgress.setPhase("Preparing student requests...", (students.size() + partitionSize - 1) / partitionSize);
+		ExecutorService executor = Executors.newFixedThreadPool(iNrThreads, new WorkerFactory());
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int first = 0; first < students.size(); first += partitionSize) {
+				final List<StudentData> partition = students.subList(first, Math.min(students.size(), first + partitionSize));
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for (StudentData s: partition)
+							s.prepare(statusTable, defaultStatus, nameFormat);
+					}
+				}));
+			}
+			for (Future<?> f: futures) {
+				f.get(); iProgress.incProgress();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		iProgress.info("Student requests prepared in " + (System.currentTimeMillis() - t0) + " ms using " + iNrThreads + " thread" + (iNrThreads == 1 ? "" : "s") + ".");
+	}
+
+	/**
+	 * Loaded students, ordered by unique id
+	 */
+	public List<StudentData> getStudents() {
+		List<StudentData> students = new ArrayList<StudentData>(iStudents.values());
+		Collections.sort(students);
+		return students;
+	}
+
+	/**
+	 * Course name (subject area abbreviation and course number) of the given course offering
+	 */
+	public String getCourseName(Long courseId) {
+		String name = iCourseNames.get(courseId);
+		return name == null ? String.valueOf(courseId) : name;
+	}
+
+	/**
+	 * Default alternative course offering of the given course offering, null if there is none
+	 */
+	public Long getAlternativeCourseId(Long courseId) {
+		return iAlternatives.get(courseId);
+	}
+
+	private static class WorkerFactory implements ThreadFactory {
+		private AtomicInteger iCounter = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "StudentLoader-" + iCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	public static class StudentData implements StudentAccessor, NameInterface, Comparable<StudentData> {
+		private StudentSectioningProjections iData;
+		private Long iId;
+		private String iExternalId, iFirstName, iMiddleName, iLastName, iName;
+		private Long iStatusId;
+		private String iStatus;
+		private boolean iNoBatch = false;
+		private List<DemandData> iDemands = new ArrayList<DemandData>();
+		private List<EnrollmentData> iEnrollments = new ArrayList<EnrollmentData>();
+		private List<WaitListData> iWaitLists = new ArrayList<WaitListData>();
+		private List<String[]> iAreaClasfMajors = new ArrayList<String[]>();
+		private List<GroupData> iGroups = new ArrayList<GroupData>();
+		private List<String> iAccommodations = new ArrayList<String>();
+
+		private StudentData(StudentSectioningProjections data, Long id) { iData = data; iId = id; }
+
+		@Override
+		public Long getId() { return iId; }
+		@Override
+		public String getExternalId() { return iExternalId; }
+		@Override
+		public String getFirstName() { return iFirstName; }
+		@Override
+		public String getMiddleName() { return iMiddleName; }
+		@Override
+		public String getLastName() { return iLastName; }
+		@Override
+		public String getAcademicTitle() { return null; }
+		/** Formatted student name, available after {@link StudentSectioningProjections#prepare(Session, Map, NameFormat)} */
+		@Override
+		public String getName() { return iName; }
+		/** Sectioning status reference, available after {@link StudentSectioningProjections#prepare(Session, Map, NameFormat)} */
+		@Override
+		public String getStatus() { return iStatus; }
+		/** True if the student has a sectioning status with the nobatch option */
+		public boolean isNoBatch() { return iNoBatch; }
+		/** Course demands, ordered by alternativity, priority, and unique id (after prepare) */
+		@Override
+		public List<DemandData> getDemands() { return iDemands; }
+		@Override
+		public List<EnrollmentData> getEnrollments() { return iEnrollments; }
+		@Override
+		public List<WaitListData> getWaitLists() { return iWaitLists; }
+		@Override
+		public String getCourseName(Long courseId) { return iData.getCourseName(courseId); }
+		@Override
+		public Long getAlternativeCourseId(Long courseId) { return iData.getAlternativeCourseId(courseId); }
+		/** Class labels are not loaded, the loader falls back to the loaded sections */
+		@Override
+		public String getClassLabel(Long classId) { return null; }
+		/** Academic area, classification, and major codes */
+		public List<String[]> getAreaClasfMajors() { return iAreaClasfMajors; }
+		public List<GroupData> getGroups() { return iGroups; }
+		public List<String> getAccommodations() { return iAccommodations; }
+
+		public boolean isEmpty() {
+			return iDemands.isEmpty() && iEnrollments.isEmpty() && iWaitLists.isEmpty();
+		}
+
+		protected void prepare(Map<Long, StudentSectioningStatus> statuses, StudentSectioningStatus defaultStatus, NameFormat nameFormat) {
+			iName = nameFormat.format(this);
+			StudentSectioningStatus status = (iStatusId == null ? null : statuses.get(iStatusId));
+			iStatus = (status == null ? null : status.getReference());
+			if (status == null) status = defaultStatus;
+			iNoBatch = (status != null && status.hasOption(StudentSectioningStatus.Option.nobatch));
+			Collections.sort(iDemands);
+			for (DemandData d: iDemands) {
+				Collections.sort(d.iRequests, new Comparator<RequestData>() {
+					@Override
+					public int compare(RequestData r1, RequestData r2) {
+						return r1.iOrder.compareTo(r2.iOrder);
+					}
+				});
+				for (RequestData r: d.iRequests) {
+					if (r.iPreferenceData != null) {
+						try {
+							r.iPreference = OnlineSectioningLog.CourseRequestOption.parseFrom(r.iPreferenceData);
+						} catch (InvalidProtocolBufferException e) {}
+						r.iPreferenceData = null;
+					}
+				}
+			}
+		}
+
+		@Override
+		public int compareTo(StudentData s) {
+			return iId.compareTo(s.iId);
+		}
+	}
+
+	public static class DemandData implements DemandAccessor, Comparable<DemandData> {
+		private Long iId;
+		private Integer iPriority;
+		private boolean iAlternative = false, iWaitlist = false;
+		private Date iTimeStamp;
+		private int[] iFreeTime = null;
+		private List<RequestData> iRequests = new ArrayList<RequestData>();
+
+		private DemandData(Long id) { iId = id; }
+
+		@Override
+		public Long getId() { return iId; }
+		@Override
+		public Integer getPriority() { return iPriority; }
+		@Override
+		public boolean isAlternative() { return iAlternative; }
+		@Override
+		public boolean isWaitlist() { return iWaitlist; }
+		@Override
+		public Date getTimeStamp() { return iTimeStamp; }
+		/** Free time day code, start slot, and length; null if not a free time request */
+		@Override
+		public int[] getFreeTime() { return iFreeTime; }
+		/** Course requests, ordered by their order (after prepare) */
+		@Override
+		public List<RequestData> getRequests() { return iRequests; }
+
+		@Override
+		public int compareTo(DemandData d) {
+			if (isAlternative() && !d.isAlternative()) return 1;
+			if (!isAlternative() && d.isAlternative()) return -1;
+			int cmp = getPriority().compareTo(d.getPriority());
+			if (cmp != 0) return cmp;
+			return getId().compareTo(d.getId());
+		}
+	}
+
+	public static class RequestData implements RequestAccessor {
+		private Long iId;
+		private Integer iOrder;
+		private Long iCourseId;
+		private byte[] iPreferenceData;
+		private OnlineSectioningLog.CourseRequestOption iPreference;
+		private List<Long> iLockedClassIds = new ArrayList<Long>();
+
+		private RequestData(Long id) { iId = id; }
+
+		@Override
+		public Long getId() { return iId; }
+		public Integer getOrder() { return iOrder; }
+		@Override
+		public Long getCourseId() { return iCourseId; }
+		/** Request preference (instructional methods and sections), available after prepare */
+		@Override
+		public OnlineSectioningLog.CourseRequestOption getPreference() { return iPreference; }
+		/** Classes of the locked class wait-lists */
+		@Override
+		public List<Long> getLockedClassIds() { return iLockedClassIds; }
+	}
+
+	public static class EnrollmentData implements EnrollmentAccessor {
+		private Long iClassId, iCourseId, iCourseRequestId;
+		private Date iTimeStamp;
+
+		private EnrollmentData(Long classId, Long courseId, Long courseRequestId, Date timeStamp) {
+			iClassId = classId; iCourseId = courseId; iCourseRequestId = courseRequestId; iTimeStamp = timeStamp;
+		}
+
+		@Override
+		public Long getClassId() { return iClassId; }
+		@Override
+		public Long getCourseId() { return iCourseId; }
+		@Override
+		public Long getCourseRequestId() { return iCourseRequestId; }
+		@Override
+		public Date getTimeStamp() { return iTimeStamp; }
+	}
+
+	public static class WaitListData implements WaitListAccessor {
+		private Long iCourseId;
+		private Date iTimeStamp;
+
+		private WaitListData(Long courseId, Date timeStamp) {
+			iCourseId = courseId; iTimeStamp = timeStamp;
+		}
+
+		@Override
+		public Long getCourseId() { return iCourseId; }
+		@Override
+		public Date getTimeStamp() { return iTimeStamp; }
+	}
+
+	public static class GroupData {
+		private Long iId;
+		private String iAbbreviation, iName;
+
+		private GroupData(Long id, String abbreviation, String name) {
+			iId = id; iAbbreviation = abbreviation; iName = name;
+		}
+
+		public Long getId() { return iId; }
+		public String getAbbreviation() { return iAbbreviation; }
+		public String getName() { return iName; }
+	}
+}
@@ -84,6 +84,7 @@ import org.unitime.timetable.onlinesectioning.model.XCourse;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XEnrollmentCounts;
 import org.unitime.timetable.onlinesectioning.model.XEnrollments;
 import org.unitime.timetable.onlinesectioning.model.XExpectations;
 import org.unitime.timetable.onlinesectioning.model.XOffering;
@@ -629,6 +630,11 @@ public class StudentSolver extends AbstractSolver<Request, Enrollment, StudentSe
 		return new XEnrollments(offeringId, getRequests(offeringId));
 	}
 
+	@Override
+	public XEnrollmentCounts getEnrollmentCounts(Long offeringId) {
+		return new XEnrollmentCounts(offeringId, getRequests(offeringId));
+	}
+
 	@Override
 	public XExpectations getExpectations(Long offeringId) {
 		for (Offering offering: ((StudentSectioningModel)currentSolution().getModel()).getOfferings())
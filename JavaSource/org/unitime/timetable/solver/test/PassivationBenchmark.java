@@ -0,0 +1,114 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.test;
+
+import java.io.File;
+import java.util.Locale;
+
+import org.cpsolver.ifs.util.DataProperties;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
+import org.unitime.timetable.solver.AbstractSolver;
+import org.unitime.timetable.solver.TimetableSolver;
+import org.unitime.timetable.solver.exam.ExamSolver;
+import org.unitime.timetable.solver.instructor.InstructorSchedulingSolver;
+import org.unitime.timetable.solver.remote.BackupFileFilter;
+import org.unitime.timetable.solver.studentsct.StudentSolver;
+
+/**
+ * Solver passivation benchmark: each of the given solver backup files (e.g., crs_1234.backup.xml taken from the restore folder,
+ * the solver type is taken from the file name prefix) is restored and then repeatedly backed up as pretty-printed XML, passivated, and activated.
+ * Average times and file sizes are printed out for each file.<br>
+ * Usage: PassivationBenchmark [-Dbenchmark.iterations=5] [-Dunitime.solver.passivation.compress=true] backup files ...
+ *
+ * @author Tomas Muller
+ */
+public class PassivationBenchmark {
+	
+	private static AbstractSolver createSolver(SolverType type) {
+		switch (type) {
+		case COURSE: return new TimetableSolver(new DataProperties(), null);
+		case EXAM: return new ExamSolver(new DataProperties(), null);
+		case STUDENT: return new StudentSolver(new DataProperties(), null);
+		case INSTRUCTOR: return new InstructorSchedulingSolver(new DataProperties(), null);
+		default: return null;
+		}
+	}
+	
+	private static long size(File folder, String name) {
+		File file = new File(folder, name);
+		return file.exists() ? file.length() : 0;
+	}
+
+	public static void main(String[] args) {
+		try {
+			int iterations = Integer.getInteger("benchmark.iterations", 5);
+			File temp = new File(System.getProperty("java.io.tmpdir"), "passivation-benchmark");
+			temp.mkdirs();
+			
+			System.out.println(String.format(Locale.US, "%-30s %10s %10s %12s %10s %10s %12s %10s",
+					"file", "type", "backup ms", "backup B", "restore ms", "passiv. ms", "passiv. B", "activ. ms"));
+			for (String arg: args) {
+				File file = new File(arg);
+				SolverType type = null;
+				for (SolverType t: SolverType.values())
+					if (file.getName().startsWith(t.getPrefix())) { type = t; break; }
+				if (type == null || !file.getName().endsWith(BackupFileFilter.sXmlExtension)) {
+					System.err.println("Not a solver backup file: " + file);
+					continue;
+				}
+				String puid = file.getName().substring(type.getPrefix().length(), file.getName().length() - BackupFileFilter.sXmlExtension.length());
+				
+				AbstractSolver solver = createSolver(type);
+				long t0 = System.currentTimeMillis();
+				if (!solver.restore(file.getParentFile(), puid)) {
+					System.err.println("Failed to restore " + file);
+					continue;
+				}
+				long restore = System.currentTimeMillis() - t0;
+				
+				long backup = 0, passivate = 0, activate = 0, backupBytes = 0, passivateBytes = 0;
+				for (int i = 0; i < iterations; i++) {
+					t0 = System.currentTimeMillis();
+					solver.backup(temp, puid);
+					backup += System.currentTimeMillis() - t0;
+					backupBytes = size(temp, type.getPrefix() + puid + BackupFileFilter.sXmlExtension);
+					new File(temp, type.getPrefix() + puid + BackupFileFilter.sXmlExtension).delete();
+					
+					t0 = System.currentTimeMillis();
+					solver.passivate(temp, puid);
+					passivate += System.currentTimeMillis() - t0;
+					passivateBytes = size(temp, type.getPrefix() + puid + BackupFileFilter.sPassivationExtension);
+					
+					t0 = System.currentTimeMillis();
+					solver.activateIfNeeded();
+					activate += System.currentTimeMillis() - t0;
+				}
+				
+				System.out.println(String.format(Locale.US, "%-30s %10s %10d %12d %10d %10d %12d %10d",
+						file.getName(), type.name().toLowerCase(), backup / iterations, backupBytes, restore, passivate / iterations, passivateBytes, activate / iterations));
+				solver.dispose();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.model.BuildingPref;
+import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.model.CourseOffering;
+import org.unitime.timetable.model.DatePattern;
+import org.unitime.timetable.model.DatePatternPref;
+import org.unitime.timetable.model.DistributionPref;
+import org.unitime.timetable.model.InstrOfferingConfig;
+import org.unitime.timetable.model.InstructionalOffering;
+import org.unitime.timetable.model.InstructorAttributePref;
+import org.unitime.timetable.model.InstructorPref;
+import org.unitime.timetable.model.Preference;
+import org.unitime.timetable.model.PreferenceGroup;
+import org.unitime.timetable.model.RoomFeaturePref;
+import org.unitime.timetable.model.RoomGroupPref;
+import org.unitime.timetable.model.RoomPref;
+import org.unitime.timetable.model.SchedulingSubpart;
+import org.unitime.timetable.model.TimePref;
+import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.webutil.EffectivePreferenceResolver;
+
+/**
+ * Equivalence check of the {@link EffectivePreferenceResolver}: for each class and scheduling subpart of the given academic session,
+ * effective preferences, date patterns, time patterns, and class labels are computed directly on the domain objects (in one Hibernate session)
+ * and using the resolver (in another Hibernate session, with all offerings prefetched) and compared. Differences are printed out.<br>
+ * Usage: EffectivePreferenceResolverCheck -Dsession=academic session id
+ *
+ * @author Tomas Muller
+ */
+public class EffectivePreferenceResolverCheck {
+	private static Class[] sTypes = new Class[] {
+		TimePref.class, RoomPref.class, BuildingPref.class, RoomFeaturePref.class, RoomGroupPref.class, DistributionPref.class,
+		DatePatternPref.class, InstructorPref.class, InstructorAttributePref.class
+	};
+
+	private static List<PreferenceGroup> getPreferenceGroups(List<InstructionalOffering> offerings) {
+		List<PreferenceGroup> ret = new ArrayList<PreferenceGroup>();
+		for (InstructionalOffering offering: offerings)
+			for (InstrOfferingConfig config: offering.getInstrOfferingConfigs())
+				for (SchedulingSubpart subpart: config.getSchedulingSubparts()) {
+					ret.add(subpart);
+					ret.addAll(subpart.getClasses());
+				}
+		return ret;
+	}
+
+	private static String toString(Set prefs) {
+		if (prefs == null) return "null";
+		StringBuffer ret = new StringBuffer();
+		for (Iterator i = prefs.iterator(); i.hasNext(); ) {
+			Preference p = (Preference)i.next();
+			if (ret.length() > 0) ret.append(", ");
+			ret.append(p.getPrefLevel().getPrefProlog() + " " + p.preferenceText());
+			if (p instanceof TimePref) ret.append(" " + ((TimePref)p).getPreference());
+		}
+		return ret.toString();
+	}
+
+	private static String toString(DatePattern dp) {
+		return (dp == null ? "null" : dp.getUniqueId() + " " + dp.getName());
+	}
+
+	private static List<String> describe(PreferenceGroup pg, EffectivePreferenceResolver resolver) {
+		List<String> ret = new ArrayList<String>();
+		for (Class type: sTypes)
+			ret.add(type.getSimpleName() + ": " + toString(resolver == null ? pg.effectivePreferences(type) : resolver.effectivePreferences(pg, type)));
+		ret.add("DatePattern: " + toString(resolver == null ? pg.effectiveDatePattern() : resolver.effectiveDatePattern(pg)));
+		ret.add("TimePatterns: " + (resolver == null ? pg.effectiveTimePatternHtml() : resolver.effectiveTimePatternHtml(pg)));
+		if (pg instanceof Class_) {
+			Class_ clazz = (Class_)pg;
+			for (CourseOffering co: clazz.getSchedulingSubpart().getInstrOfferingConfig().getInstructionalOffering().getCourseOfferings())
+				ret.add("Label " + co.getCourseName() + ": " + (resolver == null ? clazz.getClassLabel(co) : resolver.getClassLabel(clazz, co)));
+		}
+		return ret;
+	}
+
+	public static void main(String[] args) {
+		try {
+			HibernateUtil.configureHibernate(new Properties());
+			Long sessionId = Long.valueOf(System.getProperty("session", "1"));
+			String query = "from InstructionalOffering where session.uniqueId = :sessionId order by uniqueId";
+
+			// direct computation
+			long t0 = System.currentTimeMillis();
+			Session hibSession = new _RootDAO().createNewSession();
+			List<InstructionalOffering> offerings = (List<InstructionalOffering>)hibSession.createQuery(query).setLong("sessionId", sessionId).list();
+			Map<Long, List<String>> expected = new HashMap<Long, List<String>>();
+			for (PreferenceGroup pg: getPreferenceGroups(offerings))
+				expected.put(pg.getUniqueId(), describe(pg, null));
+			hibSession.close();
+			long t1 = System.currentTimeMillis();
+
+			// using the resolver
+			hibSession = new _RootDAO().getSession();
+			offerings = (List<InstructionalOffering>)hibSession.createQuery(query).setLong("sessionId", sessionId).list();
+			EffectivePreferenceResolver resolver = new EffectivePreferenceResolver();
+			resolver.prefetch(offerings);
+			List<PreferenceGroup> groups = getPreferenceGroups(offerings);
+			int differences = 0;
+			for (PreferenceGroup pg: groups) {
+				List<String> actual = describe(pg, resolver);
+				List<String> exp = expected.get(pg.getUniqueId());
+				if (exp == null || exp.size() != actual.size()) {
+					System.err.println("Unexpected " + pg); differences ++; continue;
+				}
+				for (int j = 0; j < actual.size(); j++)
+					if (!actual.get(j).equals(exp.get(j))) {
+						System.err.println(pg + ": expected " + exp.get(j) + ", got " + actual.get(j));
+						differences ++;
+					}
+			}
+			long t2 = System.currentTimeMillis();
+			_RootDAO.closeCurrentThreadSessions();
+
+			System.out.println("Checked " + groups.size() + " classes and subparts of " + offerings.size() + " offerings: " + differences + " differences.");
+			System.out.println("Direct computation: " + (t1 - t0) + " ms, resolver: " + (t2 - t1) + " ms (" + resolver + ")");
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			HibernateUtil.closeHibernate();
+		}
+	}
+}
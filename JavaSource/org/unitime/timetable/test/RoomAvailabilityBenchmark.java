@@ -0,0 +1,179 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
+import org.unitime.timetable.util.DefaultRoomAvailabilityService.MeetingTimeBlock;
+import org.unitime.timetable.util.RoomAvailabilityIndex;
+
+/**
+ * Room availability benchmark: a year of randomly generated events is loaded into the {@link RoomAvailabilityIndex}
+ * and into the room availability table that was used before (a TreeSet of time blocks for each room, with the event type
+ * excluded on each call). Loading, room availability lookups (with and without an excluded event type), week lookups,
+ * and incremental event changes are compared.<br>
+ * Usage: RoomAvailabilityBenchmark [-Dbenchmark.rooms=500] [-Dbenchmark.meetings=6] [-Dbenchmark.changes=1000] [-Dbenchmark.seed=1]
+ *
+ * @author Tomas Muller
+ */
+public class RoomAvailabilityBenchmark {
+	private static String[] sTypes = new String[] {"Class Event", "Special Event", "Course Related Event", "Final Examination Event", "Midterm Examination Event"};
+
+	private static List<Object[]> generate(int nrRooms, int nrMeetingsPerDay, Random rnd) {
+		List<Object[]> blocks = new ArrayList<Object[]>();
+		Calendar cal = Calendar.getInstance(Locale.US);
+		cal.set(Calendar.DAY_OF_YEAR, 1); cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND, 0); cal.set(Calendar.MILLISECOND, 0);
+		long meetingId = 0;
+		for (int day = 0; day < 365; day++) {
+			int dow = cal.get(Calendar.DAY_OF_WEEK);
+			if (dow != Calendar.SATURDAY && dow != Calendar.SUNDAY) {
+				for (long room = 1; room <= nrRooms; room++) {
+					for (int m = 0; m < nrMeetingsPerDay; m++) {
+						long start = cal.getTimeInMillis() + 60000l * (7 * 60 + m * 90 + 5 * rnd.nextInt(4));
+						long end = start + 60000l * (50 + 25 * rnd.nextInt(2));
+						// events are repeating: the same event meets in the same room and time slot every week of a term
+						long eventId = room * 1000 + m * 10 + (day / 7) / 16;
+						String type = sTypes[(int)(eventId % sTypes.length)];
+						blocks.add(new Object[] {room, new MeetingTimeBlock(eventId, meetingId++, "Event " + eventId, type, new Date(start), new Date(end))});
+					}
+				}
+			}
+			cal.add(Calendar.DAY_OF_YEAR, 1);
+		}
+		return blocks;
+	}
+
+	private static TreeSet<TimeBlock> get(Hashtable<Long, TreeSet<TimeBlock>> table, Long room, String excludeType) {
+		TreeSet<TimeBlock> roomAvailability = table.get(room);
+		if (roomAvailability == null || excludeType == null) return roomAvailability;
+		TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+		for (TimeBlock block : roomAvailability) {
+			if (excludeType.equals(block.getEventType())) continue;
+			ret.add(block);
+		}
+		return ret;
+	}
+
+	private static TreeSet<TimeBlock> get(Hashtable<Long, TreeSet<TimeBlock>> table, Long room, Date start, Date end) {
+		TreeSet<TimeBlock> roomAvailability = table.get(room);
+		if (roomAvailability == null) return null;
+		TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+		for (TimeBlock block : roomAvailability) {
+			if (block.getStartTime().before(end) && start.before(block.getEndTime())) ret.add(block);
+		}
+		return ret;
+	}
+
+	public static void main(String[] args) {
+		int nrRooms = Integer.getInteger("benchmark.rooms", 500);
+		int nrMeetings = Integer.getInteger("benchmark.meetings", 6);
+		int nrChanges = Integer.getInteger("benchmark.changes", 1000);
+		Random rnd = new Random(Long.getLong("benchmark.seed", 1l));
+
+		List<Object[]> blocks = generate(nrRooms, nrMeetings, rnd);
+		System.out.println("Generated " + blocks.size() + " meetings in " + nrRooms + " rooms.");
+
+		// loading
+		long t0 = System.currentTimeMillis();
+		Hashtable<Long, TreeSet<TimeBlock>> table = new Hashtable<Long, TreeSet<TimeBlock>>();
+		for (Object[] o: blocks) {
+			TreeSet<TimeBlock> set = table.get((Long)o[0]);
+			if (set == null) { set = new TreeSet<TimeBlock>(); table.put((Long)o[0], set); }
+			set.add((TimeBlock)o[1]);
+		}
+		long t1 = System.currentTimeMillis();
+		RoomAvailabilityIndex index = new RoomAvailabilityIndex();
+		for (Object[] o: blocks)
+			index.add((Long)o[0], (TimeBlock)o[1]);
+		long t2 = System.currentTimeMillis();
+		System.out.println("Load: table " + (t1 - t0) + " ms, index " + (t2 - t1) + " ms (" + index.size() + " blocks)");
+
+		// room by room lookups, with an event type excluded (as done by the course timetabling solver)
+		long sum = 0;
+		t0 = System.currentTimeMillis();
+		for (int it = 0; it < 10; it++)
+			for (long room = 1; room <= nrRooms; room++)
+				sum += get(table, room, sTypes[0]).size();
+		t1 = System.currentTimeMillis();
+		for (int it = 0; it < 10; it++)
+			for (long room = 1; room <= nrRooms; room++)
+				sum -= index.get(room, sTypes[0]).size();
+		t2 = System.currentTimeMillis();
+		System.out.println("Room lookups excluding " + sTypes[0] + ": table " + (t1 - t0) + " ms, index " + (t2 - t1) + " ms" + (sum == 0 ? "" : " (results differ)"));
+
+		// week lookups (as done by the event room availability)
+		Calendar cal = Calendar.getInstance(Locale.US);
+		cal.set(Calendar.DAY_OF_YEAR, 1); cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND, 0); cal.set(Calendar.MILLISECOND, 0);
+		List<Date[]> weeks = new ArrayList<Date[]>();
+		for (int w = 0; w < 52; w++) {
+			Date start = cal.getTime(); cal.add(Calendar.DAY_OF_YEAR, 7);
+			weeks.add(new Date[] {start, cal.getTime()});
+		}
+		sum = 0;
+		t0 = System.currentTimeMillis();
+		for (Date[] week: weeks)
+			for (long room = 1; room <= nrRooms; room++)
+				sum += get(table, room, week[0], week[1]).size();
+		t1 = System.currentTimeMillis();
+		for (Date[] week: weeks)
+			for (long room = 1; room <= nrRooms; room++)
+				sum -= index.get(room, week[0], week[1], null).size();
+		t2 = System.currentTimeMillis();
+		System.out.println("Week lookups: table " + (t1 - t0) + " ms, index " + (t2 - t1) + " ms" + (sum == 0 ? "" : " (results differ)"));
+
+		// event changes: the index removes and re-adds the changed events, the table is reloaded
+		List<Long> changed = new ArrayList<Long>();
+		for (int i = 0; i < nrChanges; i++) {
+			Object[] o = blocks.get(rnd.nextInt(blocks.size()));
+			changed.add(((TimeBlock)o[1]).getEventId());
+		}
+		t0 = System.currentTimeMillis();
+		table.clear();
+		for (Object[] o: blocks) {
+			TreeSet<TimeBlock> set = table.get((Long)o[0]);
+			if (set == null) { set = new TreeSet<TimeBlock>(); table.put((Long)o[0], set); }
+			set.add((TimeBlock)o[1]);
+		}
+		t1 = System.currentTimeMillis();
+		Hashtable<Long, List<Object[]>> event2blocks = new Hashtable<Long, List<Object[]>>();
+		for (Object[] o: blocks) {
+			Long eventId = ((TimeBlock)o[1]).getEventId();
+			List<Object[]> list = event2blocks.get(eventId);
+			if (list == null) { list = new ArrayList<Object[]>(); event2blocks.put(eventId, list); }
+			list.add(o);
+		}
+		long t3 = System.currentTimeMillis();
+		for (Long eventId: changed) {
+			index.removeEvent(eventId);
+			for (Object[] o: event2blocks.get(eventId))
+				index.add((Long)o[0], (TimeBlock)o[1]);
+		}
+		t2 = System.currentTimeMillis();
+		System.out.println(nrChanges + " event changes: table reload " + (t1 - t0) + " ms, index update " + (t2 - t3) + " ms (" + index.size() + " blocks)");
+	}
+}
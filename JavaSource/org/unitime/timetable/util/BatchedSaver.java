@@ -0,0 +1,220 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Background thread persisting log records (online sectioning log, query log, message log, etc.) in batches.<br>
+ * Records are added into a bounded non-blocking queue (when the limit is reached, new records are dropped and counted).
+ * The queue is flushed when there are at least the batch size records waiting or when the flush interval has passed,
+ * each flush calling {@link BatchedSaver#save(List)} with up to batch size records. The saver keeps track of
+ * the queue depth, the number of dropped, saved and failed records, and the flush times.
+ *
+ * @author Tomas Muller
+ */
+public abstract class BatchedSaver<T> extends Thread {
+	private Queue<T> iQueue = new ConcurrentLinkedQueue<T>();
+	private AtomicInteger iQueueSize = new AtomicInteger(0);
+	private volatile boolean iActive = true;
+	private int iLimit = -1;
+	private int iBatchSize = 500;
+	private long iFlushInterval = 60000;
+
+	private AtomicLong iAdded = new AtomicLong(0), iDropped = new AtomicLong(0), iSaved = new AtomicLong(0), iFailed = new AtomicLong(0);
+	private Object iStatsLock = new Object();
+	private long iFlushes = 0, iFlushTime = 0, iMaxFlushTime = 0, iLastFlushTime = 0;
+	private long iLastDroppedWarning = 0;
+
+	public BatchedSaver(String name, int limit) {
+		this(name, limit, ApplicationProperty.LogBatchSize.intValue(), 1000l * ApplicationProperty.LogFlushInterval.intValue());
+	}
+
+	public BatchedSaver(String name, int limit, int batchSize, long flushInterval) {
+		super(name);
+		iLimit = limit;
+		iBatchSize = batchSize;
+		iFlushInterval = flushInterval;
+		setDaemon(true);
+	}
+
+	/**
+	 * Persist the given batch of records
+	 */
+	protected abstract void save(List<T> batch) throws Exception;
+
+	/**
+	 * Called each time the saver thread wakes up (regardless whether there was something to persist)
+	 */
+	protected void tick() {}
+
+	protected abstract Log getLog();
+
+	public boolean isActive() { return iActive; }
+
+	/**
+	 * Add a record to the queue, returns false when the record was dropped (saver is not active or the limit has been reached)
+	 */
+	public boolean add(T record) {
+		if (!iActive || record == null) return false;
+		int size;
+		while (true) {
+			size = iQueueSize.get();
+			if (iLimit > 0 && size >= iLimit) {
+				iDropped.incrementAndGet();
+				return false;
+			}
+			if (iQueueSize.compareAndSet(size, size + 1)) break;
+		}
+		iQueue.offer(record);
+		iAdded.incrementAndGet();
+		if (iBatchSize > 0 && size + 1 == iBatchSize)
+			LockSupport.unpark(this);
+		return true;
+	}
+
+	@Override
+	public void interrupt() {
+		iActive = false;
+		super.interrupt();
+		try { join(); } catch (InterruptedException e) {}
+	}
+
+	/**
+	 * Persist all the queued records, return the number of records persisted
+	 */
+	protected int flush() {
+		int count = 0;
+		while (!iQueue.isEmpty()) {
+			List<T> batch = new ArrayList<T>(iBatchSize <= 0 ? iQueueSize.get() : Math.min(iBatchSize, iQueueSize.get()));
+			T record;
+			while ((iBatchSize <= 0 || batch.size() < iBatchSize) && (record = iQueue.poll()) != null) {
+				batch.add(record);
+			}
+			iQueueSize.addAndGet(-batch.size());
+			if (batch.isEmpty()) break;
+			long t0 = System.nanoTime();
+			try {
+				save(batch);
+				iSaved.addAndGet(batch.size());
+				count += batch.size();
+			} catch (Throwable t) {
+				iFailed.addAndGet(batch.size());
+				getLog().warn("Failed to persist " + batch.size() + " records: " + t.getMessage(), t);
+			}
+			long time = System.nanoTime() - t0;
+			synchronized (iStatsLock) {
+				iFlushes ++; iFlushTime += time; iLastFlushTime = time;
+				if (time > iMaxFlushTime) iMaxFlushTime = time;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void run() {
+		getLog().debug(getName() + " is up.");
+		long lastFlush = System.currentTimeMillis();
+		while (true) {
+			try {
+				long wait = lastFlush + iFlushInterval - System.currentTimeMillis();
+				if (iActive && wait > 0 && (iBatchSize <= 0 || iQueueSize.get() < iBatchSize)) {
+					LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+					Thread.interrupted();
+				}
+				tick();
+				if (!iActive || iQueueSize.get() >= iBatchSize || System.currentTimeMillis() - lastFlush >= iFlushInterval) {
+					long dropped = iDropped.get();
+					if (dropped > iLastDroppedWarning) {
+						getLog().warn("The limit of " + iLimit + " unpersisted records was reached, " + (dropped - iLastDroppedWarning) + " records have been dropped.");
+						iLastDroppedWarning = dropped;
+					}
+					int count = flush();
+					if (count > 0 && getLog().isDebugEnabled())
+						getLog().debug("Persisted " + count + " records (" + this + ")");
+					lastFlush = System.currentTimeMillis();
+				}
+				if (!iActive && iQueue.isEmpty()) break;
+			} catch (Throwable t) {
+				getLog().error("Failed to persist records: " + t.getMessage(), t);
+			}
+		}
+		getLog().debug(getName() + " is down.");
+	}
+
+	/** Number of records waiting to be persisted */
+	public int getQueueSize() { return iQueueSize.get(); }
+
+	/** Number of records added */
+	public long getAdded() { return iAdded.get(); }
+
+	/** Number of records dropped because of the limit */
+	public long getDropped() { return iDropped.get(); }
+
+	/** Number of records persisted */
+	public long getSaved() { return iSaved.get(); }
+
+	/** Number of records that failed to persist */
+	public long getFailed() { return iFailed.get(); }
+
+	/** Number of flushes (batches persisted) */
+	public long getFlushes() {
+		synchronized (iStatsLock) { return iFlushes; }
+	}
+
+	/** Average time to persist a batch in milliseconds */
+	public double getAverageFlushTime() {
+		synchronized (iStatsLock) { return iFlushes == 0 ? 0.0 : iFlushTime / 1000000.0 / iFlushes; }
+	}
+
+	/** Maximal time to persist a batch in milliseconds */
+	public double getMaxFlushTime() {
+		synchronized (iStatsLock) { return iMaxFlushTime / 1000000.0; }
+	}
+
+	/** Time to persist the last batch in milliseconds */
+	public double getLastFlushTime() {
+		synchronized (iStatsLock) { return iLastFlushTime / 1000000.0; }
+	}
+
+	/** Number of records persisted per second of flushing */
+	public double getRecordsPerSecond() {
+		synchronized (iStatsLock) { return iFlushTime == 0 ? 0.0 : 1000000000.0 * iSaved.get() / iFlushTime; }
+	}
+
+	@Override
+	public String toString() {
+		DecimalFormat df = new DecimalFormat("0.00");
+		return getName() + "{queue=" + getQueueSize() + ", added=" + getAdded() + ", dropped=" + getDropped() + ", saved=" + getSaved() + ", failed=" + getFailed() +
+				", flushes=" + getFlushes() + ", avgFlush=" + df.format(getAverageFlushTime()) + " ms, maxFlush=" + df.format(getMaxFlushTime()) + " ms" +
+				", rate=" + df.format(getRecordsPerSecond()) + " rows/s}";
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A bounded in-memory cache with a weight-based eviction. Each entry has a weight (by default, its serialized size in bytes),
+ * and when the total weight of the cache exceeds its limit, the least recently used entries are evicted. Entries can also
+ * expire when they have not been accessed for a given time.<br>
+ * Reads are lock-free (the entries are kept in a {@link ConcurrentHashMap}), only the eviction is synchronized.
+ * Hit, miss, eviction, and expiration counts are kept for each cache and all the created caches are listed in {@link BoundedCache#getCaches()}.
+ *
+ * @author Tomas Muller
+ */
+public class BoundedCache<K, V> {
+	private static Log sLog = LogFactory.getLog(BoundedCache.class);
+	private static List<BoundedCache<?, ?>> sCaches = new CopyOnWriteArrayList<BoundedCache<?,?>>();
+
+	private String iName;
+	private ConcurrentHashMap<K, Entry<V>> iEntries = new ConcurrentHashMap<K, Entry<V>>();
+	private Weigher<? super V> iWeigher;
+	private long iMaxWeight;
+	private long iTimeToLive;
+	private AtomicLong iWeight = new AtomicLong(0);
+	private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0), iEvictions = new AtomicLong(0), iExpirations = new AtomicLong(0);
+	private volatile long iLastCleanup = System.currentTimeMillis();
+	private AtomicLong iTick = new AtomicLong(0);
+
+	/**
+	 * @param name cache name (used in the statistics)
+	 * @param maxWeight maximal total weight of the cache (0 for no limit)
+	 * @param timeToLive time in milliseconds after which an entry that has not been accessed expires (0 for no expiration)
+	 * @param weigher computes weights of the cached values, {@link BoundedCache#sSerializedSize} when null
+	 * @param register register the cache in the list of caches, see {@link BoundedCache#getCaches()}
+	 */
+	public BoundedCache(String name, long maxWeight, long timeToLive, Weigher<? super V> weigher, boolean register) {
+		iName = name;
+		iMaxWeight = maxWeight;
+		iTimeToLive = timeToLive;
+		iWeigher = (weigher == null ? sSerializedSize : weigher);
+		if (register) sCaches.add(this);
+	}
+
+	/** Registered cache with entries weighted by their serialized size */
+	public BoundedCache(String name, long maxWeight, long timeToLive) {
+		this(name, maxWeight, timeToLive, null, true);
+	}
+
+	public String getName() { return iName; }
+
+	/** Cached value, null if not present or expired */
+	public V get(K key) {
+		if (key == null) return null;
+		Entry<V> entry = iEntries.get(key);
+		if (entry == null) {
+			iMisses.incrementAndGet();
+			return null;
+		}
+		if (isExpired(entry, System.currentTimeMillis())) {
+			if (iEntries.remove(key, entry)) {
+				iWeight.addAndGet(-entry.getWeight());
+				iExpirations.incrementAndGet();
+			}
+			iMisses.incrementAndGet();
+			return null;
+		}
+		entry.mark(iTick.incrementAndGet());
+		iHits.incrementAndGet();
+		return entry.getValue();
+	}
+
+	/** Cache a value, evicting the least recently used entries when the cache gets too big */
+	public void put(K key, V value) {
+		if (key == null) return;
+		if (value == null) { remove(key); return; }
+		long weight = iWeigher.weight(value);
+		if (iMaxWeight > 0 && weight > iMaxWeight) {
+			sLog.debug(iName + ": " + key + " is too big to be cached (" + weight + " > " + iMaxWeight + ")");
+			remove(key);
+			return;
+		}
+		Entry<V> old = iEntries.put(key, new Entry<V>(value, weight, iTick.incrementAndGet()));
+		iWeight.addAndGet(weight - (old == null ? 0 : old.getWeight()));
+		if (iMaxWeight > 0 && iWeight.get() > iMaxWeight)
+			evict();
+		else if (iTimeToLive > 0 && System.currentTimeMillis() - iLastCleanup > iTimeToLive)
+			cleanup();
+	}
+
+	/** Remove a value from the cache */
+	public V remove(K key) {
+		if (key == null) return null;
+		Entry<V> entry = iEntries.remove(key);
+		if (entry == null) return null;
+		iWeight.addAndGet(-entry.getWeight());
+		return entry.getValue();
+	}
+
+	/** Remove all values */
+	public void clear() {
+		for (K key: new ArrayList<K>(iEntries.keySet()))
+			remove(key);
+	}
+
+	/** Unregister the cache and remove all its values */
+	public void close() {
+		sCaches.remove(this);
+		clear();
+	}
+
+	private boolean isExpired(Entry<V> entry, long now) {
+		return iTimeToLive > 0 && now - entry.getLastAccess() > iTimeToLive;
+	}
+
+	/** Remove expired entries */
+	public synchronized void cleanup() {
+		long now = System.currentTimeMillis();
+		iLastCleanup = now;
+		for (Map.Entry<K, Entry<V>> e: iEntries.entrySet()) {
+			if (isExpired(e.getValue(), now) && iEntries.remove(e.getKey(), e.getValue())) {
+				iWeight.addAndGet(-e.getValue().getWeight());
+				iExpirations.incrementAndGet();
+			}
+		}
+	}
+
+	/** Remove expired entries and then the least recently used ones until the cache is below 90% of its maximal weight */
+	protected synchronized void evict() {
+		if (iWeight.get() <= iMaxWeight) return;
+		cleanup();
+		if (iWeight.get() <= iMaxWeight) return;
+		// entries ordered by their last use (taken at this point, as the entries can be accessed concurrently)
+		TreeMap<Long, Map.Entry<K, Entry<V>>> entries = new TreeMap<Long, Map.Entry<K, Entry<V>>>();
+		for (Map.Entry<K, Entry<V>> e: iEntries.entrySet())
+			entries.put(e.getValue().getLastUse(), e);
+		long target = (9 * iMaxWeight) / 10;
+		for (Map.Entry<K, Entry<V>> e: entries.values()) {
+			if (iWeight.get() <= target) break;
+			if (iEntries.remove(e.getKey(), e.getValue())) {
+				iWeight.addAndGet(-e.getValue().getWeight());
+				iEvictions.incrementAndGet();
+			}
+		}
+	}
+
+	public int size() { return iEntries.size(); }
+	/** Keys of the cached values (a copy) */
+	public Set<K> keys() { return new HashSet<K>(iEntries.keySet()); }
+	public long getWeight() { return iWeight.get(); }
+	public long getMaxWeight() { return iMaxWeight; }
+	public long getHits() { return iHits.get(); }
+	public long getMisses() { return iMisses.get(); }
+	public long getEvictions() { return iEvictions.get(); }
+	public long getExpirations() { return iExpirations.get(); }
+
+	/** Cache statistics (size, weight, hits, misses, evictions, expirations) */
+	public String getStatistics() {
+		long hits = getHits(), misses = getMisses();
+		return iName + ": " + size() + " entries, weight " + getWeight() + (iMaxWeight > 0 ? " of " + iMaxWeight : "") +
+				", " + hits + " hits, " + misses + " misses" + (hits + misses > 0 ? " (" + (100 * hits / (hits + misses)) + "% hit ratio)" : "") +
+				", " + getEvictions() + " evictions, " + getExpirations() + " expirations";
+	}
+
+	@Override
+	public String toString() {
+		return getStatistics();
+	}
+
+	/** All registered caches */
+	public static List<BoundedCache<?, ?>> getCaches() {
+		return Collections.unmodifiableList(sCaches);
+	}
+
+	private static class Entry<V> {
+		private V iValue;
+		private long iWeight;
+		private volatile long iLastAccess, iLastUse;
+
+		Entry(V value, long weight, long tick) {
+			iValue = value; iWeight = weight; iLastAccess = System.currentTimeMillis(); iLastUse = tick;
+		}
+
+		V getValue() { return iValue; }
+		long getWeight() { return iWeight; }
+		long getLastAccess() { return iLastAccess; }
+		long getLastUse() { return iLastUse; }
+		void mark(long tick) { iLastAccess = System.currentTimeMillis(); iLastUse = tick; }
+	}
+
+	/**
+	 * Computes weight of a cached value
+	 */
+	public static interface Weigher<V> {
+		public long weight(V value);
+	}
+
+	/** Each entry has the weight of one, the maximal weight is then the maximal number of entries */
+	public static final Weigher<Object> sSingleton = new Weigher<Object>() {
+		@Override
+		public long weight(Object value) { return 1; }
+	};
+
+	/** Entries are weighted by their serialized size in bytes (entries that cannot be serialized weight 1 KB) */
+	public static final Weigher<Object> sSerializedSize = new Weigher<Object>() {
+		@Override
+		public long weight(Object value) {
+			if (!(value instanceof Serializable)) return 1024;
+			CountingOutputStream count = new CountingOutputStream();
+			try {
+				ObjectOutputStream out = new ObjectOutputStream(count);
+				out.writeObject(value);
+				out.close();
+				return count.getCount();
+			} catch (IOException e) {
+				return 1024;
+			}
+		}
+	};
+
+	private static class CountingOutputStream extends OutputStream {
+		private long iCount = 0;
+
+		@Override
+		public void write(int b) { iCount ++; }
+
+		@Override
+		public void write(byte[] b, int off, int len) { iCount += len; }
+
+		long getCount() { return iCount; }
+	}
+}
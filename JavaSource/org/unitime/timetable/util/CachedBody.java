@@ -0,0 +1,87 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Cached response body together with its ETag (computed from the content) and the version of the data
+ * it was computed from (see {@link org.unitime.commons.hibernate.util.ChangeTracker}).
+ * Used by the caches that support conditional GET requests (If-None-Match).
+ *
+ * @author Tomas Muller
+ */
+public class CachedBody {
+	private byte[] iBody;
+	private String iETag;
+	private long iVersion;
+	private Date iCreated = new Date();
+
+	public CachedBody(byte[] body, long version) {
+		iBody = body;
+		iETag = computeETag(body);
+		iVersion = version;
+	}
+
+	public byte[] getBody() { return iBody; }
+	public String getETag() { return iETag; }
+	public long getVersion() { return iVersion; }
+	public Date getCreated() { return iCreated; }
+
+	/** True if the client already has this body (the given If-None-Match header matches the ETag) */
+	public boolean matches(String ifNoneMatch) {
+		return matches(ifNoneMatch, iETag);
+	}
+
+	/**
+	 * Strong ETag (MD5 digest) of the given content
+	 */
+	public static String computeETag(byte[] body) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] digest = md.digest(body);
+			StringBuffer ret = new StringBuffer("\"");
+			for (byte b: digest) {
+				ret.append(Character.forDigit((b >> 4) & 0xF, 16));
+				ret.append(Character.forDigit(b & 0xF, 16));
+			}
+			ret.append("\"");
+			return ret.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+		}
+	}
+
+	/**
+	 * Check the If-None-Match header against the given ETag
+	 */
+	public static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) return false;
+		for (String tag: ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) tag = tag.substring(2);
+			if (tag.equals("*") || tag.equals(etag)) return true;
+		}
+		return false;
+	}
+}
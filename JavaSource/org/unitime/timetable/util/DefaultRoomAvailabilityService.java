@@ -20,15 +20,20 @@
 package org.unitime.timetable.util;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.Hashtable;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.hibernate.Query;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface;
@@ -45,6 +50,7 @@ import org.unitime.timetable.model.dao._RootDAO;
  * @author Tomas Muller
  */
 public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface {
+	private static Log sLog = LogFactory.getLog(DefaultRoomAvailabilityService.class);
     private Vector<CacheElement> iCache = new Vector<CacheElement>();
     private boolean iInstructorAvailabilityEnabled = false;
     
@@ -67,7 +73,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         TimeFrame time = new TimeFrame(startTime, endTime);
         synchronized(iCache) {
             CacheElement cache = get(time, excludeType);
-            if (cache!=null) return cache.get(location.getPermanentId(), excludeType);
+            if (cache!=null) return cache.get(location.getPermanentId(), time, excludeType);
             Calendar start = Calendar.getInstance(Locale.US); start.setTime(startTime);
             int startMin = 60*start.get(Calendar.HOUR_OF_DAY) + start.get(Calendar.MINUTE);
             start.add(Calendar.MINUTE, -startMin);
@@ -117,10 +123,24 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                 cache = new CacheElement(time, excludeType);
                 iCache.insertElementAt(cache, 0);
             }
-            cache.update(class2eventDateMap, iInstructorAvailabilityEnabled ? session.getUniqueId() : null);
+            if (cache.canRefresh())
+            	cache.refresh(class2eventDateMap, iInstructorAvailabilityEnabled ? session.getUniqueId() : null);
+            else
+            	cache.update(class2eventDateMap, iInstructorAvailabilityEnabled ? session.getUniqueId() : null);
         }
     }
     
+    /**
+     * Notify the cache that the meetings of the given events have changed. The changed events are reloaded on the next
+     * {@link DefaultRoomAvailabilityService#activate(Session, Date, Date, String, boolean)} call.
+     */
+    public void eventsChanged(Collection<Long> eventIds) {
+    	synchronized(iCache) {
+    		for (CacheElement cache: iCache)
+    			cache.eventsChanged(eventIds);
+    	}
+    }
+    
     public void startService() {}
     public void stopService() {}
     
@@ -163,24 +183,30 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
 
     public static class CacheElement{
         private TimeFrame iTime;
-        private Hashtable<Long, TreeSet<TimeBlock>> iAvailability = new Hashtable();
+        private RoomAvailabilityIndex iAvailability = new RoomAvailabilityIndex();
         private String iTimestamp = null;
         private String iExcludeType = null;
+        private Date iLastUpdate = null, iLastRefresh = null;
+        private Set<Long> iChangedEvents = new HashSet<Long>();
         public CacheElement(TimeFrame time, String excludeType) {
             iTime = time;
             iExcludeType = excludeType;
         };
-        public void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId) {
-            iAvailability.clear();
-            String exclude = null;
+        private String getExclude() {
             if (iExcludeType!=null) {
                 if (sFinalExamType.equals(iExcludeType))
-                    exclude = "FinalExamEvent";
+                    return "FinalExamEvent";
                 else if (sMidtermExamType.equals(iExcludeType))
-                    exclude = "MidtermExamEvent";
+                    return "MidtermExamEvent";
                 else if (sClassType.equals(iExcludeType))
-                    exclude = "ClassEvent";	
+                    return "ClassEvent";	
             }
+            return null;
+        }
+        public void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId) {
+        	Date now = new Date();
+            iAvailability.clear();
+            String exclude = getExclude();
             Query q = new _RootDAO().getSession().createQuery(
                     "select m from Meeting m where m.locationPermanentId!=null and "+
                     "m.approvalStatus = 1 and "+
@@ -194,13 +220,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                     .setCacheable(true);
             for (Iterator i=q.list().iterator();i.hasNext();) {
                 Meeting m = (Meeting)i.next(); 
-                TreeSet<TimeBlock> blocks = iAvailability.get(m.getLocationPermanentId());
-                if (blocks==null) {
-                    blocks = new TreeSet(); iAvailability.put(m.getLocationPermanentId(), blocks);
-                }
-                MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                if (block.getStartTime() != null)
-                	blocks.add(block);
+                iAvailability.add(m.getLocationPermanentId(), new MeetingTimeBlock(m, class2eventDateMap));
             }
             if (sessionId != null) {
                 q = new _RootDAO().getSession().createQuery(
@@ -221,26 +241,97 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                 	Object[] o = (Object[])i.next();
                 	Meeting m = (Meeting)o[0];
                 	Long id = (Long)o[1];
-                    TreeSet<TimeBlock> blocks = iAvailability.get(id);
-                    if (blocks==null) {
-                        blocks = new TreeSet(); iAvailability.put(id, blocks);
-                    }
-                    MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                    if (block.getStartTime() != null)
-                    	blocks.add(block);
+                	iAvailability.add(id, new MeetingTimeBlock(m, class2eventDateMap));
                 }            	
             }
+            iChangedEvents.clear();
+            iLastUpdate = now; iLastRefresh = now;
             iTimestamp = new Date().toString();
+            sLog.debug("Room availability " + this + " loaded in " + (System.currentTimeMillis() - now.getTime()) + " ms (" + iAvailability.size() + " blocks).");
+        }
+        /**
+         * Incremental update is possible when the cache has been fully loaded recently, see {@link ApplicationProperty#RoomAvailabilityIncrementalUpdateMaxAge}.
+         */
+        public boolean canRefresh() {
+        	if (iLastUpdate == null) return false;
+        	int maxAge = ApplicationProperty.RoomAvailabilityIncrementalUpdateMaxAge.intValue();
+        	return maxAge > 0 && System.currentTimeMillis() - iLastUpdate.getTime() < 1000l * maxAge;
+        }
+        public void eventsChanged(Collection<Long> eventIds) {
+        	iChangedEvents.addAll(eventIds);
+        }
+        /**
+         * Reload only events that have changed since the last update: events that were reported through {@link CacheElement#eventsChanged(Collection)}
+         * (see {@link RoomAvailability#eventsChanged(org.hibernate.Session, Collection)}) and events with a note created since the last update.
+         * Changes that are neither noted nor reported (e.g., made directly in the database or on another server) are only picked up by the next full update,
+         * see {@link ApplicationProperty#RoomAvailabilityIncrementalUpdateMaxAge}.
+         */
+        public void refresh(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId) {
+        	Date now = new Date();
+        	Set<Long> eventIds = new HashSet<Long>(iChangedEvents);
+        	eventIds.addAll((List<Long>)new _RootDAO().getSession().createQuery(
+        			"select distinct n.event.uniqueId from EventNote n where n.timeStamp >= :lastRefresh")
+        			.setTimestamp("lastRefresh", iLastRefresh).list());
+        	if (!eventIds.isEmpty()) {
+            	String exclude = getExclude();
+        		List<Long> ids = new ArrayList<Long>(eventIds);
+        		for (int idx = 0; idx < ids.size(); idx += 1000) {
+        			List<Long> chunk = ids.subList(idx, Math.min(idx + 1000, ids.size()));
+        			for (Long eventId: chunk)
+        				iAvailability.removeEvent(eventId);
+                    Query q = new _RootDAO().getSession().createQuery(
+                            "select m from Meeting m where m.event.uniqueId in :eventIds and m.locationPermanentId!=null and "+
+                            "m.approvalStatus = 1 and "+
+                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + 
+                            (exclude==null?"":" and m.event.class!="+exclude))
+                            .setParameterList("eventIds", chunk)
+                            .setDate("startDate", iTime.getStartDate())
+                            .setDate("endDate", iTime.getEndDate())
+                            .setInteger("startSlot", iTime.getStartSlot())
+                            .setInteger("endSlot", iTime.getEndSlot());
+                    for (Iterator i=q.list().iterator();i.hasNext();) {
+                        Meeting m = (Meeting)i.next(); 
+                        iAvailability.add(m.getLocationPermanentId(), new MeetingTimeBlock(m, class2eventDateMap));
+                    }
+                    if (sessionId != null) {
+                        q = new _RootDAO().getSession().createQuery(
+                        		"select distinct m, -i.uniqueId from Meeting m left outer join m.event.additionalContacts c, DepartmentalInstructor i where " +
+                        		"m.event.uniqueId in :eventIds and " +
+                                "i.department.session.uniqueId = :sessionId and i.externalUniqueId is not null and "+
+                        		"(m.event.mainContact.externalUniqueId = i.externalUniqueId or c.externalUniqueId = i.externalUniqueId) and "+
+                        		"m.approvalStatus = 1 and "+
+                                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                                (exclude!=null?" and m.event.class!="+exclude:""))
+                                .setParameterList("eventIds", chunk)
+                                .setDate("startDate", iTime.getStartDate())
+                                .setDate("endDate", iTime.getEndDate())
+                                .setLong("sessionId", sessionId)
+                                .setInteger("startSlot", iTime.getStartSlot())
+                                .setInteger("endSlot", iTime.getEndSlot());
+                        for (Iterator i=q.list().iterator();i.hasNext();) {
+                        	Object[] o = (Object[])i.next();
+                        	Meeting m = (Meeting)o[0];
+                        	Long id = (Long)o[1];
+                        	iAvailability.add(id, new MeetingTimeBlock(m, class2eventDateMap));
+                        }
+                    }
+        		}
+        	}
+        	iChangedEvents.removeAll(eventIds);
+        	iLastRefresh = now;
+        	iTimestamp = new Date().toString();
+        	sLog.debug("Room availability " + this + " refreshed in " + (System.currentTimeMillis() - now.getTime()) + " ms (" + eventIds.size() + " events reloaded).");
         }
         public TreeSet<TimeBlock> get(Long roomPermId, String excludeType) {
-            TreeSet<TimeBlock> roomAvailability = iAvailability.get(roomPermId);
-            if (roomAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return roomAvailability;
-            TreeSet<TimeBlock> ret = new TreeSet();
-            for (TimeBlock block : roomAvailability) {
-            	if (excludeType.equals(block.getEventType())) continue;
-                ret.add(block);
-            }
-            return ret;
+        	return iAvailability.get(roomPermId, excludeType == null || excludeType.equals(iExcludeType) ? null : excludeType);
+        }
+        public TreeSet<TimeBlock> get(Long roomPermId, TimeFrame time, String excludeType) {
+        	if (iTime.equals(time)) return get(roomPermId, excludeType);
+        	// only meetings within the requested dates, the same as the non-cached query
+        	Calendar end = Calendar.getInstance(Locale.US); end.setTime(time.getEndDate()); end.add(Calendar.DAY_OF_YEAR, 1);
+        	return iAvailability.get(roomPermId, time.getStartDate(), end.getTime(), excludeType == null || excludeType.equals(iExcludeType) ? null : excludeType);
         }
         public TimeFrame getTimeFrame() { return iTime; }
         public String getExcludeType() { return iExcludeType; }
@@ -272,6 +363,14 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
             iStart = m.getTrueStartTime(class2eventDateMap);
             iEnd = m.getTrueStopTime(class2eventDateMap);
         }
+        public MeetingTimeBlock(Long eventId, Long meetingId, String eventName, String eventType, Date start, Date end) {
+        	iEventId = eventId;
+        	iMeetingId = meetingId;
+        	iEventName = eventName;
+        	iEventType = eventType;
+        	iStart = start;
+        	iEnd = end;
+        }
         public Long getEventId() { return iEventId; }
         public Long getMeetingId() { return iMeetingId; }
         public String getEventName() { return iEventName; }
@@ -309,7 +408,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         TimeFrame time = new TimeFrame(startTime, endTime);
         synchronized(iCache) {
             CacheElement cache = get(time, excludeType);
-            if (cache!=null) return cache.get(-instructor.getUniqueId(), excludeType);
+            if (cache!=null) return cache.get(-instructor.getUniqueId(), time, excludeType);
             Calendar start = Calendar.getInstance(Locale.US); start.setTime(startTime);
             int startMin = 60*start.get(Calendar.HOUR_OF_DAY) + start.get(Calendar.MINUTE);
             start.add(Calendar.MINUTE, -startMin);
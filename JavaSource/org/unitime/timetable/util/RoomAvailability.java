@@ -19,9 +19,12 @@
 */
 package org.unitime.timetable.util;
 
+import java.util.Collection;
 import java.util.Date;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 
 import org.unitime.commons.Debug;
 import org.unitime.localization.impl.Localization;
@@ -56,6 +59,28 @@ public class RoomAvailability {
         }
     }
     
+    /**
+     * Notify the room availability service that meetings of the given events have changed.
+     * When called within an active transaction, the notification is postponed until the transaction is committed.
+     */
+    public static void eventsChanged(org.hibernate.Session hibSession, final Collection<Long> eventIds) {
+    	final RoomAvailabilityInterface instance = getInstance();
+    	if (instance == null || !(instance instanceof DefaultRoomAvailabilityService) || eventIds.isEmpty()) return;
+    	if (hibSession != null && hibSession.getTransaction().isActive()) {
+    		hibSession.getTransaction().registerSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {}
+				@Override
+				public void afterCompletion(int status) {
+					if (status == Status.STATUS_COMMITTED)
+						((DefaultRoomAvailabilityService)instance).eventsChanged(eventIds);
+				}
+			});
+    	} else {
+    		((DefaultRoomAvailabilityService)instance).eventsChanged(eventIds);
+    	}
+    }
+    
     public static void setAvailabilityWarning(HttpServletRequest request, Session acadSession, Long examType, boolean checkSolver, boolean checkAvailability) {
         if (acadSession==null || examType==null || getInstance()==null) return;
         if (checkSolver) {
@@ -0,0 +1,210 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
+
+/**
+ * Availability index of the {@link DefaultRoomAvailabilityService}. Time blocks are indexed by resource, that is
+ * the location permanent id for rooms and a negative instructor unique id for instructors.<br>
+ * For each resource, the blocks are kept ordered by their start time together with the length of the longest block,
+ * so that the blocks overlapping a given interval are found using a bounded range query (an interval tree
+ * over a single ordered set). Blocks without a particular event type are computed only once and kept until
+ * the resource changes. Blocks are added and removed by event, so that only the changed events need to be
+ * reloaded when an event is changed.<br>
+ * Sets returned by the index are never modified afterwards (a resource is copied on write instead).
+ * The index itself is not thread-safe.
+ *
+ * @author Tomas Muller
+ */
+public class RoomAvailabilityIndex {
+	private Map<Long, Resource> iResources = new HashMap<Long, Resource>();
+	private Map<Long, Set<Long>> iEventResources = new HashMap<Long, Set<Long>>();
+	private int iSize = 0;
+
+	/** Remove all time blocks */
+	public void clear() {
+		iResources.clear();
+		iEventResources.clear();
+		iSize = 0;
+	}
+
+	/** Number of time blocks in the index */
+	public int size() {
+		return iSize;
+	}
+
+	/** Number of indexed resources */
+	public int getNrResources() {
+		return iResources.size();
+	}
+
+	/** Add a time block to the given resource */
+	public boolean add(Long resourceId, TimeBlock block) {
+		if (block.getStartTime() == null || block.getEndTime() == null) return false;
+		Resource resource = iResources.get(resourceId);
+		if (resource == null) {
+			resource = new Resource();
+			iResources.put(resourceId, resource);
+		}
+		if (!resource.add(block)) return false;
+		iSize ++;
+		Set<Long> resources = iEventResources.get(block.getEventId());
+		if (resources == null) {
+			resources = new HashSet<Long>();
+			iEventResources.put(block.getEventId(), resources);
+		}
+		resources.add(resourceId);
+		return true;
+	}
+
+	/** Remove all time blocks of the given event */
+	public void removeEvent(Long eventId) {
+		Set<Long> resources = iEventResources.remove(eventId);
+		if (resources == null) return;
+		for (Long resourceId: resources) {
+			Resource resource = iResources.get(resourceId);
+			if (resource == null) continue;
+			iSize -= resource.removeEvent(eventId);
+			if (resource.isEmpty()) iResources.remove(resourceId);
+		}
+	}
+
+	/** Contains any time blocks of the given event */
+	public boolean hasEvent(Long eventId) {
+		return iEventResources.containsKey(eventId);
+	}
+
+	/**
+	 * All time blocks of the given resource
+	 * @param resourceId location permanent id, or negative instructor unique id
+	 * @param excludeType blocks of this event type are excluded (null if no type is to be excluded)
+	 * @return time blocks ordered by their start times, null if there are none
+	 */
+	public TreeSet<TimeBlock> get(Long resourceId, String excludeType) {
+		Resource resource = iResources.get(resourceId);
+		return (resource == null ? null : resource.get(excludeType));
+	}
+
+	/**
+	 * Time blocks of the given resource overlapping with the given interval
+	 * @param resourceId location permanent id, or negative instructor unique id
+	 * @param start interval start (inclusive)
+	 * @param end interval end (exclusive)
+	 * @param excludeType blocks of this event type are excluded (null if no type is to be excluded)
+	 * @return time blocks ordered by their start times, null if the resource has no time blocks
+	 */
+	public TreeSet<TimeBlock> get(Long resourceId, Date start, Date end, String excludeType) {
+		Resource resource = iResources.get(resourceId);
+		return (resource == null ? null : resource.get(start, end, excludeType));
+	}
+
+	private static class Resource {
+		private TreeSet<TimeBlock> iBlocks = new TreeSet<TimeBlock>();
+		private boolean iShared = false;
+		private long iMaxLength = 0;
+		private Map<String, TreeSet<TimeBlock>> iExcludes = new HashMap<String, TreeSet<TimeBlock>>();
+
+		private void modify() {
+			if (iShared) {
+				iBlocks = new TreeSet<TimeBlock>(iBlocks);
+				iShared = false;
+			}
+			if (!iExcludes.isEmpty()) iExcludes = new HashMap<String, TreeSet<TimeBlock>>();
+		}
+
+		boolean add(TimeBlock block) {
+			modify();
+			if (!iBlocks.add(block)) return false;
+			iMaxLength = Math.max(iMaxLength, block.getEndTime().getTime() - block.getStartTime().getTime());
+			return true;
+		}
+
+		int removeEvent(Long eventId) {
+			modify();
+			int removed = 0;
+			for (Iterator<TimeBlock> i = iBlocks.iterator(); i.hasNext(); ) {
+				if (eventId.equals(i.next().getEventId())) {
+					i.remove(); removed ++;
+				}
+			}
+			return removed;
+		}
+
+		boolean isEmpty() {
+			return iBlocks.isEmpty();
+		}
+
+		TreeSet<TimeBlock> get(String excludeType) {
+			if (excludeType == null) {
+				iShared = true;
+				return iBlocks;
+			}
+			TreeSet<TimeBlock> blocks = iExcludes.get(excludeType);
+			if (blocks == null) {
+				blocks = new TreeSet<TimeBlock>();
+				for (TimeBlock block: iBlocks)
+					if (!excludeType.equals(block.getEventType())) blocks.add(block);
+				iExcludes.put(excludeType, blocks);
+			}
+			return blocks;
+		}
+
+		TreeSet<TimeBlock> get(Date start, Date end, String excludeType) {
+			TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+			// only blocks starting in [start - longest block, end) can overlap with the interval
+			for (TimeBlock block: iBlocks.subSet(new Bound(start.getTime() - iMaxLength), true, new Bound(end.getTime()), false)) {
+				if (!block.getEndTime().after(start)) continue;
+				if (excludeType != null && excludeType.equals(block.getEventType())) continue;
+				ret.add(block);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * A time block that precedes all the time blocks starting at the same time (used as a range query bound).
+	 */
+	private static class Bound implements TimeBlock, Comparable<TimeBlock> {
+		private static final long serialVersionUID = 1L;
+		private Date iTime;
+
+		Bound(long time) { iTime = new Date(time); }
+
+		public Long getEventId() { return null; }
+		public String getEventName() { return ""; }
+		public String getEventType() { return null; }
+		public Date getStartTime() { return iTime; }
+		public Date getEndTime() { return new Date(Long.MIN_VALUE); }
+
+		public int compareTo(TimeBlock block) {
+			int cmp = getStartTime().compareTo(block.getStartTime());
+			return (cmp != 0 ? cmp : -1);
+		}
+	}
+}
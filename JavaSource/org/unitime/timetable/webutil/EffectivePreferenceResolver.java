@@ -0,0 +1,185 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.webutil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.unitime.commons.Debug;
+import org.unitime.timetable.model.Assignment;
+import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.model.CourseOffering;
+import org.unitime.timetable.model.DatePattern;
+import org.unitime.timetable.model.InstructionalOffering;
+import org.unitime.timetable.model.PreferenceGroup;
+import org.unitime.timetable.model.dao.InstructionalOfferingDAO;
+
+/**
+ * Effective preferences, date patterns, time patterns, and class labels of the classes and subparts listed by the
+ * instructional offering table builders ({@link WebInstructionalOfferingTableBuilder} and its PDF and CSV versions).<br>
+ * The classes and scheduling subparts of the listed offerings are loaded in a few queries ({@link EffectivePreferenceResolver#prefetch(Collection)}),
+ * together with their preferences, date patterns, distribution preferences, and instructors (with the instructor preferences).
+ * This way, the effective values can be computed from the Hibernate session without lazy loading each association separately.
+ * The computed values are then kept, so that each value is computed only once per table. The values are computed
+ * using the same methods on the domain objects (e.g., {@link PreferenceGroup#effectivePreferences(Class)}), so they are
+ * the same as when called directly.<br>
+ * A resolver is meant to be used within a single request (Hibernate session), there is no invalidation of the kept values.
+ *
+ * @author Tomas Muller
+ */
+public class EffectivePreferenceResolver {
+	private static int sBatchSize = 1000;
+	private Set<Long> iPrefetchedOfferingIds = new HashSet<Long>();
+	private Map<String, Object> iValues = new HashMap<String, Object>();
+	private int iHits = 0, iMisses = 0;
+
+	/**
+	 * Load classes and scheduling subparts of the given offerings together with their preferences, date patterns,
+	 * distribution preferences and instructors in a few queries (offerings that have been loaded before are skipped)
+	 */
+	public void prefetch(Collection<InstructionalOffering> offerings) {
+		if (offerings == null || offerings.isEmpty()) return;
+		List<Long> offeringIds = new ArrayList<Long>();
+		for (InstructionalOffering offering: offerings)
+			if (offering.getUniqueId() != null && iPrefetchedOfferingIds.add(offering.getUniqueId()))
+				offeringIds.add(offering.getUniqueId());
+		if (offeringIds.isEmpty()) return;
+		long t0 = System.currentTimeMillis();
+		org.hibernate.Session hibSession = InstructionalOfferingDAO.getInstance().getSession();
+		for (int i = 0; i < offeringIds.size(); i += sBatchSize) {
+			List<Long> ids = offeringIds.subList(i, Math.min(i + sBatchSize, offeringIds.size()));
+			try {
+				hibSession.createQuery(
+						"select distinct ss from SchedulingSubpart ss left join fetch ss.preferences left join fetch ss.datePattern " +
+						"where ss.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds")
+						.setParameterList("offeringIds", ids).list();
+				hibSession.createQuery(
+						"select distinct ss from SchedulingSubpart ss left join fetch ss.distributionObjects dobj left join fetch dobj.distributionPref " +
+						"where ss.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds")
+						.setParameterList("offeringIds", ids).list();
+				hibSession.createQuery(
+						"select distinct c from Class_ c left join fetch c.preferences left join fetch c.datePattern " +
+						"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds")
+						.setParameterList("offeringIds", ids).list();
+				hibSession.createQuery(
+						"select distinct c from Class_ c left join fetch c.distributionObjects dobj left join fetch dobj.distributionPref " +
+						"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds")
+						.setParameterList("offeringIds", ids).list();
+				hibSession.createQuery(
+						"select distinct c from Class_ c left join fetch c.classInstructors ci left join fetch ci.instructor " +
+						"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds")
+						.setParameterList("offeringIds", ids).list();
+				hibSession.createQuery(
+						"select distinct i from DepartmentalInstructor i left join fetch i.preferences where i.uniqueId in (" +
+						"select ci.instructor.uniqueId from ClassInstructor ci where ci.classInstructing.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds)")
+						.setParameterList("offeringIds", ids).list();
+			} catch (Exception e) {
+				Debug.error("Failed to prefetch classes and subparts: " + e.getMessage(), e);
+			}
+		}
+		Debug.debug("Prefetched " + offeringIds.size() + " offerings in " + (System.currentTimeMillis() - t0) + " ms");
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T get(String key) {
+		if (key == null) return null;
+		T ret = (T)iValues.get(key);
+		if (ret == null) iMisses ++; else iHits ++;
+		return ret;
+	}
+
+	private <T> T put(String key, T value) {
+		if (key != null && value != null) iValues.put(key, value);
+		return value;
+	}
+
+	private static String key(PreferenceGroup prefGroup, String name) {
+		return (prefGroup.getUniqueId() == null ? null : prefGroup.getUniqueId() + ":" + name);
+	}
+
+	/** Same as {@link PreferenceGroup#effectivePreferences(Class)} */
+	public Set effectivePreferences(PreferenceGroup prefGroup, Class type) {
+		String key = key(prefGroup, type.getSimpleName());
+		Set ret = get(key);
+		if (ret == null)
+			ret = put(key, prefGroup.effectivePreferences(type));
+		return ret;
+	}
+
+	/** Same as {@link PreferenceGroup#effectiveDatePattern()} */
+	public DatePattern effectiveDatePattern(PreferenceGroup prefGroup) {
+		String key = key(prefGroup, "DatePattern");
+		DatePattern ret = get(key);
+		if (ret == null)
+			ret = put(key, prefGroup.effectiveDatePattern());
+		return ret;
+	}
+
+	/** Same as {@link PreferenceGroup#effectiveTimePatterns()} */
+	public Set effectiveTimePatterns(PreferenceGroup prefGroup) {
+		String key = key(prefGroup, "TimePatterns");
+		Set ret = get(key);
+		if (ret == null)
+			ret = put(key, prefGroup.effectiveTimePatterns());
+		return ret;
+	}
+
+	/** Same as {@link PreferenceGroup#effectiveTimePatternHtml()} */
+	public String effectiveTimePatternHtml(PreferenceGroup prefGroup) {
+		String key = key(prefGroup, "TimePatternHtml");
+		String ret = get(key);
+		if (ret == null)
+			ret = put(key, prefGroup.effectiveTimePatternHtml());
+		return ret;
+	}
+
+	/** Same as {@link PreferenceGroup#getEffectivePrefHtmlForPrefType(Assignment, Class, boolean, boolean, String, boolean)} and the other variants of the method */
+	public String getEffectivePrefHtmlForPrefType(PreferenceGroup prefGroup, Assignment assignment, Class type, boolean timeVertical, boolean gridAsText, String timeGridSize, String nameFormat, boolean highlightClassPrefs) {
+		return prefGroup.htmlForPrefs(assignment, effectivePreferences(prefGroup, type), timeVertical, gridAsText, timeGridSize, nameFormat, highlightClassPrefs);
+	}
+
+	/** Same as {@link Class_#getClassLabel(CourseOffering)} */
+	public String getClassLabel(Class_ clazz, CourseOffering course) {
+		String key = key(clazz, "Label:" + (course == null ? null : course.getUniqueId()));
+		String ret = get(key);
+		if (ret == null)
+			ret = put(key, clazz.getClassLabel(course));
+		return ret;
+	}
+
+	/** Forget all the computed values and prefetched offerings */
+	public void clear() {
+		iPrefetchedOfferingIds.clear();
+		iValues.clear();
+	}
+
+	public int getHits() { return iHits; }
+	public int getMisses() { return iMisses; }
+
+	@Override
+	public String toString() {
+		return "EffectivePreferenceResolver{offerings=" + iPrefetchedOfferingIds.size() + ", values=" + iValues.size() + ", hits=" + iHits + ", misses=" + iMisses + "}";
+	}
+}
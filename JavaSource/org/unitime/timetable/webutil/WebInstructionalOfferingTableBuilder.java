@@ -179,6 +179,8 @@ public class WebInstructionalOfferingTableBuilder {
     
     private Comparator iClassComparator = new ClassComparator(ClassComparator.COMPARE_BY_ITYPE);
     
+    private EffectivePreferenceResolver iPreferenceResolver = new EffectivePreferenceResolver();
+    
     // Set whether edit/modify config buttons are displayed
     private boolean displayConfigOpButtons = false;
     
@@ -668,14 +670,14 @@ public class WebInstructionalOfferingTableBuilder {
 				Debug.error(e);
 			}
     	}
-    	DatePattern dp = (a != null ? a.getDatePattern() : prefGroup.effectiveDatePattern());
+    	DatePattern dp = (a != null ? a.getDatePattern() : getPreferenceResolver().effectiveDatePattern(prefGroup));
     	TableCell cell = null;
     	if (dp==null) {
     		cell = initNormalCell("", isEditable);
     	} else if (dp.getType() == DatePattern.sTypePatternSet && isEditable) {
     		String text = "";
     		boolean hasReq = false;
-			for (Iterator i=prefGroup.effectivePreferences(DatePatternPref.class).iterator(); i.hasNext();) {
+			for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, DatePatternPref.class).iterator(); i.hasNext();) {
 				Preference pref = (Preference)i.next();
 				if (!hasReq && PreferenceLevel.sRequired.equals(pref.getPrefLevel().getPrefProlog())) {
 					hasReq = true; text = "";
@@ -695,7 +697,7 @@ public class WebInstructionalOfferingTableBuilder {
     }
 
     private TableCell buildTimePatternCell(PreferenceGroup prefGroup, boolean isEditable){
-        TableCell cell = initNormalCell(prefGroup.effectiveTimePatternHtml(), isEditable);
+        TableCell cell = initNormalCell(getPreferenceResolver().effectiveTimePatternHtml(prefGroup), isEditable);
         cell.setAlign("center");
         cell.setNoWrap(true);
         return(cell);
@@ -711,7 +713,7 @@ public class WebInstructionalOfferingTableBuilder {
 			}
     	}
     	
-    	TableCell cell = initNormalCell(prefGroup.getEffectivePrefHtmlForPrefType(a,TimePref.class, getTimeVertival(), getGridAsText(), getDefaultTimeGridSize(), isHighlightClassPrefs()),isEditable);
+    	TableCell cell = initNormalCell(getPreferenceResolver().getEffectivePrefHtmlForPrefType(prefGroup, a, TimePref.class, getTimeVertival(), getGridAsText(), getDefaultTimeGridSize(), null, isHighlightClassPrefs()),isEditable);
         cell.setNoWrap(true);
     	return (cell);
     	
@@ -738,7 +740,7 @@ public class WebInstructionalOfferingTableBuilder {
     		if (!prefGroup.isInstructorAssignmentNeeded() && (InstructorPref.class.equals(prefType) || InstructorAttributePref.class.equals(prefType))) {
     			return initNormalCell("",false);
     		}
-    		TableCell cell = this.initNormalCell(prefGroup.getEffectivePrefHtmlForPrefType(prefType, getInstructorNameFormat(), isHighlightClassPrefs()),isEditable);
+    		TableCell cell = this.initNormalCell(getPreferenceResolver().getEffectivePrefHtmlForPrefType(prefGroup, null, prefType, false, false, null, getInstructorNameFormat(), isHighlightClassPrefs()),isEditable);
     		cell.setNoWrap(true);
     		return(cell);
     	}
@@ -763,7 +765,7 @@ public class WebInstructionalOfferingTableBuilder {
     				prefType.equals(BuildingPref.class))
     				continue;
     		}
-    		String x = prefGroup.getEffectivePrefHtmlForPrefType(prefType, isHighlightClassPrefs());
+    		String x = getPreferenceResolver().getEffectivePrefHtmlForPrefType(prefGroup, null, prefType, false, false, null, null, isHighlightClassPrefs());
     		if (x!=null && x.trim().length()>0) {
     			if (pref.length()>0) pref.append("<BR>");
     			pref.append(x);
@@ -1487,7 +1489,7 @@ public class WebInstructionalOfferingTableBuilder {
         }
         if (aClass.isCancelled()) {
         	row.setStyle("color: gray; font-style: italic;");
-        	row.setTitle(MSG.classNoteCancelled(aClass.getClassLabel(co)));
+        	row.setTitle(MSG.classNoteCancelled(getPreferenceResolver().getClassLabel(aClass, co)));
         }
         String icon = null;
         if (getDisplayConflicts() && classAssignment != null) {
@@ -1501,8 +1503,8 @@ public class WebInstructionalOfferingTableBuilder {
     				if (!s.isEmpty()) s += ", ";
     				s += (c.getClassName() + " " + c.getPlacement().getName(CONSTANTS.useAmPm())).trim();
     			}
-				row.setTitle(MSG.classIsConflicting(aClass.getClassLabel(co), s));
-				icon = "<IMG alt='" + MSG.classIsConflicting(aClass.getClassLabel(co), s) + "' title='" + MSG.classIsConflicting(aClass.getClassLabel(co), s) + "' " +
+				row.setTitle(MSG.classIsConflicting(getPreferenceResolver().getClassLabel(aClass, co), s));
+				icon = "<IMG alt='" + MSG.classIsConflicting(getPreferenceResolver().getClassLabel(aClass, co), s) + "' title='" + MSG.classIsConflicting(getPreferenceResolver().getClassLabel(aClass, co), s) + "' " +
 						"src='images/warning.png' style='margin-left: 1px; margin-right: 3px; vertical-align: top;'>";
         	} else {
         		Set<TimeBlock> ec = null;
@@ -1519,8 +1521,8 @@ public class WebInstructionalOfferingTableBuilder {
         			}
             		row.setBgColor("#fff0f0");
             		row.setOnMouseOut("this.style.backgroundColor='#fff0f0';");
-            		row.setTitle(MSG.classIsConflicting(aClass.getClassLabel(co), s));
-            		icon = "<IMG alt='" + MSG.classIsConflicting(aClass.getClassLabel(co), s) + "' title='" + MSG.classIsConflicting(aClass.getClassLabel(co), s) + "' " +
+            		row.setTitle(MSG.classIsConflicting(getPreferenceResolver().getClassLabel(aClass, co), s));
+            		icon = "<IMG alt='" + MSG.classIsConflicting(getPreferenceResolver().getClassLabel(aClass, co), s) + "' title='" + MSG.classIsConflicting(getPreferenceResolver().getClassLabel(aClass, co), s) + "' " +
             				"src='images/warning.png' style='margin-left: 1px; margin-right: 3px; vertical-align: top;'>";
         		}
         	}
@@ -2029,6 +2031,8 @@ public class WebInstructionalOfferingTableBuilder {
     	
     	if (insructionalOfferings == null) return;
     	
+    	getPreferenceResolver().prefetch(insructionalOfferings);
+    	
     	if (classComparator!=null)
     		setClassComparator(classComparator);
     	
@@ -2343,6 +2347,14 @@ public class WebInstructionalOfferingTableBuilder {
 		this.showInstructor = showInstructor;
 	}
 
+    public EffectivePreferenceResolver getPreferenceResolver() {
+    	return iPreferenceResolver;
+    }
+    
+    public void setPreferenceResolver(EffectivePreferenceResolver preferenceResolver) {
+    	iPreferenceResolver = preferenceResolver;
+    }
+    
     public Comparator getClassComparator() {
     	return iClassComparator;
     }
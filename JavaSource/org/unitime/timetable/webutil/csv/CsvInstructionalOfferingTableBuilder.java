@@ -291,7 +291,7 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
         String label = prefGroup.toString();
         if (prefGroup instanceof Class_) {
         	Class_ aClass = (Class_) prefGroup;
-        	label = aClass.getClassLabel(co);
+        	label = getPreferenceResolver().getClassLabel(aClass, co);
         	if (aClass.isCancelled()) label += " (" + MSG.statusCancelled() + ")";
 		}
         if (prevLabel != null && label.equals(prevLabel)){
@@ -309,19 +309,19 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
 				Debug.error(e);
 			}
     	}
-    	DatePattern dp = (a != null ? a.getDatePattern() : prefGroup.effectiveDatePattern());
+    	DatePattern dp = (a != null ? a.getDatePattern() : getPreferenceResolver().effectiveDatePattern(prefGroup));
     	CSVField cell = createCell();
     	if (dp != null) {
 			setText(cell,dp.getName());
     		if (dp.getType() == DatePattern.sTypePatternSet && isEditable) {
     			boolean hasReq = false;
-    			for (Iterator i=prefGroup.effectivePreferences(DatePatternPref.class).iterator(); i.hasNext();) {
+    			for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, DatePatternPref.class).iterator(); i.hasNext();) {
     				Preference pref = (Preference)i.next();
     				if (PreferenceLevel.sRequired.equals(pref.getPrefLevel().getPrefProlog())) {
     					hasReq = true; break;
     				}
     			}
-    			for (Iterator i=prefGroup.effectivePreferences(DatePatternPref.class).iterator(); i.hasNext();) {
+    			for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, DatePatternPref.class).iterator(); i.hasNext();) {
     				Preference pref = (Preference)i.next();
     				if (!hasReq || PreferenceLevel.sRequired.equals(pref.getPrefLevel().getPrefProlog()))
     					addText(cell, pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(), true);
@@ -333,14 +333,14 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
 
     private CSVField csvBuildTimePatternCell(PreferenceGroup prefGroup, boolean isEditable){
     	CSVField cell = createCell();
-    	for (Iterator i=prefGroup.effectiveTimePatterns().iterator(); i.hasNext();) {
+    	for (Iterator i=getPreferenceResolver().effectiveTimePatterns(prefGroup).iterator(); i.hasNext();) {
     		TimePattern tp = (TimePattern)i.next();
     		addText(cell, tp.getName(), true);  
     	}
-        if (prefGroup instanceof Class_ && prefGroup.effectiveTimePatterns().isEmpty()) {
+        if (prefGroup instanceof Class_ && getPreferenceResolver().effectiveTimePatterns(prefGroup).isEmpty()) {
         	Class_ clazz = (Class_)prefGroup;
         	DurationModel dm = clazz.getSchedulingSubpart().getInstrOfferingConfig().getDurationModel();
-        	Integer ah = dm.getArrangedHours(clazz.getSchedulingSubpart().getMinutesPerWk(), clazz.effectiveDatePattern());
+        	Integer ah = dm.getArrangedHours(clazz.getSchedulingSubpart().getMinutesPerWk(), getPreferenceResolver().effectiveDatePattern(clazz));
             if (ah == null) {
                 addText(cell, "Arr Hrs", true);
             } else {
@@ -360,7 +360,7 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
 			}
     	}
 		CSVField cell = createCell();
-		for (Iterator i=prefGroup.effectivePreferences(TimePref.class).iterator(); i.hasNext();) {
+		for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, TimePref.class).iterator(); i.hasNext();) {
 			TimePref tp = (TimePref)i.next();
 			RequiredTimeTable rtt = tp.getRequiredTimeTable(a == null ? null : a.getTimeLocation());
 			addText(cell, rtt.getModel().toString().replaceAll(", ", LINE_SEPARATOR), true);
@@ -374,7 +374,7 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     		return csvBuildTimePrefCell(classAssignment, prefGroup, isEditable);
     	} else if (DistributionPref.class.equals(prefType)) {
         	CSVField cell = createCell();
-        	for (Iterator i=prefGroup.effectivePreferences(prefType).iterator();i.hasNext();) {
+        	for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, prefType).iterator();i.hasNext();) {
         		DistributionPref pref = (DistributionPref)i.next();
         		addText(cell, pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(true, true, " (", ", ",")").replaceAll("&lt;","<").replaceAll("&gt;",">"), true);
         	}
@@ -384,7 +384,7 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     		if (!prefGroup.isInstructorAssignmentNeeded() && (InstructorPref.class.equals(prefType) || InstructorAttributePref.class.equals(prefType))) {
     			return cell;
     		}
-        	for (Iterator i=prefGroup.effectivePreferences(prefType).iterator();i.hasNext();) {
+        	for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, prefType).iterator();i.hasNext();) {
         		Preference pref = (Preference)i.next();
         		addText(cell, pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(), true);
         	}
@@ -411,7 +411,7 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     				prefType.equals(BuildingPref.class))
     				continue;
     		}
-    		for (Iterator j=prefGroup.effectivePreferences(prefType).iterator();j.hasNext();) {
+    		for (Iterator j=getPreferenceResolver().effectivePreferences(prefGroup, prefType).iterator();j.hasNext();) {
     			Preference pref = (Preference)j.next();
     			addText(cell, pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(), true);
     		}
@@ -1365,6 +1365,8 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     	
     	if (insructionalOfferings == null) return;
     	
+    	getPreferenceResolver().prefetch(insructionalOfferings);
+    	
     	SubjectArea subjectArea = SubjectAreaDAO.getInstance().get(subjectAreaId);
     	
     	if (classComparator!=null)
@@ -551,7 +551,7 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
         String label = prefGroup.toString();
         if (prefGroup instanceof Class_) {
         	Class_ aClass = (Class_) prefGroup;
-        	label = aClass.getClassLabel(co);
+        	label = getPreferenceResolver().getClassLabel(aClass, co);
 		}
         if (prevLabel != null && label.equals(prevLabel)){
         	label = "";
@@ -572,20 +572,20 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
 				Debug.error(e);
 			}
     	}
-    	DatePattern dp = (a != null ? a.getDatePattern() : prefGroup.effectiveDatePattern());
+    	DatePattern dp = (a != null ? a.getDatePattern() : getPreferenceResolver().effectiveDatePattern(prefGroup));
     	PdfPCell cell = createCell();
     	if (dp!=null) {
     		Color color = (isEditable ? sEnableColor : sDisableColor);
 			addText(cell,dp.getName(), false, false, Element.ALIGN_CENTER, color, true);
     		if (dp.getType() == DatePattern.sTypePatternSet && isEditable) {
     			boolean hasReq = false;
-    			for (Iterator i=prefGroup.effectivePreferences(DatePatternPref.class).iterator(); i.hasNext();) {
+    			for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, DatePatternPref.class).iterator(); i.hasNext();) {
     				Preference pref = (Preference)i.next();
     				if (PreferenceLevel.sRequired.equals(pref.getPrefLevel().getPrefProlog())) {
     					hasReq = true; break;
     				}
     			}
-    			for (Iterator i=prefGroup.effectivePreferences(DatePatternPref.class).iterator(); i.hasNext();) {
+    			for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, DatePatternPref.class).iterator(); i.hasNext();) {
     				Preference pref = (Preference)i.next();
     				if (!hasReq || PreferenceLevel.sRequired.equals(pref.getPrefLevel().getPrefProlog()))
     					addText(cell,pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(), false, false, Element.ALIGN_CENTER, (!isEditable ? color : p == null ? pref.getPrefLevel().awtPrefcolor() : PreferenceLevel.int2awtColor(p.getDatePatternPref(), color)), true);
@@ -598,14 +598,14 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     private PdfPCell pdfBuildTimePatternCell(PreferenceGroup prefGroup, boolean isEditable){
    		Color color = (isEditable?sEnableColor:sDisableColor);
     	PdfPCell cell = createCell();
-    	for (Iterator i=prefGroup.effectiveTimePatterns().iterator(); i.hasNext();) {
+    	for (Iterator i=getPreferenceResolver().effectiveTimePatterns(prefGroup).iterator(); i.hasNext();) {
     		TimePattern tp = (TimePattern)i.next();
     		addText(cell, tp.getName(), false, false, Element.ALIGN_CENTER, color, true);  
     	}
-        if (prefGroup instanceof Class_ && prefGroup.effectiveTimePatterns().isEmpty()) {
+        if (prefGroup instanceof Class_ && getPreferenceResolver().effectiveTimePatterns(prefGroup).isEmpty()) {
         	Class_ clazz = (Class_)prefGroup;
         	DurationModel dm = clazz.getSchedulingSubpart().getInstrOfferingConfig().getDurationModel();
-        	Integer ah = dm.getArrangedHours(clazz.getSchedulingSubpart().getMinutesPerWk(), clazz.effectiveDatePattern());
+        	Integer ah = dm.getArrangedHours(clazz.getSchedulingSubpart().getMinutesPerWk(), getPreferenceResolver().effectiveDatePattern(clazz));
             if (ah == null) {
                 addText(cell, "Arr Hrs", false, false, Element.ALIGN_CENTER, color, true);
             } else {
@@ -628,7 +628,7 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
 		
 		PdfPCell cell = createCell();
 		
-		for (Iterator i=prefGroup.effectivePreferences(TimePref.class).iterator(); i.hasNext();) {
+		for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, TimePref.class).iterator(); i.hasNext();) {
 			TimePref tp = (TimePref)i.next();
 			RequiredTimeTable rtt = tp.getRequiredTimeTable(a == null ? null : a.getTimeLocation());
 			if (getGridAsText()) {
@@ -667,7 +667,7 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     		return pdfBuildTimePrefCell(classAssignment, prefGroup, isEditable);
     	} else if (DistributionPref.class.equals(prefType)) {
         	PdfPCell cell = createCell();
-        	for (Iterator i=prefGroup.effectivePreferences(prefType).iterator();i.hasNext();) {
+        	for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, prefType).iterator();i.hasNext();) {
         		DistributionPref pref = (DistributionPref)i.next();
         		addText(cell, pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(true, true, " (", ", ",")").replaceAll("&lt;","<").replaceAll("&gt;",">"), false, false, Element.ALIGN_LEFT, (!isEditable ? color : pref.getPrefLevel().awtPrefcolor()), true);
         	}
@@ -677,7 +677,7 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     		if (!prefGroup.isInstructorAssignmentNeeded() && (InstructorPref.class.equals(prefType) || InstructorAttributePref.class.equals(prefType))) {
     			return cell;
     		}
-        	for (Iterator i=prefGroup.effectivePreferences(prefType).iterator();i.hasNext();) {
+        	for (Iterator i=getPreferenceResolver().effectivePreferences(prefGroup, prefType).iterator();i.hasNext();) {
         		Preference pref = (Preference)i.next();
         		addText(cell, pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(), false, false, Element.ALIGN_LEFT, (!isEditable ? color : pref.getPrefLevel().awtPrefcolor()), true);
         	}
@@ -706,7 +706,7 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     				prefType.equals(BuildingPref.class))
     				continue;
     		}
-    		for (Iterator j=prefGroup.effectivePreferences(prefType).iterator();j.hasNext();) {
+    		for (Iterator j=getPreferenceResolver().effectivePreferences(prefGroup, prefType).iterator();j.hasNext();) {
     			Preference pref = (Preference)j.next();
     			addText(cell, pref.getPrefLevel().getAbbreviation()+" "+pref.preferenceText(), false, false, Element.ALIGN_LEFT, (!isEditable ? color : pref.getPrefLevel().awtPrefcolor()), true);
     		}
@@ -1733,6 +1733,8 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     	
     	if (insructionalOfferings == null) return;
     	
+    	getPreferenceResolver().prefetch(insructionalOfferings);
+    	
     	SubjectArea subjectArea = SubjectAreaDAO.getInstance().get(subjectAreaId);
     	
     	if (classComparator!=null)